@@ -0,0 +1,122 @@
+package com.guipadovan.librarymanager;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Saves the JMH results of the current run under the name of the commit and compares them with the results saved by the
+ * run of another commit, reporting the change of the score and of the allocation per operation of every benchmark
+ * present in both.
+ * <p>
+ * A benchmark is reported as a regression when its score got worse by more than the threshold and the error margins of
+ * both runs don't overlap, so the noise of a single run isn't reported as a regression.
+ * <p>
+ * Arguments: the result file written by JMH, the directory of the saved results and the name of the current commit. The
+ * baseline is read from the {@code jmh.baseline} system property and the threshold, in percent, from
+ * {@code jmh.threshold}.
+ */
+public final class BenchmarkComparison {
+
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+    // Diferenças de alocação abaixo de um byte por operação são arredondamentos do profiler
+    private static final double MIN_ALLOCATION_DIFFERENCE = 1;
+
+    private BenchmarkComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path resultFile = Path.of(args[0]);
+        Path resultsDirectory = Path.of(args[1]);
+        String current = args[2];
+        String baseline = System.getProperty("jmh.baseline", "");
+        double threshold = Double.parseDouble(System.getProperty("jmh.threshold", "10"));
+
+        // O resultado salvo é lido antes de ser substituído, permitindo comparar duas execuções do mesmo commit
+        Path baselineFile = resultsDirectory.resolve(baseline + ".json");
+        Map<String, JsonNode> baselineResults = baseline.isBlank() || !Files.exists(baselineFile)
+                ? null
+                : readResults(baselineFile);
+        Map<String, JsonNode> currentResults = readResults(resultFile);
+
+        // Uma execução parcial substitui os resultados salvos do mesmo commit
+        Files.createDirectories(resultsDirectory);
+        Files.copy(resultFile, resultsDirectory.resolve(current + ".json"), StandardCopyOption.REPLACE_EXISTING);
+
+        if (baseline.isBlank()) {
+            System.out.println("Results saved as " + current + ", run with -Djmh.baseline=<result> to compare them");
+            return;
+        }
+        if (baselineResults == null) {
+            System.out.println("No results found for " + baseline + " in " + resultsDirectory);
+            return;
+        }
+
+        System.out.printf("%nComparing %s with %s (threshold %.1f%%)%n%n", current, baseline, threshold);
+        System.out.printf("%-90s %14s %14s %-12s %9s%n", "Benchmark", baseline, current, "Units", "Change");
+
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : currentResults.entrySet()) {
+            JsonNode before = baselineResults.get(entry.getKey());
+            if (before == null)
+                continue;
+
+            JsonNode after = entry.getValue();
+            boolean higherIsBetter = "thrpt".equals(after.path("mode").asText());
+            if (report(entry.getKey(), before.path("primaryMetric"), after.path("primaryMetric"), higherIsBetter, 0,
+                    threshold))
+                regressions++;
+
+            JsonNode beforeAllocation = before.path("secondaryMetrics").path(ALLOCATION_METRIC);
+            JsonNode afterAllocation = after.path("secondaryMetrics").path(ALLOCATION_METRIC);
+            if (!beforeAllocation.isMissingNode() && !afterAllocation.isMissingNode()
+                    && report(entry.getKey() + " (alloc)", beforeAllocation, afterAllocation, false,
+                    MIN_ALLOCATION_DIFFERENCE, threshold))
+                regressions++;
+        }
+
+        System.out.printf("%n%d regressions%n", regressions);
+    }
+
+    // Benchmarks indexados pelo nome e pelos parâmetros, que identificam o mesmo benchmark entre as execuções
+    private static Map<String, JsonNode> readResults(Path file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file.toFile())) {
+            Map<String, String> params = new TreeMap<>();
+            result.path("params").fields().forEachRemaining(param -> params.put(param.getKey(), param.getValue().asText()));
+
+            String name = result.path("benchmark").asText().replaceFirst("^com\\.guipadovan\\.librarymanager\\.", "");
+            results.put(params.isEmpty() ? name : name + " " + params, result);
+        }
+        return results;
+    }
+
+    private static boolean report(String name, JsonNode before, JsonNode after, boolean higherIsBetter,
+                                  double minDifference, double threshold) {
+        double beforeScore = before.path("score").asDouble();
+        double afterScore = after.path("score").asDouble();
+        double difference = Math.abs(afterScore - beforeScore);
+        double change = beforeScore == 0 || difference < minDifference ? 0 : (afterScore - beforeScore) / beforeScore * 100;
+
+        // O erro é NaN quando há poucas iterações para calcular o intervalo, nesse caso vale apenas o limite
+        double margin = error(before) + error(after);
+        boolean worse = higherIsBetter ? change < -threshold : change > threshold;
+        boolean regression = worse && difference > margin;
+
+        System.out.printf("%-90s %14.3f %14.3f %-12s %+8.1f%% %s%n", name, beforeScore, afterScore,
+                after.path("scoreUnit").asText(), change, regression ? "REGRESSION" : "");
+        return regression;
+    }
+
+    private static double error(JsonNode metric) {
+        double error = metric.path("scoreError").asDouble(Double.NaN);
+        return Double.isNaN(error) ? 0 : error;
+    }
+}
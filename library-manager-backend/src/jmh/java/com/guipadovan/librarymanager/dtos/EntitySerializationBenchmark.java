@@ -0,0 +1,86 @@
+package com.guipadovan.librarymanager.dtos;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.guipadovan.librarymanager.entities.Book;
+import com.guipadovan.librarymanager.entities.Lease;
+import com.guipadovan.librarymanager.entities.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JSON serialization of {@link Book} and {@link Lease} entities with the serialization of the response
+ * DTOs returned by the controllers, including the mapping from the entities.
+ * <p>
+ * The object mapper is configured as the one of the application, with dates written as ISO strings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EntitySerializationBenchmark {
+
+    @Param({"1", "50"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<Book> books;
+    private List<Lease> leases;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+
+        books = new ArrayList<>(size);
+        leases = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            Book book = new Book("Livro " + id, "Autor " + id, String.format("%013d", id),
+                    LocalDate.of(1950, 1, 1).plusDays(id), "Categoria " + id % 20);
+            book.setId(id);
+            books.add(book);
+
+            User user = new User("Leitor " + id, "leitor" + id + "@example.com", LocalDate.of(2020, 1, 1),
+                    "(11) 91234-5678");
+            user.setId(id);
+
+            Lease lease = new Lease();
+            lease.setId(id);
+            lease.setUser(user);
+            lease.setBook(book);
+            lease.setLeaseDate(LocalDate.of(2024, 1, 1));
+            lease.setReturnDate(LocalDate.of(2024, 1, 15));
+            lease.setStatus(Lease.Status.ACTIVE);
+            leases.add(lease);
+        }
+    }
+
+    @Benchmark
+    public byte[] bookEntities() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(books);
+    }
+
+    @Benchmark
+    public byte[] bookResponses() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(books.stream().map(BookResponseDto::from).toList());
+    }
+
+    @Benchmark
+    public byte[] leaseEntities() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(leases);
+    }
+
+    @Benchmark
+    public byte[] leaseResponses() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(leases.stream().map(LeaseResponseDto::from).toList());
+    }
+}
@@ -0,0 +1,90 @@
+package com.guipadovan.librarymanager.repositories;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guipadovan.librarymanager.LibraryManagerApplication;
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import com.guipadovan.librarymanager.entities.Book;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.web.PagedModel;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the book listing through managed {@link Book} entities in a read-write transaction, as the endpoint did
+ * before, with the {@link BookResponseDto} projection in a read-only transaction, both including the JSON
+ * serialization of the page.
+ * <p>
+ * Needs the database configured in {@code application.yml}. The listed books are inserted before the benchmark and
+ * removed at the end.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookListingBenchmark {
+
+    @Param({"20", "200"})
+    private int size;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readWriteTransaction;
+    private TransactionTemplate readOnlyTransaction;
+    private BookRepository bookRepository;
+    private ObjectMapper objectMapper;
+
+    private String author;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(LibraryManagerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.main.banner-mode=off", "--logging.level.root=WARN");
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+        readWriteTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        bookRepository = context.getBean(BookRepository.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+
+        // Garante livros suficientes para a maior página, marcados pelo autor para a limpeza
+        author = "benchmark-" + UUID.randomUUID();
+        jdbcTemplate.update("""
+                insert into books (id, titulo, autor, isbn, data_publicacao, categoria)
+                select nextval('books_seq'), 'Livro ' || i, ?, lpad(i::text, 13, '0'), date '1950-01-01' + i,
+                       'Categoria ' || (i % 20)
+                from generate_series(1, ?) as i""", author, size);
+    }
+
+    @TearDown
+    public void tearDown() {
+        jdbcTemplate.update("delete from books where autor = ?", author);
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] entities() throws JsonProcessingException {
+        Page<Book> page = readWriteTransaction.execute(status -> bookRepository.findAll(PageRequest.of(0, size)));
+        return objectMapper.writeValueAsBytes(new PagedModel<>(page));
+    }
+
+    @Benchmark
+    public byte[] projection() throws JsonProcessingException {
+        Page<BookResponseDto> page = readOnlyTransaction.execute(status ->
+                bookRepository.findAllResponses(PageRequest.of(0, size)));
+        return objectMapper.writeValueAsBytes(new PagedModel<>(page));
+    }
+}
@@ -0,0 +1,115 @@
+package com.guipadovan.librarymanager.repositories;
+
+import com.guipadovan.librarymanager.LibraryManagerApplication;
+import com.guipadovan.librarymanager.entities.Book;
+import com.guipadovan.librarymanager.repositories.projections.BookCategoryView;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the previous recommendation history lookup, which loaded the user and every leased {@link Book} entity,
+ * with the single projection query over the user, lease and book IDs.
+ * <p>
+ * Needs the database configured in {@code application.yml}. The reader and their books are inserted before the
+ * benchmark and removed at the end.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecommendationHistoryBenchmark {
+
+    private static final int CATEGORIES = 20;
+
+    @Param({"50", "5000"})
+    private int leases;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private EntityManager entityManager;
+    private UserRepository userRepository;
+    private LeaseRepository leaseRepository;
+
+    private String author;
+    private Long userId;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(LibraryManagerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.main.banner-mode=off", "--logging.level.root=WARN");
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.setReadOnly(true);
+        entityManager = context.getBean(EntityManager.class);
+        userRepository = context.getBean(UserRepository.class);
+        leaseRepository = context.getBean(LeaseRepository.class);
+
+        // Um leitor com um empréstimo devolvido de cada livro, marcados pelo autor para a limpeza
+        author = "benchmark-" + UUID.randomUUID();
+        userId = jdbcTemplate.queryForObject("""
+                insert into users (id, nome, email, data_cadastro, telefone)
+                values (nextval('users_seq'), 'Leitor', ?, current_date, '(11) 91234-5678')
+                returning id""", Long.class, author + "@example.com");
+        jdbcTemplate.update("""
+                insert into books (id, titulo, autor, isbn, data_publicacao, categoria)
+                select nextval('books_seq'), 'Livro ' || i, ?, lpad(i::text, 13, '0'), date '1950-01-01' + i,
+                       'Categoria ' || (i % ?)
+                from generate_series(1, ?) as i""", author, CATEGORIES, leases);
+        jdbcTemplate.update("""
+                insert into leases (id, usuario_id, livro_id, data_emprestimo, data_devolucao, status)
+                select nextval('leases_seq'), ?, b.id, date '2015-01-01' + (b.id % 3650)::int,
+                       date '2015-01-15' + (b.id % 3650)::int, 'RETURNED'
+                from books b
+                where b.autor = ?""", userId, author);
+        jdbcTemplate.execute("analyze leases");
+    }
+
+    @TearDown
+    public void tearDown() {
+        jdbcTemplate.update("delete from books where autor = ?", author);
+        jdbcTemplate.update("delete from users where id = ?", userId);
+        context.close();
+    }
+
+    @Benchmark
+    public int previousPath() {
+        return transactionTemplate.execute(status -> {
+            userRepository.findById(userId).orElseThrow();
+            List<Book> leasedBooks = entityManager.createQuery(
+                            "select l.book from Lease l where l.user.id = :userId order by l.leaseDate desc", Book.class)
+                    .setParameter("userId", userId)
+                    .getResultList();
+            List<String> categories = leasedBooks.stream().map(Book::getCategory).distinct().toList();
+            Set<Long> excludedBookIds = leasedBooks.stream().map(Book::getId).collect(Collectors.toSet());
+            return categories.size() + excludedBookIds.size();
+        });
+    }
+
+    @Benchmark
+    public int projection() {
+        return transactionTemplate.execute(status -> {
+            List<BookCategoryView> leasedBooks = leaseRepository.findLeasedBookCategoriesByUser(userId).stream()
+                    .filter(leasedBook -> leasedBook.id() != null)
+                    .toList();
+            List<String> categories = leasedBooks.stream().map(BookCategoryView::category).distinct().toList();
+            Set<Long> excludedBookIds = leasedBooks.stream().map(BookCategoryView::id).collect(Collectors.toSet());
+            return categories.size() + excludedBookIds.size();
+        });
+    }
+}
@@ -0,0 +1,117 @@
+package com.guipadovan.librarymanager.repositories;
+
+import com.guipadovan.librarymanager.LibraryManagerApplication;
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import com.guipadovan.librarymanager.entities.Book;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the repository queries behind the most requested endpoints: a book by ID, the books of a recommendation by
+ * their IDs, and a page of the listing read by offset and by keyset from the middle of the catalog.
+ * <p>
+ * Needs the database configured in {@code application.yml}. The books are inserted before the benchmark and removed at
+ * the end, and the second-level cache is disabled so every call reaches the database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryQueryBenchmark {
+
+    private static final int BOOKS = 20_000;
+    private static final int PAGE_SIZE = 20;
+    private static final int RECOMMENDATION_SIZE = 10;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private BookRepository bookRepository;
+
+    private String author;
+    private long[] bookIds;
+    private int next;
+    private int middlePage;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(LibraryManagerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.main.banner-mode=off", "--logging.level.root=WARN",
+                        "--spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                        "--spring.jpa.properties.hibernate.cache.use_query_cache=false");
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.setReadOnly(true);
+        bookRepository = context.getBean(BookRepository.class);
+
+        // Livros marcados pelo autor para a limpeza, com os IDs embaralhados para variar as buscas a cada chamada
+        author = "benchmark-" + UUID.randomUUID();
+        jdbcTemplate.update("""
+                insert into books (id, titulo, autor, isbn, data_publicacao, categoria)
+                select nextval('books_seq'), 'Livro ' || i, ?, lpad(i::text, 13, '0'), date '1950-01-01' + i,
+                       'Categoria ' || (i % 20)
+                from generate_series(1, ?) as i""", author, BOOKS);
+        jdbcTemplate.execute("analyze books");
+        bookIds = jdbcTemplate.queryForList("select id from books where autor = ? order by random()", Long.class, author)
+                .stream().mapToLong(Long::longValue).toArray();
+        middlePage = (int) (bookRepository.count() / PAGE_SIZE / 2);
+    }
+
+    @TearDown
+    public void tearDown() {
+        jdbcTemplate.update("delete from books where autor = ?", author);
+        context.close();
+    }
+
+    @Benchmark
+    public Book findById() {
+        return transactionTemplate.execute(status -> bookRepository.findById(nextBookId()).orElseThrow());
+    }
+
+    @Benchmark
+    public List<BookResponseDto> findAllResponsesById() {
+        int from = nextIndex(RECOMMENDATION_SIZE);
+        List<Long> ids = Arrays.stream(bookIds, from, from + RECOMMENDATION_SIZE).boxed().toList();
+        return transactionTemplate.execute(status -> bookRepository.findAllResponsesById(ids));
+    }
+
+    @Benchmark
+    public Page<BookResponseDto> offsetPage() {
+        return transactionTemplate.execute(status ->
+                bookRepository.findAllResponses(PageRequest.of(middlePage, PAGE_SIZE)));
+    }
+
+    @Benchmark
+    public List<BookResponseDto> keysetPage() {
+        long afterId = nextBookId();
+        return transactionTemplate.execute(status ->
+                bookRepository.findNextOrderById(afterId, PageRequest.ofSize(PAGE_SIZE)));
+    }
+
+    private long nextBookId() {
+        return bookIds[nextIndex(1)];
+    }
+
+    private int nextIndex(int length) {
+        if (next + length > bookIds.length)
+            next = 0;
+        int index = next;
+        next += length;
+        return index;
+    }
+}
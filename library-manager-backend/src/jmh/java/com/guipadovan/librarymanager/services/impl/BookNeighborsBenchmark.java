@@ -0,0 +1,92 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Measures the item-to-item recommendations of {@link BookNeighborServiceImpl} without the database: the full build of
+ * the {@link LeaseGraph} and the {@link BookNeighbors} of a synthetic lease history, and the recommendations for the
+ * recent books of a user.
+ * <p>
+ * The popularity of the books is skewed, as in a real catalog, so that the popular books have many more co-leases to
+ * count than the others.
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class BookNeighborsBenchmark {
+
+    private static final int CATALOG_SIZE = 100_000;
+    private static final int LEASES_PER_USER = 20;
+    private static final int RECENT_BOOKS = 20;
+    private static final int LIMIT = 10;
+
+    @Param({"1000000", "10000000"})
+    private int leases;
+
+    private long[] userIds;
+    private long[] bookIds;
+    private ForkJoinPool pool;
+    private BookNeighbors neighbors;
+    private long[][] recentBooks;
+    private int nextUser;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        int users = leases / LEASES_PER_USER;
+        userIds = new long[leases];
+        bookIds = new long[leases];
+        for (int i = 0; i < leases; i++) {
+            userIds[i] = 1 + random.nextInt(users);
+            // O cubo concentra os empréstimos nos livros de menor ID
+            double position = random.nextDouble();
+            bookIds[i] = 1 + (long) (CATALOG_SIZE * position * position * position);
+        }
+
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        neighbors = build();
+
+        // Livros recentes de usuários sorteados, com a mesma distribuição de popularidade do histórico
+        recentBooks = new long[1024][];
+        for (int i = 0; i < recentBooks.length; i++) {
+            recentBooks[i] = new long[RECENT_BOOKS];
+            for (int j = 0; j < RECENT_BOOKS; j++)
+                recentBooks[i][j] = bookIds[random.nextInt(leases)];
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public BookNeighbors fullBuild() {
+        return build();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long[] recommend() {
+        long[] sourceBookIds = recentBooks[nextUser++ & (recentBooks.length - 1)];
+        return neighbors.recommend(sourceBookIds, bookId -> false, LIMIT);
+    }
+
+    private BookNeighbors build() {
+        LeaseGraph graph = pool.invoke(ForkJoinTask.adapt(() -> LeaseGraph.of(userIds, bookIds, leases, 200)));
+        int[] books = IntStream.range(0, graph.bookCount()).toArray();
+        return new BookNeighborsBuilder(graph, 20, 2).build(books, pool);
+    }
+}
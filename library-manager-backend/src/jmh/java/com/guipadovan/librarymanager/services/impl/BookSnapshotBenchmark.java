@@ -0,0 +1,83 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the encoding and decoding of a catalog snapshot by {@link BookSnapshotWriter} and
+ * {@link BookSnapshotReader} without the database, in books per second, and the size of the snapshot, printed by the
+ * setup as bytes per book.
+ * <p>
+ * The authors and categories repeat with a skewed distribution, as in a real catalog, and the IDs have small gaps.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookSnapshotBenchmark {
+
+    private static final int BOOKS = 100_000;
+    private static final String[] CATEGORIES = {"Ficção", "Romance", "Fantasia", "História", "Ciência", "Biografia",
+            "Poesia", "Filosofia", "Tecnologia", "Infantil", "Suspense", "Autoajuda"};
+
+    private BookResponseDto[] catalog;
+    private byte[] snapshot;
+
+    @Setup
+    public void setUp() throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        catalog = new BookResponseDto[BOOKS];
+        long id = 0;
+        for (int i = 0; i < BOOKS; i++) {
+            id += 1 + random.nextInt(3);
+            // O quadrado concentra os livros nos primeiros autores e categorias
+            double position = random.nextDouble();
+            int author = (int) (BOOKS / 10 * position * position);
+            catalog[i] = new BookResponseDto(id, "Título do livro número " + i, "Autor " + author,
+                    String.valueOf(9_780_000_000_000L + i), LocalDate.ofEpochDay(random.nextInt(20_000)),
+                    CATEGORIES[(int) (CATEGORIES.length * position * position)]);
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        write(output);
+        snapshot = output.toByteArray();
+        System.out.printf("%nSnapshot size: %.1f bytes per book, %d KB in total%n", (double) snapshot.length / BOOKS,
+                snapshot.length >> 10);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOOKS)
+    public long writeSnapshot() throws IOException {
+        return write(OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOOKS)
+    public long readSnapshot() throws IOException {
+        try (BookSnapshotReader reader = new BookSnapshotReader(new ByteArrayInputStream(snapshot))) {
+            while (reader.read() != null) {
+                // Só percorre os livros
+            }
+            return reader.count();
+        }
+    }
+
+    private long write(OutputStream output) throws IOException {
+        try (BookSnapshotWriter writer = new BookSnapshotWriter(output)) {
+            for (BookResponseDto book : catalog)
+                writer.write(book);
+            writer.finish();
+            return writer.count();
+        }
+    }
+}
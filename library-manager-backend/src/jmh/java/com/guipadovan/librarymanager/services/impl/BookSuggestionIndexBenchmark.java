@@ -0,0 +1,95 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.dtos.BookSuggestionDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the typeahead lookups of the {@link BookSuggestionIndex} over a synthetic catalog, with the latency
+ * percentiles reported by the sample mode, and the heap retained by the index, printed by the setup as bytes per book.
+ * <p>
+ * The queries are prefixes of one or two words of the catalog, from two letters to whole words.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookSuggestionIndexBenchmark {
+
+    private static final String[] SYLLABLES = {"ma", "ri", "so", "ta", "ne", "lu", "ca", "de", "vi", "ro", "pe", "sa",
+            "li", "mo", "ba", "te", "gu", "fa", "ni", "co", "ra", "ze", "bi", "lo", "the", "an", "or", "ti", "bra", "cho"};
+
+    @Param({"100000", "1000000"})
+    private int books;
+
+    private BookSuggestionIndex index;
+    private String[][] queries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String[] vocabulary = new String[30000];
+        for (int i = 0; i < vocabulary.length; i++)
+            vocabulary[i] = word(random);
+
+        long before = usedHeap();
+        List<BookSuggestionDto> catalog = new ArrayList<>(books);
+        for (int id = 1; id <= books; id++)
+            catalog.add(new BookSuggestionDto((long) id, sentence(random, vocabulary, 2 + random.nextInt(4)),
+                    sentence(random, vocabulary, 2)));
+
+        // O índice guarda os próprios livros, então a medida inclui os títulos e autores
+        index = BookSuggestionIndex.of(catalog);
+        catalog = null;
+        long after = usedHeap();
+        System.out.printf("%nIndex footprint: %d bytes per book, %d MB in total%n", (after - before) / books,
+                (after - before) >> 20);
+
+        // Prefixos de tamanhos variados, com algumas buscas de duas palavras
+        queries = new String[1024][];
+        for (int i = 0; i < queries.length; i++) {
+            String first = vocabulary[random.nextInt(vocabulary.length)];
+            String prefix = first.substring(0, Math.min(first.length(), 2 + random.nextInt(4)));
+            queries[i] = i % 4 == 0
+                    ? new String[]{vocabulary[random.nextInt(vocabulary.length)], prefix}
+                    : new String[]{prefix};
+        }
+    }
+
+    @Benchmark
+    public List<BookSuggestionDto> suggest() {
+        String[] query = queries[next++ & (queries.length - 1)];
+        return index.suggest(List.of(query), 10, 5000);
+    }
+
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 2 + random.nextInt(3); i > 0; i--)
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        return word.toString();
+    }
+
+    private static String sentence(Random random, String[] vocabulary, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            // Distribuição enviesada, algumas palavras aparecem em muitos livros como nos títulos reais
+            int rank = (int) Math.pow(vocabulary.length, random.nextDouble());
+            sentence.append(i == 0 ? "" : " ").append(vocabulary[rank - 1]);
+        }
+        return sentence.toString();
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
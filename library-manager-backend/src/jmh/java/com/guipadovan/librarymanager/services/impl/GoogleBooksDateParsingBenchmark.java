@@ -0,0 +1,35 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the parsing of the publication dates of the Google Books volumes by {@link GoogleBooksResponseMapper} with
+ * the previous parsing, which tried a formatter for each format and caught the failures.
+ * <p>
+ * Each format of the API is measured on its own, since the previous parsing got slower with every format it had to try
+ * before the right one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GoogleBooksDateParsingBenchmark {
+
+    @Param({"2002-01-18", "2002-01", "2002", "2002-13-45"})
+    private String date;
+
+    @Benchmark
+    public LocalDate digits() {
+        return GoogleBooksResponseMapper.parseDate(date);
+    }
+
+    @Benchmark
+    public LocalDate formatters() {
+        return GoogleBooksResponseMapperBenchmark.parseDateWithFormatters(date);
+    }
+}
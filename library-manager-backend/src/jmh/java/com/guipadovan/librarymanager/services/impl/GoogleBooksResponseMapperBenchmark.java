@@ -0,0 +1,119 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming mapping of the Google Books responses with the previous mapping over a {@link JsonNode} tree.
+ * <p>
+ * Run with the {@code gc} profiler and divide {@code gc.alloc.rate.norm} by the number of volumes of the fixture to get
+ * the allocation per item.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GoogleBooksResponseMapperBenchmark {
+
+    @Param({"volumes-10", "volumes-40"})
+    private String fixture;
+
+    private byte[] response;
+    private ObjectMapper objectMapper;
+    private GoogleBooksResponseMapper responseMapper;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream input = getClass().getResourceAsStream("/fixtures/google-books/" + fixture + ".json")) {
+            response = input.readAllBytes();
+        }
+        objectMapper = new ObjectMapper();
+        responseMapper = new GoogleBooksResponseMapper(objectMapper.getFactory());
+    }
+
+    @Benchmark
+    public List<BookResponseDto> streaming() throws IOException {
+        return responseMapper.mapBooks(new ByteArrayInputStream(response));
+    }
+
+    @Benchmark
+    public List<BookResponseDto> tree() throws IOException {
+        return mapBooksWithTree(new String(response, StandardCharsets.UTF_8));
+    }
+
+    // Mapeamento anterior, lendo a resposta inteira como String e montando a árvore de JsonNode
+    private List<BookResponseDto> mapBooksWithTree(String jsonResponse) throws IOException {
+        JsonNode rootNode = objectMapper.readTree(jsonResponse);
+        JsonNode itemsNode = rootNode.path("items");
+
+        List<BookResponseDto> books = new ArrayList<>();
+        if (itemsNode.isArray()) {
+            for (JsonNode itemNode : itemsNode) {
+                JsonNode volumeInfo = itemNode.path("volumeInfo");
+
+                String title = volumeInfo.path("title").asText();
+                String author = volumeInfo.path("authors").isArray()
+                        ? volumeInfo.path("authors").get(0).asText()
+                        : "";
+                String isbn = volumeInfo.path("industryIdentifiers").isArray()
+                        ? volumeInfo.path("industryIdentifiers").get(0).path("identifier").asText()
+                        : "";
+                String publicationDate = volumeInfo.path("publishedDate").asText();
+                String category = volumeInfo.path("categories").isArray()
+                        ? volumeInfo.path("categories").get(0).asText()
+                        : "";
+
+                if (title.isEmpty() || author.isEmpty() || isbn.isEmpty() || publicationDate.isEmpty() || category.isEmpty()) {
+                    continue;
+                }
+
+                books.add(new BookResponseDto(null, title, author, isbn, parseDateWithFormatters(publicationDate),
+                        category));
+            }
+        }
+
+        return books;
+    }
+
+    // Conversão anterior das datas, tentando um formatador de cada vez e tratando as exceções
+    static LocalDate parseDateWithFormatters(String dateStr) {
+        Optional<LocalDate> parsedDate = Optional.empty();
+
+        try {
+            parsedDate = Optional.of(LocalDate.parse(dateStr, DateTimeFormatter.ISO_DATE));
+        } catch (DateTimeParseException ignored) {
+        }
+
+        if (parsedDate.isEmpty()) {
+            try {
+                parsedDate = Optional.of(LocalDate.parse(dateStr + "-01", DateTimeFormatter.ofPattern("yyyy-MM")));
+            } catch (DateTimeParseException ignored) {
+            }
+        }
+
+        if (parsedDate.isEmpty()) {
+            try {
+                parsedDate = Optional.of(LocalDate.of(Integer.parseInt(dateStr), 1, 1));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+
+        return parsedDate.orElse(null);
+    }
+}
@@ -0,0 +1,88 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import com.guipadovan.librarymanager.exceptions.EntityNotFoundException;
+import com.guipadovan.librarymanager.repositories.projections.BookCategoryView;
+import com.guipadovan.librarymanager.services.BookAvailabilityService;
+import com.guipadovan.librarymanager.services.BookNeighborService;
+import com.guipadovan.librarymanager.services.BookService;
+import com.guipadovan.librarymanager.services.LeaseService;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Measures the in-memory part of a recommendation: the categories and the exclusions computed from the reading history
+ * of the user by {@link RecommendationServiceImpl} and the sampling of {@link RecommendationPoolServiceImpl}.
+ * <p>
+ * The history is returned by a stub instead of the database, the sampled books aren't loaded and no book has neighbors,
+ * so every recommendation is sampled and the score is only the computation done by the application for each of them.
+ * The neighbors are measured by {@link BookNeighborsBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecommendationSamplingBenchmark {
+
+    private static final int CATALOG_SIZE = 100_000;
+    private static final int CATEGORIES = 50;
+    private static final int LIMIT = 10;
+
+    @Param({"10", "1000"})
+    private int historySize;
+
+    private RecommendationServiceImpl recommendationService;
+
+    @Setup
+    public void setUp() {
+        // Sem transação os grupos são atualizados na hora, dispensando o repositório; nenhum livro está emprestado
+        BookAvailabilityService bookAvailabilityService = stub(BookAvailabilityService.class, "isLeased",
+                args -> false);
+        RecommendationPoolServiceImpl recommendationPoolService = new RecommendationPoolServiceImpl(null,
+                bookAvailabilityService);
+        for (long id = 1; id <= CATALOG_SIZE; id++)
+            recommendationPoolService.addBook(id, category(id));
+
+        // Histórico espalhado pelo catálogo e pelas categorias, com os livros lidos ainda disponíveis nos grupos. O passo
+        // é primo com o tamanho do catálogo, então os livros não se repetem
+        List<BookCategoryView> history = new ArrayList<>(historySize);
+        for (int i = 0; i < historySize; i++) {
+            long id = 1 + i * 7919L % CATALOG_SIZE;
+            history.add(new BookCategoryView(id, category(id)));
+        }
+
+        LeaseService leaseService = stub(LeaseService.class, "getLeasedBookCategoriesByUser", args -> history);
+        BookService bookService = stub(BookService.class, "getBooks", args -> List.<BookResponseDto>of());
+        BookNeighborService bookNeighborService = stub(BookNeighborService.class, "recommendBooks",
+                args -> List.<Long>of());
+        // O cache só é usado pelas recomendações com semente
+        recommendationService = new RecommendationServiceImpl(bookService, leaseService, recommendationPoolService,
+                bookNeighborService, null, new ObjectMapper());
+    }
+
+    @Benchmark
+    public List<BookResponseDto> recommend() throws EntityNotFoundException {
+        return recommendationService.getBookRecommendationsByUser(1L, LIMIT);
+    }
+
+    private static String category(long bookId) {
+        return "Categoria " + bookId % CATEGORIES;
+    }
+
+    // Implementa apenas o método usado pela recomendação, os demais falham se forem chamados
+    private static <T> T stub(Class<T> type, String method, Function<Object[], Object> answer) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, invoked, args) -> {
+            if (!invoked.getName().equals(method))
+                throw new UnsupportedOperationException(invoked.getName());
+            return answer.apply(args);
+        }));
+    }
+}
@@ -0,0 +1,263 @@
+-- Benchmark da busca do catálogo da migração V5 com 5 milhões de livros.
+--
+-- Cria um schema separado com a tabela de livros da V1, gera os dados e executa com EXPLAIN (ANALYZE, BUFFERS):
+-- uma busca por substring sem índices, a busca por similaridade de trigramas direto nos títulos e autores, e as
+-- consultas de GET /v1/books/catalog sobre os índices da V5. Remove o schema no final.
+--
+-- Usa as extensões e a função immutable_unaccent criadas pela V5 no schema public, então o banco já deve estar migrado.
+--
+--   psql -d library-manager -f src/jmh/resources/sql/book-search-benchmark.sql
+
+DROP SCHEMA IF EXISTS book_search_benchmark CASCADE;
+CREATE SCHEMA book_search_benchmark;
+SET search_path TO book_search_benchmark, public;
+
+CREATE TABLE books
+(
+    id              BIGINT       NOT NULL,
+    titulo          VARCHAR(255) NOT NULL,
+    autor           VARCHAR(255) NOT NULL,
+    isbn            VARCHAR(255) NOT NULL,
+    data_publicacao date         NOT NULL,
+    categoria       VARCHAR(255) NOT NULL,
+    CONSTRAINT pk_books PRIMARY KEY (id)
+);
+
+-- Vocabulário sintético de 160 mil palavras. Os títulos sorteiam palavras com uma distribuição concentrada nas
+-- primeiras, então palavra(0) aparece em centenas de milhares de livros e palavra(120000) em poucas dezenas
+CREATE FUNCTION palavra(n int) RETURNS text
+    LANGUAGE sql IMMUTABLE
+AS $$
+SELECT s[n % 30 + 1] || s[n / 30 % 30 + 1] || s[n / 900 % 30 + 1] || f[n / 27000 % 6 + 1]
+FROM (SELECT '{ba,be,ca,co,da,de,fa,fi,ga,go,la,le,lu,ma,me,mi,na,no,pa,pe,ra,re,ri,sa,se,ta,te,to,va,vi}'::text[] AS s,
+             '{"",r,s,ção,dade,nte}'::text[] AS f) AS silabas
+$$;
+
+SELECT setseed(0.42);
+
+-- 5 milhões de livros com títulos de duas a cinco palavras e autores de nome e dois sobrenomes
+INSERT INTO books
+SELECT i,
+       initcap(palavra(floor(160000 * random() ^ 3)::int) || ' ' || palavra(floor(160000 * random() ^ 3)::int)
+           || CASE WHEN i % 4 > 0 THEN ' ' || palavra(floor(160000 * random() ^ 3)::int) ELSE '' END
+           || CASE WHEN i % 4 > 1 THEN ' ' || palavra(floor(160000 * random() ^ 3)::int) ELSE '' END
+           || CASE WHEN i % 4 > 2 THEN ' ' || palavra(floor(160000 * random() ^ 3)::int) ELSE '' END),
+       (ARRAY ['Ana','Bruno','Carla','Diego','Elisa','Fábio','Gabriela','Hugo','Isabel','João','Lúcia','Marcos',
+           'Natália','Otávio','Paula','Rafael','Sofia','Tiago','Vera','Wagner'])[i % 20 + 1]
+           || ' ' || initcap(palavra(floor(27000 * random())::int)) || ' ' || initcap(palavra((i::bigint * 7919 % 27000)::int)),
+       '978' || lpad(i::text, 10, '0'),
+       DATE '1900-01-01' + (i % 45000),
+       (ARRAY ['Ficção','Romance','História','Ciência','Fantasia','Biografia','Poesia','Tecnologia','Filosofia',
+           'Infantil'])[i % 10 + 1]
+FROM generate_series(1, 5000000) AS i;
+
+VACUUM ANALYZE books;
+
+-- Antes: busca por substring no título e no autor, que percorre a tabela inteira
+SELECT 'antes: substring com ILIKE' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, titulo, autor
+FROM books
+WHERE titulo ILIKE '%' || palavra(120000) || '%'
+   OR autor ILIKE '%' || palavra(120000) || '%'
+ORDER BY id
+LIMIT 21;
+
+-- Alternativa descartada: trigramas direto nos títulos e autores. Com milhões de livros cada trigrama tem uma lista
+-- enorme no índice, e a busca por similaridade combina essas listas
+CREATE INDEX idx_books_titulo_trgm ON books USING GIN (immutable_unaccent(titulo) gin_trgm_ops);
+CREATE INDEX idx_books_autor_trgm ON books USING GIN (immutable_unaccent(autor) gin_trgm_ops);
+ANALYZE books;
+
+SELECT 'alternativa: trigramas nos livros' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, titulo, autor
+FROM books
+WHERE overlay(palavra(120000) PLACING 'x' FROM 3 FOR 1) <% immutable_unaccent(titulo)
+   OR overlay(palavra(120000) PLACING 'x' FROM 3 FOR 1) <% immutable_unaccent(autor)
+ORDER BY greatest(word_similarity(overlay(palavra(120000) PLACING 'x' FROM 3 FOR 1), immutable_unaccent(titulo)),
+                  word_similarity(overlay(palavra(120000) PLACING 'x' FROM 3 FOR 1), immutable_unaccent(autor))) DESC, id
+LIMIT 21;
+
+DROP INDEX idx_books_titulo_trgm;
+DROP INDEX idx_books_autor_trgm;
+
+-- Índices da V5
+ALTER TABLE books
+    ADD COLUMN busca tsvector GENERATED ALWAYS AS (
+        setweight(to_tsvector('portuguese', immutable_unaccent(titulo)), 'A') ||
+        setweight(to_tsvector('portuguese', immutable_unaccent(autor)), 'B') ||
+        setweight(to_tsvector('simple', replace(isbn, '-', '')), 'B') ||
+        setweight(to_tsvector('portuguese', immutable_unaccent(categoria)), 'C')
+    ) STORED;
+
+CREATE INDEX idx_books_busca ON books USING GIN (busca);
+
+CREATE TABLE book_search_terms
+(
+    termo VARCHAR(255) COLLATE "C" NOT NULL,
+    CONSTRAINT pk_book_search_terms PRIMARY KEY (termo)
+);
+
+INSERT INTO book_search_terms (termo)
+SELECT DISTINCT t.termo
+FROM books b,
+     unnest(tsvector_to_array(to_tsvector('simple', immutable_unaccent(b.titulo || ' ' || b.autor)))) AS t(termo)
+WHERE length(t.termo) >= 3
+  AND t.termo ~ '^[[:alpha:]]+$';
+
+CREATE INDEX idx_book_search_terms_trgm ON book_search_terms USING GIN (termo gin_trgm_ops);
+
+CREATE FUNCTION books_search_terms_trigger() RETURNS trigger
+    LANGUAGE plpgsql
+AS $$
+BEGIN
+    INSERT INTO book_search_terms (termo)
+    SELECT DISTINCT t.termo
+    FROM novos_livros b,
+         unnest(tsvector_to_array(to_tsvector('simple', immutable_unaccent(b.titulo || ' ' || b.autor)))) AS t(termo)
+    WHERE length(t.termo) >= 3
+      AND t.termo ~ '^[[:alpha:]]+$'
+    ORDER BY t.termo
+    ON CONFLICT DO NOTHING;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER trg_books_search_terms_insert
+    AFTER INSERT ON books
+    REFERENCING NEW TABLE AS novos_livros
+    FOR EACH STATEMENT EXECUTE FUNCTION books_search_terms_trigger();
+
+VACUUM ANALYZE books;
+ANALYZE book_search_terms;
+
+-- Correções dos tokens com o limite de similaridade padrão: o primeiro é uma palavra do catálogo e só passa pela
+-- chave primária, o último tem um erro de digitação e passa pelo índice de trigramas do dicionário
+SET pg_trgm.similarity_threshold = 0.5;
+
+SELECT 'depois: correções dos tokens' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT s.token, t.termo
+FROM unnest(ARRAY [palavra(5000), overlay(palavra(120000) PLACING 'x' FROM 3 FOR 1)]) WITH ORDINALITY AS s(token, posicao)
+CROSS JOIN LATERAL (
+    SELECT c.termo
+    FROM book_search_terms c
+    WHERE c.termo % s.token
+      AND NOT EXISTS (SELECT 1 FROM book_search_terms k
+                      WHERE k.termo = s.token
+                         OR (s.posicao = 2 AND k.termo >= s.token AND k.termo < s.token || chr(1114111)))
+    ORDER BY similarity(c.termo, s.token) DESC, c.termo
+    LIMIT 3) t
+ORDER BY s.posicao;
+
+-- Depois: palavra rara por prefixo, com o limite de 1000 candidatos da configuração padrão
+SELECT 'depois: palavra rara' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT r.id, r.titulo, r.autor, r.isbn, r.data_publicacao, r.categoria, r.relevancia
+FROM (SELECT c.*, ts_rank(c.busca, to_tsquery('portuguese', palavra(120000) || ':*')) AS relevancia
+      FROM (SELECT b.id, b.titulo, b.autor, b.isbn, b.data_publicacao, b.categoria, b.busca
+            FROM books b
+            WHERE b.busca @@ to_tsquery('portuguese', palavra(120000) || ':*')
+            LIMIT 1000) c) r
+WHERE r.relevancia < 'Infinity'::real OR (r.relevancia = 'Infinity'::real AND r.id > 0)
+ORDER BY r.relevancia DESC, r.id
+LIMIT 21;
+
+-- Depois: a mesma palavra digitada com erro, aceitando as correções encontradas no dicionário como faz o serviço
+SELECT set_config('book_search_benchmark.consulta',
+                  '(' || s.token || ':* | ' || string_agg(t.termo, ' | ' ORDER BY t.posicao) || ')', false)
+FROM (SELECT overlay(palavra(120000) PLACING 'x' FROM 3 FOR 1) AS token) s
+CROSS JOIN LATERAL (
+    SELECT c.termo, row_number() OVER (ORDER BY similarity(c.termo, s.token) DESC, c.termo) AS posicao
+    FROM book_search_terms c
+    WHERE c.termo % s.token
+    ORDER BY similarity(c.termo, s.token) DESC, c.termo
+    LIMIT 3) t
+GROUP BY s.token;
+
+SELECT 'depois: palavra com erro de digitação' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT r.id, r.titulo, r.autor, r.isbn, r.data_publicacao, r.categoria, r.relevancia
+FROM (SELECT c.*, ts_rank(c.busca, to_tsquery('portuguese', current_setting('book_search_benchmark.consulta'))) AS relevancia
+      FROM (SELECT b.id, b.titulo, b.autor, b.isbn, b.data_publicacao, b.categoria, b.busca
+            FROM books b
+            WHERE b.busca @@ to_tsquery('portuguese', current_setting('book_search_benchmark.consulta'))
+            LIMIT 1000) c) r
+WHERE r.relevancia < 'Infinity'::real OR (r.relevancia = 'Infinity'::real AND r.id > 0)
+ORDER BY r.relevancia DESC, r.id
+LIMIT 21;
+
+-- Depois: nome e sobrenome do autor, com a última palavra por prefixo
+SELECT 'depois: autor' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT r.id, r.titulo, r.autor, r.isbn, r.data_publicacao, r.categoria, r.relevancia
+FROM (SELECT c.*, ts_rank(c.busca, to_tsquery('portuguese', 'sofia & ' || palavra(4242) || ':*')) AS relevancia
+      FROM (SELECT b.id, b.titulo, b.autor, b.isbn, b.data_publicacao, b.categoria, b.busca
+            FROM books b
+            WHERE b.busca @@ to_tsquery('portuguese', 'sofia & ' || palavra(4242) || ':*')
+            LIMIT 1000) c) r
+WHERE r.relevancia < 'Infinity'::real OR (r.relevancia = 'Infinity'::real AND r.id > 0)
+ORDER BY r.relevancia DESC, r.id
+LIMIT 21;
+
+-- Depois: ISBN
+SELECT 'depois: ISBN' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT r.id, r.titulo, r.autor, r.isbn, r.data_publicacao, r.categoria, r.relevancia
+FROM (SELECT c.*, ts_rank(c.busca, to_tsquery('portuguese', '9780004242424:*')) AS relevancia
+      FROM (SELECT b.id, b.titulo, b.autor, b.isbn, b.data_publicacao, b.categoria, b.busca
+            FROM books b
+            WHERE b.busca @@ to_tsquery('portuguese', '9780004242424:*')
+            LIMIT 1000) c) r
+WHERE r.relevancia < 'Infinity'::real OR (r.relevancia = 'Infinity'::real AND r.id > 0)
+ORDER BY r.relevancia DESC, r.id
+LIMIT 21;
+
+-- Depois: palavra presente em centenas de milhares de livros, onde o limite de candidatos evita ordenar todos
+SELECT 'depois: palavra frequente' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT r.id, r.titulo, r.autor, r.isbn, r.data_publicacao, r.categoria, r.relevancia
+FROM (SELECT c.*, ts_rank(c.busca, to_tsquery('portuguese', palavra(0) || ':*')) AS relevancia
+      FROM (SELECT b.id, b.titulo, b.autor, b.isbn, b.data_publicacao, b.categoria, b.busca
+            FROM books b
+            WHERE b.busca @@ to_tsquery('portuguese', palavra(0) || ':*')
+            LIMIT 1000) c) r
+WHERE r.relevancia < 'Infinity'::real OR (r.relevancia = 'Infinity'::real AND r.id > 0)
+ORDER BY r.relevancia DESC, r.id
+LIMIT 21;
+
+-- Depois: segunda página da palavra de frequência média, a partir da relevância e do ID do último livro da primeira
+SELECT set_config('book_search_benchmark.relevancia', relevancia::text, false),
+       set_config('book_search_benchmark.id', id::text, false)
+FROM (SELECT c.id, ts_rank(c.busca, to_tsquery('portuguese', palavra(5000) || ':*')) AS relevancia
+      FROM (SELECT b.id, b.busca FROM books b
+            WHERE b.busca @@ to_tsquery('portuguese', palavra(5000) || ':*')
+            LIMIT 1000) c
+      ORDER BY relevancia DESC, c.id
+      LIMIT 1 OFFSET 19) ultimo;
+
+SELECT 'depois: segunda página' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT r.id, r.titulo, r.autor, r.isbn, r.data_publicacao, r.categoria, r.relevancia
+FROM (SELECT c.*, ts_rank(c.busca, to_tsquery('portuguese', palavra(5000) || ':*')) AS relevancia
+      FROM (SELECT b.id, b.titulo, b.autor, b.isbn, b.data_publicacao, b.categoria, b.busca
+            FROM books b
+            WHERE b.busca @@ to_tsquery('portuguese', palavra(5000) || ':*')
+            LIMIT 1000) c) r
+WHERE r.relevancia < current_setting('book_search_benchmark.relevancia')::real
+   OR (r.relevancia = current_setting('book_search_benchmark.relevancia')::real
+       AND r.id > current_setting('book_search_benchmark.id')::bigint)
+ORDER BY r.relevancia DESC, r.id
+LIMIT 21;
+
+-- Custo do gatilho do dicionário em uma importação de 1000 livros com palavras novas
+SELECT 'gatilho: importação de 1000 livros' AS consulta;
+EXPLAIN (ANALYZE)
+INSERT INTO books (id, titulo, autor, isbn, data_publicacao, categoria)
+SELECT 5000000 + i, 'Importado ' || palavra(i) || 'quim', 'Autor ' || palavra(i), '979' || lpad(i::text, 10, '0'),
+       DATE '2000-01-01', 'Ficção'
+FROM generate_series(1, 1000) AS i;
+
+RESET search_path;
+DROP SCHEMA book_search_benchmark CASCADE;
@@ -0,0 +1,207 @@
+-- Benchmark dos índices da migração V4 para a listagem de empréstimos com 10 milhões de empréstimos.
+--
+-- Cria um schema separado com as tabelas da V1 e os índices da V3, gera os dados, executa a consulta da listagem
+-- paginada (GET /v1/leases) com EXPLAIN (ANALYZE, BUFFERS) para cada combinação de filtros antes e depois dos índices
+-- da V4 e remove o schema no final.
+--
+--   psql -d library-manager -f src/jmh/resources/sql/lease-history-benchmark.sql
+
+DROP SCHEMA IF EXISTS lease_history_benchmark CASCADE;
+CREATE SCHEMA lease_history_benchmark;
+SET search_path TO lease_history_benchmark;
+
+CREATE TABLE books
+(
+    id              BIGINT       NOT NULL,
+    titulo          VARCHAR(255) NOT NULL,
+    autor           VARCHAR(255) NOT NULL,
+    isbn            VARCHAR(255) NOT NULL,
+    data_publicacao date         NOT NULL,
+    categoria       VARCHAR(255) NOT NULL,
+    CONSTRAINT pk_books PRIMARY KEY (id)
+);
+
+CREATE TABLE leases
+(
+    id              BIGINT       NOT NULL,
+    usuario_id      BIGINT       NOT NULL,
+    livro_id        BIGINT       NOT NULL,
+    data_emprestimo date         NOT NULL,
+    data_devolucao  date         NOT NULL,
+    status          VARCHAR(255) NOT NULL,
+    CONSTRAINT pk_leases PRIMARY KEY (id)
+);
+
+CREATE TABLE users
+(
+    id            BIGINT       NOT NULL,
+    nome          VARCHAR(255) NOT NULL,
+    email         VARCHAR(255) NOT NULL,
+    data_cadastro date         NOT NULL,
+    telefone      VARCHAR(255) NOT NULL,
+    CONSTRAINT pk_users PRIMARY KEY (id)
+);
+
+-- 100 mil usuários, 200 mil livros em 50 categorias
+INSERT INTO users
+SELECT i, 'Usuário ' || i, 'usuario' || i || '@example.com', DATE '2020-01-01' + (i % 1000), '11 9' || lpad(i::text, 8, '0')
+FROM generate_series(1, 100000) AS i;
+
+INSERT INTO books
+SELECT i, 'Livro ' || i, 'Autor ' || (i % 5000), lpad(i::text, 13, '0'), DATE '1950-01-01' + (i % 25000),
+       'Categoria ' || (i % 50)
+FROM generate_series(1, 200000) AS i;
+
+-- 10 milhões de empréstimos, 100 por usuário em média. Os últimos 200 mil passam uma vez por cada livro,
+-- e um em cada cinco deles continua ativo, mantendo no máximo um empréstimo ativo por livro
+INSERT INTO leases
+SELECT i,
+       (i::bigint * 7919) % 100000 + 1,
+       i % 200000 + 1,
+       DATE '2015-01-01' + (i % 3650),
+       DATE '2015-01-01' + (i % 3650) + 14,
+       CASE WHEN i > 10000000 - 200000 AND i % 5 = 0 THEN 'ACTIVE' ELSE 'RETURNED' END
+FROM generate_series(1, 10000000) AS i;
+
+ALTER TABLE leases
+    ADD CONSTRAINT FK_LEASE_BOOK FOREIGN KEY (livro_id) REFERENCES books (id) ON DELETE CASCADE;
+
+ALTER TABLE leases
+    ADD CONSTRAINT FK_LEASE_USER FOREIGN KEY (usuario_id) REFERENCES users (id) ON DELETE CASCADE;
+
+-- Índices da V3
+
+CREATE INDEX IF NOT EXISTS idx_leases_livro_id ON leases (livro_id);
+CREATE INDEX IF NOT EXISTS idx_leases_usuario_id_data_emprestimo ON leases (usuario_id, data_emprestimo DESC);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_leases_livro_id_active ON leases (livro_id) WHERE status = 'ACTIVE';
+
+VACUUM ANALYZE books;
+VACUUM ANALYZE leases;
+VACUUM ANALYZE users;
+
+-- Consultas antes dos índices da V4
+
+SELECT 'antes: sem filtro, primeira página' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT l.id, u.id, u.nome, u.email, u.data_cadastro, u.telefone, b.id, b.titulo, b.autor, b.isbn,
+       b.data_publicacao, b.categoria, l.data_emprestimo, l.data_devolucao, l.status
+FROM leases l JOIN users u ON u.id = l.usuario_id JOIN books b ON b.id = l.livro_id
+ORDER BY l.data_emprestimo DESC, l.id DESC
+FETCH FIRST 51 ROWS ONLY;
+
+SELECT 'antes: sem filtro, página profunda' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT l.id, u.id, u.nome, u.email, u.data_cadastro, u.telefone, b.id, b.titulo, b.autor, b.isbn,
+       b.data_publicacao, b.categoria, l.data_emprestimo, l.data_devolucao, l.status
+FROM leases l JOIN users u ON u.id = l.usuario_id JOIN books b ON b.id = l.livro_id WHERE l.data_emprestimo <= DATE '2018-06-01' AND (l.data_emprestimo < DATE '2018-06-01' OR l.id < 5000000)
+ORDER BY l.data_emprestimo DESC, l.id DESC
+FETCH FIRST 51 ROWS ONLY;
+
+SELECT 'antes: por usuário, primeira página' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT l.id, u.id, u.nome, u.email, u.data_cadastro, u.telefone, b.id, b.titulo, b.autor, b.isbn,
+       b.data_publicacao, b.categoria, l.data_emprestimo, l.data_devolucao, l.status
+FROM leases l JOIN users u ON u.id = l.usuario_id JOIN books b ON b.id = l.livro_id WHERE l.usuario_id = 4242
+ORDER BY l.data_emprestimo DESC, l.id DESC
+FETCH FIRST 51 ROWS ONLY;
+
+SELECT 'antes: por usuário, página seguinte' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT l.id, u.id, u.nome, u.email, u.data_cadastro, u.telefone, b.id, b.titulo, b.autor, b.isbn,
+       b.data_publicacao, b.categoria, l.data_emprestimo, l.data_devolucao, l.status
+FROM leases l JOIN users u ON u.id = l.usuario_id JOIN books b ON b.id = l.livro_id WHERE l.usuario_id = 4242 AND l.data_emprestimo <= DATE '2018-06-01' AND (l.data_emprestimo < DATE '2018-06-01' OR l.id < 5000000)
+ORDER BY l.data_emprestimo DESC, l.id DESC
+FETCH FIRST 51 ROWS ONLY;
+
+SELECT 'antes: por livro' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT l.id, u.id, u.nome, u.email, u.data_cadastro, u.telefone, b.id, b.titulo, b.autor, b.isbn,
+       b.data_publicacao, b.categoria, l.data_emprestimo, l.data_devolucao, l.status
+FROM leases l JOIN users u ON u.id = l.usuario_id JOIN books b ON b.id = l.livro_id WHERE l.livro_id = 4241
+ORDER BY l.data_emprestimo DESC, l.id DESC
+FETCH FIRST 51 ROWS ONLY;
+
+SELECT 'antes: ativos' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT l.id, u.id, u.nome, u.email, u.data_cadastro, u.telefone, b.id, b.titulo, b.autor, b.isbn,
+       b.data_publicacao, b.categoria, l.data_emprestimo, l.data_devolucao, l.status
+FROM leases l JOIN users u ON u.id = l.usuario_id JOIN books b ON b.id = l.livro_id WHERE l.status = 'ACTIVE'
+ORDER BY l.data_emprestimo DESC, l.id DESC
+FETCH FIRST 51 ROWS ONLY;
+
+SELECT 'antes: devolvidos em um mês' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT l.id, u.id, u.nome, u.email, u.data_cadastro, u.telefone, b.id, b.titulo, b.autor, b.isbn,
+       b.data_publicacao, b.categoria, l.data_emprestimo, l.data_devolucao, l.status
+FROM leases l JOIN users u ON u.id = l.usuario_id JOIN books b ON b.id = l.livro_id WHERE l.status = 'RETURNED' AND l.data_emprestimo >= DATE '2019-03-01' AND l.data_emprestimo <= DATE '2019-03-31'
+ORDER BY l.data_emprestimo DESC, l.id DESC
+FETCH FIRST 51 ROWS ONLY;
+
+-- Índices da V4
+
+CREATE INDEX IF NOT EXISTS idx_leases_data_emprestimo_id ON leases (data_emprestimo DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_leases_usuario_id_data_emprestimo_id ON leases (usuario_id, data_emprestimo DESC, id DESC);
+DROP INDEX IF EXISTS idx_leases_usuario_id_data_emprestimo;
+
+VACUUM ANALYZE leases;
+
+-- Consultas depois dos índices da V4
+
+SELECT 'depois: sem filtro, primeira página' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT l.id, u.id, u.nome, u.email, u.data_cadastro, u.telefone, b.id, b.titulo, b.autor, b.isbn,
+       b.data_publicacao, b.categoria, l.data_emprestimo, l.data_devolucao, l.status
+FROM leases l JOIN users u ON u.id = l.usuario_id JOIN books b ON b.id = l.livro_id
+ORDER BY l.data_emprestimo DESC, l.id DESC
+FETCH FIRST 51 ROWS ONLY;
+
+SELECT 'depois: sem filtro, página profunda' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT l.id, u.id, u.nome, u.email, u.data_cadastro, u.telefone, b.id, b.titulo, b.autor, b.isbn,
+       b.data_publicacao, b.categoria, l.data_emprestimo, l.data_devolucao, l.status
+FROM leases l JOIN users u ON u.id = l.usuario_id JOIN books b ON b.id = l.livro_id WHERE l.data_emprestimo <= DATE '2018-06-01' AND (l.data_emprestimo < DATE '2018-06-01' OR l.id < 5000000)
+ORDER BY l.data_emprestimo DESC, l.id DESC
+FETCH FIRST 51 ROWS ONLY;
+
+SELECT 'depois: por usuário, primeira página' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT l.id, u.id, u.nome, u.email, u.data_cadastro, u.telefone, b.id, b.titulo, b.autor, b.isbn,
+       b.data_publicacao, b.categoria, l.data_emprestimo, l.data_devolucao, l.status
+FROM leases l JOIN users u ON u.id = l.usuario_id JOIN books b ON b.id = l.livro_id WHERE l.usuario_id = 4242
+ORDER BY l.data_emprestimo DESC, l.id DESC
+FETCH FIRST 51 ROWS ONLY;
+
+SELECT 'depois: por usuário, página seguinte' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT l.id, u.id, u.nome, u.email, u.data_cadastro, u.telefone, b.id, b.titulo, b.autor, b.isbn,
+       b.data_publicacao, b.categoria, l.data_emprestimo, l.data_devolucao, l.status
+FROM leases l JOIN users u ON u.id = l.usuario_id JOIN books b ON b.id = l.livro_id WHERE l.usuario_id = 4242 AND l.data_emprestimo <= DATE '2018-06-01' AND (l.data_emprestimo < DATE '2018-06-01' OR l.id < 5000000)
+ORDER BY l.data_emprestimo DESC, l.id DESC
+FETCH FIRST 51 ROWS ONLY;
+
+SELECT 'depois: por livro' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT l.id, u.id, u.nome, u.email, u.data_cadastro, u.telefone, b.id, b.titulo, b.autor, b.isbn,
+       b.data_publicacao, b.categoria, l.data_emprestimo, l.data_devolucao, l.status
+FROM leases l JOIN users u ON u.id = l.usuario_id JOIN books b ON b.id = l.livro_id WHERE l.livro_id = 4241
+ORDER BY l.data_emprestimo DESC, l.id DESC
+FETCH FIRST 51 ROWS ONLY;
+
+SELECT 'depois: ativos' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT l.id, u.id, u.nome, u.email, u.data_cadastro, u.telefone, b.id, b.titulo, b.autor, b.isbn,
+       b.data_publicacao, b.categoria, l.data_emprestimo, l.data_devolucao, l.status
+FROM leases l JOIN users u ON u.id = l.usuario_id JOIN books b ON b.id = l.livro_id WHERE l.status = 'ACTIVE'
+ORDER BY l.data_emprestimo DESC, l.id DESC
+FETCH FIRST 51 ROWS ONLY;
+
+SELECT 'depois: devolvidos em um mês' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT l.id, u.id, u.nome, u.email, u.data_cadastro, u.telefone, b.id, b.titulo, b.autor, b.isbn,
+       b.data_publicacao, b.categoria, l.data_emprestimo, l.data_devolucao, l.status
+FROM leases l JOIN users u ON u.id = l.usuario_id JOIN books b ON b.id = l.livro_id WHERE l.status = 'RETURNED' AND l.data_emprestimo >= DATE '2019-03-01' AND l.data_emprestimo <= DATE '2019-03-31'
+ORDER BY l.data_emprestimo DESC, l.id DESC
+FETCH FIRST 51 ROWS ONLY;
+
+RESET search_path;
+DROP SCHEMA lease_history_benchmark CASCADE;
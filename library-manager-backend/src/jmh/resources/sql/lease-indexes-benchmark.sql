@@ -0,0 +1,145 @@
+-- Benchmark dos índices da migração V3 com 10 milhões de empréstimos.
+--
+-- Cria um schema separado com as tabelas da V1, gera os dados, executa as consultas da aplicação com
+-- EXPLAIN (ANALYZE, BUFFERS) antes e depois de criar os índices da V3 e remove o schema no final.
+--
+--   psql -d library-manager -f src/jmh/resources/sql/lease-indexes-benchmark.sql
+
+DROP SCHEMA IF EXISTS lease_indexes_benchmark CASCADE;
+CREATE SCHEMA lease_indexes_benchmark;
+SET search_path TO lease_indexes_benchmark;
+
+CREATE TABLE books
+(
+    id              BIGINT       NOT NULL,
+    titulo          VARCHAR(255) NOT NULL,
+    autor           VARCHAR(255) NOT NULL,
+    isbn            VARCHAR(255) NOT NULL,
+    data_publicacao date         NOT NULL,
+    categoria       VARCHAR(255) NOT NULL,
+    CONSTRAINT pk_books PRIMARY KEY (id)
+);
+
+CREATE TABLE leases
+(
+    id              BIGINT       NOT NULL,
+    usuario_id      BIGINT       NOT NULL,
+    livro_id        BIGINT       NOT NULL,
+    data_emprestimo date         NOT NULL,
+    data_devolucao  date         NOT NULL,
+    status          VARCHAR(255) NOT NULL,
+    CONSTRAINT pk_leases PRIMARY KEY (id)
+);
+
+CREATE TABLE users
+(
+    id            BIGINT       NOT NULL,
+    nome          VARCHAR(255) NOT NULL,
+    email         VARCHAR(255) NOT NULL,
+    data_cadastro date         NOT NULL,
+    telefone      VARCHAR(255) NOT NULL,
+    CONSTRAINT pk_users PRIMARY KEY (id)
+);
+
+-- 100 mil usuários, 200 mil livros em 50 categorias
+INSERT INTO users
+SELECT i, 'Usuário ' || i, 'usuario' || i || '@example.com', DATE '2020-01-01' + (i % 1000), '11 9' || lpad(i::text, 8, '0')
+FROM generate_series(1, 100000) AS i;
+
+INSERT INTO books
+SELECT i, 'Livro ' || i, 'Autor ' || (i % 5000), lpad(i::text, 13, '0'), DATE '1950-01-01' + (i % 25000),
+       'Categoria ' || (i % 50)
+FROM generate_series(1, 200000) AS i;
+
+-- 10 milhões de empréstimos, 100 por usuário em média. Os últimos 200 mil passam uma vez por cada livro,
+-- e um em cada cinco deles continua ativo, mantendo no máximo um empréstimo ativo por livro
+INSERT INTO leases
+SELECT i,
+       (i::bigint * 7919) % 100000 + 1,
+       i % 200000 + 1,
+       DATE '2015-01-01' + (i % 3650),
+       DATE '2015-01-01' + (i % 3650) + 14,
+       CASE WHEN i > 10000000 - 200000 AND i % 5 = 0 THEN 'ACTIVE' ELSE 'RETURNED' END
+FROM generate_series(1, 10000000) AS i;
+
+ALTER TABLE leases
+    ADD CONSTRAINT FK_LEASE_BOOK FOREIGN KEY (livro_id) REFERENCES books (id) ON DELETE CASCADE;
+
+ALTER TABLE leases
+    ADD CONSTRAINT FK_LEASE_USER FOREIGN KEY (usuario_id) REFERENCES users (id) ON DELETE CASCADE;
+
+VACUUM ANALYZE books;
+VACUUM ANALYZE leases;
+VACUUM ANALYZE users;
+
+-- Consultas antes dos índices
+
+SELECT 'antes: disponibilidade do livro' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM leases WHERE livro_id = 4241 AND status = 'ACTIVE';
+
+SELECT 'antes: histórico do usuário' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT b.* FROM leases l JOIN books b ON b.id = l.livro_id WHERE l.usuario_id = 4242 ORDER BY l.data_emprestimo DESC;
+
+SELECT 'antes: livros emprestados' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT livro_id FROM leases WHERE status = 'ACTIVE';
+
+SELECT 'antes: livros da categoria' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id FROM books WHERE categoria = 'Categoria 7';
+
+SELECT 'antes: remoção de livro em cascata' AS consulta;
+BEGIN;
+EXPLAIN (ANALYZE, BUFFERS)
+DELETE FROM books WHERE id = 4242;
+ROLLBACK;
+
+-- Índices da V3
+
+CREATE INDEX IF NOT EXISTS idx_leases_livro_id ON leases (livro_id);
+CREATE INDEX IF NOT EXISTS idx_leases_usuario_id_data_emprestimo ON leases (usuario_id, data_emprestimo DESC);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_leases_livro_id_active ON leases (livro_id) WHERE status = 'ACTIVE';
+CREATE INDEX IF NOT EXISTS idx_books_categoria ON books (categoria);
+
+VACUUM ANALYZE books;
+VACUUM ANALYZE leases;
+
+-- Consultas depois dos índices
+
+SELECT 'depois: disponibilidade do livro' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM leases WHERE livro_id = 4241 AND status = 'ACTIVE';
+
+SELECT 'depois: histórico do usuário' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT b.* FROM leases l JOIN books b ON b.id = l.livro_id WHERE l.usuario_id = 4242 ORDER BY l.data_emprestimo DESC;
+
+SELECT 'depois: livros emprestados' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT livro_id FROM leases WHERE status = 'ACTIVE';
+
+SELECT 'depois: livros da categoria' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id FROM books WHERE categoria = 'Categoria 7';
+
+SELECT 'depois: remoção de livro em cascata' AS consulta;
+BEGIN;
+EXPLAIN (ANALYZE, BUFFERS)
+DELETE FROM books WHERE id = 4242;
+ROLLBACK;
+
+SELECT 'depois: segundo empréstimo ativo do mesmo livro é rejeitado' AS consulta;
+DO
+$$
+    BEGIN
+        INSERT INTO leases VALUES (10000001, 1, 4241, CURRENT_DATE, CURRENT_DATE + 14, 'ACTIVE');
+        RAISE EXCEPTION 'o índice único parcial não rejeitou o empréstimo';
+    EXCEPTION
+        WHEN unique_violation THEN RAISE NOTICE 'empréstimo rejeitado pelo índice uk_leases_livro_id_active';
+    END
+$$;
+
+RESET search_path;
+DROP SCHEMA lease_indexes_benchmark CASCADE;
@@ -0,0 +1,99 @@
+-- Benchmark do job de empréstimos vencidos da migração V6 com 5 milhões de empréstimos.
+--
+-- Cria um schema separado com a tabela de empréstimos da V1, gera os dados e executa com EXPLAIN (ANALYZE, BUFFERS) a
+-- busca dos vencidos e um lote do job antes e depois de criar o índice da V6. Depois marca todos os vencidos
+-- em lotes de 1000, com um commit por lote como o job, e remove o schema no final.
+--
+--   psql -d library-manager -f src/jmh/resources/sql/overdue-sweep-benchmark.sql
+
+DROP SCHEMA IF EXISTS overdue_sweep_benchmark CASCADE;
+CREATE SCHEMA overdue_sweep_benchmark;
+SET search_path TO overdue_sweep_benchmark;
+
+CREATE TABLE leases
+(
+    id              BIGINT       NOT NULL,
+    usuario_id      BIGINT       NOT NULL,
+    livro_id        BIGINT       NOT NULL,
+    data_emprestimo date         NOT NULL,
+    data_devolucao  date         NOT NULL,
+    status          VARCHAR(255) NOT NULL,
+    CONSTRAINT pk_leases PRIMARY KEY (id)
+);
+
+SELECT setseed(0.42);
+
+-- 5 milhões de empréstimos dos últimos 5 anos, os dos últimos 60 dias ainda em aberto. Cerca de 160 mil
+-- empréstimos ativos, dos quais dois terços com a devolução vencida
+INSERT INTO leases
+SELECT i,
+       (random() * 200000)::bigint,
+       i,
+       d,
+       d + 14 + (random() * 10)::int,
+       CASE WHEN d > current_date - 60 THEN 'ACTIVE' ELSE 'RETURNED' END
+FROM generate_series(1, 5000000) AS i,
+     LATERAL (SELECT current_date - (random() * 1825)::int - (i % 2) AS d) AS datas;
+
+CREATE UNIQUE INDEX uk_leases_livro_id_open ON leases (livro_id) WHERE status IN ('ACTIVE', 'OVERDUE');
+ANALYZE leases;
+
+SELECT 'sem o índice da V6: contagem dos vencidos' AS consulta;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT count(*) FROM leases WHERE status = 'ACTIVE' AND data_devolucao < current_date;
+
+SELECT 'sem o índice da V6: lote de 1000' AS consulta;
+BEGIN;
+EXPLAIN (ANALYZE, BUFFERS)
+UPDATE leases SET status = 'OVERDUE'
+WHERE id IN (SELECT id FROM leases
+             WHERE status = 'ACTIVE' AND data_devolucao < current_date
+             ORDER BY data_devolucao
+             LIMIT 1000
+             FOR UPDATE SKIP LOCKED);
+ROLLBACK;
+
+CREATE INDEX idx_leases_status_data_devolucao ON leases (status, data_devolucao);
+ANALYZE leases;
+
+SELECT 'com o índice da V6: lote de 1000' AS consulta;
+BEGIN;
+EXPLAIN (ANALYZE, BUFFERS)
+UPDATE leases SET status = 'OVERDUE'
+WHERE id IN (SELECT id FROM leases
+             WHERE status = 'ACTIVE' AND data_devolucao < current_date
+             ORDER BY data_devolucao
+             LIMIT 1000
+             FOR UPDATE SKIP LOCKED);
+ROLLBACK;
+
+SELECT 'com o índice da V6: todos os vencidos em lotes de 1000' AS consulta;
+DO $$
+DECLARE
+    marcados int;
+    total    int := 0;
+    lotes    int := 0;
+    inicio   timestamptz := clock_timestamp();
+BEGIN
+    LOOP
+        UPDATE leases SET status = 'OVERDUE'
+        WHERE id IN (SELECT id FROM leases
+                     WHERE status = 'ACTIVE' AND data_devolucao < current_date
+                     ORDER BY data_devolucao
+                     LIMIT 1000
+                     FOR UPDATE SKIP LOCKED);
+        GET DIAGNOSTICS marcados = ROW_COUNT;
+        total := total + marcados;
+        lotes := lotes + 1;
+        COMMIT;
+        EXIT WHEN marcados < 1000;
+    END LOOP;
+    RAISE NOTICE '% empréstimos em % lotes, % ms', total, lotes,
+        round(extract(epoch FROM clock_timestamp() - inicio) * 1000);
+END
+$$;
+
+SELECT status, count(*) FROM leases WHERE status <> 'RETURNED' GROUP BY status ORDER BY status;
+
+RESET search_path;
+DROP SCHEMA overdue_sweep_benchmark CASCADE;
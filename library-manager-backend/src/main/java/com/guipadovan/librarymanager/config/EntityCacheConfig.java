@@ -0,0 +1,70 @@
+package com.guipadovan.librarymanager.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Configuration of the caches used by the Hibernate second-level cache.
+ */
+@Configuration
+public class EntityCacheConfig {
+
+    public static final String BOOKS_REGION = "books";
+    public static final String USERS_REGION = "users";
+    public static final String QUERY_RESULTS_REGION = RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME;
+    public static final String UPDATE_TIMESTAMPS_REGION = RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME;
+
+    /**
+     * Creates the Caffeine caches of the second-level cache regions, bounded by the configured sizes.
+     * <p>
+     * Each application context gets its own cache manager, so contexts sharing the JVM, as in the tests, never share
+     * or close each other's caches.
+     *
+     * @param properties the configuration of the second-level cache
+     *
+     * @return the cache manager of the regions
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager entityCacheManager(EntityCacheProperties properties) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("hibernate-" + UUID.randomUUID()), getClass().getClassLoader());
+
+        cacheManager.createCache(BOOKS_REGION, regionConfiguration(properties.books()));
+        cacheManager.createCache(USERS_REGION, regionConfiguration(properties.users()));
+        cacheManager.createCache(QUERY_RESULTS_REGION, regionConfiguration(properties.queries()));
+        // Guarda apenas o horário da última escrita de cada tabela, não pode perder entradas ou as consultas em cache
+        // poderiam ser consideradas atualizadas
+        cacheManager.createCache(UPDATE_TIMESTAMPS_REGION, new CaffeineConfiguration<>());
+        return cacheManager;
+    }
+
+    /**
+     * Makes Hibernate use the caches of {@link #entityCacheManager(EntityCacheProperties)}.
+     *
+     * @param entityCacheManager the cache manager of the regions
+     *
+     * @return the customizer of the Hibernate properties
+     */
+    @Bean
+    public HibernatePropertiesCustomizer entityCacheCustomizer(CacheManager entityCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+    }
+
+    private static CaffeineConfiguration<Object, Object> regionConfiguration(EntityCacheProperties.Region region) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(region.maximumSize()));
+        configuration.setExpireAfterWrite(OptionalLong.of(region.ttl().toNanos()));
+        return configuration;
+    }
+}
@@ -0,0 +1,33 @@
+package com.guipadovan.librarymanager.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the Hibernate second-level cache.
+ *
+ * @param books   the configuration of the cache of the books
+ * @param users   the configuration of the cache of the users
+ * @param queries the configuration of the cache of the query results
+ */
+@ConfigurationProperties(prefix = "library.cache")
+public record EntityCacheProperties(
+        @DefaultValue Region books,
+        @DefaultValue Region users,
+        @DefaultValue Region queries
+) {
+
+    /**
+     * Configuration of a cache region.
+     *
+     * @param maximumSize the maximum number of entries kept in the region
+     * @param ttl         how long an entry is kept after it is written
+     */
+    public record Region(
+            @DefaultValue("10000") long maximumSize,
+            @DefaultValue("1h") Duration ttl
+    ) {
+    }
+}
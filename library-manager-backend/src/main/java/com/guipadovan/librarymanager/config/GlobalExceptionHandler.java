@@ -10,6 +10,7 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -44,6 +45,14 @@ public class GlobalExceptionHandler {
         return errors;
     }
 
+    // PARÂMETROS DA REQUISIÇÃO
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public Map<String, String> handleMethodArgumentTypeMismatchException(MethodArgumentTypeMismatchException ex) {
+        return Map.of(ex.getName(), "Valor inválido");
+    }
+
     // VALIDAÇÕES EXCEPTIONS DO SISTEMA
 
     @ResponseStatus(HttpStatus.BAD_REQUEST)
@@ -0,0 +1,39 @@
+package com.guipadovan.librarymanager.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.Executor;
+
+/**
+ * Configuration of the HTTP client shared by the Google Books API searches.
+ */
+@Configuration
+public class GoogleBooksClientConfig {
+
+    /**
+     * Creates the HTTP client used to call the Google Books API.
+     * <p>
+     * The client keeps idle connections alive and reuses them between searches, and negotiates HTTP/2 when the server
+     * supports it, falling back to HTTP/1.1 otherwise. Responses are handled on the application task executor, which
+     * runs on virtual threads when {@code spring.threads.virtual.enabled} is set, so reading a slow response body does
+     * not hold a platform thread.
+     *
+     * @param properties   the configuration of the Google Books API integration
+     * @param taskExecutor the application task executor
+     *
+     * @return the shared HTTP client
+     */
+    @Bean
+    public HttpClient googleBooksHttpClient(GoogleBooksProperties properties,
+                                            @Qualifier("applicationTaskExecutor") Executor taskExecutor) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .executor(taskExecutor)
+                .connectTimeout(properties.connectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+}
@@ -0,0 +1,39 @@
+package com.guipadovan.librarymanager.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the Google Books API integration.
+ *
+ * @param apiUrl         the URL of the volumes endpoint
+ * @param apiKey         the API key sent with every request
+ * @param connectTimeout the maximum time to establish a connection with the API
+ * @param readTimeout    the maximum time to receive the whole response of a search, body included
+ * @param cache          the configuration of the search cache
+ */
+@ConfigurationProperties(prefix = "google.books")
+public record GoogleBooksProperties(
+        @DefaultValue("https://www.googleapis.com/books/v1/volumes") String apiUrl,
+        String apiKey,
+        @DefaultValue("2s") Duration connectTimeout,
+        @DefaultValue("5s") Duration readTimeout,
+        @DefaultValue Cache cache
+) {
+
+    /**
+     * Configuration of the search cache.
+     *
+     * @param maximumSize the maximum number of searches kept in the cache
+     * @param ttl         how long a search with results is kept
+     * @param negativeTtl how long a search without results is kept
+     */
+    public record Cache(
+            @DefaultValue("10000") long maximumSize,
+            @DefaultValue("10m") Duration ttl,
+            @DefaultValue("1m") Duration negativeTtl
+    ) {
+    }
+}
@@ -0,0 +1,12 @@
+package com.guipadovan.librarymanager.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables the scheduled jobs, such as the job that marks the overdue leases.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
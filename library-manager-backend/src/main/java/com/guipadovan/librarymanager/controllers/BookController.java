@@ -1,19 +1,36 @@
 package com.guipadovan.librarymanager.controllers;
 
+import com.guipadovan.librarymanager.dtos.CursorPageDto;
 import com.guipadovan.librarymanager.dtos.BookDto;
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import com.guipadovan.librarymanager.dtos.BookSnapshotDto;
+import com.guipadovan.librarymanager.dtos.BookSuggestionDto;
+import com.guipadovan.librarymanager.dtos.CacheStatsDto;
+import com.guipadovan.librarymanager.dtos.ImportResultDto;
 import com.guipadovan.librarymanager.entities.Book;
 import com.guipadovan.librarymanager.exceptions.EntityNotFoundException;
 import com.guipadovan.librarymanager.services.BookService;
+import com.guipadovan.librarymanager.services.BookSuggestionService;
 import com.guipadovan.librarymanager.services.GoogleBooksService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpTimeoutException;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * REST controller for managing books.
@@ -21,13 +38,17 @@ import java.util.Optional;
  */
 @RestController
 @RequestMapping("/v1/books")
+@Slf4j
 public class BookController {
 
     private final BookService bookService;
+    private final BookSuggestionService bookSuggestionService;
     private final GoogleBooksService googleBooksService;
 
-    public BookController(BookService bookService, GoogleBooksService googleBooksService) {
+    public BookController(BookService bookService, BookSuggestionService bookSuggestionService,
+                          GoogleBooksService googleBooksService) {
         this.bookService = bookService;
+        this.bookSuggestionService = bookSuggestionService;
         this.googleBooksService = googleBooksService;
     }
 
@@ -39,9 +60,57 @@ public class BookController {
      * @return the created book
      */
     @PostMapping
-    public ResponseEntity<Book> createBook(@Valid @RequestBody BookDto bookDetails) {
+    public ResponseEntity<BookResponseDto> createBook(@Valid @RequestBody BookDto bookDetails) {
         Book createdBook = bookService.createBook(bookDetails);
-        return new ResponseEntity<>(createdBook, HttpStatus.CREATED);
+        return new ResponseEntity<>(BookResponseDto.from(createdBook), HttpStatus.CREATED);
+    }
+
+    /**
+     * Imports books in bulk from a JSON array or from NDJSON (one book per line).
+     * Invalid records are reported in the result without aborting the import.
+     *
+     * @param body the request body containing the books
+     *
+     * @return the import result with the errors of each rejected record
+     *
+     * @throws IOException if the request body cannot be read
+     */
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ImportResultDto> importBooks(InputStream body) throws IOException {
+        ImportResultDto result = bookService.importBooks(body);
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    /**
+     * Exports every book of the catalog as a compressed binary snapshot, streaming the books as they are read from
+     * the database.
+     *
+     * @param response the response where the snapshot is written
+     *
+     * @throws IOException if the response cannot be written
+     */
+    @GetMapping("/snapshot")
+    public void exportSnapshot(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename("books.snapshot").build().toString());
+        bookService.exportSnapshot(response.getOutputStream());
+    }
+
+    /**
+     * Restores a snapshot exported by {@link #exportSnapshot(HttpServletResponse)}, keeping the IDs of the books and
+     * replacing the books with the same IDs.
+     *
+     * @param body the request body containing the snapshot
+     *
+     * @return the number of books restored and the throughput in books per second
+     *
+     * @throws IOException if the request body cannot be read
+     */
+    @PostMapping(value = "/snapshot", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<BookSnapshotDto> restoreSnapshot(InputStream body) throws IOException {
+        BookSnapshotDto snapshot = bookService.restoreSnapshot(body);
+        return new ResponseEntity<>(snapshot, HttpStatus.OK);
     }
 
     /**
@@ -52,10 +121,10 @@ public class BookController {
      * @return the book with the given ID, if found
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Book> getBookById(@PathVariable Long id) {
+    public ResponseEntity<BookResponseDto> getBookById(@PathVariable Long id) {
         Optional<Book> book = bookService.getBook(id);
         if (book.isPresent()) {
-            return new ResponseEntity<>(book.get(), HttpStatus.OK);
+            return new ResponseEntity<>(BookResponseDto.from(book.get()), HttpStatus.OK);
         } else {
             throw new EntityNotFoundException(Book.class, id.toString());
         }
@@ -70,14 +139,71 @@ public class BookController {
      * @return a paginated list of books
      */
     @GetMapping
-    public ResponseEntity<Page<Book>> getBooks(
+    public ResponseEntity<Page<BookResponseDto>> getBooks(
             @RequestParam(value = "page", defaultValue = "0") int page,
             @RequestParam(value = "size", defaultValue = "10") int size
     ) {
-        Page<Book> booksPage = bookService.getAllBooks(page, size);
+        Page<BookResponseDto> booksPage = bookService.getAllBooks(page, size);
         return new ResponseEntity<>(booksPage, HttpStatus.OK);
     }
 
+    /**
+     * Retrieves a slice of books using keyset pagination.
+     * Unlike {@link #getBooks(int, int)}, it doesn't count the books and keeps a flat latency on deep positions.
+     *
+     * @param after the cursor returned with the previous slice (absent for the first slice)
+     * @param size  the number of books per slice (default is 10)
+     * @param sort  the sort order, either "id" or "title" (default is "id")
+     *
+     * @return a slice of books with the cursor of the next slice
+     */
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPageDto<BookResponseDto>> scrollBooks(
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "size", defaultValue = "10") int size,
+            @RequestParam(value = "sort", defaultValue = "id") String sort
+    ) {
+        CursorPageDto<BookResponseDto> booksSlice = bookService.scrollBooks(after, size, sort);
+        return new ResponseEntity<>(booksSlice, HttpStatus.OK);
+    }
+
+    /**
+     * Searches the local catalog by title, author, ISBN and category, most relevant books first.
+     * The last word matches as a prefix and misspelled words also match the most similar words of the catalog.
+     *
+     * @param query the search text
+     * @param after the cursor returned with the previous slice (absent for the first slice)
+     * @param size  the number of books per slice (default is 10)
+     *
+     * @return a slice of books with the cursor of the next slice
+     */
+    @GetMapping("/catalog")
+    public ResponseEntity<CursorPageDto<BookResponseDto>> searchCatalog(
+            @RequestParam("q") String query,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "size", defaultValue = "10") int size
+    ) {
+        CursorPageDto<BookResponseDto> booksSlice = bookService.searchCatalog(query, after, size);
+        return new ResponseEntity<>(booksSlice, HttpStatus.OK);
+    }
+
+    /**
+     * Suggests books while the client types, matching the beginning of the words of the title and the author.
+     * The suggestions come from an in-memory index and don't query the database.
+     *
+     * @param query the text typed so far
+     * @param limit the maximum number of suggestions (default is 10)
+     *
+     * @return the suggested books
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<BookSuggestionDto>> suggestBooks(
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", defaultValue = "10") int limit
+    ) {
+        return new ResponseEntity<>(bookSuggestionService.suggest(query, limit), HttpStatus.OK);
+    }
+
     /**
      * Updates the details of an existing book.
      *
@@ -87,9 +213,9 @@ public class BookController {
      * @return the updated book
      */
     @PutMapping("/{id}")
-    public ResponseEntity<Book> updateBook(@PathVariable Long id, @Valid @RequestBody BookDto bookDetails) {
+    public ResponseEntity<BookResponseDto> updateBook(@PathVariable Long id, @Valid @RequestBody BookDto bookDetails) {
         Book updatedBook = bookService.updateBook(id, bookDetails);
-        return new ResponseEntity<>(updatedBook, HttpStatus.OK);
+        return new ResponseEntity<>(BookResponseDto.from(updatedBook), HttpStatus.OK);
     }
 
     /**
@@ -114,15 +240,35 @@ public class BookController {
      *
      * @param title the title of the book to search for
      *
-     * @return a list of books that match the title
+     * @return a future completed with the list of books that match the title, with a 502 status when the API fails or
+     * a 504 status when it doesn't respond within the read timeout
      */
     @GetMapping("/search")
-    public ResponseEntity<List<Book>> searchBooks(@RequestParam("title") String title) {
-        try {
-            List<Book> books = googleBooksService.searchBooksByTitle(title);
-            return ResponseEntity.ok(books);
-        } catch (IOException e) {
-            return ResponseEntity.status(500).body(null);
-        }
+    public CompletableFuture<ResponseEntity<List<BookResponseDto>>> searchBooks(@RequestParam("title") String title) {
+        // A thread da requisição é liberada enquanto a API do Google Books responde
+        return googleBooksService.searchBooksByTitleAsync(title)
+                .thenApply(ResponseEntity::ok)
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    if (cause instanceof UncheckedIOException uncheckedIOException)
+                        cause = uncheckedIOException.getCause();
+                    log.warn("Failed to search books with title {}", title, cause);
+
+                    // Falhas da API do Google Books são do serviço externo, não da aplicação
+                    HttpStatus status = cause instanceof HttpTimeoutException ? HttpStatus.GATEWAY_TIMEOUT
+                            : cause instanceof IOException ? HttpStatus.BAD_GATEWAY
+                            : HttpStatus.INTERNAL_SERVER_ERROR;
+                    return ResponseEntity.status(status).build();
+                });
+    }
+
+    /**
+     * Retrieves the statistics of the Google Books search cache, used to size the cache.
+     *
+     * @return the search cache statistics
+     */
+    @GetMapping("/search/stats")
+    public ResponseEntity<CacheStatsDto> getSearchCacheStats() {
+        return ResponseEntity.ok(googleBooksService.getSearchCacheStats());
     }
 }
@@ -0,0 +1,34 @@
+package com.guipadovan.librarymanager.controllers;
+
+import com.guipadovan.librarymanager.dtos.EntityCacheStatsDto;
+import com.guipadovan.librarymanager.services.EntityCacheService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * REST controller for inspecting the second-level cache of the books, the users and the query results.
+ */
+@RestController
+@RequestMapping("/v1/cache")
+public class CacheController {
+
+    private final EntityCacheService entityCacheService;
+
+    public CacheController(EntityCacheService entityCacheService) {
+        this.entityCacheService = entityCacheService;
+    }
+
+    /**
+     * Retrieves the statistics of each region of the second-level cache, used to size the regions.
+     *
+     * @return the statistics of each region
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<List<EntityCacheStatsDto>> getCacheStats() {
+        return ResponseEntity.ok(entityCacheService.getStats());
+    }
+}
@@ -1,25 +1,37 @@
 package com.guipadovan.librarymanager.controllers;
 
 import com.guipadovan.librarymanager.dtos.LeaseDto;
+import com.guipadovan.librarymanager.dtos.LeaseFilterDto;
+import com.guipadovan.librarymanager.dtos.LeaseResponseDto;
+import com.guipadovan.librarymanager.dtos.OverdueSweepDto;
 import com.guipadovan.librarymanager.entities.Lease;
 import com.guipadovan.librarymanager.services.LeaseService;
+import com.guipadovan.librarymanager.services.OverdueLeaseService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.time.LocalDate;
+
 /**
  * REST controller for managing leases.
- * Provides endpoints for creating, retrieving, and returning leased books.
+ * Provides endpoints for creating, listing, and returning leased books.
  */
 @RestController
 @RequestMapping("/v1/leases")
 public class LeaseController {
 
     private final LeaseService leaseService;
+    private final OverdueLeaseService overdueLeaseService;
 
-    public LeaseController(LeaseService leaseService) {
+    public LeaseController(LeaseService leaseService, OverdueLeaseService overdueLeaseService) {
         this.leaseService = leaseService;
+        this.overdueLeaseService = overdueLeaseService;
     }
 
     /**
@@ -30,9 +42,40 @@ public class LeaseController {
      * @return the created lease
      */
     @PostMapping
-    public ResponseEntity<Lease> createLease(@Valid @RequestBody LeaseDto leaseDetails) {
+    public ResponseEntity<LeaseResponseDto> createLease(@Valid @RequestBody LeaseDto leaseDetails) {
         Lease createdLease = leaseService.createLease(leaseDetails);
-        return new ResponseEntity<>(createdLease, HttpStatus.CREATED);
+        return new ResponseEntity<>(LeaseResponseDto.from(createdLease), HttpStatus.CREATED);
+    }
+
+    /**
+     * Retrieves a slice of the leases matching the filters, newest first, using keyset pagination.
+     * The slice is written to the response as the leases are read from the database.
+     *
+     * @param userId   the ID of the user who leased the books (optional)
+     * @param bookId   the ID of the leased book (optional)
+     * @param status   the status of the leases (optional)
+     * @param from     the first lease date, inclusive (optional)
+     * @param to       the last lease date, inclusive (optional)
+     * @param after    the cursor returned with the previous slice (absent for the first slice)
+     * @param size     the number of leases per slice (absent for the configured default)
+     * @param response the response where the slice is written
+     *
+     * @throws IOException if the slice cannot be written
+     */
+    @GetMapping
+    public void getLeases(
+            @RequestParam(value = "userId", required = false) Long userId,
+            @RequestParam(value = "bookId", required = false) Long bookId,
+            @RequestParam(value = "status", required = false) Lease.Status status,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "size", required = false) Integer size,
+            HttpServletResponse response
+    ) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        leaseService.writeLeases(new LeaseFilterDto(userId, bookId, status, from, to), after, size,
+                response.getOutputStream());
     }
 
     /**
@@ -43,8 +86,20 @@ public class LeaseController {
      * @return the returned lease
      */
     @PostMapping("/{bookId}/return")
-    public ResponseEntity<Lease> returnBook(@PathVariable Long bookId) {
+    public ResponseEntity<LeaseResponseDto> returnBook(@PathVariable Long bookId) {
         Lease returnedLease = leaseService.returnBook(bookId);
-        return new ResponseEntity<>(returnedLease, HttpStatus.OK);
+        return new ResponseEntity<>(LeaseResponseDto.from(returnedLease), HttpStatus.OK);
+    }
+
+    /**
+     * Retrieves the result of the last run of the job that marks the overdue leases, with its duration and throughput.
+     *
+     * @return the result of the last run, or no content if the job hasn't run since the application started
+     */
+    @GetMapping("/overdue/stats")
+    public ResponseEntity<OverdueSweepDto> getOverdueSweepStats() {
+        return overdueLeaseService.getLastSweep()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.noContent().build());
     }
 }
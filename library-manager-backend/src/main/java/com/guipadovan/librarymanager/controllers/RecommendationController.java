@@ -1,10 +1,17 @@
 package com.guipadovan.librarymanager.controllers;
 
-import com.guipadovan.librarymanager.entities.Book;
+import com.guipadovan.librarymanager.dtos.BookNeighborsBuildDto;
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import com.guipadovan.librarymanager.dtos.CacheStatsDto;
+import com.guipadovan.librarymanager.services.BookNeighborService;
+import com.guipadovan.librarymanager.services.RecommendationCacheService;
 import com.guipadovan.librarymanager.services.RecommendationService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -16,23 +23,82 @@ import java.util.List;
 public class RecommendationController {
 
     private final RecommendationService recommendationService;
+    private final BookNeighborService bookNeighborService;
+    private final RecommendationCacheService recommendationCacheService;
 
-    public RecommendationController(RecommendationService recommendationService) {
+    public RecommendationController(RecommendationService recommendationService,
+                                    BookNeighborService bookNeighborService,
+                                    RecommendationCacheService recommendationCacheService) {
         this.recommendationService = recommendationService;
+        this.bookNeighborService = bookNeighborService;
+        this.recommendationCacheService = recommendationCacheService;
     }
 
     /**
      * Retrieves book recommendations for the given user.
+     * Without a seed the books are sampled again on every request. With a seed the order is stable and cached, and the
+     * recommendations can be paged through without repeating books.
      *
      * @param userId the ID of the user
-     * @param limit  the maximum number of recommendations to fetch
+     * @param limit  the maximum number of recommendations to fetch, or to page through when a seed is given
+     * @param seed   the seed of the order, such as the current day (optional)
+     * @param page   the zero-based page number, used only with a seed (default is 0)
+     * @param size   the number of recommendations per page, used only with a seed (default is the limit)
      *
      * @return the list of recommended books
      */
     @GetMapping("/{userId}")
-    public ResponseEntity<List<Book>> getBookRecommendations(@PathVariable Long userId,
-                                                             @RequestParam(defaultValue = "10") int limit) {
-        List<Book> recommendedBooks = recommendationService.getBookRecommendationsByUser(userId, limit);
+    public ResponseEntity<List<BookResponseDto>> getBookRecommendations(
+            @PathVariable Long userId,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) Long seed,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) Integer size
+    ) {
+        List<BookResponseDto> recommendedBooks = seed == null
+                ? recommendationService.getBookRecommendationsByUser(userId, limit)
+                : recommendationService.getSeededBookRecommendationsByUser(userId, seed, limit, page,
+                size != null ? size : limit);
         return ResponseEntity.ok(recommendedBooks);
     }
+
+    /**
+     * Retrieves book recommendations for many users at once, written as NDJSON with one line per user in the order of
+     * the IDs. The lines are sent as each chunk of users is computed.
+     *
+     * @param userIds  the IDs of the users
+     * @param limit    the maximum number of recommendations per user
+     * @param response the response where the recommendations are written
+     *
+     * @throws IOException if the recommendations cannot be written
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void getBatchBookRecommendations(@RequestBody List<Long> userIds,
+                                            @RequestParam(defaultValue = "10") int limit,
+                                            HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        recommendationService.writeBookRecommendationsByUsers(userIds, limit, response.getOutputStream());
+    }
+
+    /**
+     * Retrieves the statistics of the cache of the seeded recommendations, used to size the cache.
+     *
+     * @return the cache statistics
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<CacheStatsDto> getCacheStats() {
+        return ResponseEntity.ok(recommendationCacheService.getStats());
+    }
+
+    /**
+     * Retrieves the result of the last run of the job that computes the similar books used by the recommendations.
+     *
+     * @return the result of the last run, or no content if the job hasn't run since the application started
+     */
+    @GetMapping("/neighbors/stats")
+    public ResponseEntity<BookNeighborsBuildDto> getNeighborsBuildStats() {
+        return bookNeighborService.getLastBuild()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.noContent().build());
+    }
 }
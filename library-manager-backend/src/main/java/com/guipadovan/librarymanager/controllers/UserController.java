@@ -1,15 +1,25 @@
 package com.guipadovan.librarymanager.controllers;
 
+import com.guipadovan.librarymanager.dtos.CursorPageDto;
+import com.guipadovan.librarymanager.dtos.FileFormat;
+import com.guipadovan.librarymanager.dtos.ImportResultDto;
 import com.guipadovan.librarymanager.dtos.UserDto;
+import com.guipadovan.librarymanager.dtos.UserResponseDto;
 import com.guipadovan.librarymanager.entities.User;
 import com.guipadovan.librarymanager.exceptions.EntityNotFoundException;
 import com.guipadovan.librarymanager.services.UserService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Optional;
 
 /**
@@ -34,9 +44,47 @@ public class UserController {
      * @return the created user
      */
     @PostMapping
-    public ResponseEntity<User> createUser(@Valid @RequestBody UserDto userDetails) {
+    public ResponseEntity<UserResponseDto> createUser(@Valid @RequestBody UserDto userDetails) {
         User createdUser = userService.createUser(userDetails);
-        return new ResponseEntity<>(createdUser, HttpStatus.CREATED);
+        return new ResponseEntity<>(UserResponseDto.from(createdUser), HttpStatus.CREATED);
+    }
+
+    /**
+     * Imports users in bulk from CSV with a header row or from NDJSON (one user per line), updating the users already
+     * registered with the same e-mail. Invalid records are reported in the result without aborting the import.
+     *
+     * @param contentType the content type of the request body, which selects the format
+     * @param body        the request body containing the users
+     *
+     * @return the import result with the errors of each rejected record
+     *
+     * @throws IOException if the request body cannot be read
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_JSON_VALUE,
+            MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ImportResultDto> importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                       InputStream body) throws IOException {
+        FileFormat format = contentType.isCompatibleWith(MediaType.parseMediaType(FileFormat.CSV.mediaType()))
+                ? FileFormat.CSV : FileFormat.NDJSON;
+        ImportResultDto result = userService.importUsers(body, format);
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    /**
+     * Exports every user, ordered by ID, streaming them as they are read from the database.
+     *
+     * @param format   the format of the file, either CSV or NDJSON (default is NDJSON)
+     * @param response the response where the users are written
+     *
+     * @throws IOException if the response cannot be written
+     */
+    @GetMapping("/export")
+    public void exportUsers(@RequestParam(value = "format", defaultValue = "NDJSON") FileFormat format,
+                            HttpServletResponse response) throws IOException {
+        response.setContentType(format.mediaType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename("users." + format.extension()).build().toString());
+        userService.exportUsers(format, response.getOutputStream());
     }
 
     /**
@@ -47,10 +95,10 @@ public class UserController {
      * @return the user with the given ID, if found
      */
     @GetMapping("/{id}")
-    public ResponseEntity<User> getUserById(@PathVariable Long id) {
+    public ResponseEntity<UserResponseDto> getUserById(@PathVariable Long id) {
         Optional<User> user = userService.getUser(id);
         if (user.isPresent()) {
-            return new ResponseEntity<>(user.get(), HttpStatus.OK);
+            return new ResponseEntity<>(UserResponseDto.from(user.get()), HttpStatus.OK);
         } else {
             throw new EntityNotFoundException(User.class, id.toString());
         }
@@ -65,14 +113,34 @@ public class UserController {
      * @return a paginated list of users
      */
     @GetMapping
-    public ResponseEntity<Page<User>> getUsers(
+    public ResponseEntity<Page<UserResponseDto>> getUsers(
             @RequestParam(value = "page", defaultValue = "0") int page,
             @RequestParam(value = "size", defaultValue = "10") int size
     ) {
-        Page<User> usersPage = userService.getAllUsers(page, size);
+        Page<UserResponseDto> usersPage = userService.getAllUsers(page, size);
         return new ResponseEntity<>(usersPage, HttpStatus.OK);
     }
 
+    /**
+     * Retrieves a slice of users using keyset pagination.
+     * Unlike {@link #getUsers(int, int)}, it doesn't count the users and keeps a flat latency on deep positions.
+     *
+     * @param after the cursor returned with the previous slice (absent for the first slice)
+     * @param size  the number of users per slice (default is 10)
+     * @param sort  the sort order, either "id" or "name" (default is "id")
+     *
+     * @return a slice of users with the cursor of the next slice
+     */
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPageDto<UserResponseDto>> scrollUsers(
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "size", defaultValue = "10") int size,
+            @RequestParam(value = "sort", defaultValue = "id") String sort
+    ) {
+        CursorPageDto<UserResponseDto> usersSlice = userService.scrollUsers(after, size, sort);
+        return new ResponseEntity<>(usersSlice, HttpStatus.OK);
+    }
+
     /**
      * Updates the details of an existing user.
      *
@@ -82,9 +150,9 @@ public class UserController {
      * @return the updated user
      */
     @PutMapping("/{id}")
-    public ResponseEntity<User> updateUser(@PathVariable Long id, @Valid @RequestBody UserDto userDetails) {
+    public ResponseEntity<UserResponseDto> updateUser(@PathVariable Long id, @Valid @RequestBody UserDto userDetails) {
         User updatedUser = userService.updateUser(id, userDetails);
-        return new ResponseEntity<>(updatedUser, HttpStatus.OK);
+        return new ResponseEntity<>(UserResponseDto.from(updatedUser), HttpStatus.OK);
     }
 
     /**
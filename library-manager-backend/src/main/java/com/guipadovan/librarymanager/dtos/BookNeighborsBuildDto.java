@@ -0,0 +1,18 @@
+package com.guipadovan.librarymanager.dtos;
+
+import java.time.Instant;
+
+/**
+ * Result of a run of the job that computes the similar books used by the recommendations.
+ *
+ * @param startedAt      the instant the run started
+ * @param full           whether every book was computed again, or only the books affected by the new leases
+ * @param newLeases      the number of leases read by the run
+ * @param updatedBooks   the number of books whose similar books were computed
+ * @param books          the number of books with similar books after the run
+ * @param neighbors      the number of similar books of every book after the run
+ * @param durationMillis the duration of the run in milliseconds
+ */
+public record BookNeighborsBuildDto(Instant startedAt, boolean full, long newLeases, int updatedBooks, int books,
+                                    long neighbors, long durationMillis) {
+}
@@ -0,0 +1,24 @@
+package com.guipadovan.librarymanager.dtos;
+
+import com.guipadovan.librarymanager.entities.Book;
+
+import java.time.LocalDate;
+
+/**
+ * Read-only representation of a book returned by the API.
+ *
+ * @param id              the ID of the book
+ * @param title           the title of the book
+ * @param author          the author of the book
+ * @param isbn            the ISBN of the book
+ * @param publicationDate the publication date of the book
+ * @param category        the category of the book
+ */
+public record BookResponseDto(Long id, String title, String author, String isbn, LocalDate publicationDate,
+                              String category) {
+
+    public static BookResponseDto from(Book book) {
+        return new BookResponseDto(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(),
+                book.getPublicationDate(), book.getCategory());
+    }
+}
@@ -0,0 +1,16 @@
+package com.guipadovan.librarymanager.dtos;
+
+/**
+ * Result of writing or restoring a snapshot of the catalog.
+ *
+ * @param books          the number of books written or restored
+ * @param durationMillis the duration in milliseconds
+ * @param booksPerSecond the throughput in books per second
+ */
+public record BookSnapshotDto(long books, long durationMillis, double booksPerSecond) {
+
+    public static BookSnapshotDto of(long books, long durationNanos) {
+        double seconds = durationNanos / 1e9;
+        return new BookSnapshotDto(books, durationNanos / 1_000_000, seconds > 0 ? books / seconds : 0);
+    }
+}
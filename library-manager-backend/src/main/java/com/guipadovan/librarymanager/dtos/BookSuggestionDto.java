@@ -0,0 +1,11 @@
+package com.guipadovan.librarymanager.dtos;
+
+/**
+ * A book suggested while the client types a search.
+ *
+ * @param id     the ID of the book
+ * @param title  the title of the book
+ * @param author the author of the book
+ */
+public record BookSuggestionDto(Long id, String title, String author) {
+}
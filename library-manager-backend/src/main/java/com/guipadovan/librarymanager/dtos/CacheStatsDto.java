@@ -0,0 +1,15 @@
+package com.guipadovan.librarymanager.dtos;
+
+/**
+ * Statistics of an in-memory cache.
+ *
+ * @param size          the approximate number of entries in the cache
+ * @param hitCount      the number of lookups that found an entry
+ * @param missCount     the number of lookups that had to load an entry
+ * @param hitRate       the ratio of lookups that found an entry
+ * @param evictionCount the number of entries evicted by size or expiration
+ * @param failureCount  the number of loads that failed
+ */
+public record CacheStatsDto(long size, long hitCount, long missCount, double hitRate, long evictionCount,
+                            long failureCount) {
+}
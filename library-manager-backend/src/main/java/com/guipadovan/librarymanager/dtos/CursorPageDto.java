@@ -0,0 +1,14 @@
+package com.guipadovan.librarymanager.dtos;
+
+import java.util.List;
+
+/**
+ * A slice of a keyset paginated listing.
+ *
+ * @param content the items of the slice
+ * @param next    the opaque cursor to request the next slice, or null if this is the last slice
+ * @param hasNext whether there are more items after this slice
+ * @param <T>     the type of the items
+ */
+public record CursorPageDto<T>(List<T> content, String next, boolean hasNext) {
+}
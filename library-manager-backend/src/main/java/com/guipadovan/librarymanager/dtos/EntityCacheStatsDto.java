@@ -0,0 +1,15 @@
+package com.guipadovan.librarymanager.dtos;
+
+/**
+ * Statistics of a region of the Hibernate second-level cache.
+ *
+ * @param region    the name of the region
+ * @param size      the approximate number of entries in the region
+ * @param hitCount  the number of lookups that found an entry
+ * @param missCount the number of lookups that had to query the database
+ * @param putCount  the number of entries written to the region
+ * @param hitRate   the ratio of lookups that found an entry
+ */
+public record EntityCacheStatsDto(String region, long size, long hitCount, long missCount, long putCount,
+                                  double hitRate) {
+}
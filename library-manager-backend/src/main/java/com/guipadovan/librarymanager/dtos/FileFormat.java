@@ -0,0 +1,31 @@
+package com.guipadovan.librarymanager.dtos;
+
+/**
+ * Formats of the files used to import and export records in bulk.
+ */
+public enum FileFormat {
+    /**
+     * Comma-separated values with a header row naming the columns.
+     */
+    CSV("text/csv", "csv"),
+    /**
+     * Newline-delimited JSON, one object per line.
+     */
+    NDJSON("application/x-ndjson", "ndjson");
+
+    private final String mediaType;
+    private final String extension;
+
+    FileFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+}
@@ -0,0 +1,23 @@
+package com.guipadovan.librarymanager.dtos;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a bulk import.
+ *
+ * @param imported the number of records that were saved
+ * @param failed   the number of records that were rejected
+ * @param errors   the errors of each rejected record
+ */
+public record ImportResultDto(long imported, long failed, List<RecordError> errors) {
+
+    /**
+     * Errors of a single rejected record.
+     *
+     * @param index       the zero-based position of the record in the input
+     * @param fieldErrors a map of field errors
+     */
+    public record RecordError(long index, Map<String, String> fieldErrors) {
+    }
+}
@@ -0,0 +1,17 @@
+package com.guipadovan.librarymanager.dtos;
+
+import com.guipadovan.librarymanager.entities.Lease;
+
+import java.time.LocalDate;
+
+/**
+ * Filter of the lease history. Null fields are not applied.
+ *
+ * @param userId the ID of the user who leased the books
+ * @param bookId the ID of the leased book
+ * @param status the status of the leases
+ * @param from   the first lease date, inclusive
+ * @param to     the last lease date, inclusive
+ */
+public record LeaseFilterDto(Long userId, Long bookId, Lease.Status status, LocalDate from, LocalDate to) {
+}
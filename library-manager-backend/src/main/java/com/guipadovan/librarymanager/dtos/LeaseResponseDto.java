@@ -0,0 +1,24 @@
+package com.guipadovan.librarymanager.dtos;
+
+import com.guipadovan.librarymanager.entities.Lease;
+
+import java.time.LocalDate;
+
+/**
+ * Read-only representation of a lease returned by the API, with the leased book and the user who leased it.
+ *
+ * @param id         the ID of the lease
+ * @param user       the user who leased the book
+ * @param book       the leased book
+ * @param leaseDate  the date the book was leased
+ * @param returnDate the date the book is due or was returned
+ * @param status     the status of the lease
+ */
+public record LeaseResponseDto(Long id, UserResponseDto user, BookResponseDto book, LocalDate leaseDate,
+                               LocalDate returnDate, Lease.Status status) {
+
+    public static LeaseResponseDto from(Lease lease) {
+        return new LeaseResponseDto(lease.getId(), UserResponseDto.from(lease.getUser()),
+                BookResponseDto.from(lease.getBook()), lease.getLeaseDate(), lease.getReturnDate(), lease.getStatus());
+    }
+}
@@ -0,0 +1,16 @@
+package com.guipadovan.librarymanager.dtos;
+
+import java.time.Instant;
+
+/**
+ * Result of a run of the job that marks the overdue leases.
+ *
+ * @param startedAt       the instant the run started
+ * @param markedLeases    the number of leases marked as overdue
+ * @param batches         the number of batches, each committed in its own transaction
+ * @param durationMillis  the duration of the run in milliseconds
+ * @param leasesPerSecond the number of leases marked per second
+ */
+public record OverdueSweepDto(Instant startedAt, long markedLeases, int batches, long durationMillis,
+                              double leasesPerSecond) {
+}
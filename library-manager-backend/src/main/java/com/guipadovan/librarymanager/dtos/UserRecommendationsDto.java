@@ -0,0 +1,13 @@
+package com.guipadovan.librarymanager.dtos;
+
+import java.util.List;
+
+/**
+ * Book recommendations of a single user in a batch.
+ *
+ * @param userId the ID of the user
+ * @param found  whether the user exists, the books are empty if they don't
+ * @param books  the recommended books
+ */
+public record UserRecommendationsDto(Long userId, boolean found, List<BookResponseDto> books) {
+}
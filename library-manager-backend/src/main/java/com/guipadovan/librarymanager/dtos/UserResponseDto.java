@@ -0,0 +1,22 @@
+package com.guipadovan.librarymanager.dtos;
+
+import com.guipadovan.librarymanager.entities.User;
+
+import java.time.LocalDate;
+
+/**
+ * Read-only representation of a user returned by the API.
+ *
+ * @param id               the ID of the user
+ * @param name             the name of the user
+ * @param email            the e-mail of the user
+ * @param registrationDate the registration date of the user
+ * @param phone            the phone number of the user
+ */
+public record UserResponseDto(Long id, String name, String email, LocalDate registrationDate, String phone) {
+
+    public static UserResponseDto from(User user) {
+        return new UserResponseDto(user.getId(), user.getName(), user.getEmail(), user.getRegistrationDate(),
+                user.getPhone());
+    }
+}
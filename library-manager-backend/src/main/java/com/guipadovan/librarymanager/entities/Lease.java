@@ -22,12 +22,12 @@ public class Lease {
     @NotNull(message = "O ID não deve ser nulo")
     private Long id;
 
-    @ManyToOne(cascade = {CascadeType.PERSIST, CascadeType.MERGE}, optional = false)
+    @ManyToOne(fetch = FetchType.LAZY, cascade = {CascadeType.PERSIST, CascadeType.MERGE}, optional = false)
     @JoinColumn(name = "usuario_id", nullable = false, foreignKey = @ForeignKey(name = "fk_lease_user"))
     @NotNull(message = "O usuário não deve ser nulo")
     private User user;
 
-    @ManyToOne(cascade = {CascadeType.PERSIST, CascadeType.MERGE}, optional = false)
+    @ManyToOne(fetch = FetchType.LAZY, cascade = {CascadeType.PERSIST, CascadeType.MERGE}, optional = false)
     @JoinColumn(name = "livro_id", nullable = false, foreignKey = @ForeignKey(name = "fk_lease_book"))
     private Book book;
 
@@ -54,6 +54,6 @@ public class Lease {
     }
 
     public enum Status {
-        ACTIVE, RETURNED
+        ACTIVE, RETURNED, OVERDUE
     }
 }
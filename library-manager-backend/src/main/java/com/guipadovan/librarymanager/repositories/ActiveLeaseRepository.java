@@ -0,0 +1,25 @@
+package com.guipadovan.librarymanager.repositories;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+/**
+ * Custom repository for inserting leases with a single conditional statement.
+ */
+public interface ActiveLeaseRepository {
+
+    /**
+     * Inserts an active lease unless the book already has an open one, relying on the partial unique index of the open
+     * leases instead of checking and inserting in separate statements. The ID comes from the Hibernate generator of
+     * {@link com.guipadovan.librarymanager.entities.Lease}, so it shares the blocks of the pooled optimizer with the
+     * leases saved as entities. Must be called inside a transaction.
+     *
+     * @param userId     the ID of the user
+     * @param bookId     the ID of the book
+     * @param leaseDate  the lease date
+     * @param returnDate the expected return date
+     *
+     * @return the ID of the new lease, or empty if the book is already leased
+     */
+    Optional<Long> insertActiveLease(Long userId, Long bookId, LocalDate leaseDate, LocalDate returnDate);
+}
@@ -0,0 +1,45 @@
+package com.guipadovan.librarymanager.repositories;
+
+import com.guipadovan.librarymanager.entities.Lease;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Implementation of {@link ActiveLeaseRepository} with a native insert on the partial unique index of the open leases.
+ */
+class ActiveLeaseRepositoryImpl implements ActiveLeaseRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<Long> insertActiveLease(Long userId, Long bookId, LocalDate leaseDate, LocalDate returnDate) {
+        // Um nextval direto consumiria um bloco inteiro da sequência leases_seq a cada empréstimo, o gerador do
+        // Hibernate distribui os IDs do bloco já reservado
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        BeforeExecutionGenerator generator = (BeforeExecutionGenerator) session.getFactory().getMappingMetamodel()
+                .getEntityDescriptor(Lease.class).getGenerator();
+        Long id = (Long) generator.generate(session, null, null, EventType.INSERT);
+
+        @SuppressWarnings("unchecked")
+        List<Number> ids = entityManager.createNativeQuery("""
+                        insert into leases (id, usuario_id, livro_id, data_emprestimo, data_devolucao, status)
+                        values (:id, :userId, :bookId, :leaseDate, :returnDate, 'ACTIVE')
+                        on conflict (livro_id) where status in ('ACTIVE', 'OVERDUE') do nothing
+                        returning id""")
+                .setParameter("id", id)
+                .setParameter("userId", userId)
+                .setParameter("bookId", bookId)
+                .setParameter("leaseDate", leaseDate)
+                .setParameter("returnDate", returnDate)
+                .getResultList();
+        return ids.stream().findFirst().map(Number::longValue);
+    }
+}
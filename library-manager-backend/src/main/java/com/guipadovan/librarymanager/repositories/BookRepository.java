@@ -1,26 +1,78 @@
 package com.guipadovan.librarymanager.repositories;
 
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import com.guipadovan.librarymanager.dtos.BookSuggestionDto;
 import com.guipadovan.librarymanager.entities.Book;
+import com.guipadovan.librarymanager.repositories.projections.BookCategoryView;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.lang.NonNull;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface BookRepository extends JpaRepository<Book, Long>, BookSearchRepository, BookSnapshotRepository {
+    // Projeção das listagens, que não carrega as entidades no contexto de persistência
+    String BOOK_RESPONSE = "new com.guipadovan.librarymanager.dtos.BookResponseDto(b.id, b.title, b.author, b.isbn, "
+            + "b.publicationDate, b.category)";
 
-public interface BookRepository extends JpaRepository<Book, Long> {
     @Modifying
     @Query("delete from Book b where b.id = :id")
     int deleteByIdInt(@NonNull Long id);
 
-    @Query("select b from Book b where b.category in :categories and b.id not in :excludedBookIds "
-            + "and b.id not in (select l.book.id from Lease l where l.status = 'ACTIVE') "
-            + "order by function('RANDOM') asc, b.title asc")
-    List<Book> findBooksByCategoriesRandomizedAndOrdered(
-            @Param("categories") @NonNull List<String> categories,
-            @Param("excludedBookIds") @NonNull List<Long> excludedBookIds,
-            Pageable pageable
-    );
+    // As primeiras páginas da listagem são as mais acessadas, qualquer escrita na tabela invalida o cache da consulta
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query(value = "select " + BOOK_RESPONSE + " from Book b order by b.id", countQuery = "select count(b) from Book b")
+    Page<BookResponseDto> findAllResponses(Pageable pageable);
+
+    // Snapshot do catálogo lido por um cursor do banco, sem o cache de consultas e sem carregar entidades
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select " + BOOK_RESPONSE + " from Book b order by b.id")
+    Stream<BookResponseDto> streamAllResponses();
+
+    @Query("select " + BOOK_RESPONSE + " from Book b where b.id in :ids")
+    List<BookResponseDto> findAllResponsesById(@Param("ids") @NonNull Collection<Long> ids);
+
+    @Query("select " + BOOK_RESPONSE + " from Book b where b.id > :afterId order by b.id")
+    List<BookResponseDto> findNextOrderById(@Param("afterId") long afterId, Pageable pageable);
+
+    @Query("select " + BOOK_RESPONSE + " from Book b "
+            + "where b.title >= :afterTitle and (b.title > :afterTitle or b.id > :afterId) order by b.title, b.id")
+    List<BookResponseDto> findNextOrderByTitle(@Param("afterTitle") @NonNull String afterTitle,
+                                               @Param("afterId") long afterId, Pageable pageable);
+
+    @Query("select new com.guipadovan.librarymanager.repositories.projections.BookCategoryView(b.id, b.category) from Book b")
+    List<BookCategoryView> findAllBookCategories();
+
+    @Query("select max(b.id) from Book b")
+    Optional<Long> findMaxId();
+
+    /**
+     * Finds the ID of every {@code chunkSize}-th book in a range, which split the range into chunks of {@code chunkSize}
+     * books however sparse the IDs are. Reads only the primary key index.
+     *
+     * @return the IDs in ascending order
+     */
+    @Query(value = """
+            select c.id
+            from (select b.id, row_number() over (order by b.id) as posicao
+                  from books b
+                  where b.id > :afterId and b.id <= :toId) c
+            where c.posicao % :chunkSize = 0
+            order by c.id""", nativeQuery = true)
+    List<Long> findChunkBoundaries(@Param("afterId") long afterId, @Param("toId") long toId,
+                                   @Param("chunkSize") int chunkSize);
+
+    @Query("select new com.guipadovan.librarymanager.dtos.BookSuggestionDto(b.id, b.title, b.author) from Book b "
+            + "where b.id > :afterId and b.id <= :toId order by b.id")
+    List<BookSuggestionDto> findSuggestionsByIdRange(@Param("afterId") long afterId, @Param("toId") long toId);
 }
@@ -0,0 +1,42 @@
+package com.guipadovan.librarymanager.repositories;
+
+import com.guipadovan.librarymanager.repositories.projections.BookSearchHit;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fragment of {@link BookRepository} with the catalog search queries, backed by the full-text index of the books and
+ * the trigram index of the dictionary of their words.
+ */
+public interface BookSearchRepository {
+
+    /**
+     * Finds the dictionary words similar to the tokens that are not words of the catalog, which are most likely typos.
+     * The last token is the word being typed, so it is only corrected when it doesn't start any word of the catalog.
+     * Must be called inside a transaction, which scopes the similarity threshold.
+     *
+     * @param tokens        the unaccented, lowercase tokens of the search
+     * @param minSimilarity the minimum trigram similarity of a correction, between 0 and 1
+     * @param limit         the maximum number of corrections of each token
+     *
+     * @return the corrections of each misspelled token, most similar first
+     */
+    Map<String, List<String>> findTermCorrections(List<String> tokens, double minSimilarity, int limit);
+
+    /**
+     * Finds the books matching a full-text query, most relevant first.
+     * A query with more matches than {@code maxCandidates} isn't ranked, which bounds the cost of queries that match a
+     * large part of the catalog: its matches are listed in ascending order of ID, all with relevance 0. Either way the
+     * order is stable across slices.
+     *
+     * @param tsQuery       the query in the {@code to_tsquery} syntax
+     * @param afterScore    the relevance of the last book of the previous slice, or infinity for the first slice
+     * @param afterId       the ID of the last book of the previous slice
+     * @param limit         the maximum number of books
+     * @param maxCandidates the maximum number of matches ranked
+     *
+     * @return the books ordered by relevance, descending, and ID, or only by ID when there are too many matches to rank
+     */
+    List<BookSearchHit> searchBooks(String tsQuery, float afterScore, long afterId, int limit, int maxCandidates);
+}
@@ -0,0 +1,118 @@
+package com.guipadovan.librarymanager.repositories;
+
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import com.guipadovan.librarymanager.repositories.projections.BookSearchHit;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implementation of {@link BookSearchRepository} with native queries, since the full-text and trigram operators of
+ * PostgreSQL have no JPQL equivalent.
+ */
+class BookSearchRepositoryImpl implements BookSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Map<String, List<String>> findTermCorrections(List<String> tokens, double minSimilarity, int limit) {
+        // O limite de similaridade do operador % também define quantos trigramas o índice exige de cada palavra, um
+        // limite maior descarta as palavras distantes ainda no índice
+        entityManager.createNativeQuery("select set_config('pg_trgm.similarity_threshold', :threshold, true)")
+                .setParameter("threshold", Double.toString(minSimilarity))
+                .getSingleResult();
+
+        // A verificação das palavras conhecidas usa a chave primária e só os tokens desconhecidos passam pelo índice
+        // de trigramas
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery("""
+                        select s.token, t.termo
+                        from unnest(cast(:tokens as text[])) with ordinality as s(token, posicao)
+                        cross join lateral (
+                            select c.termo
+                            from book_search_terms c
+                            where c.termo % s.token
+                              and not exists (select 1 from book_search_terms k
+                                              where k.termo = s.token
+                                                 or (s.posicao = :tokenCount and k.termo >= s.token
+                                                     and k.termo < s.token || chr(1114111)))
+                            order by similarity(c.termo, s.token) desc, c.termo
+                            limit :limit) t
+                        order by s.posicao""")
+                .setParameter("tokens", tokens.toArray(String[]::new))
+                .setParameter("tokenCount", tokens.size())
+                .setParameter("limit", limit)
+                .getResultList();
+
+        Map<String, List<String>> corrections = new LinkedHashMap<>();
+        for (Object[] row : rows)
+            corrections.computeIfAbsent((String) row[0], token -> new ArrayList<>()).add((String) row[1]);
+        return corrections;
+    }
+
+    @Override
+    public List<BookSearchHit> searchBooks(String tsQuery, float afterScore, long afterId, int limit,
+                                           int maxCandidates) {
+        // Conta as correspondências só até passar do limite, a contagem para assim que encontra uma a mais
+        long candidates = ((Number) entityManager.createNativeQuery("""
+                        select count(*)
+                        from (select 1
+                              from books b
+                              where b.busca @@ to_tsquery('portuguese', :query)
+                              limit :candidates + 1) c""")
+                .setParameter("query", tsQuery)
+                .setParameter("candidates", maxCandidates)
+                .getSingleResult()).longValue();
+        if (candidates > maxCandidates)
+            return listBooks(tsQuery, afterScore, afterId, limit);
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery("""
+                        select r.id, r.titulo, r.autor, r.isbn, r.data_publicacao, r.categoria, r.relevancia
+                        from (select b.id, b.titulo, b.autor, b.isbn, b.data_publicacao, b.categoria,
+                                     ts_rank(b.busca, to_tsquery('portuguese', :query)) as relevancia
+                              from books b
+                              where b.busca @@ to_tsquery('portuguese', :query)) r
+                        where r.relevancia < :afterScore or (r.relevancia = :afterScore and r.id > :afterId)
+                        order by r.relevancia desc, r.id""")
+                .setParameter("query", tsQuery)
+                .setParameter("afterScore", afterScore)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
+                .getResultList();
+
+        return rows.stream().map(BookSearchRepositoryImpl::toBookSearchHit).toList();
+    }
+
+    /**
+     * Lists the books matching a full-text query in ascending order of ID, all with relevance 0, so the slices follow
+     * the same cursor as the ranked search.
+     */
+    private List<BookSearchHit> listBooks(String tsQuery, float afterScore, long afterId, int limit) {
+        // Livros sem relevância vêm depois de qualquer livro ranqueado, então um cursor com relevância começa do início
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery("""
+                        select b.id, b.titulo, b.autor, b.isbn, b.data_publicacao, b.categoria, 0 as relevancia
+                        from books b
+                        where b.busca @@ to_tsquery('portuguese', :query) and b.id > :afterId
+                        order by b.id""")
+                .setParameter("query", tsQuery)
+                .setParameter("afterId", afterScore > 0 ? 0L : afterId)
+                .setMaxResults(limit)
+                .getResultList();
+
+        return rows.stream().map(BookSearchRepositoryImpl::toBookSearchHit).toList();
+    }
+
+    private static BookSearchHit toBookSearchHit(Object[] row) {
+        BookResponseDto book = new BookResponseDto(((Number) row[0]).longValue(), (String) row[1], (String) row[2],
+                (String) row[3], ((Date) row[4]).toLocalDate(), (String) row[5]);
+        return new BookSearchHit(book, ((Number) row[6]).floatValue());
+    }
+}
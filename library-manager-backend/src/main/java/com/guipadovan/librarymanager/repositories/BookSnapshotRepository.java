@@ -0,0 +1,23 @@
+package com.guipadovan.librarymanager.repositories;
+
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+
+import java.util.Iterator;
+
+/**
+ * Fragment of {@link BookRepository} that restores books in bulk through the PostgreSQL {@code COPY} protocol,
+ * bypassing the persistence context.
+ */
+public interface BookSnapshotRepository {
+
+    /**
+     * Copies the books into the catalog, keeping their IDs and replacing the books already registered with the same
+     * IDs. The {@code books_seq} sequence is moved past the highest ID, so the books created afterwards don't collide
+     * with the restored ones. Must be called inside a transaction, and the second-level cache isn't updated.
+     *
+     * @param books the books to restore, read as they are copied
+     *
+     * @return the number of books inserted or replaced
+     */
+    long restoreBooks(Iterator<BookResponseDto> books);
+}
@@ -0,0 +1,105 @@
+package com.guipadovan.librarymanager.repositories;
+
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Iterator;
+
+/**
+ * Implementation of {@link BookSnapshotRepository} that copies the books into a temporary table and merges them into
+ * the catalog with a single statement, which also fires the triggers of the search terms once.
+ */
+class BookSnapshotRepositoryImpl implements BookSnapshotRepository {
+
+    // Bytes acumulados antes de cada envio ao COPY
+    private static final int COPY_BUFFER_SIZE = 256 * 1024;
+
+    private static final String CREATE_STAGING_TABLE = """
+            create temporary table books_snapshot (
+                id bigint not null, titulo varchar(255) not null, autor varchar(255) not null,
+                isbn varchar(255) not null, data_publicacao date not null, categoria varchar(255) not null
+            ) on commit drop""";
+
+    private static final String COPY_STAGING_TABLE =
+            "copy books_snapshot (id, titulo, autor, isbn, data_publicacao, categoria) from stdin";
+
+    private static final String MERGE_STAGING_TABLE = """
+            insert into books (id, titulo, autor, isbn, data_publicacao, categoria)
+            select id, titulo, autor, isbn, data_publicacao, categoria from books_snapshot
+            on conflict (id) do update
+            set titulo = excluded.titulo, autor = excluded.autor, isbn = excluded.isbn,
+                data_publicacao = excluded.data_publicacao, categoria = excluded.categoria""";
+
+    // O próximo bloco do otimizador pooled do Hibernate começa logo após o maior ID
+    private static final String ADVANCE_SEQUENCE = """
+            select setval('books_seq', greatest((select coalesce(max(id), 0) from books),
+                                                (select last_value from books_seq)))""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    BookSnapshotRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public long restoreBooks(Iterator<BookResponseDto> books) {
+        jdbcTemplate.execute(CREATE_STAGING_TABLE);
+        jdbcTemplate.execute((ConnectionCallback<Long>) connection ->
+                copy(connection.unwrap(PGConnection.class), books));
+        int restored = jdbcTemplate.update(MERGE_STAGING_TABLE);
+        jdbcTemplate.queryForObject(ADVANCE_SEQUENCE, Long.class);
+        return restored;
+    }
+
+    private static long copy(PGConnection connection, Iterator<BookResponseDto> books) throws SQLException {
+        CopyIn copyIn = connection.getCopyAPI().copyIn(COPY_STAGING_TABLE);
+        try {
+            StringBuilder rows = new StringBuilder(COPY_BUFFER_SIZE + 4096);
+            while (books.hasNext()) {
+                BookResponseDto book = books.next();
+                rows.append(book.id()).append('\t');
+                appendText(rows, book.title()).append('\t');
+                appendText(rows, book.author()).append('\t');
+                appendText(rows, book.isbn()).append('\t');
+                rows.append(book.publicationDate()).append('\t');
+                appendText(rows, book.category()).append('\n');
+
+                if (rows.length() >= COPY_BUFFER_SIZE) {
+                    writeRows(copyIn, rows);
+                }
+            }
+            writeRows(copyIn, rows);
+            return copyIn.endCopy();
+        } finally {
+            // Cancela o COPY se a leitura dos livros falhou no meio, liberando a conexão para o rollback
+            if (copyIn.isActive())
+                copyIn.cancelCopy();
+        }
+    }
+
+    // Escapa os caracteres especiais do formato texto do COPY
+    private static StringBuilder appendText(StringBuilder rows, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> rows.append("\\\\");
+                case '\t' -> rows.append("\\t");
+                case '\n' -> rows.append("\\n");
+                case '\r' -> rows.append("\\r");
+                default -> rows.append(c);
+            }
+        }
+        return rows;
+    }
+
+    private static void writeRows(CopyIn copyIn, StringBuilder rows) throws SQLException {
+        byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        rows.setLength(0);
+    }
+}
@@ -0,0 +1,27 @@
+package com.guipadovan.librarymanager.repositories;
+
+import com.guipadovan.librarymanager.dtos.LeaseFilterDto;
+import com.guipadovan.librarymanager.dtos.LeaseResponseDto;
+
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+/**
+ * Fragment of {@link LeaseRepository} with the lease history query, whose filters are optional.
+ */
+public interface LeaseHistoryRepository {
+
+    /**
+     * Streams the leases matching the filter, newest first, with the leased book and the user who leased it.
+     * The stream reads the rows from the database as it is consumed, so it must be consumed and closed inside a
+     * transaction.
+     *
+     * @param filter         the filter, whose null fields are not applied
+     * @param afterLeaseDate the lease date of the last lease of the previous slice, or null for the first slice
+     * @param afterId        the ID of the last lease of the previous slice
+     * @param limit          the maximum number of leases
+     *
+     * @return a stream of leases ordered by lease date and ID, descending
+     */
+    Stream<LeaseResponseDto> streamLeases(LeaseFilterDto filter, LocalDate afterLeaseDate, long afterId, int limit);
+}
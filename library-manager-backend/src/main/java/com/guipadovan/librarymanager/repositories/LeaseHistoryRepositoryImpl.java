@@ -0,0 +1,86 @@
+package com.guipadovan.librarymanager.repositories;
+
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import com.guipadovan.librarymanager.dtos.LeaseFilterDto;
+import com.guipadovan.librarymanager.dtos.LeaseResponseDto;
+import com.guipadovan.librarymanager.dtos.UserResponseDto;
+import com.guipadovan.librarymanager.entities.Lease;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of {@link LeaseHistoryRepository} with a JPQL query built from the filters present.
+ */
+class LeaseHistoryRepositoryImpl implements LeaseHistoryRepository {
+
+    // Linhas lidas do banco por vez, o driver do PostgreSQL só usa um cursor dentro de uma transação
+    private static final int FETCH_SIZE = 200;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Stream<LeaseResponseDto> streamLeases(LeaseFilterDto filter, LocalDate afterLeaseDate, long afterId,
+                                                 int limit) {
+        List<String> predicates = new ArrayList<>();
+        Map<String, Object> parameters = new HashMap<>();
+
+        // Inclui apenas os filtros informados, assim o banco escolhe o índice de cada combinação
+        if (filter.userId() != null) {
+            predicates.add("l.user.id = :userId");
+            parameters.put("userId", filter.userId());
+        }
+        if (filter.bookId() != null) {
+            predicates.add("l.book.id = :bookId");
+            parameters.put("bookId", filter.bookId());
+        }
+        if (filter.status() != null) {
+            predicates.add("l.status = :status");
+            parameters.put("status", filter.status());
+        }
+        if (filter.from() != null) {
+            predicates.add("l.leaseDate >= :from");
+            parameters.put("from", filter.from());
+        }
+        if (filter.to() != null) {
+            predicates.add("l.leaseDate <= :to");
+            parameters.put("to", filter.to());
+        }
+        if (afterLeaseDate != null) {
+            predicates.add("l.leaseDate <= :afterLeaseDate and (l.leaseDate < :afterLeaseDate or l.id < :afterId)");
+            parameters.put("afterLeaseDate", afterLeaseDate);
+            parameters.put("afterId", afterId);
+        }
+
+        // Projeta as colunas do usuário e do livro na mesma consulta, sem carregar entidades nem consultas extras
+        String jpql = "select l.id, u.id, u.name, u.email, u.registrationDate, u.phone, "
+                + "b.id, b.title, b.author, b.isbn, b.publicationDate, b.category, l.leaseDate, l.returnDate, l.status "
+                + "from Lease l join l.user u join l.book b "
+                + (predicates.isEmpty() ? "" : "where " + String.join(" and ", predicates) + " ")
+                + "order by l.leaseDate desc, l.id desc";
+
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql, Object[].class)
+                .setMaxResults(limit)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, Math.min(limit, FETCH_SIZE));
+        parameters.forEach(query::setParameter);
+        return query.getResultStream().map(LeaseHistoryRepositoryImpl::toLeaseResponse);
+    }
+
+    private static LeaseResponseDto toLeaseResponse(Object[] row) {
+        UserResponseDto user = new UserResponseDto((Long) row[1], (String) row[2], (String) row[3],
+                (LocalDate) row[4], (String) row[5]);
+        BookResponseDto book = new BookResponseDto((Long) row[6], (String) row[7], (String) row[8], (String) row[9],
+                (LocalDate) row[10], (String) row[11]);
+        return new LeaseResponseDto((Long) row[0], user, book, (LocalDate) row[12], (LocalDate) row[13],
+                (Lease.Status) row[14]);
+    }
+}
@@ -1,21 +1,102 @@
 package com.guipadovan.librarymanager.repositories;
 
-import com.guipadovan.librarymanager.entities.Book;
 import com.guipadovan.librarymanager.entities.Lease;
+import com.guipadovan.librarymanager.repositories.projections.BookCategoryView;
+import com.guipadovan.librarymanager.repositories.projections.LeasePairView;
+import com.guipadovan.librarymanager.repositories.projections.UserBookCategoryView;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.lang.NonNull;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
-public interface LeaseRepository extends JpaRepository<Lease, Long> {
-    @Query("select l from Lease l where l.book.id = :id and l.status = 'ACTIVE'")
-    Lease findByBook_IdAndStatusActive(@Param("id") Long id);
+public interface LeaseRepository extends JpaRepository<Lease, Long>, LeaseHistoryRepository, ActiveLeaseRepository {
+    // Empréstimos em aberto são os ativos e os vencidos, o livro só fica disponível após a devolução
+    @Query("select l from Lease l join fetch l.user join fetch l.book "
+            + "where l.book.id = :id and l.status in ('ACTIVE', 'OVERDUE')")
+    Lease findOpenByBookId(@Param("id") Long id);
 
-    @Query("select (count(l) > 0) from Lease l where l.book.id = :id and l.status = 'ACTIVE'")
-    boolean existsByBook_IdAndStatusActive(@Param("id") @NonNull Long id);
+    @Query("select l.book.id from Lease l where l.status in ('ACTIVE', 'OVERDUE')")
+    List<Long> findAllOpenLeaseBookIds();
 
-    @Query("select l.book from Lease l where l.user.id = :userId order by l.leaseDate desc")
-    List<Book> findAllBooksLeasedByUserOrderByLeaseDateDesc(@Param("userId") @NonNull Long userId);
+    @Query("select max(l.id) from Lease l")
+    Optional<Long> findMaxId();
+
+    /**
+     * Finds the ID of every {@code chunkSize}-th lease in a range, which split the range into chunks of {@code chunkSize}
+     * leases however sparse the IDs are. Reads only the primary key index.
+     *
+     * @return the IDs in ascending order
+     */
+    @Query(value = """
+            select c.id
+            from (select l.id, row_number() over (order by l.id) as posicao
+                  from leases l
+                  where l.id > :afterId and l.id <= :toId) c
+            where c.posicao % :chunkSize = 0
+            order by c.id""", nativeQuery = true)
+    List<Long> findChunkBoundaries(@Param("afterId") long afterId, @Param("toId") long toId,
+                                   @Param("chunkSize") int chunkSize);
+
+    // Os IDs seguem a ordem de criação dos empréstimos, que é a ordem do histórico de cada usuário
+    @Query("select new com.guipadovan.librarymanager.repositories.projections.LeasePairView(l.user.id, l.book.id) "
+            + "from Lease l where l.id > :afterId and l.id <= :toId order by l.id")
+    List<LeasePairView> findPairsByIdRange(@Param("afterId") long afterId, @Param("toId") long toId);
+
+    /**
+     * Marks as overdue a batch of active leases whose return date has passed, oldest return dates first. The leases
+     * locked by a concurrent return are skipped and marked by a later batch.
+     *
+     * @param batchSize the maximum number of leases to mark
+     *
+     * @return the number of leases marked as overdue
+     */
+    // Sem declarar a tabela alterada, o Hibernate esvaziaria todo o cache de segundo nível após cada lote
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "leases"))
+    @Query(value = """
+            update leases set status = 'OVERDUE'
+            where id in (select id from leases
+                         where status = 'ACTIVE' and data_devolucao < current_date
+                         order by data_devolucao
+                         limit :batchSize
+                         for update skip locked)""", nativeQuery = true)
+    int markOverdueBatch(@Param("batchSize") int batchSize);
+
+    /**
+     * Finds the IDs and categories of the books leased by a user in a single query that starts from the user, so that
+     * an existing user without leases still yields one row with a null ID. A book leased more than once appears once
+     * per lease, and the most recent leases come first.
+     *
+     * @return the leased books, or an empty list if the user does not exist
+     */
+    @Query("""
+            select new com.guipadovan.librarymanager.repositories.projections.BookCategoryView(b.id, b.category)
+            from User u left join Lease l on l.user = u left join l.book b
+            where u.id = :userId
+            order by l.leaseDate desc, l.id desc""")
+    List<BookCategoryView> findLeasedBookCategoriesByUser(@Param("userId") @NonNull Long userId);
+
+    /**
+     * Finds the ID and category of the books leased by each of the given users, with the most recent leases of each
+     * user first.
+     * Users without leases have a single row without book, and users that do not exist have no rows.
+     *
+     * @param userIds the IDs of the users
+     *
+     * @return the leased books, grouped by user
+     */
+    @Query("""
+            select new com.guipadovan.librarymanager.repositories.projections.UserBookCategoryView(u.id, b.id, b.category)
+            from User u left join Lease l on l.user = u left join l.book b
+            where u.id in :userIds
+            order by u.id, l.leaseDate desc, l.id desc""")
+    List<UserBookCategoryView> findLeasedBookCategoriesByUsers(@Param("userIds") @NonNull Collection<Long> userIds);
 }
@@ -0,0 +1,22 @@
+package com.guipadovan.librarymanager.repositories;
+
+import com.guipadovan.librarymanager.dtos.UserDto;
+
+import java.util.List;
+
+/**
+ * Custom repository for writing users in bulk with plain JDBC, bypassing the persistence context.
+ */
+public interface UserImportRepository {
+
+    /**
+     * Inserts the users in a single JDBC batch, updating instead the users already registered with the same e-mail,
+     * regardless of case. The IDs of the new users come from the {@code users_seq} sequence, in the same blocks the
+     * Hibernate pooled optimizer uses, so they never collide with the IDs given by Hibernate.
+     * <p>
+     * The e-mails must be unique within the list, and the second-level cache isn't updated.
+     *
+     * @param users the users to insert or update
+     */
+    void upsertAllByEmail(List<UserDto> users);
+}
@@ -0,0 +1,68 @@
+package com.guipadovan.librarymanager.repositories;
+
+import com.guipadovan.librarymanager.dtos.UserDto;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implementation of {@link UserImportRepository} with a JDBC batch of upserts on the e-mail unique index.
+ */
+class UserImportRepositoryImpl implements UserImportRepository {
+
+    // Mesmo incremento da sequência users_seq e do allocationSize padrão do Hibernate
+    private static final int ID_ALLOCATION_SIZE = 50;
+
+    private static final String UPSERT = """
+            insert into users (id, nome, email, data_cadastro, telefone) values (?, ?, ?, ?, ?)
+            on conflict ((lower(email))) do update
+            set nome = excluded.nome, email = excluded.email, data_cadastro = excluded.data_cadastro,
+                telefone = excluded.telefone""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    UserImportRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void upsertAllByEmail(List<UserDto> users) {
+        if (users.isEmpty())
+            return;
+
+        long[] ids = allocateIds(users.size());
+        List<Object[]> rows = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            UserDto user = users.get(i);
+            rows.add(new Object[]{ids[i], user.getName(), user.getEmail(), Date.valueOf(user.getRegistrationDate()),
+                    user.getPhone()});
+        }
+        // Os IDs reservados para usuários que já existiam são descartados, como nos blocos não usados pelo Hibernate
+        jdbcTemplate.batchUpdate(UPSERT, rows);
+    }
+
+    private long[] allocateIds(int count) {
+        // Cada valor da sequência reserva o bloco que termina nele, e todos os blocos são pedidos em uma única consulta
+        int blocks = (count + ID_ALLOCATION_SIZE - 1) / ID_ALLOCATION_SIZE;
+        List<Long> highs = jdbcTemplate.queryForList("select nextval('users_seq') from generate_series(1, ?)",
+                Long.class, blocks);
+
+        long[] ids = new long[count];
+        int allocated = 0;
+        for (long high : highs) {
+            // O primeiro valor da sequência não tem um bloco completo abaixo dele
+            for (long id = Math.max(1, high - ID_ALLOCATION_SIZE + 1); id <= high && allocated < count; id++)
+                ids[allocated++] = id;
+        }
+
+        // Só acontece se a sequência começou em 1 e esse valor caiu nesta consulta
+        while (allocated < count) {
+            long high = jdbcTemplate.queryForObject("select nextval('users_seq')", Long.class);
+            for (long id = high - ID_ALLOCATION_SIZE + 1; id <= high && allocated < count; id++)
+                ids[allocated++] = id;
+        }
+        return ids;
+    }
+}
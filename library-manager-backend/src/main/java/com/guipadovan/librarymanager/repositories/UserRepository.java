@@ -1,14 +1,45 @@
 package com.guipadovan.librarymanager.repositories;
 
+import com.guipadovan.librarymanager.dtos.UserResponseDto;
 import com.guipadovan.librarymanager.entities.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.lang.NonNull;
 
-public interface UserRepository extends JpaRepository<User, Long> {
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface UserRepository extends JpaRepository<User, Long>, UserImportRepository {
+    // Projeção das listagens, que não carrega as entidades no contexto de persistência
+    String USER_RESPONSE = "new com.guipadovan.librarymanager.dtos.UserResponseDto(u.id, u.name, u.email, "
+            + "u.registrationDate, u.phone)";
+
     @Modifying
     @Query("delete from User u where u.id = :id")
     int deleteByIdInt(@Param("id") @NonNull Long id);
+
+    // Páginas da listagem em cache até a próxima escrita na tabela de usuários
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query(value = "select " + USER_RESPONSE + " from User u order by u.id", countQuery = "select count(u) from User u")
+    Page<UserResponseDto> findAllResponses(Pageable pageable);
+
+    @Query("select " + USER_RESPONSE + " from User u where u.id > :afterId order by u.id")
+    List<UserResponseDto> findNextOrderById(@Param("afterId") long afterId, Pageable pageable);
+
+    @Query("select " + USER_RESPONSE + " from User u "
+            + "where u.name >= :afterName and (u.name > :afterName or u.id > :afterId) order by u.name, u.id")
+    List<UserResponseDto> findNextOrderByName(@Param("afterName") @NonNull String afterName,
+                                              @Param("afterId") long afterId, Pageable pageable);
+
+    // Exportação lida por um cursor do banco, sem o cache de consultas e sem carregar entidades
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select " + USER_RESPONSE + " from User u order by u.id")
+    Stream<UserResponseDto> streamAllResponses();
 }
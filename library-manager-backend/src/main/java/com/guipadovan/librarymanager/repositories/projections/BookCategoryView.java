@@ -0,0 +1,9 @@
+package com.guipadovan.librarymanager.repositories.projections;
+
+/**
+ * Projection of a book containing only its ID and category.
+ * <p>
+ * Filled by JPQL constructor expressions, which avoid the per-row proxies of the interface-based projections.
+ */
+public record BookCategoryView(Long id, String category) {
+}
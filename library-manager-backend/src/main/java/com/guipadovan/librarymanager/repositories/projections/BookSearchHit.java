@@ -0,0 +1,12 @@
+package com.guipadovan.librarymanager.repositories.projections;
+
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+
+/**
+ * A book found by the catalog search with its relevance.
+ *
+ * @param book  the book found
+ * @param score the relevance of the book for the search, higher is more relevant
+ */
+public record BookSearchHit(BookResponseDto book, float score) {
+}
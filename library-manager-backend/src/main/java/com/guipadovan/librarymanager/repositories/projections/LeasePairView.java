@@ -0,0 +1,9 @@
+package com.guipadovan.librarymanager.repositories.projections;
+
+/**
+ * Projection of a lease containing only the IDs of the user and of the leased book.
+ * <p>
+ * Filled by JPQL constructor expressions, without loading the lease, the user or the book.
+ */
+public record LeasePairView(Long userId, Long bookId) {
+}
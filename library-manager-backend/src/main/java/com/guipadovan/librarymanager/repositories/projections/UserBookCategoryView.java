@@ -0,0 +1,9 @@
+package com.guipadovan.librarymanager.repositories.projections;
+
+/**
+ * Projection of a book leased by a user containing only the ID of the user and the ID and category of the book.
+ * <p>
+ * The book fields are null for a user who hasn't leased any book.
+ */
+public record UserBookCategoryView(Long userId, Long id, String category) {
+}
@@ -0,0 +1,37 @@
+package com.guipadovan.librarymanager.services;
+
+/**
+ * Service interface for checking which books are currently leased.
+ * <p>
+ * Mutations are applied only after the surrounding transaction commits, so rolled back leases never change the
+ * availability of a book. The callbacks of different transactions may run in any order, so the mutations carry the ID
+ * of the lease that orders them.
+ */
+public interface BookAvailabilityService {
+
+    /**
+     * Checks whether a book has an open lease, active or overdue.
+     *
+     * @param bookId the ID of the book
+     *
+     * @return true if the book is leased, false otherwise
+     */
+    boolean isLeased(Long bookId);
+
+    /**
+     * Marks a book as leased by a lease. The updates of a book are ordered by the ID of the lease, and the return of a
+     * lease comes after the lease itself, so a lease applied after a later return of the book is ignored.
+     *
+     * @param bookId  the ID of the book
+     * @param leaseId the ID of the lease
+     */
+    void markLeased(Long bookId, Long leaseId);
+
+    /**
+     * Marks a book as available after the return of a lease.
+     *
+     * @param bookId  the ID of the book
+     * @param leaseId the ID of the returned lease
+     */
+    void markAvailable(Long bookId, Long leaseId);
+}
@@ -0,0 +1,48 @@
+package com.guipadovan.librarymanager.services;
+
+import com.guipadovan.librarymanager.dtos.BookNeighborsBuildDto;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Service interface for the item-to-item recommendations, based on the books leased by the users who leased the same
+ * books ("users who leased X also leased Y").
+ */
+public interface BookNeighborService {
+
+    /**
+     * Computes the similar books of every book again, from every lease.
+     *
+     * @return the result of the run
+     */
+    BookNeighborsBuildDto rebuildNeighbors();
+
+    /**
+     * Reads the leases created since the last run and computes again only the similar books of the books leased by
+     * their users. Computes every book if the similar books were never computed.
+     *
+     * @return the result of the run
+     */
+    BookNeighborsBuildDto refreshNeighbors();
+
+    /**
+     * Recommends the available books most similar to the given books.
+     *
+     * @param bookIds         the IDs of the books the recommendations are based on, usually the user's recent books
+     * @param excludedBookIds the IDs of the books that must not be recommended
+     * @param limit           the maximum number of recommendations
+     *
+     * @return the IDs of the recommended books, from the most to the least similar, possibly fewer than the limit
+     */
+    List<Long> recommendBooks(Collection<Long> bookIds, Set<Long> excludedBookIds, int limit);
+
+    /**
+     * Retrieves the result of the last run since the application started.
+     *
+     * @return the result of the last run, or empty if the job hasn't run yet
+     */
+    Optional<BookNeighborsBuildDto> getLastBuild();
+}
@@ -1,9 +1,16 @@
 package com.guipadovan.librarymanager.services;
 
 import com.guipadovan.librarymanager.dtos.BookDto;
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import com.guipadovan.librarymanager.dtos.BookSnapshotDto;
+import com.guipadovan.librarymanager.dtos.CursorPageDto;
+import com.guipadovan.librarymanager.dtos.ImportResultDto;
 import com.guipadovan.librarymanager.entities.Book;
 import org.springframework.data.domain.Page;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,6 +28,43 @@ public interface BookService {
      */
     Book createBook(BookDto bookDetails);
 
+    /**
+     * Imports books in bulk from a JSON array or from NDJSON (one book per line).
+     * Records are validated one by one and invalid records are reported without aborting the import.
+     *
+     * @param input the stream containing the books
+     *
+     * @return the import result with the errors of each rejected record
+     *
+     * @throws IOException if the stream cannot be read
+     */
+    ImportResultDto importBooks(InputStream input) throws IOException;
+
+    /**
+     * Writes every book of the catalog, ordered by ID, as a compressed binary snapshot that can be loaded with
+     * {@link #restoreSnapshot(InputStream)}, without loading the catalog in memory.
+     *
+     * @param output the stream where the snapshot is written
+     *
+     * @return the number of books written and the throughput
+     *
+     * @throws IOException if the output cannot be written
+     */
+    BookSnapshotDto exportSnapshot(OutputStream output) throws IOException;
+
+    /**
+     * Restores a snapshot written by {@link #exportSnapshot(OutputStream)}, keeping the IDs of the books and replacing
+     * the books already registered with the same IDs. The snapshot is restored in a single transaction, so an invalid
+     * snapshot restores nothing.
+     *
+     * @param input the stream containing the snapshot
+     *
+     * @return the number of books restored and the throughput
+     *
+     * @throws IOException if the stream cannot be read
+     */
+    BookSnapshotDto restoreSnapshot(InputStream input) throws IOException;
+
     /**
      * Updates an existing book.
      *
@@ -46,21 +90,44 @@ public interface BookService {
      * @param page the page number to retrieve (starting from 0)
      * @param size the number of books per page
      *
-     * @return a page of Book objects
+     * @return a page of books
+     */
+    Page<BookResponseDto> getAllBooks(int page, int size);
+
+    /**
+     * Retrieves a slice of books using keyset pagination, which doesn't count the books and doesn't slow down on
+     * deep positions like offset pagination.
+     *
+     * @param after the cursor returned with the previous slice, or null for the first slice
+     * @param size  the number of books per slice
+     * @param sort  the sort order, either "id" or "title"
+     *
+     * @return a slice of books with the cursor of the next slice
+     */
+    CursorPageDto<BookResponseDto> scrollBooks(String after, int size, String sort);
+
+    /**
+     * Searches the local catalog by title, author, ISBN and category, most relevant books first.
+     * The last word of the search matches as a prefix, since it may still be being typed, and misspelled words also
+     * match the most similar words of the catalog.
+     *
+     * @param query the search text
+     * @param after the cursor returned with the previous slice, or null for the first slice
+     * @param size  the number of books per slice
+     *
+     * @return a slice of books with the cursor of the next slice
      */
-    Page<Book> getAllBooks(int page, int size);
+    CursorPageDto<BookResponseDto> searchCatalog(String query, String after, int size);
 
     /**
-     * Retrieves a limited list of recommended books based on the provided categories and excluded book IDs.
-     * It only returns books that are available in the library.
+     * Retrieves the books with the given IDs, keeping the order of the IDs.
+     * IDs of books that no longer exist are ignored.
      *
-     * @param categories      the list of categories to filter the books by
-     * @param excludedBookIds the list of book IDs to exclude from the recommendations
-     * @param limit           the maximum number of recommendations to return
+     * @param ids the IDs of the books to retrieve
      *
-     * @return a list of Book objects
+     * @return a list of books
      */
-    List<Book> getBookRecommendations(List<String> categories, List<Long> excludedBookIds, int limit);
+    List<BookResponseDto> getBooks(List<Long> ids);
 
     /**
      * Deletes a book by its ID.
@@ -0,0 +1,46 @@
+package com.guipadovan.librarymanager.services;
+
+import com.guipadovan.librarymanager.dtos.BookSuggestionDto;
+
+import java.util.List;
+
+/**
+ * Service interface for the typeahead suggestions over the titles and authors of the books.
+ * <p>
+ * Mutations are applied only after the surrounding transaction commits, so rolled back changes never reach the
+ * suggestions.
+ */
+public interface BookSuggestionService {
+
+    /**
+     * Loads the index again with every book in the catalog, replacing its current content.
+     */
+    void loadIndex();
+
+    /**
+     * Indexes a new book or replaces the title and author of an indexed book.
+     *
+     * @param bookId the ID of the book
+     * @param title  the title of the book
+     * @param author the author of the book
+     */
+    void indexBook(Long bookId, String title, String author);
+
+    /**
+     * Removes a book from the suggestions.
+     *
+     * @param bookId the ID of the book
+     */
+    void removeBook(Long bookId);
+
+    /**
+     * Suggests the books with a word of the title or the author starting with each word of the query, ignoring case
+     * and accents.
+     *
+     * @param query the text typed by the client
+     * @param limit the maximum number of suggestions
+     *
+     * @return the suggested books, empty if the query has no words
+     */
+    List<BookSuggestionDto> suggest(String query, int limit);
+}
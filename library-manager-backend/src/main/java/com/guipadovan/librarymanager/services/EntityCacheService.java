@@ -0,0 +1,26 @@
+package com.guipadovan.librarymanager.services;
+
+import com.guipadovan.librarymanager.dtos.EntityCacheStatsDto;
+
+import java.util.List;
+
+/**
+ * Service interface for inspecting the Hibernate second-level cache.
+ */
+public interface EntityCacheService {
+
+    /**
+     * Retrieves the statistics of the entity and query result regions since the application started.
+     *
+     * @return the statistics of each region
+     */
+    List<EntityCacheStatsDto> getStats();
+
+    /**
+     * Removes the cached entities of a class and every cached query result after the current transaction commits.
+     * Writes made outside Hibernate, such as JDBC batches, don't update the cache by themselves.
+     *
+     * @param entityClass the class of the entities to remove
+     */
+    void evict(Class<?> entityClass);
+}
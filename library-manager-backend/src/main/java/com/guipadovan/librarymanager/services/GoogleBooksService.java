@@ -1,9 +1,11 @@
 package com.guipadovan.librarymanager.services;
 
-import com.guipadovan.librarymanager.entities.Book;
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import com.guipadovan.librarymanager.dtos.CacheStatsDto;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service interface for Google books api.
@@ -12,6 +14,7 @@ public interface GoogleBooksService {
 
     /**
      * Searches for books by title using the Google Books API.
+     * Results are cached by the normalized title, and concurrent searches for the same title share one API call.
      *
      * @param title the title of the book to search for
      *
@@ -19,6 +22,24 @@ public interface GoogleBooksService {
      *
      * @throws IOException if there is an error during the API call or response parsing
      */
-    List<Book> searchBooksByTitle(String title) throws IOException;
+    List<BookResponseDto> searchBooksByTitle(String title) throws IOException;
+
+    /**
+     * Searches for books by title using the Google Books API without blocking the calling thread.
+     * Results are cached by the normalized title, and concurrent searches for the same title share one API call.
+     *
+     * @param title the title of the book to search for
+     *
+     * @return a future completed with the books matching the title, or completed exceptionally if there is an error
+     * during the API call or response parsing
+     */
+    CompletableFuture<List<BookResponseDto>> searchBooksByTitleAsync(String title);
+
+    /**
+     * Retrieves the statistics of the search cache.
+     *
+     * @return the cache statistics
+     */
+    CacheStatsDto getSearchCacheStats();
 
 }
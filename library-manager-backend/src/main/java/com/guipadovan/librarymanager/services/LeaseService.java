@@ -1,10 +1,15 @@
 package com.guipadovan.librarymanager.services;
 
 import com.guipadovan.librarymanager.dtos.LeaseDto;
-import com.guipadovan.librarymanager.entities.Book;
+import com.guipadovan.librarymanager.dtos.LeaseFilterDto;
 import com.guipadovan.librarymanager.entities.Lease;
+import com.guipadovan.librarymanager.repositories.projections.BookCategoryView;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service interface for managing book leases.
@@ -30,11 +35,34 @@ public interface LeaseService {
     Lease returnBook(Long id);
 
     /**
-     * Retrieves a list of books that a user has leased.
+     * Writes a slice of the leases matching the filter as JSON, newest first, using keyset pagination.
+     * The leases are written as they are read from the database, without loading the whole slice in memory.
      *
-     * @param userId the ID of the user to get leased book IDs for
+     * @param filter the filter of the leases
+     * @param after  the cursor returned with the previous slice, or null for the first slice
+     * @param size   the number of leases per slice, or null for the configured default
+     * @param output the stream where the slice is written
      *
-     * @return a list of Book objects containing the leased books
+     * @throws IOException if the slice cannot be written
      */
-    List<Book> getLeasedBooksByUser(Long userId);
+    void writeLeases(LeaseFilterDto filter, String after, Integer size, OutputStream output) throws IOException;
+
+    /**
+     * Retrieves the distinct IDs and categories of the books that a user has leased.
+     *
+     * @param userId the ID of the user to get leased books for
+     *
+     * @return a list of projections containing the ID and category of each leased book
+     */
+    List<BookCategoryView> getLeasedBookCategoriesByUser(Long userId);
+
+    /**
+     * Retrieves the IDs and categories of the books leased by each of the given users in a single query, with the most
+     * recent leases first.
+     *
+     * @param userIds the IDs of the users to get leased books for
+     *
+     * @return the leased books of each existing user, empty for the users who haven't leased any book
+     */
+    Map<Long, List<BookCategoryView>> getLeasedBookCategoriesByUsers(Collection<Long> userIds);
 }
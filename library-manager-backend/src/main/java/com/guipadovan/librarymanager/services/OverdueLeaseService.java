@@ -0,0 +1,25 @@
+package com.guipadovan.librarymanager.services;
+
+import com.guipadovan.librarymanager.dtos.OverdueSweepDto;
+
+import java.util.Optional;
+
+/**
+ * Service interface for the job that marks as overdue the active leases whose return date has passed.
+ */
+public interface OverdueLeaseService {
+
+    /**
+     * Marks as overdue every active lease whose return date is before today.
+     *
+     * @return the result of the run
+     */
+    OverdueSweepDto markOverdueLeases();
+
+    /**
+     * Retrieves the result of the last run since the application started.
+     *
+     * @return the result of the last run, or empty if the job hasn't run yet
+     */
+    Optional<OverdueSweepDto> getLastSweep();
+}
@@ -0,0 +1,36 @@
+package com.guipadovan.librarymanager.services;
+
+import com.guipadovan.librarymanager.dtos.CacheStatsDto;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+public interface RecommendationCacheService {
+
+    /**
+     * Retrieves the seeded recommendations of a user, computing and caching them if they aren't cached yet.
+     *
+     * @param userId the ID of the user
+     * @param seed   the seed of the recommendations
+     * @param limit  the number of recommendations
+     * @param loader the computation of the recommendations, called at most once per entry
+     *
+     * @return the IDs of the recommended books
+     */
+    List<Long> getBookIds(Long userId, long seed, int limit, Supplier<List<Long>> loader);
+
+    /**
+     * Removes every cached recommendation of a user after the current transaction commits, since their history has
+     * changed.
+     *
+     * @param userId the ID of the user
+     */
+    void evictUser(Long userId);
+
+    /**
+     * Retrieves the statistics of the cache.
+     *
+     * @return the cache statistics
+     */
+    CacheStatsDto getStats();
+}
@@ -0,0 +1,69 @@
+package com.guipadovan.librarymanager.services;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Service interface for the in-memory pools of the books of each category used by the recommendations.
+ * <p>
+ * Mutations are applied only after the surrounding transaction commits, so rolled back changes never reach the pools.
+ * Only the available books are sampled, according to {@link BookAvailabilityService}.
+ */
+public interface RecommendationPoolService {
+
+    /**
+     * Loads the pools again with every book in the catalog, replacing their current content.
+     */
+    void loadPools();
+
+    /**
+     * Registers a new book in the pool of its category.
+     *
+     * @param bookId   the ID of the book
+     * @param category the category of the book
+     */
+    void addBook(Long bookId, String category);
+
+    /**
+     * Moves a book to the pool of its new category.
+     *
+     * @param bookId   the ID of the book
+     * @param category the new category of the book
+     */
+    void updateBook(Long bookId, String category);
+
+    /**
+     * Removes a book from the pools.
+     *
+     * @param bookId the ID of the book
+     */
+    void removeBook(Long bookId);
+
+    /**
+     * Randomly samples available books from the given categories.
+     *
+     * @param categories      the categories to sample from
+     * @param excludedBookIds the IDs of the books that must not be sampled
+     * @param limit           the maximum number of book IDs to return
+     *
+     * @return a list of distinct book IDs in random order
+     */
+    List<Long> sampleBooks(Collection<String> categories, Set<Long> excludedBookIds, int limit);
+
+    /**
+     * Samples available books from the given categories in an order derived from the seed, the limit and the book IDs
+     * only, so the same seed and limit give the same books in the same order on every instance and after restarts, as
+     * long as the books don't change. When a book is leased or returned, the other books keep their relative order;
+     * when a book is added to or removed from the catalog, only a few of the sampled books change. The sample is
+     * approximately uniform: a book is drawn more often when it follows a larger gap between the candidate IDs.
+     *
+     * @param categories      the categories to sample from, in any order
+     * @param excludedBookIds the IDs of the books that must not be sampled
+     * @param limit           the maximum number of book IDs to return
+     * @param seed            the seed of the order
+     *
+     * @return a list of distinct book IDs in the order given by the seed
+     */
+    List<Long> sampleBooks(Collection<String> categories, Set<Long> excludedBookIds, int limit, long seed);
+}
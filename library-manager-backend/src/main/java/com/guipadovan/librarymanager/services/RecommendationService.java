@@ -1,7 +1,10 @@
 package com.guipadovan.librarymanager.services;
 
-import com.guipadovan.librarymanager.entities.Book;
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import com.guipadovan.librarymanager.dtos.UserRecommendationsDto;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 public interface RecommendationService {
@@ -13,7 +16,43 @@ public interface RecommendationService {
      * @param userId the ID of the user to get recommendations for
      * @param limit  the maximum number of recommendations to return
      *
-     * @return a list of Book objects
+     * @return a list of recommended books
      */
-    List<Book> getBookRecommendationsByUser(Long userId, int limit);
+    List<BookResponseDto> getBookRecommendationsByUser(Long userId, int limit);
+
+    /**
+     * Retrieves a page of the recommended books for a user in a pseudorandom order derived from a seed.
+     * The books similar to the user's recent books come first, in the order of the last computation of the neighbors,
+     * followed by books of the user's categories in an order derived only from the seed, the user and the IDs of the
+     * available books.
+     * <p>
+     * The list is computed once and cached on the instance that serves the request, and the pages are slices of it, so
+     * they don't repeat or skip books while the entry lives: until the user leases another book, the entry expires
+     * after {@code library.recommendations.seeded.cache.ttl} or it is evicted to bound the cache. A list computed
+     * again, or by another instance, keeps the sampled books while the available books don't change, but the similar
+     * books may differ after each refresh of the neighbors, so pages requested across a recomputation may repeat or
+     * skip books.
+     *
+     * @param userId the ID of the user to get recommendations for
+     * @param seed   the seed of the order, such as the current day
+     * @param limit  the total number of recommendations to page through
+     * @param page   the zero-based page number
+     * @param size   the number of recommendations per page
+     *
+     * @return the recommended books of the page, empty after the last page
+     */
+    List<BookResponseDto> getSeededBookRecommendationsByUser(Long userId, long seed, int limit, int page, int size);
+
+    /**
+     * Writes the recommended books of many users as NDJSON, one {@link UserRecommendationsDto} per line in the order of
+     * the IDs. The users are processed in chunks, and each chunk is written as soon as it is ready, without keeping the
+     * recommendations of the previous chunks in memory.
+     *
+     * @param userIds the IDs of the users to get recommendations for
+     * @param limit   the maximum number of recommendations per user
+     * @param output  the stream where the recommendations are written
+     *
+     * @throws IOException if the recommendations cannot be written
+     */
+    void writeBookRecommendationsByUsers(List<Long> userIds, int limit, OutputStream output) throws IOException;
 }
@@ -1,9 +1,16 @@
 package com.guipadovan.librarymanager.services;
 
+import com.guipadovan.librarymanager.dtos.CursorPageDto;
+import com.guipadovan.librarymanager.dtos.FileFormat;
+import com.guipadovan.librarymanager.dtos.ImportResultDto;
 import com.guipadovan.librarymanager.dtos.UserDto;
+import com.guipadovan.librarymanager.dtos.UserResponseDto;
 import com.guipadovan.librarymanager.entities.User;
 import org.springframework.data.domain.Page;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Optional;
 
 /**
@@ -45,9 +52,44 @@ public interface UserService {
      * @param page the page number to retrieve (starting from 0)
      * @param size the number of users per page
      *
-     * @return a page of User objects
+     * @return a page of users
      */
-    Page<User> getAllUsers(int page, int size);
+    Page<UserResponseDto> getAllUsers(int page, int size);
+
+    /**
+     * Retrieves a slice of users using keyset pagination, which doesn't count the users and doesn't slow down on
+     * deep positions like offset pagination.
+     *
+     * @param after the cursor returned with the previous slice, or null for the first slice
+     * @param size  the number of users per slice
+     * @param sort  the sort order, either "id" or "name"
+     *
+     * @return a slice of users with the cursor of the next slice
+     */
+    CursorPageDto<UserResponseDto> scrollUsers(String after, int size, String sort);
+
+    /**
+     * Imports users in bulk, inserting the new users and updating the users already registered with the same e-mail.
+     * Invalid records are reported in the result without aborting the import.
+     *
+     * @param input  the stream containing the users
+     * @param format the format of the stream
+     *
+     * @return the import result with the errors of each rejected record
+     *
+     * @throws IOException if the stream cannot be read
+     */
+    ImportResultDto importUsers(InputStream input, FileFormat format) throws IOException;
+
+    /**
+     * Writes every user to the output, ordered by ID, without loading all of them in memory.
+     *
+     * @param format the format of the output
+     * @param output the stream where the users are written
+     *
+     * @throws IOException if the output cannot be written
+     */
+    void exportUsers(FileFormat format, OutputStream output) throws IOException;
 
     /**
      * Deletes a user by his ID.
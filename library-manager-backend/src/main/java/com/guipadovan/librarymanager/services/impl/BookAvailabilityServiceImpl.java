@@ -0,0 +1,118 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.repositories.LeaseRepository;
+import com.guipadovan.librarymanager.services.BookAvailabilityService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.guipadovan.librarymanager.services.impl.TransactionCallbacks.afterCommit;
+
+/**
+ * Implementation of {@link BookAvailabilityService} interface.
+ * <p>
+ * Keeps the IDs of the leased books in a compressed Roaring bitmap, so availability checks don't need a database round
+ * trip. The database remains the source of truth: the bitmap is rebuilt from it on startup and reconciled with it
+ * periodically, which also corrects an update whose callback ran after the previous reconciliation had already
+ * forgotten a later update of the same book.
+ */
+@Service
+@Slf4j
+public class BookAvailabilityServiceImpl implements BookAvailabilityService {
+
+    private final LeaseRepository leaseRepository;
+
+    // O Roaring64Bitmap não é thread-safe, então leituras e escritas são protegidas pelo lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReloadGate reloadGate = new ReloadGate();
+    private Roaring64Bitmap leasedBooks = new Roaring64Bitmap();
+    // Versão da última atualização aplicada a cada livro desde a última recarga: o ID do empréstimo, com o bit menos
+    // significativo indicando a devolução
+    private final Map<Long, Long> versions = new HashMap<>();
+
+    public BookAvailabilityServiceImpl(LeaseRepository leaseRepository) {
+        this.leaseRepository = leaseRepository;
+    }
+
+    /**
+     * Loads the IDs of the books with an open lease, active or overdue.
+     */
+    @PostConstruct
+    public void loadLeasedBooks() {
+        reloadGate.reload(() -> {
+            List<Long> leasedBookIds = leaseRepository.findAllOpenLeaseBookIds();
+            Roaring64Bitmap loaded = new Roaring64Bitmap();
+            leasedBookIds.forEach(loaded::addLong);
+            loaded.runOptimize();
+
+            lock.writeLock().lock();
+            try {
+                leasedBooks = loaded;
+                versions.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            log.info("Loaded {} leased books", leasedBookIds.size());
+        });
+    }
+
+    /**
+     * Reconciles the bitmap with the database at the interval configured in
+     * {@code library.leases.availability.reconcile-interval}.
+     */
+    @Scheduled(fixedDelayString = "${library.leases.availability.reconcile-interval:PT15M}",
+            initialDelayString = "${library.leases.availability.reconcile-interval:PT15M}")
+    public void scheduledReconcileLeasedBooks() {
+        loadLeasedBooks();
+    }
+
+    @Override
+    public boolean isLeased(Long bookId) {
+        lock.readLock().lock();
+        try {
+            return leasedBooks.contains(bookId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void markLeased(Long bookId, Long leaseId) {
+        long version = leaseId << 1;
+        afterCommit(() -> reloadGate.update(() -> apply(bookId, version, true)));
+    }
+
+    @Override
+    public void markAvailable(Long bookId, Long leaseId) {
+        long version = leaseId << 1 | 1;
+        afterCommit(() -> reloadGate.update(() -> apply(bookId, version, false)));
+    }
+
+    // Os callbacks de transações diferentes rodam em qualquer ordem, então só a atualização mais recente de cada livro
+    // é aplicada
+    private void apply(Long bookId, long version, boolean leased) {
+        lock.writeLock().lock();
+        try {
+            Long lastVersion = versions.get(bookId);
+            if (lastVersion != null && lastVersion >= version)
+                return;
+
+            versions.put(bookId, version);
+            if (leased)
+                leasedBooks.addLong(bookId);
+            else
+                leasedBooks.removeLong(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.dtos.BookNeighborsBuildDto;
+import com.guipadovan.librarymanager.repositories.LeaseRepository;
+import com.guipadovan.librarymanager.repositories.projections.LeasePairView;
+import com.guipadovan.librarymanager.services.BookAvailabilityService;
+import com.guipadovan.librarymanager.services.BookNeighborService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Implementation of {@link BookNeighborService} interface.
+ * <p>
+ * The job keeps the {@link LeaseGraph} of every lease read so far and the ID of the last lease read. A refresh reads
+ * only the newer leases and computes again only the books in the history of their users, which are the only books
+ * whose co-leases changed. The scores of the other books still use the previous number of users of the books leased
+ * again, a small drift that the nightly rebuild corrects along with the leases of deleted books and users.
+ * <p>
+ * Leases are read in chunks of a fixed number of leases by a few threads, which hold one connection each, and the
+ * neighbors are computed by a fork/join pool with one thread per core by default. The recommendations only read the
+ * last computed {@link BookNeighbors}, which is replaced at the end of each run.
+ */
+@Service
+@Slf4j
+public class BookNeighborServiceImpl implements BookNeighborService {
+
+    private final LeaseRepository leaseRepository;
+    private final BookAvailabilityService bookAvailabilityService;
+    private final MeterRegistry meterRegistry;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private BookNeighbors neighbors = BookNeighbors.EMPTY;
+
+    // Estado do job, acessado apenas pela execução que detém o buildLock
+    private final Lock buildLock = new ReentrantLock();
+    private LeaseGraph graph = LeaseGraph.EMPTY;
+    private long lastLeaseId;
+    private boolean built;
+
+    private final AtomicReference<BookNeighborsBuildDto> lastBuild = new AtomicReference<>();
+
+    @Value("${library.recommendations.neighbors.max-neighbors:20}")
+    private int maxNeighbors = 20;
+
+    @Value("${library.recommendations.neighbors.min-co-leases:2}")
+    private int minCoLeases = 2;
+
+    @Value("${library.recommendations.neighbors.max-books-per-user:200}")
+    private int maxBooksPerUser = 200;
+
+    @Value("${library.recommendations.neighbors.load-chunk-size:100000}")
+    private int loadChunkSize = 100000;
+
+    @Value("${library.recommendations.neighbors.load-threads:4}")
+    private int loadThreads = 4;
+
+    @Value("${library.recommendations.neighbors.parallelism:0}")
+    private int parallelism = 0;
+
+    public BookNeighborServiceImpl(LeaseRepository leaseRepository, BookAvailabilityService bookAvailabilityService,
+                                   MeterRegistry meterRegistry) {
+        this.leaseRepository = leaseRepository;
+        this.bookAvailabilityService = bookAvailabilityService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Refreshes the neighbors at the interval configured in {@code library.recommendations.neighbors.refresh-interval},
+     * starting with a full computation right after the application starts.
+     */
+    @Scheduled(fixedDelayString = "${library.recommendations.neighbors.refresh-interval:PT5M}")
+    public void scheduledRefreshNeighbors() {
+        refreshNeighbors();
+    }
+
+    /**
+     * Computes every book again on the schedule configured in {@code library.recommendations.neighbors.rebuild-cron},
+     * by default every night.
+     */
+    @Scheduled(cron = "${library.recommendations.neighbors.rebuild-cron:0 30 3 * * *}")
+    public void scheduledRebuildNeighbors() {
+        rebuildNeighbors();
+    }
+
+    @Override
+    public BookNeighborsBuildDto rebuildNeighbors() {
+        return build(true);
+    }
+
+    @Override
+    public BookNeighborsBuildDto refreshNeighbors() {
+        return build(false);
+    }
+
+    @Override
+    public List<Long> recommendBooks(Collection<Long> bookIds, Set<Long> excludedBookIds, int limit) {
+        BookNeighbors current;
+        lock.readLock().lock();
+        try {
+            current = neighbors;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        long[] sourceBookIds = bookIds.stream().mapToLong(Long::longValue).toArray();
+        long[] recommended = current.recommend(sourceBookIds,
+                bookId -> excludedBookIds.contains(bookId) || bookAvailabilityService.isLeased(bookId), limit);
+        return Arrays.stream(recommended).boxed().toList();
+    }
+
+    @Override
+    public Optional<BookNeighborsBuildDto> getLastBuild() {
+        return Optional.ofNullable(lastBuild.get());
+    }
+
+    private BookNeighborsBuildDto build(boolean full) {
+        buildLock.lock();
+        try {
+            Instant startedAt = Instant.now();
+            long start = System.nanoTime();
+            boolean rebuild = full || !built;
+
+            // Empréstimos de transações ainda abertas podem receber IDs menores que o último lido, eles ficam de fora
+            // das atualizações e entram na próxima reconstrução
+            long afterId = rebuild ? 0 : lastLeaseId;
+            long maxId = leaseRepository.findMaxId().orElse(0L);
+
+            LeaseGraph updatedGraph = graph;
+            BookNeighbors updatedNeighbors = neighbors;
+            long newLeases = 0;
+            int updatedBooks = 0;
+            int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+            try (ForkJoinPool pool = new ForkJoinPool(threads)) {
+                LeasePairs pairs = loadPairs(afterId, maxId);
+                newLeases = pairs.count();
+
+                if (rebuild || pairs.count() > 0) {
+                    LeaseGraph previousGraph = graph;
+                    updatedGraph = pool.submit(() -> rebuild
+                            ? LeaseGraph.of(pairs.userIds(), pairs.bookIds(), pairs.count(), maxBooksPerUser)
+                            : previousGraph.with(pairs.userIds(), pairs.bookIds(), pairs.count(), maxBooksPerUser))
+                            .get();
+
+                    int[] books = rebuild
+                            ? IntStream.range(0, updatedGraph.bookCount()).toArray()
+                            : affectedBooks(previousGraph, updatedGraph, pairs);
+                    BookNeighbors computed = new BookNeighborsBuilder(updatedGraph, maxNeighbors, minCoLeases)
+                            .build(books, pool);
+                    updatedNeighbors = (rebuild ? BookNeighbors.EMPTY : neighbors).merge(computed);
+                    updatedBooks = books.length;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while computing the book neighbors", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to compute the book neighbors", e.getCause());
+            }
+
+            lock.writeLock().lock();
+            try {
+                neighbors = updatedNeighbors;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            graph = updatedGraph;
+            lastLeaseId = Math.max(lastLeaseId, maxId);
+            built = true;
+
+            long durationNanos = System.nanoTime() - start;
+            BookNeighborsBuildDto result = new BookNeighborsBuildDto(startedAt, rebuild, newLeases, updatedBooks,
+                    updatedNeighbors.size(), updatedNeighbors.neighborCount(),
+                    TimeUnit.NANOSECONDS.toMillis(durationNanos));
+            lastBuild.set(result);
+            meterRegistry.timer("library.recommendations.neighbors.build", "type", rebuild ? "full" : "incremental")
+                    .record(durationNanos, TimeUnit.NANOSECONDS);
+
+            if (updatedBooks > 0)
+                log.info("Computed the neighbors of {} books from {} leases in {} ms, {} books with neighbors",
+                        updatedBooks, newLeases, result.durationMillis(), result.books());
+            return result;
+        } finally {
+            buildLock.unlock();
+        }
+    }
+
+    // Lê os blocos em paralelo e concatena os pares na ordem dos IDs, que é a ordem do histórico. Os limites dos blocos
+    // vêm dos próprios IDs, pois a sequência dos empréstimos deixa lacunas entre eles
+    private LeasePairs loadPairs(long afterId, long maxId) throws InterruptedException, ExecutionException {
+        if (afterId >= maxId)
+            return new LeasePairs(new long[0], new long[0], 0);
+
+        List<Long> chunkEnds = new ArrayList<>(leaseRepository.findChunkBoundaries(afterId, maxId, loadChunkSize));
+        if (chunkEnds.isEmpty() || chunkEnds.get(chunkEnds.size() - 1) < maxId)
+            chunkEnds.add(maxId);
+
+        List<Future<LeasePairs>> chunks = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(loadThreads)) {
+            long chunkStart = afterId;
+            for (long chunkEnd : chunkEnds) {
+                long from = chunkStart;
+                chunks.add(executor.submit(() -> LeasePairs.of(leaseRepository.findPairsByIdRange(from, chunkEnd))));
+                chunkStart = chunkEnd;
+            }
+        }
+
+        int count = 0;
+        for (Future<LeasePairs> chunk : chunks)
+            count += chunk.get().count();
+
+        long[] userIds = new long[count];
+        long[] bookIds = new long[count];
+        int position = 0;
+        for (Future<LeasePairs> chunk : chunks) {
+            LeasePairs pairs = chunk.get();
+            System.arraycopy(pairs.userIds(), 0, userIds, position, pairs.count());
+            System.arraycopy(pairs.bookIds(), 0, bookIds, position, pairs.count());
+            position += pairs.count();
+        }
+        return new LeasePairs(userIds, bookIds, count);
+    }
+
+    // Livros cujas contagens mudaram: os do histórico anterior e do atual dos usuários com empréstimos novos
+    private static int[] affectedBooks(LeaseGraph previousGraph, LeaseGraph updatedGraph, LeasePairs pairs) {
+        BitSet affected = new BitSet(updatedGraph.bookCount());
+        long[] userIds = Arrays.stream(pairs.userIds(), 0, pairs.count()).distinct().toArray();
+        for (long userId : userIds) {
+            int previousUser = previousGraph.userIndex(userId);
+            if (previousUser >= 0) {
+                for (int i = previousGraph.booksStart(previousUser); i < previousGraph.booksEnd(previousUser); i++)
+                    affected.set(updatedGraph.bookIndex(previousGraph.bookId(previousGraph.book(i))));
+            }
+
+            int user = updatedGraph.userIndex(userId);
+            for (int i = updatedGraph.booksStart(user); i < updatedGraph.booksEnd(user); i++)
+                affected.set(updatedGraph.book(i));
+        }
+        return affected.stream().toArray();
+    }
+
+    private record LeasePairs(long[] userIds, long[] bookIds, int count) {
+
+        static LeasePairs of(List<LeasePairView> views) {
+            long[] userIds = new long[views.size()];
+            long[] bookIds = new long[views.size()];
+            for (int i = 0; i < views.size(); i++) {
+                userIds[i] = views.get(i).userId();
+                bookIds[i] = views.get(i).bookId();
+            }
+            return new LeasePairs(userIds, bookIds, views.size());
+        }
+    }
+}
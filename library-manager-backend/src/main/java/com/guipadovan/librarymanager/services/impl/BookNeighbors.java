@@ -0,0 +1,158 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * Immutable lists of the books most similar to each book, ordered from the most to the least similar.
+ * <p>
+ * The lists are stored in the compressed sparse row layout: the books with neighbors are kept in a sorted array of
+ * IDs, and the neighbors of the book at a position are the range between its offset and the next one in a single
+ * array of IDs and a parallel array of scores. A lookup is a binary search, and there are no objects per book or per
+ * neighbor.
+ */
+final class BookNeighbors {
+
+    static final BookNeighbors EMPTY = new BookNeighbors(new long[0], new int[]{0}, new long[0], new float[0]);
+
+    private final long[] bookIds;
+    private final int[] offsets;
+    private final long[] neighborIds;
+    private final float[] scores;
+
+    BookNeighbors(long[] bookIds, int[] offsets, long[] neighborIds, float[] scores) {
+        this.bookIds = bookIds;
+        this.offsets = offsets;
+        this.neighborIds = neighborIds;
+        this.scores = scores;
+    }
+
+    /**
+     * Returns the number of books with at least one neighbor.
+     */
+    int size() {
+        return bookIds.length;
+    }
+
+    /**
+     * Returns the number of neighbors of every book.
+     */
+    long neighborCount() {
+        return neighborIds.length;
+    }
+
+    /**
+     * Returns the neighbors of a book, from the most to the least similar.
+     *
+     * @param bookId the ID of the book
+     *
+     * @return the IDs of the neighbors, empty if the book has none
+     */
+    long[] neighborsOf(long bookId) {
+        int position = Arrays.binarySearch(bookIds, bookId);
+        return position < 0 ? new long[0] : Arrays.copyOfRange(neighborIds, offsets[position], offsets[position + 1]);
+    }
+
+    /**
+     * Replaces the lists of the given books. The books whose new list is empty are removed.
+     *
+     * @param updates the new lists, which may include empty lists
+     *
+     * @return the merged lists
+     */
+    BookNeighbors merge(BookNeighbors updates) {
+        int maxBooks = bookIds.length + updates.bookIds.length;
+        long[] mergedBookIds = new long[maxBooks];
+        int[] mergedOffsets = new int[maxBooks + 1];
+        long[] mergedNeighborIds = new long[neighborIds.length + updates.neighborIds.length];
+        float[] mergedScores = new float[mergedNeighborIds.length];
+
+        // Intercala as duas listas de livros ordenadas, e a lista nova prevalece quando o livro está em ambas
+        int books = 0;
+        int neighbors = 0;
+        int i = 0;
+        int j = 0;
+        while (i < bookIds.length || j < updates.bookIds.length) {
+            BookNeighbors source;
+            int position;
+            if (j == updates.bookIds.length || i < bookIds.length && bookIds[i] < updates.bookIds[j]) {
+                source = this;
+                position = i++;
+            } else {
+                if (i < bookIds.length && bookIds[i] == updates.bookIds[j])
+                    i++;
+                source = updates;
+                position = j++;
+            }
+
+            int start = source.offsets[position];
+            int length = source.offsets[position + 1] - start;
+            if (length == 0)
+                continue;
+
+            System.arraycopy(source.neighborIds, start, mergedNeighborIds, neighbors, length);
+            System.arraycopy(source.scores, start, mergedScores, neighbors, length);
+            mergedBookIds[books++] = source.bookIds[position];
+            neighbors += length;
+            mergedOffsets[books] = neighbors;
+        }
+
+        return new BookNeighbors(Arrays.copyOf(mergedBookIds, books), Arrays.copyOf(mergedOffsets, books + 1),
+                Arrays.copyOf(mergedNeighborIds, neighbors), Arrays.copyOf(mergedScores, neighbors));
+    }
+
+    /**
+     * Recommends the books most similar to a set of books, adding up the scores of the books that are neighbors of
+     * more than one of them.
+     *
+     * @param sourceBookIds the IDs of the books the recommendations are based on
+     * @param excluded      the books that can't be recommended
+     * @param limit         the maximum number of recommendations
+     *
+     * @return the IDs of the recommended books, from the most to the least similar
+     */
+    long[] recommend(long[] sourceBookIds, LongPredicate excluded, int limit) {
+        int[] positions = new int[sourceBookIds.length];
+        int candidates = 0;
+        for (int i = 0; i < sourceBookIds.length; i++) {
+            positions[i] = Arrays.binarySearch(bookIds, sourceBookIds[i]);
+            if (positions[i] >= 0)
+                candidates += offsets[positions[i] + 1] - offsets[positions[i]];
+        }
+        if (candidates == 0 || limit <= 0)
+            return new long[0];
+
+        // Soma as pontuações em uma tabela de endereçamento aberto, com capacidade para ao menos o dobro dos candidatos
+        int capacity = Integer.highestOneBit(candidates * 2 - 1) << 1;
+        long[] keys = new long[capacity];
+        float[] sums = new float[capacity];
+        boolean[] used = new boolean[capacity];
+        for (int position : positions) {
+            if (position < 0)
+                continue;
+            for (int n = offsets[position]; n < offsets[position + 1]; n++) {
+                int slot = slot(neighborIds[n], capacity);
+                while (used[slot] && keys[slot] != neighborIds[n])
+                    slot = (slot + 1) & (capacity - 1);
+                used[slot] = true;
+                keys[slot] = neighborIds[n];
+                sums[slot] += scores[n];
+            }
+        }
+
+        TopScores top = new TopScores(limit);
+        for (int slot = 0; slot < capacity; slot++) {
+            if (used[slot] && !excluded.test(keys[slot]))
+                top.offer(keys[slot], sums[slot]);
+        }
+
+        long[] recommended = new long[top.size()];
+        top.drain(recommended, new float[recommended.length], 0);
+        return recommended;
+    }
+
+    private static int slot(long key, int capacity) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ hash >>> 32) & (capacity - 1);
+    }
+}
@@ -0,0 +1,146 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the neighbors of the books of a {@link LeaseGraph}: the books leased by the same users, scored by the
+ * cosine similarity of their sets of users, {@code co-leases / sqrt(users(a) * users(b))}.
+ * <p>
+ * The books are split between the threads of a fork/join pool. Each task counts the co-leases of one book at a time
+ * in a dense array of counters that is reset after each book, and writes the best neighbors to a fixed slot of the
+ * output, so no thread allocates per book or waits for another. The counters are borrowed from a free list of the
+ * build, which holds at most one set per task running at once and is dropped when the build ends, instead of staying
+ * attached to the threads of the pool.
+ */
+final class BookNeighborsBuilder {
+
+    // Livros por tarefa, pequeno o bastante para dividir bem livros populares, cujas contagens são mais caras
+    private static final int BOOKS_PER_TASK = 64;
+
+    private final LeaseGraph graph;
+    private final int maxNeighbors;
+    private final int minCoLeases;
+
+    BookNeighborsBuilder(LeaseGraph graph, int maxNeighbors, int minCoLeases) {
+        this.graph = graph;
+        this.maxNeighbors = maxNeighbors;
+        this.minCoLeases = minCoLeases;
+    }
+
+    /**
+     * Computes the neighbors of the given books.
+     *
+     * @param books the numbers of the books in the graph, in ascending order
+     * @param pool  the pool running the computation
+     *
+     * @return the neighbors of the books, including the books left without neighbors, with an empty list
+     */
+    BookNeighbors build(int[] books, ForkJoinPool pool) {
+        long[] neighborIds = new long[books.length * maxNeighbors];
+        float[] scores = new float[neighborIds.length];
+        int[] lengths = new int[books.length];
+        pool.invoke(new Task(books, 0, books.length, neighborIds, scores, lengths, new ConcurrentLinkedQueue<>()));
+
+        // Compacta os slots de tamanho fixo, mantendo as listas vazias para que elas substituam as anteriores
+        long[] bookIds = new long[books.length];
+        int[] offsets = new int[books.length + 1];
+        int written = 0;
+        for (int i = 0; i < books.length; i++) {
+            bookIds[i] = graph.bookId(books[i]);
+            System.arraycopy(neighborIds, i * maxNeighbors, neighborIds, written, lengths[i]);
+            System.arraycopy(scores, i * maxNeighbors, scores, written, lengths[i]);
+            written += lengths[i];
+            offsets[i + 1] = written;
+        }
+        return new BookNeighbors(bookIds, offsets, Arrays.copyOf(neighborIds, written),
+                Arrays.copyOf(scores, written));
+    }
+
+    private int computeNeighbors(int book, Counters scratch, long[] neighborIds, float[] scores, int offset) {
+        int[] coLeases = scratch.coLeases;
+        int[] touched = scratch.touched;
+        int touchedCount = 0;
+
+        for (int u = graph.usersStart(book); u < graph.usersEnd(book); u++) {
+            int user = graph.user(u);
+            for (int b = graph.booksStart(user); b < graph.booksEnd(user); b++) {
+                int other = graph.book(b);
+                if (other != book && coLeases[other]++ == 0)
+                    touched[touchedCount++] = other;
+            }
+        }
+
+        int users = graph.usersEnd(book) - graph.usersStart(book);
+        for (int t = 0; t < touchedCount; t++) {
+            int other = touched[t];
+            int count = coLeases[other];
+            coLeases[other] = 0;
+            if (count >= minCoLeases) {
+                int otherUsers = graph.usersEnd(other) - graph.usersStart(other);
+                scratch.top.offer(graph.bookId(other), (float) (count / Math.sqrt((double) users * otherUsers)));
+            }
+        }
+        return scratch.top.drain(neighborIds, scores, offset);
+    }
+
+    // Contadores de uma tarefa, do tamanho do catálogo e reaproveitados entre os livros e as tarefas
+    private static final class Counters {
+
+        private final int[] coLeases;
+        private final int[] touched;
+        private final TopScores top;
+
+        private Counters(int books, int maxNeighbors) {
+            this.coLeases = new int[books];
+            this.touched = new int[books];
+            this.top = new TopScores(maxNeighbors);
+        }
+    }
+
+    private final class Task extends RecursiveAction {
+
+        private final int[] books;
+        private final int from;
+        private final int to;
+        private final long[] neighborIds;
+        private final float[] scores;
+        private final int[] lengths;
+        private final Queue<Counters> freeCounters;
+
+        private Task(int[] books, int from, int to, long[] neighborIds, float[] scores, int[] lengths,
+                     Queue<Counters> freeCounters) {
+            this.books = books;
+            this.from = from;
+            this.to = to;
+            this.neighborIds = neighborIds;
+            this.scores = scores;
+            this.lengths = lengths;
+            this.freeCounters = freeCounters;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BOOKS_PER_TASK) {
+                // Uma tarefa folha não se divide, então segura os contadores até o fim e os devolve para a próxima
+                Counters scratch = freeCounters.poll();
+                if (scratch == null)
+                    scratch = new Counters(graph.bookCount(), maxNeighbors);
+                try {
+                    for (int i = from; i < to; i++)
+                        lengths[i] = computeNeighbors(books[i], scratch, neighborIds, scores, i * maxNeighbors);
+                } finally {
+                    freeCounters.offer(scratch);
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new Task(books, from, middle, neighborIds, scores, lengths, freeCounters),
+                    new Task(books, middle, to, neighborIds, scores, lengths, freeCounters));
+        }
+    }
+}
@@ -1,31 +1,106 @@
 package com.guipadovan.librarymanager.services.impl;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.guipadovan.librarymanager.dtos.BookDto;
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import com.guipadovan.librarymanager.dtos.BookSnapshotDto;
+import com.guipadovan.librarymanager.dtos.CursorPageDto;
+import com.guipadovan.librarymanager.dtos.ImportResultDto;
 import com.guipadovan.librarymanager.entities.Book;
 import com.guipadovan.librarymanager.exceptions.EntityNotFoundException;
+import com.guipadovan.librarymanager.exceptions.InputValidationException;
 import com.guipadovan.librarymanager.repositories.BookRepository;
+import com.guipadovan.librarymanager.repositories.projections.BookSearchHit;
 import com.guipadovan.librarymanager.services.BookService;
+import com.guipadovan.librarymanager.services.BookSuggestionService;
+import com.guipadovan.librarymanager.services.EntityCacheService;
+import com.guipadovan.librarymanager.services.RecommendationPoolService;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipException;
+
+import static net.logstash.logback.argument.StructuredArguments.v;
 
 /**
  * Implementation of {@link BookService} interface.
  */
 @Service
 @Transactional
+@Timed("library.service")
 @Slf4j
 public class BookServiceImpl implements BookService {
 
     private final BookRepository bookRepository;
+    private final RecommendationPoolService recommendationPoolService;
+    private final BookSuggestionService bookSuggestionService;
+    private final EntityCacheService entityCacheService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${library.books.import.batch-size:1000}")
+    private int importBatchSize = 1000;
+
+    @Value("${library.books.import.max-reported-errors:1000}")
+    private int importMaxReportedErrors = 1000;
+
+    @Value("${library.books.search.max-candidates:1000}")
+    private int searchMaxCandidates = 1000;
+
+    @Value("${library.books.search.max-corrections:3}")
+    private int searchMaxCorrections = 3;
 
-    public BookServiceImpl(BookRepository bookRepository) {
+    @Value("${library.books.search.min-similarity:0.5}")
+    private double searchMinSimilarity = 0.5;
+
+    @Value("${library.logging.read-sample-rate.books:100}")
+    private int readLogSampleRate = 100;
+
+    public BookServiceImpl(BookRepository bookRepository, RecommendationPoolService recommendationPoolService,
+                           BookSuggestionService bookSuggestionService, EntityCacheService entityCacheService,
+                           ObjectMapper objectMapper, Validator validator, TransactionTemplate transactionTemplate,
+                           MeterRegistry meterRegistry) {
         this.bookRepository = bookRepository;
+        this.recommendationPoolService = recommendationPoolService;
+        this.bookSuggestionService = bookSuggestionService;
+        this.entityCacheService = entityCacheService;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
@@ -33,8 +108,179 @@ public class BookServiceImpl implements BookService {
         // Mapeia os detalhes do livro para o objeto book
         Book bookEntity = new Book(bookDetails.getTitle(), bookDetails.getAuthor(), bookDetails.getIsbn(), bookDetails.getPublicationDate(), bookDetails.getCategory());
 
-        log.info("Creating book {}", bookEntity);
-        return bookRepository.save(bookEntity);
+        Book createdBook = bookRepository.save(bookEntity);
+        log.info("Created book {}", v("bookId", createdBook.getId()));
+
+        recommendationPoolService.addBook(createdBook.getId(), createdBook.getCategory());
+        bookSuggestionService.indexBook(createdBook.getId(), createdBook.getTitle(), createdBook.getAuthor());
+        return createdBook;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The stream is parsed incrementally and each batch is saved in its own transaction, so the input is never fully
+     * loaded in memory and a failed batch doesn't roll back the batches already saved.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ImportResultDto importBooks(InputStream input) throws IOException {
+        ImportResultBuilder result = new ImportResultBuilder(importMaxReportedErrors);
+        List<Book> batch = new ArrayList<>(importBatchSize);
+        List<Long> batchIndexes = new ArrayList<>(importBatchSize);
+        long index = 0;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+            JsonToken token = parser.nextToken();
+
+            // Aceita tanto um array JSON quanto NDJSON, que são objetos na raiz separados por quebras de linha
+            if (token == JsonToken.START_ARRAY)
+                token = parser.nextToken();
+
+            for (; token != null && token != JsonToken.END_ARRAY; token = parser.nextToken(), index++) {
+                // Lê cada registro como uma árvore isolada, assim um registro inválido não corrompe a leitura dos próximos
+                JsonNode node = parser.readValueAsTree();
+
+                Map<String, String> fieldErrors = new HashMap<>();
+                Book book = mapImportedBook(node, fieldErrors);
+                if (book == null) {
+                    result.rejected(index, fieldErrors);
+                    continue;
+                }
+
+                batch.add(book);
+                batchIndexes.add(index);
+                if (batch.size() >= importBatchSize)
+                    saveImportBatch(batch, batchIndexes, result);
+            }
+        } catch (JsonParseException e) {
+            // JSON malformado impede a leitura dos registros seguintes, os registros já lidos ainda são salvos
+            result.rejected(index, Map.of("body", "JSON inválido: " + e.getOriginalMessage()));
+        }
+
+        saveImportBatch(batch, batchIndexes, result);
+
+        log.info("Imported {} books, {} rejected", v("imported", result.imported()), v("rejected", result.failed()));
+        meterRegistry.counter("library.books.imported", "result", "imported").increment(result.imported());
+        meterRegistry.counter("library.books.imported", "result", "rejected").increment(result.failed());
+        return result.build();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The books are read through a database cursor as DTOs, which are not kept in the persistence context, and
+     * encoded as they arrive. See {@link BookSnapshotWriter} for the format.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public BookSnapshotDto exportSnapshot(OutputStream output) throws IOException {
+        long start = System.nanoTime();
+        long count;
+        try (Stream<BookResponseDto> books = bookRepository.streamAllResponses();
+             BookSnapshotWriter writer = new BookSnapshotWriter(output)) {
+            Iterator<BookResponseDto> iterator = books.iterator();
+            while (iterator.hasNext())
+                writer.write(iterator.next());
+            writer.finish();
+            count = writer.count();
+        }
+
+        BookSnapshotDto snapshot = recordSnapshot("export", count, System.nanoTime() - start);
+        log.info("Wrote a snapshot of {} books in {} ms, {} books/s", v("books", snapshot.books()),
+                v("durationMillis", snapshot.durationMillis()), Math.round(snapshot.booksPerSecond()));
+        return snapshot;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The snapshot is decoded as it is sent to the database through {@code COPY}, and the in-memory recommendation
+     * pools and suggestion index are loaded again afterwards, since the books bypass Hibernate.
+     *
+     * @throws InputValidationException if the input isn't a complete snapshot
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BookSnapshotDto restoreSnapshot(InputStream input) throws IOException {
+        long start = System.nanoTime();
+        long restored;
+        try {
+            restored = restoreBooks(input);
+        } catch (StreamCorruptedException | EOFException | ZipException e) {
+            // O rollback descarta os livros já copiados de um snapshot incompleto
+            throw new InputValidationException("Invalid snapshot", Map.of("body", "Snapshot inválido: " + e.getMessage()));
+        }
+
+        entityCacheService.evict(Book.class);
+        recommendationPoolService.loadPools();
+        bookSuggestionService.loadIndex();
+
+        BookSnapshotDto snapshot = recordSnapshot("restore", restored, System.nanoTime() - start);
+        log.info("Restored a snapshot of {} books in {} ms, {} books/s", v("books", snapshot.books()),
+                v("durationMillis", snapshot.durationMillis()), Math.round(snapshot.booksPerSecond()));
+        return snapshot;
+    }
+
+    private long restoreBooks(InputStream input) throws IOException {
+        try (BookSnapshotReader reader = new BookSnapshotReader(input)) {
+            Long restored = transactionTemplate.execute(status -> bookRepository.restoreBooks(reader.iterator()));
+            return restored != null ? restored : 0;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private BookSnapshotDto recordSnapshot(String operation, long books, long durationNanos) {
+        meterRegistry.timer("library.books.snapshot", "operation", operation).record(durationNanos, TimeUnit.NANOSECONDS);
+        meterRegistry.counter("library.books.snapshot.books", "operation", operation).increment(books);
+        return BookSnapshotDto.of(books, durationNanos);
+    }
+
+    /**
+     * Maps and validates a single imported record.
+     *
+     * @param node        the JSON node of the record
+     * @param fieldErrors the map where the validation errors are added
+     *
+     * @return the Book entity, or null if the record is invalid
+     */
+    private Book mapImportedBook(JsonNode node, Map<String, String> fieldErrors) {
+        BookDto bookDetails = ImportRecords.map(objectMapper, validator, node, BookDto.class, fieldErrors);
+        if (bookDetails == null)
+            return null;
+
+        return new Book(bookDetails.getTitle(), bookDetails.getAuthor(), bookDetails.getIsbn(), bookDetails.getPublicationDate(), bookDetails.getCategory());
+    }
+
+    /**
+     * Saves a batch of imported books in a new transaction and clears the batch.
+     * The inserts are grouped by Hibernate JDBC batching and the IDs come from the pooled {@code books_seq} sequence.
+     *
+     * @param batch        the books to save
+     * @param batchIndexes the positions of the books in the input
+     * @param result       the import result to update
+     */
+    private void saveImportBatch(List<Book> batch, List<Long> batchIndexes, ImportResultBuilder result) {
+        if (batch.isEmpty())
+            return;
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                bookRepository.saveAll(batch);
+                batch.forEach(book -> {
+                    recommendationPoolService.addBook(book.getId(), book.getCategory());
+                    bookSuggestionService.indexBook(book.getId(), book.getTitle(), book.getAuthor());
+                });
+            });
+            result.imported(batch.size());
+        } catch (DataAccessException e) {
+            log.warn("Failed to import a batch of {} books", batch.size(), e);
+            batchIndexes.forEach(index -> result.rejected(index, Map.of("record", "Erro ao salvar o livro")));
+        }
+
+        batch.clear();
+        batchIndexes.clear();
     }
 
     /**
@@ -54,30 +300,113 @@ public class BookServiceImpl implements BookService {
         bookEntity.setPublicationDate(bookDetails.getPublicationDate());
         bookEntity.setCategory(bookDetails.getCategory());
 
-        log.info("Updating book {}", bookEntity);
-        return bookRepository.save(bookEntity);
+        log.info("Updating book {}", v("bookId", id));
+        Book updatedBook = bookRepository.save(bookEntity);
+
+        recommendationPoolService.updateBook(id, updatedBook.getCategory());
+        bookSuggestionService.indexBook(id, updatedBook.getTitle(), updatedBook.getAuthor());
+        return updatedBook;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<Book> getBook(Long id) {
-        log.info("Getting book with id {}", id);
+        if (LogSampling.sampled(readLogSampleRate))
+            log.info("Getting book with id {}", v("bookId", id));
         return bookRepository.findById(id);
     }
 
     @Override
-    public Page<Book> getAllBooks(int page, int size) {
-        log.info("Getting all books");
-        return bookRepository.findAll(PageRequest.of(page, size));
+    @Transactional(readOnly = true)
+    public Page<BookResponseDto> getAllBooks(int page, int size) {
+        if (LogSampling.sampled(readLogSampleRate))
+            log.info("Getting all books");
+        return bookRepository.findAllResponses(PageRequest.of(page, size));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws InputValidationException if the cursor, the size or the sort order is invalid
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageDto<BookResponseDto> scrollBooks(String after, int size, String sort)
+            throws InputValidationException {
+        KeysetCursor.validateSize(size);
+        KeysetCursor cursor = KeysetCursor.decode(after);
+
+        if (LogSampling.sampled(readLogSampleRate))
+            log.info("Scrolling books after {}", cursor.id());
+        // Busca um livro a mais apenas para saber se existe uma próxima página, sem a consulta de contagem
+        PageRequest limit = PageRequest.ofSize(size + 1);
+        return switch (sort) {
+            case "id" -> KeysetCursor.slice(bookRepository.findNextOrderById(cursor.id(), limit), size,
+                    book -> new KeysetCursor("", book.id()));
+            case "title" -> KeysetCursor.slice(bookRepository.findNextOrderByTitle(cursor.key(), cursor.id(), limit), size,
+                    book -> new KeysetCursor(book.title(), book.id()));
+            default -> throw new InputValidationException("Invalid sort", Map.of("sort", "Ordenação inválida"));
+        };
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A search matching more books than the maximum number of candidates isn't ranked, its matches are listed in
+     * ascending order of ID instead.
+     *
+     * @throws InputValidationException if the search text, the cursor or the size is invalid
+     */
     @Override
-    public List<Book> getBookRecommendations(List<String> categories, List<Long> excludedBookIds, int limit) {
-        return bookRepository.findBooksByCategoriesRandomizedAndOrdered(categories, excludedBookIds, PageRequest.of(0, limit));
+    @Transactional(readOnly = true)
+    public CursorPageDto<BookResponseDto> searchCatalog(String query, String after, int size)
+            throws InputValidationException {
+        KeysetCursor.validateSize(size);
+        CatalogSearchQuery search = CatalogSearchQuery.parse(query);
+        KeysetCursor cursor = KeysetCursor.decode(after);
+
+        // A chave do cursor é a relevância do último livro, a primeira página começa acima de qualquer relevância
+        float afterScore;
+        try {
+            afterScore = cursor.key().isEmpty() ? Float.POSITIVE_INFINITY : Float.parseFloat(cursor.key());
+        } catch (NumberFormatException e) {
+            throw new InputValidationException("Invalid cursor", Map.of("after", "Cursor inválido"));
+        }
+
+        String tsQuery = search.toTsQuery(bookRepository.findTermCorrections(search.tokens(), searchMinSimilarity,
+                searchMaxCorrections));
+        if (LogSampling.sampled(readLogSampleRate))
+            log.info("Searching catalog for {} after {}", tsQuery, cursor.id());
+
+        // Busca um livro a mais apenas para saber se existe uma próxima página
+        CursorPageDto<BookSearchHit> hits = KeysetCursor.slice(
+                bookRepository.searchBooks(tsQuery, afterScore, cursor.id(), size + 1, searchMaxCandidates), size,
+                hit -> new KeysetCursor(Float.toString(hit.score()), hit.book().id()));
+        return new CursorPageDto<>(hits.content().stream().map(BookSearchHit::book).toList(), hits.next(),
+                hits.hasNext());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookResponseDto> getBooks(List<Long> ids) {
+        if (ids.isEmpty())
+            return List.of();
+
+        // Busca os livros em uma única consulta e reordena conforme a lista de IDs
+        Map<Long, BookResponseDto> booksById = bookRepository.findAllResponsesById(ids).stream()
+                .collect(Collectors.toMap(BookResponseDto::id, Function.identity()));
+        return ids.stream().map(booksById::get).filter(Objects::nonNull).toList();
     }
 
     @Override
     public boolean deleteBook(Long id) {
-        log.info("Deleting book with id {}", id);
-        return bookRepository.deleteByIdInt(id) > 0;
+        log.info("Deleting book with id {}", v("bookId", id));
+        boolean isDeleted = bookRepository.deleteByIdInt(id) > 0;
+
+        if (isDeleted) {
+            recommendationPoolService.removeBook(id);
+            bookSuggestionService.removeBook(id);
+        }
+        return isDeleted;
     }
 }
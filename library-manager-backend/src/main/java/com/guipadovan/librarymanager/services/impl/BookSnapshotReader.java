@@ -0,0 +1,204 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+
+import static com.guipadovan.librarymanager.services.impl.BookSnapshotWriter.*;
+
+/**
+ * Reads the books of a snapshot written by {@link BookSnapshotWriter}, one at a time.
+ * <p>
+ * A snapshot with an unknown header or record, a text longer than the columns allow, a date out of range, or without
+ * the end record, is rejected with a {@link StreamCorruptedException} or an {@link EOFException}.
+ */
+final class BookSnapshotReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * Longest text in bytes: the varchar(255) columns of books hold up to 4 UTF-8 bytes per character.
+     */
+    private static final int MAX_TEXT_LENGTH = 255 * 4;
+    private static final long MIN_EPOCH_DAY = LocalDate.MIN.toEpochDay();
+    private static final long MAX_EPOCH_DAY = LocalDate.MAX.toEpochDay();
+
+    private final InputStream input;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    private final List<String> authors = new ArrayList<>();
+    private final List<String> categories = new ArrayList<>();
+    private long previousId;
+    private long count;
+    private boolean finished;
+
+    BookSnapshotReader(InputStream input) throws IOException {
+        this.input = new GZIPInputStream(input, BUFFER_SIZE);
+
+        byte[] magic = new byte[MAGIC.length];
+        for (int i = 0; i < magic.length; i++)
+            magic[i] = (byte) readByte();
+        if (!Arrays.equals(magic, MAGIC))
+            throw new StreamCorruptedException("Not a book snapshot");
+        int version = readByte();
+        if (version != VERSION)
+            throw new StreamCorruptedException("Unsupported snapshot version " + version);
+    }
+
+    /**
+     * Returns the number of books read so far.
+     */
+    long count() {
+        return count;
+    }
+
+    /**
+     * Reads the next book.
+     *
+     * @return the book, or null after the last book
+     *
+     * @throws IOException if the input cannot be read or isn't a valid snapshot
+     */
+    BookResponseDto read() throws IOException {
+        if (finished)
+            return null;
+
+        long record = readLong();
+        if (record == END_RECORD) {
+            long expected = readLong();
+            if (expected != count)
+                throw new StreamCorruptedException("Expected " + expected + " books but read " + count);
+            finished = true;
+            return null;
+        }
+        if (record != BOOK_RECORD)
+            throw new StreamCorruptedException("Unknown record " + record);
+
+        long id = previousId + readLong();
+        previousId = id;
+        String title = readText();
+        String author = readCode(authors);
+        String isbn = readText();
+        LocalDate publicationDate = readDate();
+        String category = readCode(categories);
+        count++;
+        return new BookResponseDto(id, title, author, isbn, publicationDate, category);
+    }
+
+    /**
+     * Returns an iterator over the books not read yet, for consumers that can't throw checked exceptions. The read
+     * errors are thrown as {@link UncheckedIOException}.
+     */
+    Iterator<BookResponseDto> iterator() {
+        return new Iterator<>() {
+            private BookResponseDto next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = read();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public BookResponseDto next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                BookResponseDto book = next;
+                next = null;
+                return book;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private String readCode(List<String> dictionary) throws IOException {
+        long code = readLong();
+        if (code < dictionary.size())
+            return dictionary.get((int) code);
+        if (code != dictionary.size())
+            throw new StreamCorruptedException("Unknown dictionary code " + code);
+
+        String value = readText();
+        dictionary.add(value);
+        return value;
+    }
+
+    private String readText() throws IOException {
+        long length = readLong();
+        if (length < 0 || length > MAX_TEXT_LENGTH)
+            throw new StreamCorruptedException("Invalid text length " + length);
+
+        if (length <= limit - position) {
+            String value = new String(buffer, position, (int) length, StandardCharsets.UTF_8);
+            position += (int) length;
+            return value;
+        }
+
+        // Texto que atravessa o fim do buffer
+        byte[] bytes = new byte[(int) length];
+        int copied = limit - position;
+        System.arraycopy(buffer, position, bytes, 0, copied);
+        position = limit;
+        while (copied < bytes.length) {
+            int read = input.read(bytes, copied, bytes.length - copied);
+            if (read < 0)
+                throw new EOFException("Truncated book snapshot");
+            copied += read;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private LocalDate readDate() throws IOException {
+        long epochDay = readLong();
+        if (epochDay < MIN_EPOCH_DAY || epochDay > MAX_EPOCH_DAY)
+            throw new StreamCorruptedException("Invalid date " + epochDay);
+        return LocalDate.ofEpochDay(epochDay);
+    }
+
+    private long readLong() throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+        throw new StreamCorruptedException("Invalid varint");
+    }
+
+    private int readByte() throws IOException {
+        if (position == limit) {
+            limit = input.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                throw new EOFException("Truncated book snapshot");
+            }
+        }
+        return buffer[position++] & 0xFF;
+    }
+}
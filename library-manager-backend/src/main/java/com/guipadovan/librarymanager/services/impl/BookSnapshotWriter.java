@@ -0,0 +1,144 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the books of the catalog in the snapshot format read by {@link BookSnapshotReader}.
+ * <p>
+ * The snapshot is a gzip stream with the magic {@code LMBS} and a version byte, followed by one record per book and an
+ * end record with the number of books, so a truncated snapshot is detected. Each book record has the difference from
+ * the previous ID, the title, the codes of the author and of the category, the ISBN and the epoch day of the
+ * publication date. Numbers are written as zigzag varints and texts as their UTF-8 length followed by the bytes.
+ * <p>
+ * Authors and categories repeat across the catalog, so they are dictionary encoded: the first occurrence of a value
+ * is written with the next free code followed by the text, and the later ones with the code alone.
+ */
+final class BookSnapshotWriter implements Closeable {
+
+    static final byte[] MAGIC = {'L', 'M', 'B', 'S'};
+    static final int VERSION = 1;
+    static final int END_RECORD = 0;
+    static final int BOOK_RECORD = 1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_VARINT_SIZE = 10;
+
+    private final OutputStream output;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+    private final Map<String, Integer> authorCodes = new HashMap<>();
+    private final Map<String, Integer> categoryCodes = new HashMap<>();
+    private long previousId;
+    private long count;
+
+    BookSnapshotWriter(OutputStream output) throws IOException {
+        // A compressão mais rápida, a maior parte da redução já vem dos dicionários
+        this.output = new GZIPOutputStream(output, BUFFER_SIZE) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+        this.output.write(MAGIC);
+        this.output.write(VERSION);
+    }
+
+    /**
+     * Returns the number of books written so far.
+     */
+    long count() {
+        return count;
+    }
+
+    /**
+     * Writes a book. The books must be written in ascending order of ID.
+     *
+     * @param book the book to write
+     *
+     * @throws IOException if the output cannot be written
+     */
+    void write(BookResponseDto book) throws IOException {
+        writeLong(BOOK_RECORD);
+        writeLong(book.id() - previousId);
+        previousId = book.id();
+        writeText(book.title());
+        writeCode(authorCodes, book.author());
+        writeText(book.isbn());
+        writeLong(book.publicationDate().toEpochDay());
+        writeCode(categoryCodes, book.category());
+        count++;
+    }
+
+    /**
+     * Writes the end record and flushes the snapshot. A snapshot that isn't finished is rejected when read.
+     *
+     * @throws IOException if the output cannot be written
+     */
+    void finish() throws IOException {
+        writeLong(END_RECORD);
+        writeLong(count);
+        flushBuffer();
+        ((GZIPOutputStream) output).finish();
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (position > 0)
+            flushBuffer();
+        output.close();
+    }
+
+    private void writeCode(Map<String, Integer> codes, String value) throws IOException {
+        Integer code = codes.get(value);
+        if (code != null) {
+            writeLong(code);
+            return;
+        }
+
+        code = codes.size();
+        codes.put(value, code);
+        writeLong(code);
+        writeText(value);
+    }
+
+    private void writeText(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeLong(bytes.length);
+        if (bytes.length > buffer.length - position) {
+            flushBuffer();
+            if (bytes.length > buffer.length) {
+                output.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (buffer.length - position < MAX_VARINT_SIZE)
+            flushBuffer();
+
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        buffer[position++] = (byte) zigzag;
+    }
+
+    private void flushBuffer() throws IOException {
+        output.write(buffer, 0, position);
+        position = 0;
+    }
+}
@@ -0,0 +1,233 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.dtos.BookSuggestionDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory prefix index over the words of the titles and authors of the books.
+ * <p>
+ * The words are kept in a sorted map, so the words starting with a prefix form a contiguous range, and each word keeps
+ * the sorted IDs of its books in a dense array. A lookup walks the range in order and stops as soon as it has enough
+ * suggestions, so its cost depends on the number of suggestions and not on the size of the catalog.
+ * <p>
+ * Not thread-safe, the callers must synchronize the access.
+ */
+final class BookSuggestionIndex {
+
+    // Palavras de uma letra apareceriam em boa parte dos livros, elas ainda são conferidas nas buscas com mais palavras
+    private static final int MIN_WORD_LENGTH = 2;
+
+    private final NavigableMap<String, Postings> words = new TreeMap<>();
+    private final Map<Long, IndexedBook> books = new HashMap<>();
+
+    /**
+     * Builds the index of a chunk of books.
+     *
+     * @param chunk the books, preferably in ascending order of ID
+     *
+     * @return the index of the chunk
+     */
+    static BookSuggestionIndex of(List<BookSuggestionDto> chunk) {
+        BookSuggestionIndex index = new BookSuggestionIndex();
+        chunk.forEach(index::put);
+        return index;
+    }
+
+    /**
+     * Adds a book to the index, replacing the previous title and author if the book is already indexed.
+     *
+     * @param book the book to index
+     */
+    void put(BookSuggestionDto book) {
+        remove(book.id());
+
+        IndexedBook indexed = IndexedBook.of(book);
+        books.put(book.id(), indexed);
+        for (String word : indexed.indexedWords())
+            words.computeIfAbsent(word, key -> new Postings()).add(book.id());
+    }
+
+    /**
+     * Removes a book from the index.
+     *
+     * @param bookId the ID of the book
+     */
+    void remove(long bookId) {
+        IndexedBook book = books.remove(bookId);
+        if (book == null)
+            return;
+
+        for (String word : book.indexedWords()) {
+            Postings postings = words.get(word);
+            if (postings != null && postings.remove(bookId) && postings.size == 0)
+                words.remove(word);
+        }
+    }
+
+    /**
+     * Appends the books of another index, whose IDs must all be greater than the IDs of this index, as the chunks of
+     * the initial load are. The arrays of the words are concatenated instead of inserting the IDs one by one.
+     *
+     * @param chunk the index to append
+     */
+    void append(BookSuggestionIndex chunk) {
+        books.putAll(chunk.books);
+        chunk.words.forEach((word, postings) -> words.merge(word, postings, Postings::concat));
+    }
+
+    /**
+     * Finds the books that have a word starting with each token.
+     * The candidates come from the token that starts the fewest book words, and are ordered by the word they matched
+     * and then by ID.
+     *
+     * @param tokens     the normalized tokens typed by the client
+     * @param limit      the maximum number of suggestions
+     * @param maxScanned the maximum number of candidates checked, which bounds the cost of tokens that start many words
+     *
+     * @return the suggested books
+     */
+    List<BookSuggestionDto> suggest(List<String> tokens, int limit, int maxScanned) {
+        if (tokens.isEmpty())
+            return List.of();
+
+        String driver = mostSelective(tokens);
+        // Procura os outros tokens no início das palavras, que são guardadas precedidas por espaço
+        List<String> others = tokens.stream().filter(token -> !token.equals(driver)).map(token -> " " + token).toList();
+
+        List<BookSuggestionDto> suggestions = new ArrayList<>(limit);
+        Set<Long> checked = new HashSet<>();
+        for (Postings postings : wordsStartingWith(driver).values()) {
+            for (int i = 0; i < postings.size; i++) {
+                if (checked.size() >= maxScanned)
+                    return suggestions;
+
+                long bookId = postings.ids[i];
+                if (!checked.add(bookId))
+                    continue;
+
+                IndexedBook book = books.get(bookId);
+                if (book.matchesAll(others)) {
+                    suggestions.add(book.book());
+                    if (suggestions.size() == limit)
+                        return suggestions;
+                }
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * Returns the number of indexed books.
+     *
+     * @return the number of books
+     */
+    int size() {
+        return books.size();
+    }
+
+    private String mostSelective(List<String> tokens) {
+        if (tokens.size() == 1)
+            return tokens.getFirst();
+
+        // Conta os livros de cada token só até passar do menor total encontrado, começando pelos tokens mais longos,
+        // assim um prefixo curto de muitas palavras não é percorrido inteiro
+        List<String> byLength = tokens.stream().sorted(Comparator.comparingInt(String::length).reversed()).toList();
+        String selected = byLength.getFirst();
+        long selectedCount = Long.MAX_VALUE;
+        for (String token : byLength) {
+            long count = 0;
+            for (Postings postings : wordsStartingWith(token).values()) {
+                count += postings.size;
+                if (count >= selectedCount)
+                    break;
+            }
+            if (count < selectedCount) {
+                selected = token;
+                selectedCount = count;
+            }
+        }
+        return selected;
+    }
+
+    private SortedMap<String, Postings> wordsStartingWith(String prefix) {
+        // O intervalo [prefixo, prefixo + maior caractere) contém exatamente as palavras que começam com o prefixo
+        return words.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * An indexed book with the normalized words of its title and author, each preceded by a space, so the other tokens
+     * of a search are checked without normalizing the book again.
+     */
+    private record IndexedBook(BookSuggestionDto book, String words) {
+
+        static IndexedBook of(BookSuggestionDto book) {
+            List<String> bookWords = SearchText.tokenize(book.title() + " " + book.author());
+            return new IndexedBook(book, " " + String.join(" ", bookWords));
+        }
+
+        List<String> indexedWords() {
+            return Arrays.stream(words.split(" "))
+                    .filter(word -> word.length() >= MIN_WORD_LENGTH)
+                    .toList();
+        }
+
+        boolean matchesAll(List<String> spacedTokens) {
+            for (String token : spacedTokens)
+                if (!words.contains(token))
+                    return false;
+            return true;
+        }
+    }
+
+    /**
+     * Sorted IDs of the books of a single word.
+     */
+    private static final class Postings {
+        private long[] ids = new long[1];
+        private int size;
+
+        void add(long bookId) {
+            // Os IDs vêm da sequência, então quase sempre o livro novo entra no final
+            int position = size == 0 || ids[size - 1] < bookId ? size : Arrays.binarySearch(ids, 0, size, bookId);
+            if (position >= 0 && position < size)
+                return;
+            if (position < 0)
+                position = -position - 1;
+
+            if (size == ids.length)
+                ids = Arrays.copyOf(ids, size * 2);
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = bookId;
+            size++;
+        }
+
+        boolean remove(long bookId) {
+            int position = Arrays.binarySearch(ids, 0, size, bookId);
+            if (position < 0)
+                return false;
+
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+            return true;
+        }
+
+        static Postings concat(Postings first, Postings second) {
+            if (first.ids.length < first.size + second.size)
+                first.ids = Arrays.copyOf(first.ids, first.size + second.size);
+            System.arraycopy(second.ids, 0, first.ids, first.size, second.size);
+            first.size += second.size;
+            return first;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.dtos.BookSuggestionDto;
+import com.guipadovan.librarymanager.exceptions.InputValidationException;
+import com.guipadovan.librarymanager.repositories.BookRepository;
+import com.guipadovan.librarymanager.services.BookSuggestionService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.guipadovan.librarymanager.services.impl.TransactionCallbacks.afterCommit;
+
+/**
+ * Implementation of {@link BookSuggestionService} interface.
+ * <p>
+ * Keeps a {@link BookSuggestionIndex} of the whole catalog in memory, so the suggestions shown while the client types
+ * don't need a database round trip. The database remains the source of truth and the index is rebuilt from it on
+ * startup and after a snapshot restore; the changes committed during a rebuild are queued by a {@link ReloadGate} and
+ * applied to the new index.
+ */
+@Service
+@Slf4j
+public class BookSuggestionServiceImpl implements BookSuggestionService {
+
+    static final int MAX_LIMIT = 20;
+
+    private final BookRepository bookRepository;
+
+    // O índice não é thread-safe, então leituras e escritas são protegidas pelo lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReloadGate reloadGate = new ReloadGate();
+    private BookSuggestionIndex index = new BookSuggestionIndex();
+
+    @Value("${library.books.suggest.load-chunk-size:50000}")
+    private int loadChunkSize = 50000;
+
+    @Value("${library.books.suggest.load-threads:4}")
+    private int loadThreads = 4;
+
+    @Value("${library.books.suggest.max-scanned:5000}")
+    private int maxScanned = 5000;
+
+    public BookSuggestionServiceImpl(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    /**
+     * Loads the index with every book in the catalog.
+     * The catalog is read in chunks of {@code load-chunk-size} books by parallel queries, each chunk is indexed by its
+     * own thread and the partial indexes are appended in order of ID.
+     */
+    @Override
+    @PostConstruct
+    public void loadIndex() {
+        reloadGate.reload(() -> {
+            long maxId = bookRepository.findMaxId().orElse(0L);
+
+            // Os limites dos blocos vêm dos próprios IDs, pois a sequência dos livros deixa lacunas entre eles
+            List<Long> chunkEnds = new ArrayList<>(bookRepository.findChunkBoundaries(0, maxId, loadChunkSize));
+            if (maxId > 0 && (chunkEnds.isEmpty() || chunkEnds.get(chunkEnds.size() - 1) < maxId))
+                chunkEnds.add(maxId);
+
+            BookSuggestionIndex loaded = new BookSuggestionIndex();
+            try (ExecutorService executor = Executors.newFixedThreadPool(loadThreads)) {
+                List<Future<BookSuggestionIndex>> chunks = new ArrayList<>();
+                long chunkStart = 0;
+                for (long chunkEnd : chunkEnds) {
+                    long from = chunkStart;
+                    chunks.add(executor.submit(() -> BookSuggestionIndex.of(
+                            bookRepository.findSuggestionsByIdRange(from, chunkEnd))));
+                    chunkStart = chunkEnd;
+                }
+
+                for (Future<BookSuggestionIndex> chunk : chunks)
+                    loaded.append(chunk.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while loading the book suggestions", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to load the book suggestions", e.getCause());
+            }
+
+            lock.writeLock().lock();
+            try {
+                index = loaded;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            log.info("Loaded {} books into the suggestion index", loaded.size());
+        });
+    }
+
+    @Override
+    public void indexBook(Long bookId, String title, String author) {
+        BookSuggestionDto book = new BookSuggestionDto(bookId, title, author);
+        afterCommit(() -> reloadGate.update(() -> {
+            lock.writeLock().lock();
+            try {
+                index.put(book);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }));
+    }
+
+    @Override
+    public void removeBook(Long bookId) {
+        afterCommit(() -> reloadGate.update(() -> {
+            lock.writeLock().lock();
+            try {
+                index.remove(bookId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws InputValidationException if the limit is invalid
+     */
+    @Override
+    public List<BookSuggestionDto> suggest(String query, int limit) throws InputValidationException {
+        if (limit < 1 || limit > MAX_LIMIT)
+            throw new InputValidationException("Invalid limit", Map.of("limit", "O limite deve estar entre 1 e " + MAX_LIMIT));
+
+        List<String> tokens = SearchText.tokenize(query);
+        if (tokens.isEmpty())
+            return List.of();
+
+        lock.readLock().lock();
+        try {
+            return index.suggest(tokens, limit, maxScanned);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.exceptions.InputValidationException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tokens of a catalog search and their translation to a PostgreSQL full-text query.
+ *
+ * @param tokens the unaccented, lowercase words of the search, without duplicates
+ */
+record CatalogSearchQuery(List<String> tokens) {
+
+    static final int MAX_TOKENS = 8;
+
+    /**
+     * Parses the text typed by a client, keeping only letters and digits so the tokens can't inject operators in the
+     * full-text query.
+     *
+     * @param text the search text
+     *
+     * @return the parsed search
+     *
+     * @throws InputValidationException if the text has no words or too many words
+     */
+    static CatalogSearchQuery parse(String text) throws InputValidationException {
+        List<String> tokens = SearchText.tokenize(text);
+
+        if (tokens.isEmpty())
+            throw new InputValidationException("Invalid search", Map.of("q", "A busca deve conter ao menos uma palavra"));
+        if (tokens.size() > MAX_TOKENS)
+            throw new InputValidationException("Invalid search", Map.of("q", "A busca deve ter no máximo " + MAX_TOKENS + " palavras"));
+        return new CatalogSearchQuery(tokens);
+    }
+
+    /**
+     * Builds the full-text query that requires every token, accepting the corrections of the misspelled tokens as
+     * alternatives. The last token is the word being typed and matches as a prefix, the others match whole words,
+     * which the index intersects much faster than prefixes of common words.
+     *
+     * @param corrections the dictionary words similar to each misspelled token
+     *
+     * @return the query in the {@code to_tsquery} syntax
+     */
+    String toTsQuery(Map<String, List<String>> corrections) {
+        List<String> terms = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            String term = i == tokens.size() - 1 ? token + ":*" : token;
+            List<String> alternatives = corrections.getOrDefault(token, List.of());
+            terms.add(alternatives.isEmpty() ? term : "(" + term + " | " + String.join(" | ", alternatives) + ")");
+        }
+        return String.join(" & ", terms);
+    }
+}
@@ -0,0 +1,64 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.dtos.EntityCacheStatsDto;
+import com.guipadovan.librarymanager.services.EntityCacheService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.util.List;
+
+import static com.guipadovan.librarymanager.config.EntityCacheConfig.*;
+import static com.guipadovan.librarymanager.services.impl.TransactionCallbacks.afterCommit;
+
+/**
+ * Implementation of {@link EntityCacheService} interface.
+ * <p>
+ * The lookups are counted by the Hibernate statistics and the sizes are read from the Caffeine caches of the regions.
+ */
+@Service
+public class EntityCacheServiceImpl implements EntityCacheService {
+
+    private final org.hibernate.Cache cache;
+    private final Statistics statistics;
+    private final CacheManager entityCacheManager;
+
+    public EntityCacheServiceImpl(EntityManagerFactory entityManagerFactory, CacheManager entityCacheManager) {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.cache = sessionFactory.getCache();
+        this.statistics = sessionFactory.getStatistics();
+        this.entityCacheManager = entityCacheManager;
+    }
+
+    @Override
+    public List<EntityCacheStatsDto> getStats() {
+        return List.of(
+                regionStats(BOOKS_REGION, statistics.getDomainDataRegionStatistics(BOOKS_REGION)),
+                regionStats(USERS_REGION, statistics.getDomainDataRegionStatistics(USERS_REGION)),
+                regionStats(QUERY_RESULTS_REGION, statistics.getQueryRegionStatistics(QUERY_RESULTS_REGION))
+        );
+    }
+
+    @Override
+    public void evict(Class<?> entityClass) {
+        // As consultas em cache podem listar as entidades alteradas, então a região de consultas também é limpa
+        afterCommit(() -> {
+            cache.evictEntityData(entityClass);
+            cache.evictDefaultQueryRegion();
+        });
+    }
+
+    private EntityCacheStatsDto regionStats(String region, CacheRegionStatistics regionStatistics) {
+        Cache<Object, Object> cache = entityCacheManager.getCache(region);
+        long size = cache.unwrap(com.github.benmanes.caffeine.cache.Cache.class).estimatedSize();
+
+        long hits = regionStatistics.getHitCount();
+        long misses = regionStatistics.getMissCount();
+        double hitRate = hits + misses > 0 ? (double) hits / (hits + misses) : 0;
+        return new EntityCacheStatsDto(region, size, hits, misses, regionStatistics.getPutCount(), hitRate);
+    }
+}
@@ -0,0 +1,200 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps the responses of the Google Books volumes endpoint to books.
+ * <p>
+ * The response is read token by token straight from the stream, and everything outside the few {@code volumeInfo}
+ * fields used by {@link BookResponseDto} is skipped without being materialized.
+ */
+final class GoogleBooksResponseMapper {
+
+    private final JsonFactory jsonFactory;
+
+    GoogleBooksResponseMapper(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Maps the volumes of a response to books, ignoring the volumes missing any of the book fields.
+     *
+     * @param response the body of the response, which is closed once read
+     *
+     * @return the list of books
+     *
+     * @throws IOException if the response cannot be read or is not a JSON object
+     */
+    List<BookResponseDto> mapBooks(InputStream response) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(response)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                throw new JsonParseException(parser, "Expected a JSON object");
+
+            List<BookResponseDto> books = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("items".equals(field) && value == JsonToken.START_ARRAY)
+                    readItems(parser, books);
+                else
+                    parser.skipChildren();
+            }
+            return books;
+        }
+    }
+
+    private static void readItems(JsonParser parser, List<BookResponseDto> books) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+
+            BookResponseDto book = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("volumeInfo".equals(field) && value == JsonToken.START_OBJECT)
+                    book = readVolumeInfo(parser);
+                else
+                    parser.skipChildren();
+            }
+
+            if (book != null)
+                books.add(book);
+        }
+    }
+
+    private static BookResponseDto readVolumeInfo(JsonParser parser) throws IOException {
+        String title = "";
+        String author = "";
+        String isbn = "";
+        String publicationDate = "";
+        String category = "";
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "title" -> title = readText(parser);
+                case "authors" -> author = readFirstText(parser);
+                case "industryIdentifiers" -> isbn = readFirstIdentifier(parser);
+                case "publishedDate" -> publicationDate = readText(parser);
+                case "categories" -> category = readFirstText(parser);
+                default -> parser.skipChildren();
+            }
+        }
+
+        // A API não aceita valores vazios, então se algum campo estiver vazio, ignora o book
+        if (title.isEmpty() || author.isEmpty() || isbn.isEmpty() || publicationDate.isEmpty() || category.isEmpty())
+            return null;
+
+        return new BookResponseDto(null, title, author, isbn, parseDate(publicationDate), category);
+    }
+
+    private static String readText(JsonParser parser) throws IOException {
+        if (parser.currentToken().isScalarValue())
+            return parser.currentToken() == JsonToken.VALUE_NULL ? "" : parser.getText();
+
+        parser.skipChildren();
+        return "";
+    }
+
+    // Lê o primeiro texto de um array e ignora o restante
+    private static String readFirstText(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return "";
+        }
+
+        String first = null;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (first == null)
+                first = token.isScalarValue() ? readText(parser) : "";
+            parser.skipChildren();
+        }
+        return first == null ? "" : first;
+    }
+
+    // Lê o campo "identifier" do primeiro identificador de um array e ignora o restante
+    private static String readFirstIdentifier(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return "";
+        }
+
+        String first = null;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (first != null || token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+
+            first = "";
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("identifier".equals(field))
+                    first = readText(parser);
+                else
+                    parser.skipChildren();
+            }
+        }
+        return first == null ? "" : first;
+    }
+
+    /**
+     * Google Books API returns publication dates in various formats, such as "2002-01-18", "2002-01" or "2002".
+     * Parses a date string in the format "YYYY-MM-DD", "YYYY-MM", or "YYYY", using the first day of the month or year
+     * when they are missing.
+     *
+     * @param date the date string to parse
+     *
+     * @return the parsed LocalDate object, or null if the date string is invalid
+     */
+    static LocalDate parseDate(String date) {
+        int length = date.length();
+        if (length != 4 && length != 7 && length != 10)
+            return null;
+
+        int year = readDigits(date, 0, 4);
+        int month = length >= 7 ? readSeparatedDigits(date, 4, 7) : 1;
+        int day = length == 10 ? readSeparatedDigits(date, 7, 10) : 1;
+
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > YearMonth.of(year, month).lengthOfMonth())
+            return null;
+
+        return LocalDate.of(year, month, day);
+    }
+
+    // Lê os dígitos entre start e end precedidos por um '-', retornando -1 se o formato for inválido
+    private static int readSeparatedDigits(String value, int start, int end) {
+        return value.charAt(start) == '-' ? readDigits(value, start + 1, end) : -1;
+    }
+
+    // Lê os dígitos entre start e end, retornando -1 se algum caractere não for um dígito
+    private static int readDigits(String value, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+}
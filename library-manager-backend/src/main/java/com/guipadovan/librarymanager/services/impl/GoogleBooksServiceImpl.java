@@ -1,119 +1,202 @@
 package com.guipadovan.librarymanager.services.impl;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.guipadovan.librarymanager.entities.Book;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.guipadovan.librarymanager.config.GoogleBooksProperties;
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import com.guipadovan.librarymanager.dtos.CacheStatsDto;
 import com.guipadovan.librarymanager.services.GoogleBooksService;
-import org.springframework.beans.factory.annotation.Value;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.IOException;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.ArrayList;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
 import java.util.List;
-import java.util.Optional;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Implementation of {@link GoogleBooksService} interface.
+ * <p>
+ * Searches are cached by the normalized title in a bounded cache. Searches without results are cached for a shorter
+ * time, and concurrent searches for the same title wait for the same API call. The API is called through a shared
+ * {@link HttpClient}, so connections are reused between searches and no thread is blocked while waiting for a response.
+ * The cache holds immutable lists of {@link BookResponseDto} records rather than entities, since every search for the
+ * same title gets the same instances.
  */
 @Service
+@Timed("library.service")
 public class GoogleBooksServiceImpl implements GoogleBooksService {
 
-    private static final String GOOGLE_BOOKS_API_URL_TEMPLATE = "https://www.googleapis.com/books/v1/volumes?q=intitle:%s&key=%s";
+    private final GoogleBooksProperties properties;
+    private final HttpClient httpClient;
+    private final GoogleBooksResponseMapper responseMapper;
+    private final AsyncCache<String, List<BookResponseDto>> searchCache;
+    private final MeterRegistry meterRegistry;
 
-    @Value("${google.books.api-key}")
-    private String apiKey;
+    @Autowired
+    public GoogleBooksServiceImpl(GoogleBooksProperties properties, HttpClient httpClient, ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry) {
+        this(properties, httpClient, objectMapper, meterRegistry, Ticker.systemTicker());
+    }
+
+    GoogleBooksServiceImpl(GoogleBooksProperties properties, HttpClient httpClient, ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry, Ticker ticker) {
+        this.properties = properties;
+        this.httpClient = httpClient;
+        this.meterRegistry = meterRegistry;
+        this.responseMapper = new GoogleBooksResponseMapper(objectMapper.getFactory());
+        this.searchCache = Caffeine.newBuilder()
+                .maximumSize(properties.cache().maximumSize())
+                .expireAfter(new SearchExpiry(properties.cache().ttl(), properties.cache().negativeTtl()))
+                .ticker(ticker)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, searchCache, "google-books-search");
+    }
 
     @Override
-    public List<Book> searchBooksByTitle(String title) throws IOException {
-        RestTemplate restTemplate = new RestTemplate();
-        String url = String.format(GOOGLE_BOOKS_API_URL_TEMPLATE, title, apiKey);
-        String jsonResponse = restTemplate.getForObject(url, String.class);
+    public List<BookResponseDto> searchBooksByTitle(String title) throws IOException {
+        return await(searchBooksByTitleAsync(title));
+    }
 
-        return mapBooks(jsonResponse);
+    @Override
+    public CompletableFuture<List<BookResponseDto>> searchBooksByTitleAsync(String title) {
+        String normalizedTitle = normalizeTitle(title);
+        if (normalizedTitle.isEmpty())
+            return CompletableFuture.completedFuture(List.of());
+
+        // Apenas a primeira busca de um título chama a API, as buscas concorrentes aguardam o mesmo resultado.
+        // Buscas que falharam são removidas do cache pelo Caffeine e serão tentadas novamente
+        return searchCache.get(normalizedTitle, (key, executor) -> fetchBooks(key));
     }
 
-    /**
-     * Maps the JSON response from the Google Books API to a list of Book objects.
-     *
-     * @param jsonResponse the JSON response from the API
-     *
-     * @return a list of Book objects
-     *
-     * @throws IOException if there is an error during JSON parsing
-     */
-    private List<Book> mapBooks(String jsonResponse) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode rootNode = mapper.readTree(jsonResponse);
-        JsonNode itemsNode = rootNode.path("items");
-
-        List<Book> books = new ArrayList<>();
-        if (itemsNode.isArray()) {
-            for (JsonNode itemNode : itemsNode) {
-                JsonNode volumeInfo = itemNode.path("volumeInfo");
-
-                // Mapeia os dados do volumeInfo para o objeto Book
-                String title = volumeInfo.path("title").asText();
-                String author = volumeInfo.path("authors").isArray()
-                        ? volumeInfo.path("authors").get(0).asText()
-                        : "";
-                String isbn = volumeInfo.path("industryIdentifiers").isArray()
-                        ? volumeInfo.path("industryIdentifiers").get(0).path("identifier").asText()
-                        : "";
-                String publicationDate = volumeInfo.path("publishedDate").asText();
-                String category = volumeInfo.path("categories").isArray()
-                        ? volumeInfo.path("categories").get(0).asText()
-                        : "";
-
-                // A API não aceita valores vazios, então se algum campo estiver vazio, ignora o book
-                if (title.isEmpty() || author.isEmpty() || isbn.isEmpty() || publicationDate.isEmpty() || category.isEmpty()) {
-                    continue;
-                }
-
-                books.add(new Book(title, author, isbn, parseDate(publicationDate), category));
-            }
+    @Override
+    public CacheStatsDto getSearchCacheStats() {
+        // Aplica as remoções pendentes para que o tamanho e as remoções estejam atualizados
+        searchCache.synchronous().cleanUp();
+        CacheStats stats = searchCache.synchronous().stats();
+        return new CacheStatsDto(searchCache.synchronous().estimatedSize(), stats.hitCount(), stats.missCount(),
+                stats.hitRate(), stats.evictionCount(), stats.loadFailureCount());
+    }
+
+    private CompletableFuture<List<BookResponseDto>> fetchBooks(String title) {
+        URI uri = UriComponentsBuilder.fromHttpUrl(properties.apiUrl())
+                .queryParam("q", "intitle:" + title)
+                .queryParam("key", properties.apiKey())
+                .encode()
+                .build()
+                .toUri();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(properties.readTimeout())
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+
+        // A resposta é convertida enquanto é recebida, sem guardar o corpo inteiro em memória. O tempo das chamadas à
+        // API é medido à parte, já que as buscas em cache nem chegam a chamá-la
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CompletableFuture<HttpResponse<InputStream>> response = httpClient.sendAsync(request,
+                HttpResponse.BodyHandlers.ofInputStream());
+        // O timeout da requisição só vale até os cabeçalhos, então a busca inteira é limitada pelo mesmo tempo
+        return response.thenApply(this::readBooks)
+                .orTimeout(properties.readTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionallyCompose(error -> {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (!(cause instanceof TimeoutException))
+                        return CompletableFuture.failedFuture(cause);
+
+                    // Fechar o corpo libera a thread bloqueada na leitura de uma resposta que parou de chegar
+                    response.cancel(true);
+                    response.thenAccept(GoogleBooksServiceImpl::closeBody);
+                    return CompletableFuture.failedFuture(new HttpTimeoutException(
+                            "Google Books API did not respond within " + properties.readTimeout()));
+                })
+                .whenComplete((books, error) -> sample.stop(meterRegistry.timer("google.books.requests",
+                        "outcome", error == null ? "success" : "error")));
+    }
+
+    private List<BookResponseDto> readBooks(HttpResponse<InputStream> response) {
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200)
+                throw new IOException("Google Books API responded with status " + response.statusCode());
+            return List.copyOf(responseMapper.mapBooks(body));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        return books;
+    private static void closeBody(HttpResponse<InputStream> response) {
+        try {
+            response.body().close();
+        } catch (IOException e) {
+            // A busca já falhou por timeout, o erro ao fechar não muda o resultado
+        }
     }
 
     /**
-     * Google Books API returns publication dates in various formats, such as "2002-01-18" or "2002".
-     * Parses a date string in the format "YYYY-MM-DD", "YYYY-MM", or "YYYY".
+     * Normalizes a title so that searches differing only in case or spacing share the same cache entry.
      *
-     * @param dateStr the date string to parse
+     * @param title the title to normalize
      *
-     * @return the parsed LocalDate object, or null if the date string is invalid
+     * @return the normalized title
      */
-    private LocalDate parseDate(String dateStr) {
-        Optional<LocalDate> parsedDate = Optional.empty();
+    static String normalizeTitle(String title) {
+        return title == null ? "" : title.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
 
-        // Tenta  dar parse da data como ISO "YYYY-MM-DD"
+    private static List<BookResponseDto> await(CompletableFuture<List<BookResponseDto>> search) throws IOException {
         try {
-            parsedDate = Optional.of(LocalDate.parse(dateStr, DateTimeFormatter.ISO_DATE));
-        } catch (DateTimeParseException ignored) {
+            return search.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException uncheckedIOException)
+                throw uncheckedIOException.getCause();
+            if (e.getCause() instanceof IOException ioException)
+                throw ioException;
+            if (e.getCause() instanceof RuntimeException runtimeException)
+                throw runtimeException;
+            throw e;
         }
+    }
+
+    /**
+     * Keeps searches with results for the configured TTL and searches without results for the shorter negative TTL.
+     */
+    private record SearchExpiry(Duration ttl, Duration negativeTtl) implements Expiry<String, List<BookResponseDto>> {
 
-        // Tenta dar parse da data como "YYYY-MM" acrescentando "-01"
-        if (parsedDate.isEmpty()) {
-            try {
-                parsedDate = Optional.of(LocalDate.parse(dateStr + "-01", DateTimeFormatter.ofPattern("yyyy-MM")));
-            } catch (DateTimeParseException ignored) {
-            }
+        @Override
+        public long expireAfterCreate(String title, List<BookResponseDto> books, long currentTime) {
+            return books.isEmpty() ? negativeTtl.toNanos() : ttl.toNanos();
         }
 
-        // Tenta dar parse da data como "YYYY" com o mês e dia fixados em 1
-        if (parsedDate.isEmpty()) {
-            try {
-                parsedDate = Optional.of(LocalDate.of(Integer.parseInt(dateStr), 1, 1));
-            } catch (NumberFormatException ignored) {
-            }
+        @Override
+        public long expireAfterUpdate(String title, List<BookResponseDto> books, long currentTime,
+                                      long currentDuration) {
+            return expireAfterCreate(title, books, currentTime);
         }
 
-        // Se nenhum dos casos de parse for bem sucedido, retorna null
-        return parsedDate.orElse(null);
+        @Override
+        public long expireAfterRead(String title, List<BookResponseDto> books, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
@@ -0,0 +1,50 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+import java.util.Map;
+
+/**
+ * Maps and validates the records of the bulk imports.
+ */
+final class ImportRecords {
+
+    private ImportRecords() {
+    }
+
+    /**
+     * Maps a single imported record to its DTO and validates it.
+     *
+     * @param objectMapper the mapper of the record
+     * @param validator    the validator of the DTO
+     * @param node         the JSON node of the record
+     * @param type         the class of the DTO
+     * @param fieldErrors  the map where the validation errors are added
+     * @param <T>          the type of the DTO
+     *
+     * @return the DTO, or null if the record is invalid
+     */
+    static <T> T map(ObjectMapper objectMapper, Validator validator, JsonNode node, Class<T> type,
+                     Map<String, String> fieldErrors) {
+        T details;
+        try {
+            details = objectMapper.treeToValue(node, type);
+        } catch (JsonMappingException e) {
+            String fieldName = e.getPath().isEmpty() ? "record" : e.getPath().getLast().getFieldName();
+            fieldErrors.put(fieldName != null ? fieldName : "record", "Formato inválido");
+            return null;
+        } catch (JsonProcessingException e) {
+            fieldErrors.put("record", "Formato inválido");
+            return null;
+        }
+
+        for (ConstraintViolation<T> violation : validator.validate(details))
+            fieldErrors.put(violation.getPropertyPath().toString(), violation.getMessage());
+        return fieldErrors.isEmpty() ? details : null;
+    }
+}
@@ -0,0 +1,45 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.dtos.ImportResultDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accumulates the outcome of a bulk import.
+ * Only the first errors are kept, so a large input full of invalid records doesn't grow the result without bounds.
+ */
+final class ImportResultBuilder {
+
+    private final int maxReportedErrors;
+    private final List<ImportResultDto.RecordError> errors = new ArrayList<>();
+    private long imported;
+    private long failed;
+
+    ImportResultBuilder(int maxReportedErrors) {
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    void imported(int count) {
+        imported += count;
+    }
+
+    void rejected(long index, Map<String, String> fieldErrors) {
+        failed++;
+        if (errors.size() < maxReportedErrors)
+            errors.add(new ImportResultDto.RecordError(index, fieldErrors));
+    }
+
+    long imported() {
+        return imported;
+    }
+
+    long failed() {
+        return failed;
+    }
+
+    ImportResultDto build() {
+        return new ImportResultDto(imported, failed, List.copyOf(errors));
+    }
+}
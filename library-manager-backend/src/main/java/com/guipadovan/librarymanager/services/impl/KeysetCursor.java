@@ -0,0 +1,88 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.dtos.CursorPageDto;
+import com.guipadovan.librarymanager.exceptions.InputValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Position of a keyset paginated listing, made of the sort key and the ID of the last item returned.
+ * It is exchanged with the clients as an opaque Base64 token.
+ *
+ * @param key the sort key of the last item, or an empty string when sorting by ID only
+ * @param id  the ID of the last item
+ */
+record KeysetCursor(String key, long id) {
+
+    /**
+     * Cursor positioned before the first item.
+     */
+    static final KeysetCursor START = new KeysetCursor("", 0L);
+
+    static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * Decodes a cursor token received from a client.
+     *
+     * @param token the cursor token, or null for the first page
+     *
+     * @return the decoded cursor
+     *
+     * @throws InputValidationException if the token is invalid
+     */
+    static KeysetCursor decode(String token) throws InputValidationException {
+        if (token == null || token.isEmpty())
+            return START;
+
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(':');
+            return new KeysetCursor(decoded.substring(separator + 1), Long.parseLong(decoded.substring(0, separator)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InputValidationException("Invalid cursor", Map.of("after", "Cursor inválido"));
+        }
+    }
+
+    /**
+     * Validates the size of a slice requested by a client.
+     *
+     * @param size the number of items per slice
+     *
+     * @throws InputValidationException if the size is out of range
+     */
+    static void validateSize(int size) throws InputValidationException {
+        if (size < 1 || size > MAX_PAGE_SIZE)
+            throw new InputValidationException("Invalid page size", Map.of("size", "O tamanho deve estar entre 1 e " + MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Builds a slice from the rows fetched with one extra row, which only signals that there is a next slice.
+     *
+     * @param rows     the rows fetched, up to {@code size + 1}
+     * @param size     the number of items per slice
+     * @param cursorOf the function that builds the cursor of a row
+     * @param <T>      the type of the rows
+     *
+     * @return the slice with the cursor of its last item
+     */
+    static <T> CursorPageDto<T> slice(List<T> rows, int size, Function<T, KeysetCursor> cursorOf) {
+        boolean hasNext = rows.size() > size;
+        List<T> content = hasNext ? rows.subList(0, size) : rows;
+        String next = hasNext ? cursorOf.apply(content.getLast()).encode() : null;
+        return new CursorPageDto<>(content, next, hasNext);
+    }
+
+    /**
+     * Encodes this cursor as an opaque token.
+     *
+     * @return the cursor token
+     */
+    String encode() {
+        byte[] bytes = (id + ":" + key).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
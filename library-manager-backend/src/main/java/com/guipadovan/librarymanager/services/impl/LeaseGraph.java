@@ -0,0 +1,204 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import java.util.Arrays;
+
+/**
+ * Immutable graph of the books leased by each user, in both directions, used to count the users who leased two books.
+ * <p>
+ * Users and books are numbered by the position of their IDs in sorted arrays, and the adjacency lists are stored in
+ * the compressed sparse row layout: the list of an element is the range between its offset and the next one in a
+ * single {@code int} array. A user keeps only their most recent distinct books, which bounds the cost of the pairs of
+ * books of a user and the weight of a single heavy reader.
+ */
+final class LeaseGraph {
+
+    static final LeaseGraph EMPTY = new LeaseGraph(new long[0], new long[0], new int[]{0}, new int[0], new int[]{0},
+            new int[0]);
+
+    private final long[] userIds;
+    private final long[] bookIds;
+    // Livros de cada usuário, do empréstimo mais antigo ao mais recente
+    private final int[] userOffsets;
+    private final int[] userBooks;
+    // Usuários de cada livro, em ordem crescente
+    private final int[] bookOffsets;
+    private final int[] bookUsers;
+
+    private LeaseGraph(long[] userIds, long[] bookIds, int[] userOffsets, int[] userBooks, int[] bookOffsets,
+                       int[] bookUsers) {
+        this.userIds = userIds;
+        this.bookIds = bookIds;
+        this.userOffsets = userOffsets;
+        this.userBooks = userBooks;
+        this.bookOffsets = bookOffsets;
+        this.bookUsers = bookUsers;
+    }
+
+    /**
+     * Builds the graph of a list of leases.
+     *
+     * @param pairUserIds     the user of each lease
+     * @param pairBookIds     the book of each lease
+     * @param count           the number of leases in the arrays
+     * @param maxBooksPerUser the maximum number of distinct books kept per user
+     *
+     * @return the graph
+     */
+    static LeaseGraph of(long[] pairUserIds, long[] pairBookIds, int count, int maxBooksPerUser) {
+        long[] userIds = distinctSorted(pairUserIds, count);
+        long[] bookIds = distinctSorted(pairBookIds, count);
+
+        int[] pairUsers = new int[count];
+        int[] pairBooks = new int[count];
+        Arrays.parallelSetAll(pairUsers, i -> Arrays.binarySearch(userIds, pairUserIds[i]));
+        Arrays.parallelSetAll(pairBooks, i -> Arrays.binarySearch(bookIds, pairBookIds[i]));
+
+        // Agrupa os empréstimos por usuário sem perder a ordem, com uma ordenação por contagem
+        int[] groupOffsets = new int[userIds.length + 1];
+        for (int i = 0; i < count; i++)
+            groupOffsets[pairUsers[i] + 1]++;
+        for (int user = 0; user < userIds.length; user++)
+            groupOffsets[user + 1] += groupOffsets[user];
+        int[] groupedBooks = new int[count];
+        int[] next = Arrays.copyOf(groupOffsets, userIds.length);
+        for (int i = 0; i < count; i++)
+            groupedBooks[next[pairUsers[i]]++] = pairBooks[i];
+
+        // Percorre os empréstimos de cada usuário do mais recente ao mais antigo, mantendo os livros distintos
+        int[] userOffsets = new int[userIds.length + 1];
+        int[] userBooks = new int[count];
+        int[] lastSeenBy = new int[bookIds.length];
+        int written = 0;
+        for (int user = 0; user < userIds.length; user++) {
+            int start = written;
+            for (int i = groupOffsets[user + 1] - 1; i >= groupOffsets[user] && written - start < maxBooksPerUser; i--) {
+                int book = groupedBooks[i];
+                if (lastSeenBy[book] != user + 1) {
+                    lastSeenBy[book] = user + 1;
+                    userBooks[written++] = book;
+                }
+            }
+            reverse(userBooks, start, written);
+            userOffsets[user + 1] = written;
+        }
+
+        return withBookUsers(userIds, bookIds, userOffsets, Arrays.copyOf(userBooks, written));
+    }
+
+    /**
+     * Builds a graph with the leases of this graph followed by new leases.
+     *
+     * @param pairUserIds     the user of each new lease
+     * @param pairBookIds     the book of each new lease
+     * @param count           the number of new leases in the arrays
+     * @param maxBooksPerUser the maximum number of distinct books kept per user
+     *
+     * @return the new graph
+     */
+    LeaseGraph with(long[] pairUserIds, long[] pairBookIds, int count, int maxBooksPerUser) {
+        int total = userBooks.length + count;
+        long[] allUserIds = new long[total];
+        long[] allBookIds = new long[total];
+
+        // O histórico de cada usuário já está em ordem, seguido pelos empréstimos novos
+        int position = 0;
+        for (int user = 0; user < userIds.length; user++) {
+            for (int i = userOffsets[user]; i < userOffsets[user + 1]; i++) {
+                allUserIds[position] = userIds[user];
+                allBookIds[position++] = bookIds[userBooks[i]];
+            }
+        }
+        System.arraycopy(pairUserIds, 0, allUserIds, position, count);
+        System.arraycopy(pairBookIds, 0, allBookIds, position, count);
+
+        return of(allUserIds, allBookIds, total, maxBooksPerUser);
+    }
+
+    int bookCount() {
+        return bookIds.length;
+    }
+
+    long leaseCount() {
+        return userBooks.length;
+    }
+
+    long bookId(int book) {
+        return bookIds[book];
+    }
+
+    /**
+     * Finds the number of a book.
+     *
+     * @param bookId the ID of the book
+     *
+     * @return the number of the book, or a negative number if the book has no leases in the graph
+     */
+    int bookIndex(long bookId) {
+        return Arrays.binarySearch(bookIds, bookId);
+    }
+
+    int userIndex(long userId) {
+        return Arrays.binarySearch(userIds, userId);
+    }
+
+    int usersStart(int book) {
+        return bookOffsets[book];
+    }
+
+    int usersEnd(int book) {
+        return bookOffsets[book + 1];
+    }
+
+    int user(int position) {
+        return bookUsers[position];
+    }
+
+    int booksStart(int user) {
+        return userOffsets[user];
+    }
+
+    int booksEnd(int user) {
+        return userOffsets[user + 1];
+    }
+
+    int book(int position) {
+        return userBooks[position];
+    }
+
+    // Inverte as listas de livros de cada usuário em listas de usuários de cada livro, também por contagem
+    private static LeaseGraph withBookUsers(long[] userIds, long[] bookIds, int[] userOffsets, int[] userBooks) {
+        int[] bookOffsets = new int[bookIds.length + 1];
+        for (int book : userBooks)
+            bookOffsets[book + 1]++;
+        for (int book = 0; book < bookIds.length; book++)
+            bookOffsets[book + 1] += bookOffsets[book];
+
+        int[] bookUsers = new int[userBooks.length];
+        int[] next = Arrays.copyOf(bookOffsets, bookIds.length);
+        for (int user = 0; user < userIds.length; user++) {
+            for (int i = userOffsets[user]; i < userOffsets[user + 1]; i++)
+                bookUsers[next[userBooks[i]]++] = user;
+        }
+        return new LeaseGraph(userIds, bookIds, userOffsets, userBooks, bookOffsets, bookUsers);
+    }
+
+    private static long[] distinctSorted(long[] values, int count) {
+        long[] sorted = Arrays.copyOf(values, count);
+        Arrays.parallelSort(sorted);
+
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || sorted[i] != sorted[distinct - 1])
+                sorted[distinct++] = sorted[i];
+        }
+        return Arrays.copyOf(sorted, distinct);
+    }
+
+    private static void reverse(int[] values, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+}
@@ -1,39 +1,78 @@
 package com.guipadovan.librarymanager.services.impl;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.guipadovan.librarymanager.dtos.LeaseDto;
+import com.guipadovan.librarymanager.dtos.LeaseFilterDto;
+import com.guipadovan.librarymanager.dtos.LeaseResponseDto;
 import com.guipadovan.librarymanager.entities.Book;
 import com.guipadovan.librarymanager.entities.Lease;
 import com.guipadovan.librarymanager.entities.User;
+import com.guipadovan.librarymanager.exceptions.EntityNotFoundException;
 import com.guipadovan.librarymanager.exceptions.InputValidationException;
 import com.guipadovan.librarymanager.repositories.LeaseRepository;
+import com.guipadovan.librarymanager.repositories.projections.BookCategoryView;
+import com.guipadovan.librarymanager.repositories.projections.UserBookCategoryView;
+import com.guipadovan.librarymanager.services.BookAvailabilityService;
 import com.guipadovan.librarymanager.services.BookService;
 import com.guipadovan.librarymanager.services.LeaseService;
+import com.guipadovan.librarymanager.services.RecommendationCacheService;
 import com.guipadovan.librarymanager.services.UserService;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static net.logstash.logback.argument.StructuredArguments.v;
 
 /**
  * Implementation of {@link LeaseService} interface.
  */
 @Service
 @Transactional
+@Timed("library.service")
 @Slf4j
 public class LeaseServiceImpl implements LeaseService {
 
     private final LeaseRepository leaseRepository;
     private final UserService userService;
     private final BookService bookService;
+    private final BookAvailabilityService bookAvailabilityService;
+    private final RecommendationCacheService recommendationCacheService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${library.leases.page-size:50}")
+    private int defaultPageSize = 50;
+
+    @Value("${library.leases.max-page-size:1000}")
+    private int maxPageSize = 1000;
 
-    public LeaseServiceImpl(LeaseRepository leaseRepository, UserService userService, BookService bookService) {
+    @Value("${library.logging.read-sample-rate.leases:100}")
+    private int readLogSampleRate = 100;
+
+    public LeaseServiceImpl(LeaseRepository leaseRepository, UserService userService, BookService bookService,
+                            BookAvailabilityService bookAvailabilityService,
+                            RecommendationCacheService recommendationCacheService, ObjectMapper objectMapper) {
         this.leaseRepository = leaseRepository;
         this.userService = userService;
         this.bookService = bookService;
+        this.bookAvailabilityService = bookAvailabilityService;
+        this.recommendationCacheService = recommendationCacheService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -56,22 +95,33 @@ public class LeaseServiceImpl implements LeaseService {
         Optional<Book> book = bookService.getBook(leaseDetails.getBookId());
         if (book.isEmpty())
             fieldErrors.put("bookId", "Livro não encontrado");
-        else if (leaseRepository.existsByBook_IdAndStatusActive(book.get().getId()))
-            fieldErrors.put("bookId", "Livro já está em uso");
 
         // Se houver erros de validação, lança exceção
         if (!fieldErrors.isEmpty())
             throw new InputValidationException("Field validation errors", fieldErrors);
 
+        // Insere o empréstimo apenas se o livro não tiver outro ativo, sem janela entre a verificação e a inserção. O
+        // bitmap não é consultado: ele só muda depois do commit e pode marcar um livro recém-devolvido como em uso
+        Optional<Long> leaseId = leaseRepository.insertActiveLease(user.get().getId(), book.get().getId(),
+                leaseDetails.getLeaseDate(), leaseDetails.getReturnDate());
+        if (leaseId.isEmpty()) {
+            fieldErrors.put("bookId", "Livro já está em uso");
+            throw new InputValidationException("Field validation errors", fieldErrors);
+        }
+
         // Mapeia os detalhes do empréstimo para o objeto lease
+        lease.setId(leaseId.get());
         lease.setUser(user.get());
         lease.setBook(book.get());
         lease.setLeaseDate(leaseDetails.getLeaseDate());
         lease.setReturnDate(leaseDetails.getReturnDate());
         lease.setStatus(Lease.Status.ACTIVE);
+        log.info("Created lease {} of book {} for user {}", v("leaseId", lease.getId()), v("bookId", book.get().getId()),
+                v("userId", user.get().getId()));
 
-        log.info("Creating lease {}", lease);
-        return leaseRepository.save(lease);
+        bookAvailabilityService.markLeased(book.get().getId(), lease.getId());
+        recommendationCacheService.evictUser(user.get().getId());
+        return lease;
     }
 
     /**
@@ -87,25 +137,121 @@ public class LeaseServiceImpl implements LeaseService {
         Optional<Book> book = bookService.getBook(id);
         if (book.isEmpty())
             fieldErrors.put("bookId", "Livro não encontrado");
-        else if (!leaseRepository.existsByBook_IdAndStatusActive(id))
-            fieldErrors.put("bookId", "Livro não está em uso");
 
         // Se houver erros de validação, lança exceção
         if (!fieldErrors.isEmpty())
             throw new InputValidationException("Field validation errors", fieldErrors);
 
-        Lease lease = leaseRepository.findByBook_IdAndStatusActive(id);
+        // O empréstimo aberto é buscado no banco, pois o bitmap ainda não reflete empréstimos recém-criados
+        Lease lease = leaseRepository.findOpenByBookId(id);
+        if (lease == null) {
+            fieldErrors.put("bookId", "Livro não está em uso");
+            throw new InputValidationException("Field validation errors", fieldErrors);
+        }
 
         lease.setStatus(Lease.Status.RETURNED);
         lease.setReturnDate(LocalDate.now());
 
-        log.info("Updating lease {}", lease);
-        return leaseRepository.save(lease);
+        log.info("Returning lease {} of book {}", v("leaseId", lease.getId()), v("bookId", id));
+        Lease returnedLease = leaseRepository.save(lease);
+
+        bookAvailabilityService.markAvailable(id, lease.getId());
+        return returnedLease;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The slice is read with one lease more than its size, which only signals that there is a next slice.
+     *
+     * @throws InputValidationException if the cursor, the size or the date range is invalid
+     */
     @Override
-    public List<Book> getLeasedBooksByUser(Long userId) {
-        log.info("Getting leased book IDs for user with id {}", userId);
-        return leaseRepository.findAllBooksLeasedByUserOrderByLeaseDateDesc(userId);
+    @Transactional(readOnly = true)
+    public void writeLeases(LeaseFilterDto filter, String after, Integer size, OutputStream output)
+            throws InputValidationException, IOException {
+        int sliceSize = size != null ? size : defaultPageSize;
+        HashMap<String, String> fieldErrors = new HashMap<>();
+
+        // Valida o tamanho da página e o período, antes de escrever qualquer coisa na resposta
+        if (sliceSize < 1 || sliceSize > maxPageSize)
+            fieldErrors.put("size", "O tamanho deve estar entre 1 e " + maxPageSize);
+        if (filter.from() != null && filter.to() != null && filter.from().isAfter(filter.to()))
+            fieldErrors.put("to", "A data final deve ser igual ou posterior à data inicial");
+
+        if (!fieldErrors.isEmpty())
+            throw new InputValidationException("Field validation errors", fieldErrors);
+
+        // O cursor guarda a data de empréstimo e o ID do último empréstimo da página anterior
+        KeysetCursor cursor = KeysetCursor.decode(after);
+        LocalDate afterLeaseDate = null;
+        if (!KeysetCursor.START.equals(cursor)) {
+            try {
+                afterLeaseDate = LocalDate.parse(cursor.key());
+            } catch (DateTimeParseException e) {
+                throw new InputValidationException("Invalid cursor", Map.of("after", "Cursor inválido"));
+            }
+        }
+
+        if (LogSampling.sampled(readLogSampleRate))
+            log.info("Listing leases with {} after {}", filter, cursor.id());
+        try (Stream<LeaseResponseDto> leases = leaseRepository.streamLeases(filter, afterLeaseDate, cursor.id(),
+                sliceSize + 1);
+             JsonGenerator generator = objectMapper.createGenerator(output)) {
+            Iterator<LeaseResponseDto> iterator = leases.iterator();
+            LeaseResponseDto last = null;
+
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("content");
+            for (int written = 0; written < sliceSize && iterator.hasNext(); written++) {
+                last = iterator.next();
+                generator.writeObject(last);
+            }
+            generator.writeEndArray();
+
+            boolean hasNext = iterator.hasNext();
+            String next = hasNext ? new KeysetCursor(last.leaseDate().toString(), last.id()).encode() : null;
+            generator.writeStringField("next", next);
+            generator.writeBooleanField("hasNext", hasNext);
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws EntityNotFoundException if the user is not found
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookCategoryView> getLeasedBookCategoriesByUser(Long userId) throws EntityNotFoundException {
+        if (LogSampling.sampled(readLogSampleRate))
+            log.info("Getting leased book categories for user with id {}", v("userId", userId));
+        List<BookCategoryView> leasedBooks = leaseRepository.findLeasedBookCategoriesByUser(userId);
+
+        // A consulta parte do usuário: nenhuma linha significa que ele não existe e uma linha sem livro significa que
+        // ele ainda não pegou livros emprestados
+        if (leasedBooks.isEmpty())
+            throw new EntityNotFoundException(User.class, userId.toString());
+        return leasedBooks.stream().filter(leasedBook -> leasedBook.id() != null).toList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Long, List<BookCategoryView>> getLeasedBookCategoriesByUsers(Collection<Long> userIds) {
+        if (LogSampling.sampled(readLogSampleRate))
+            log.info("Getting leased book categories for {} users", userIds.size());
+        if (userIds.isEmpty())
+            return Map.of();
+
+        // Cada usuário existente tem ao menos uma linha, sem livro se ele ainda não pegou livros emprestados
+        Map<Long, List<BookCategoryView>> leasedBooksByUser = new HashMap<>();
+        for (UserBookCategoryView leasedBook : leaseRepository.findLeasedBookCategoriesByUsers(userIds)) {
+            List<BookCategoryView> leasedBooks = leasedBooksByUser.computeIfAbsent(leasedBook.userId(),
+                    userId -> new ArrayList<>());
+            if (leasedBook.id() != null)
+                leasedBooks.add(new BookCategoryView(leasedBook.id(), leasedBook.category()));
+        }
+        return leasedBooksByUser;
     }
 }
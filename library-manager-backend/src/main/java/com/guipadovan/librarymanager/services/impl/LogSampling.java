@@ -0,0 +1,24 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sampling of the logs of high-volume reads, which are useful to follow the traffic but don't need every request.
+ */
+final class LogSampling {
+
+    private LogSampling() {
+    }
+
+    /**
+     * Decides whether a call is logged, picking on average one of every {@code rate} calls. The pick is random and per
+     * thread, so concurrent requests don't contend on a shared counter.
+     *
+     * @param rate the number of calls per logged call, {@code 1} or less logs every call
+     *
+     * @return whether the call should be logged
+     */
+    static boolean sampled(int rate) {
+        return rate <= 1 || ThreadLocalRandom.current().nextInt(rate) == 0;
+    }
+}
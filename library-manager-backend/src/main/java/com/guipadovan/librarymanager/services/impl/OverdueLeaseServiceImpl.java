@@ -0,0 +1,96 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.dtos.OverdueSweepDto;
+import com.guipadovan.librarymanager.repositories.LeaseRepository;
+import com.guipadovan.librarymanager.services.OverdueLeaseService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Implementation of {@link OverdueLeaseService} interface.
+ * <p>
+ * The leases are marked by a set-based update over bounded batches of IDs, each committed in its own transaction, so
+ * a large backlog never holds the locks of every overdue lease in a single long transaction. The overdue leases keep
+ * their books, so the in-memory availability doesn't change.
+ */
+@Service
+@Slf4j
+public class OverdueLeaseServiceImpl implements OverdueLeaseService {
+
+    private final LeaseRepository leaseRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicReference<OverdueSweepDto> lastSweep = new AtomicReference<>();
+    private final Timer sweepTimer;
+    private final Counter markedCounter;
+
+    @Value("${library.leases.overdue.batch-size:1000}")
+    private int batchSize = 1000;
+
+    public OverdueLeaseServiceImpl(LeaseRepository leaseRepository, TransactionTemplate transactionTemplate,
+                                   MeterRegistry meterRegistry) {
+        this.leaseRepository = leaseRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.sweepTimer = meterRegistry.timer("library.leases.overdue.sweep");
+        this.markedCounter = meterRegistry.counter("library.leases.overdue.marked");
+        Gauge.builder("library.leases.overdue.throughput", lastSweep,
+                        sweep -> sweep.get() != null ? sweep.get().leasesPerSecond() : 0)
+                .description("Leases marked per second by the last run")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the job on the schedule configured in {@code library.leases.overdue.cron}, by default a few minutes after
+     * midnight, when the leases due on the previous day become overdue.
+     */
+    @Scheduled(cron = "${library.leases.overdue.cron:0 5 0 * * *}")
+    public void scheduledMarkOverdueLeases() {
+        markOverdueLeases();
+    }
+
+    @Override
+    public OverdueSweepDto markOverdueLeases() {
+        Instant startedAt = Instant.now();
+        long start = System.nanoTime();
+        long markedLeases = 0;
+        int batches = 0;
+
+        // Um lote incompleto indica que não restam empréstimos vencidos, exceto os travados por devoluções em andamento
+        int marked;
+        do {
+            marked = transactionTemplate.execute(status -> leaseRepository.markOverdueBatch(batchSize));
+            markedLeases += marked;
+            batches++;
+        } while (marked == batchSize);
+
+        long durationNanos = System.nanoTime() - start;
+        double seconds = durationNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        double leasesPerSecond = seconds > 0 ? markedLeases / seconds : 0;
+        OverdueSweepDto sweep = new OverdueSweepDto(startedAt, markedLeases, batches,
+                TimeUnit.NANOSECONDS.toMillis(durationNanos), leasesPerSecond);
+        lastSweep.set(sweep);
+        sweepTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+        markedCounter.increment(markedLeases);
+
+        log.info("Marked {} leases as overdue in {} batches, {} ms ({} leases/s)", markedLeases, batches,
+                sweep.durationMillis(), Math.round(leasesPerSecond));
+        return sweep;
+    }
+
+    @Override
+    public Optional<OverdueSweepDto> getLastSweep() {
+        return Optional.ofNullable(lastSweep.get());
+    }
+}
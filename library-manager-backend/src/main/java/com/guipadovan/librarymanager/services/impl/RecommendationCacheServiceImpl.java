@@ -0,0 +1,90 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.guipadovan.librarymanager.dtos.CacheStatsDto;
+import com.guipadovan.librarymanager.services.RecommendationCacheService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import static com.guipadovan.librarymanager.services.impl.TransactionCallbacks.afterCommit;
+
+/**
+ * Implementation of {@link RecommendationCacheService} interface.
+ * <p>
+ * The entries are kept in a bounded cache and expire after a while, since the books leased by other users and the
+ * computed neighbors also change the recommendations without evicting them. The cache holds futures, so the
+ * recommendations are computed by the requesting thread outside the locks of the cache, while concurrent requests of
+ * the same entry wait for the same future.
+ */
+@Service
+public class RecommendationCacheServiceImpl implements RecommendationCacheService {
+
+    private final AsyncCache<SeededRecommendationKey, List<Long>> cache;
+
+    public RecommendationCacheServiceImpl(MeterRegistry meterRegistry,
+                                          @Value("${library.recommendations.seeded.cache.maximum-size:10000}")
+                                          long maximumSize,
+                                          @Value("${library.recommendations.seeded.cache.ttl:PT1H}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "seeded-recommendations");
+    }
+
+    @Override
+    public List<Long> getBookIds(Long userId, long seed, int limit, Supplier<List<Long>> loader) {
+        // O cache só guarda o future pendente, a consulta ao banco roda fora do lock do mapa e sem prender a thread
+        // virtual à thread da plataforma
+        CompletableFuture<List<Long>> pending = new CompletableFuture<>();
+        CompletableFuture<List<Long>> cached = cache.get(new SeededRecommendationKey(userId, seed, limit),
+                (key, executor) -> pending);
+        if (cached == pending) {
+            try {
+                pending.complete(List.copyOf(loader.get()));
+            } catch (RuntimeException e) {
+                // O Caffeine remove as entradas que falharam, a próxima requisição calcula de novo
+                pending.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        // Requisições concorrentes da mesma entrada aguardam o mesmo cálculo
+        try {
+            return cached.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException)
+                throw runtimeException;
+            throw e;
+        }
+    }
+
+    @Override
+    public void evictUser(Long userId) {
+        // Percorre todas as entradas, o que é barato no tamanho limitado do cache e só ocorre a cada novo empréstimo
+        afterCommit(() -> cache.synchronous().asMap().keySet().removeIf(key -> key.userId().equals(userId)));
+    }
+
+    @Override
+    public CacheStatsDto getStats() {
+        // Aplica as remoções pendentes para que o tamanho e as remoções estejam atualizados
+        cache.synchronous().cleanUp();
+        CacheStats stats = cache.synchronous().stats();
+        return new CacheStatsDto(cache.synchronous().estimatedSize(), stats.hitCount(), stats.missCount(),
+                stats.hitRate(), stats.evictionCount(), stats.loadFailureCount());
+    }
+
+    private record SeededRecommendationKey(Long userId, long seed, int limit) {
+    }
+}
@@ -0,0 +1,405 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.repositories.BookRepository;
+import com.guipadovan.librarymanager.repositories.projections.BookCategoryView;
+import com.guipadovan.librarymanager.services.BookAvailabilityService;
+import com.guipadovan.librarymanager.services.RecommendationPoolService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.guipadovan.librarymanager.services.impl.TransactionCallbacks.afterCommit;
+
+/**
+ * Implementation of {@link RecommendationPoolService} interface.
+ * <p>
+ * Each category keeps a sorted primitive array of the IDs of its books, about 8 bytes per book with no per-book map
+ * entries, and a sample of {@code limit} books costs O(limit) random picks instead of sorting the catalog. A book is
+ * found with a binary search on each category, since there are few categories, and new books, whose IDs come from a
+ * sequence, are usually appended at the end of the array. The leased books stay in the pools and are skipped when
+ * sampled, according to {@link BookAvailabilityService}, so the pools don't depend on the order in which the callbacks
+ * of leases and returns run. Books created, edited or deleted while the pools are reloaded, as after a snapshot
+ * restore, are applied once the reload ends, through a {@link ReloadGate}.
+ */
+@Service
+@Slf4j
+public class RecommendationPoolServiceImpl implements RecommendationPoolService {
+
+    // Quantidade de sorteios por recomendação antes de recorrer à varredura dos grupos
+    private static final int SAMPLING_ATTEMPTS_PER_ITEM = 8;
+
+    private final BookRepository bookRepository;
+    private final BookAvailabilityService bookAvailabilityService;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReloadGate reloadGate = new ReloadGate();
+    private final Map<String, CategoryPool> pools = new HashMap<>();
+
+    public RecommendationPoolServiceImpl(BookRepository bookRepository, BookAvailabilityService bookAvailabilityService) {
+        this.bookRepository = bookRepository;
+        this.bookAvailabilityService = bookAvailabilityService;
+    }
+
+    /**
+     * Loads the pools with every book in the catalog.
+     */
+    @Override
+    @PostConstruct
+    public void loadPools() {
+        reloadGate.reload(() -> {
+            List<BookCategoryView> books = bookRepository.findAllBookCategories();
+
+            lock.writeLock().lock();
+            try {
+                pools.clear();
+
+                for (BookCategoryView book : books) {
+                    CategoryPool pool = pools.computeIfAbsent(book.category(), category -> new CategoryPool());
+                    if (pool.size == pool.bookIds.length)
+                        pool.bookIds = Arrays.copyOf(pool.bookIds, pool.size * 2);
+                    pool.bookIds[pool.size++] = book.id();
+                }
+                // Ordena uma vez ao final em vez de inserir cada livro na sua posição
+                for (CategoryPool pool : pools.values())
+                    Arrays.sort(pool.bookIds, 0, pool.size);
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            log.info("Loaded {} books into {} recommendation pools", books.size(), pools.size());
+        });
+    }
+
+    @Override
+    public void addBook(Long bookId, String category) {
+        afterCommit(() -> reloadGate.update(() -> {
+            lock.writeLock().lock();
+            try {
+                if (poolOf(bookId) != null)
+                    return;
+
+                addToPool(pools.computeIfAbsent(category, key -> new CategoryPool()), bookId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }));
+    }
+
+    @Override
+    public void updateBook(Long bookId, String category) {
+        afterCommit(() -> reloadGate.update(() -> {
+            lock.writeLock().lock();
+            try {
+                CategoryPool currentPool = poolOf(bookId);
+                CategoryPool newPool = pools.computeIfAbsent(category, key -> new CategoryPool());
+                if (currentPool == newPool)
+                    return;
+
+                if (currentPool != null)
+                    removeFromPool(currentPool, bookId);
+                addToPool(newPool, bookId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }));
+    }
+
+    @Override
+    public void removeBook(Long bookId) {
+        afterCommit(() -> reloadGate.update(() -> {
+            lock.writeLock().lock();
+            try {
+                CategoryPool pool = poolOf(bookId);
+                if (pool != null)
+                    removeFromPool(pool, bookId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }));
+    }
+
+    @Override
+    public List<Long> sampleBooks(Collection<String> categories, Set<Long> excludedBookIds, int limit) {
+        if (limit <= 0 || categories.isEmpty())
+            return List.of();
+
+        lock.readLock().lock();
+        try {
+            List<CategoryPool> candidatePools = candidatePools(categories);
+            int total = candidatePools.stream().mapToInt(pool -> pool.size).sum();
+            if (total == 0)
+                return List.of();
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Set<Long> sampled = new LinkedHashSet<>();
+
+            // Sorteia posições sobre a concatenação dos grupos, descartando livros excluídos, emprestados ou repetidos
+            if (total > limit) {
+                int attempts = limit * SAMPLING_ATTEMPTS_PER_ITEM;
+                while (sampled.size() < limit && attempts-- > 0) {
+                    long bookId = bookAt(candidatePools, random.nextInt(total));
+                    if (isCandidate(bookId, excludedBookIds))
+                        sampled.add(bookId);
+                }
+            }
+
+            // Poucos candidatos elegíveis: varre os grupos e completa a amostra aleatoriamente
+            if (sampled.size() < limit)
+                fillByScan(candidatePools, excludedBookIds, sampled, limit, random);
+
+            return new ArrayList<>(sampled);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Each draw hashes the seed and the draw number into a point of the ID range of the candidates and takes the first
+     * book at or after it, found with a binary search on each category, so the order doesn't depend on the positions
+     * of the books in the pools nor on the order of the categories. Excluded, leased and repeated books only consume
+     * their draw, which keeps the relative order of the other books when books are leased or returned. When there are
+     * few candidates, or the draws run out, the books are ranked by a hash of the seed and of the book ID instead,
+     * keeping the {@code limit} lowest ranks in a bounded heap.
+     */
+    @Override
+    public List<Long> sampleBooks(Collection<String> categories, Set<Long> excludedBookIds, int limit, long seed) {
+        if (limit <= 0 || categories.isEmpty())
+            return List.of();
+
+        lock.readLock().lock();
+        try {
+            List<CategoryPool> candidatePools = candidatePools(categories);
+            long total = candidatePools.stream().mapToLong(pool -> pool.size).sum();
+            if (total == 0)
+                return List.of();
+
+            Set<Long> sampled = new LinkedHashSet<>();
+            long attempts = (long) limit * SAMPLING_ATTEMPTS_PER_ITEM;
+            if (total > attempts) {
+                long firstBookId = Long.MAX_VALUE;
+                long lastBookId = Long.MIN_VALUE;
+                for (CategoryPool pool : candidatePools) {
+                    firstBookId = Math.min(firstBookId, pool.bookIds[0]);
+                    lastBookId = Math.max(lastBookId, pool.bookIds[pool.size - 1]);
+                }
+
+                // Um livro novo aumenta o intervalo em poucos IDs e desloca cada ponto no máximo na mesma proporção
+                long range = lastBookId - firstBookId + 1;
+                for (long draw = 0; draw < attempts && sampled.size() < limit; draw++) {
+                    long target = firstBookId + Math.unsignedMultiplyHigh(rank(seed, draw), range);
+                    long bookId = firstBookIdFrom(candidatePools, target);
+                    if (isCandidate(bookId, excludedBookIds))
+                        sampled.add(bookId);
+                }
+            }
+
+            // Poucos candidatos ou muitos emprestados: ordena todos pelo posto e completa a amostra
+            if (sampled.size() < limit)
+                fillByRank(candidatePools, excludedBookIds, sampled, limit, seed);
+
+            return new ArrayList<>(sampled);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<CategoryPool> candidatePools(Collection<String> categories) {
+        return categories.stream()
+                .distinct()
+                .map(pools::get)
+                .filter(pool -> pool != null && pool.size > 0)
+                .toList();
+    }
+
+    // Finalizador do SplitMix64: postos uniformes e independentes para valores consecutivos
+    private static long rank(long seed, long value) {
+        long z = seed + value * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private boolean isCandidate(long bookId, Set<Long> excludedBookIds) {
+        return !excludedBookIds.contains(bookId) && !bookAvailabilityService.isLeased(bookId);
+    }
+
+    // Menor ID maior ou igual ao alvo entre os grupos, que são ordenados por ID
+    private static long firstBookIdFrom(List<CategoryPool> candidatePools, long target) {
+        long bookId = Long.MAX_VALUE;
+        for (CategoryPool pool : candidatePools) {
+            int position = Arrays.binarySearch(pool.bookIds, 0, pool.size, target);
+            if (position < 0)
+                position = -position - 1;
+            if (position < pool.size)
+                bookId = Math.min(bookId, pool.bookIds[position]);
+        }
+        return bookId;
+    }
+
+    private static long bookAt(List<CategoryPool> candidatePools, int position) {
+        for (CategoryPool pool : candidatePools) {
+            if (position < pool.size)
+                return pool.bookIds[position];
+            position -= pool.size;
+        }
+        throw new IndexOutOfBoundsException(position);
+    }
+
+    private void fillByScan(List<CategoryPool> candidatePools, Set<Long> excludedBookIds, Set<Long> sampled, int limit,
+                            Random random) {
+        List<Long> remaining = new ArrayList<>();
+        for (CategoryPool pool : candidatePools) {
+            for (int i = 0; i < pool.size; i++) {
+                long bookId = pool.bookIds[i];
+                if (!sampled.contains(bookId) && isCandidate(bookId, excludedBookIds))
+                    remaining.add(bookId);
+            }
+        }
+
+        // Fisher-Yates parcial, embaralhando apenas as posições que serão usadas
+        int needed = Math.min(limit - sampled.size(), remaining.size());
+        for (int i = 0; i < needed; i++) {
+            Collections.swap(remaining, i, i + random.nextInt(remaining.size() - i));
+            sampled.add(remaining.get(i));
+        }
+    }
+
+    private void fillByRank(List<CategoryPool> candidatePools, Set<Long> excludedBookIds, Set<Long> sampled, int limit,
+                            long seed) {
+        int needed = limit - sampled.size();
+        RankHeap lowestRanks = new RankHeap(needed);
+        for (CategoryPool pool : candidatePools) {
+            for (int i = 0; i < pool.size; i++) {
+                long bookId = pool.bookIds[i];
+                if (!sampled.contains(bookId) && isCandidate(bookId, excludedBookIds))
+                    lowestRanks.offer(rank(seed, bookId), bookId);
+            }
+        }
+
+        for (long bookId : lowestRanks.sortedBookIds())
+            sampled.add(bookId);
+    }
+
+    // Poucas categorias: uma busca binária em cada grupo custa menos memória que um mapa de livro para grupo
+    private CategoryPool poolOf(long bookId) {
+        for (CategoryPool pool : pools.values()) {
+            if (Arrays.binarySearch(pool.bookIds, 0, pool.size, bookId) >= 0)
+                return pool;
+        }
+        return null;
+    }
+
+    private static void addToPool(CategoryPool pool, long bookId) {
+        if (pool.size == pool.bookIds.length)
+            pool.bookIds = Arrays.copyOf(pool.bookIds, pool.size * 2);
+
+        // Livros novos têm o maior ID e entram no final; os demais deslocam o restante do array
+        int position = -Arrays.binarySearch(pool.bookIds, 0, pool.size, bookId) - 1;
+        System.arraycopy(pool.bookIds, position, pool.bookIds, position + 1, pool.size - position);
+        pool.bookIds[position] = bookId;
+        pool.size++;
+    }
+
+    private static void removeFromPool(CategoryPool pool, long bookId) {
+        int position = Arrays.binarySearch(pool.bookIds, 0, pool.size, bookId);
+        System.arraycopy(pool.bookIds, position + 1, pool.bookIds, position, pool.size - position - 1);
+        pool.size--;
+    }
+
+    /**
+     * Sorted array of the book IDs of a single category.
+     */
+    private static final class CategoryPool {
+        private long[] bookIds = new long[16];
+        private int size;
+    }
+
+    /**
+     * Bounded max-heap of (rank, book ID) pairs in primitive arrays, keeping the lowest ranks seen.
+     */
+    private static final class RankHeap {
+        private final long[] ranks;
+        private final long[] bookIds;
+        private int size;
+
+        private RankHeap(int capacity) {
+            this.ranks = new long[capacity];
+            this.bookIds = new long[capacity];
+        }
+
+        private void offer(long rank, long bookId) {
+            if (size < ranks.length) {
+                ranks[size] = rank;
+                bookIds[size] = bookId;
+                siftUp(size++);
+            } else if (size > 0 && greater(ranks[0], bookIds[0], rank, bookId)) {
+                // Substitui o maior posto, no topo, pelo novo livro
+                ranks[0] = rank;
+                bookIds[0] = bookId;
+                siftDown(0, size);
+            }
+        }
+
+        // Heapsort: move o maior posto para o final até o array ficar em ordem crescente
+        private long[] sortedBookIds() {
+            for (int end = size - 1; end > 0; end--) {
+                swap(0, end);
+                siftDown(0, end);
+            }
+            return Arrays.copyOf(bookIds, size);
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (!greater(ranks[index], bookIds[index], ranks[parent], bookIds[parent]))
+                    return;
+                swap(index, parent);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index, int end) {
+            while (true) {
+                int largest = index;
+                for (int child = 2 * index + 1; child <= 2 * index + 2 && child < end; child++) {
+                    if (greater(ranks[child], bookIds[child], ranks[largest], bookIds[largest]))
+                        largest = child;
+                }
+                if (largest == index)
+                    return;
+                swap(index, largest);
+                index = largest;
+            }
+        }
+
+        private void swap(int first, int second) {
+            long rank = ranks[first];
+            ranks[first] = ranks[second];
+            ranks[second] = rank;
+            long bookId = bookIds[first];
+            bookIds[first] = bookIds[second];
+            bookIds[second] = bookId;
+        }
+
+        private static boolean greater(long rank, long bookId, long otherRank, long otherBookId) {
+            return rank != otherRank ? rank > otherRank : bookId > otherBookId;
+        }
+    }
+}
@@ -1,50 +1,249 @@
 package com.guipadovan.librarymanager.services.impl;
 
-import com.guipadovan.librarymanager.entities.Book;
-import com.guipadovan.librarymanager.entities.User;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import com.guipadovan.librarymanager.dtos.UserRecommendationsDto;
 import com.guipadovan.librarymanager.exceptions.EntityNotFoundException;
+import com.guipadovan.librarymanager.exceptions.InputValidationException;
+import com.guipadovan.librarymanager.repositories.projections.BookCategoryView;
+import com.guipadovan.librarymanager.services.BookNeighborService;
 import com.guipadovan.librarymanager.services.BookService;
 import com.guipadovan.librarymanager.services.LeaseService;
+import com.guipadovan.librarymanager.services.RecommendationCacheService;
+import com.guipadovan.librarymanager.services.RecommendationPoolService;
 import com.guipadovan.librarymanager.services.RecommendationService;
-import com.guipadovan.librarymanager.services.UserService;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static net.logstash.logback.argument.StructuredArguments.v;
 
 @Service
+@Timed("library.service")
 @Slf4j
 public class RecommendationServiceImpl implements RecommendationService {
 
-    private final UserService userService;
     private final BookService bookService;
     private final LeaseService leaseService;
+    private final RecommendationPoolService recommendationPoolService;
+    private final BookNeighborService bookNeighborService;
+    private final RecommendationCacheService recommendationCacheService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${library.recommendations.recent-books:20}")
+    private int recentBooks = 20;
+
+    @Value("${library.recommendations.seeded.max-limit:100}")
+    private int seededMaxLimit = 100;
+
+    @Value("${library.recommendations.batch.chunk-size:500}")
+    private int batchChunkSize = 500;
+
+    @Value("${library.recommendations.batch.max-users:500000}")
+    private int batchMaxUsers = 500000;
 
-    public RecommendationServiceImpl(UserService userService, BookService bookService, LeaseService leaseService) {
-        this.userService = userService;
+    @Value("${library.recommendations.batch.max-limit:50}")
+    private int batchMaxLimit = 50;
+
+    @Value("${library.logging.read-sample-rate.recommendations:100}")
+    private int readLogSampleRate = 100;
+
+    public RecommendationServiceImpl(BookService bookService, LeaseService leaseService,
+                                     RecommendationPoolService recommendationPoolService,
+                                     BookNeighborService bookNeighborService,
+                                     RecommendationCacheService recommendationCacheService, ObjectMapper objectMapper) {
         this.bookService = bookService;
         this.leaseService = leaseService;
+        this.recommendationPoolService = recommendationPoolService;
+        this.bookNeighborService = bookNeighborService;
+        this.recommendationCacheService = recommendationCacheService;
+        this.objectMapper = objectMapper;
     }
 
     /**
      * {@inheritDoc}
+     * <p>
+     * The books leased by the users who leased the user's recent books come first, and the remaining recommendations
+     * are sampled from the categories the user has read, which also covers users whose books have no neighbors yet.
      *
      * @throws EntityNotFoundException if the user is not found
      */
     @Override
-    public List<Book> getBookRecommendationsByUser(Long userId, int limit) throws EntityNotFoundException {
-        // Busca o usuário pelo ID, lança exceção se não encontrado
-        userService.getUser(userId).orElseThrow(() -> new EntityNotFoundException(User.class, userId.toString()));
+    @Transactional(readOnly = true)
+    public List<BookResponseDto> getBookRecommendationsByUser(Long userId, int limit) throws EntityNotFoundException {
+        // Busca o ID e a categoria dos livros emprestados pelo usuário em uma única consulta, que também valida se o
+        // usuário existe, e busca apenas os livros recomendados
+        List<BookCategoryView> usersLeasedBooks = leaseService.getLeasedBookCategoriesByUser(userId);
+        List<BookResponseDto> books = bookService.getBooks(recommendBookIds(usersLeasedBooks, limit,
+                recommendationPoolService::sampleBooks));
+
+        if (LogSampling.sampled(readLogSampleRate))
+            log.info("Getting book recommendations for user with id {}", v("userId", userId));
+        return books;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The seed is mixed with the ID of the user, so users sharing a seed, such as the day, still get different orders.
+     *
+     * @throws EntityNotFoundException  if the user is not found
+     * @throws InputValidationException if the limit or the page is invalid
+     */
+    @Override
+    public List<BookResponseDto> getSeededBookRecommendationsByUser(Long userId, long seed, int limit, int page,
+                                                                    int size)
+            throws EntityNotFoundException, InputValidationException {
+        HashMap<String, String> fieldErrors = new HashMap<>();
 
-        // Busca todos os livros emprestados pelo usuário e cria os filtros para buscar livros recomendados
-        List<Book> usersLeasedBooks = leaseService.getLeasedBooksByUser(userId);
-        List<String> categories = usersLeasedBooks.stream().map(Book::getCategory).distinct().toList();
-        List<Long> excludedBookIds = usersLeasedBooks.stream().map(Book::getId).toList();
+        if (limit < 1 || limit > seededMaxLimit)
+            fieldErrors.put("limit", "O limite deve estar entre 1 e " + seededMaxLimit);
+        if (page < 0)
+            fieldErrors.put("page", "A página deve ser maior ou igual a 0");
+        if (size < 1)
+            fieldErrors.put("size", "O tamanho deve ser maior que 0");
 
-        List<Book> books = bookService.getBookRecommendations(categories, excludedBookIds, limit);
+        if (!fieldErrors.isEmpty())
+            throw new InputValidationException("Field validation errors", fieldErrors);
 
-        log.info("Getting book recommendations for user with id {}", userId);
-        return books;
+        // As páginas são recortes da mesma lista em cache, então não se repetem enquanto a entrada não muda
+        List<Long> recommendedBookIds = recommendationCacheService.getBookIds(userId, seed, limit, () -> {
+            long userSeed = seed ^ userId * 0x9E3779B97F4A7C15L;
+            return recommendBookIds(leaseService.getLeasedBookCategoriesByUser(userId), limit,
+                    (categories, excludedBookIds, sampleLimit) -> recommendationPoolService.sampleBooks(categories,
+                            excludedBookIds, sampleLimit, userSeed));
+        });
+
+        long from = (long) page * size;
+        if (from >= recommendedBookIds.size())
+            return List.of();
+        List<Long> pageBookIds = recommendedBookIds.subList((int) from,
+                (int) Math.min(from + size, recommendedBookIds.size()));
+
+        if (LogSampling.sampled(readLogSampleRate))
+            log.info("Getting page {} of the book recommendations with seed {} for user with id {}", page, seed,
+                    v("userId", userId));
+        return bookService.getBooks(pageBookIds);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Each chunk reads the histories of its users in a single query, computes their recommendations in parallel and
+     * reads every recommended book in a single query. The chunks don't share a transaction, so a long batch doesn't
+     * hold a database connection between them.
+     *
+     * @throws InputValidationException if the IDs or the limit are invalid
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void writeBookRecommendationsByUsers(List<Long> userIds, int limit, OutputStream output)
+            throws InputValidationException, IOException {
+        HashMap<String, String> fieldErrors = new HashMap<>();
+
+        // Valida a lista inteira antes de escrever qualquer coisa na resposta
+        if (userIds.size() > batchMaxUsers)
+            fieldErrors.put("userIds", "A lista deve ter no máximo " + batchMaxUsers + " usuários");
+        else if (userIds.stream().anyMatch(Objects::isNull))
+            fieldErrors.put("userIds", "A lista não pode conter IDs nulos");
+        if (limit < 1 || limit > batchMaxLimit)
+            fieldErrors.put("limit", "O limite deve estar entre 1 e " + batchMaxLimit);
+
+        if (!fieldErrors.isEmpty())
+            throw new InputValidationException("Field validation errors", fieldErrors);
+
+        log.info("Writing book recommendations for {} users", v("users", userIds.size()));
+        try (JsonGenerator generator = objectMapper.createGenerator(output)) {
+            // Cada objeto termina com a própria quebra de linha, sem o separador padrão entre objetos na raiz
+            generator.setRootValueSeparator(null);
+            for (int from = 0; from < userIds.size(); from += batchChunkSize) {
+                List<Long> chunk = userIds.subList(from, Math.min(from + batchChunkSize, userIds.size()));
+                for (UserRecommendationsDto recommendations : recommendChunk(chunk, limit)) {
+                    generator.writeObject(recommendations);
+                    generator.writeRaw('\n');
+                }
+                generator.flush();
+            }
+        }
+    }
+
+    private List<UserRecommendationsDto> recommendChunk(List<Long> userIds, int limit) {
+        Map<Long, List<BookCategoryView>> leasedBooksByUser = leaseService.getLeasedBookCategoriesByUsers(userIds);
+
+        // As recomendações só dependem dos dados em memória, então os usuários são calculados em paralelo
+        List<List<Long>> recommendedBookIds = userIds.parallelStream()
+                .map(userId -> {
+                    List<BookCategoryView> leasedBooks = leasedBooksByUser.get(userId);
+                    return leasedBooks != null
+                            ? recommendBookIds(leasedBooks, limit, recommendationPoolService::sampleBooks)
+                            : List.<Long>of();
+                })
+                .toList();
+
+        List<Long> bookIds = recommendedBookIds.stream().flatMap(List::stream).distinct().toList();
+        Map<Long, BookResponseDto> booksById = bookService.getBooks(bookIds).stream()
+                .collect(Collectors.toMap(BookResponseDto::id, Function.identity()));
+
+        List<UserRecommendationsDto> recommendations = new ArrayList<>(userIds.size());
+        for (int i = 0; i < userIds.size(); i++) {
+            List<BookResponseDto> books = recommendedBookIds.get(i).stream()
+                    .map(booksById::get)
+                    .filter(Objects::nonNull)
+                    .toList();
+            recommendations.add(new UserRecommendationsDto(userIds.get(i),
+                    leasedBooksByUser.containsKey(userIds.get(i)), books));
+        }
+        return recommendations;
+    }
+
+    // Livros semelhantes aos recentes do usuário, completados com livros sorteados das categorias que ele já leu
+    private List<Long> recommendBookIds(List<BookCategoryView> usersLeasedBooks, int limit, CategorySampler sampler) {
+        List<String> categories = usersLeasedBooks.stream().map(BookCategoryView::category).distinct().toList();
+        Set<Long> excludedBookIds = usersLeasedBooks.stream().map(BookCategoryView::id).collect(Collectors.toSet());
+
+        // Os empréstimos vêm do mais recente ao mais antigo, o mesmo livro pode aparecer mais de uma vez
+        List<Long> recentBookIds = usersLeasedBooks.stream()
+                .map(BookCategoryView::id)
+                .filter(Objects::nonNull)
+                .distinct()
+                .limit(recentBooks)
+                .toList();
+        List<Long> recommendedBookIds = new ArrayList<>(
+                bookNeighborService.recommendBooks(recentBookIds, excludedBookIds, limit));
+
+        // Completa com livros disponíveis sorteados em memória
+        if (recommendedBookIds.size() < limit) {
+            Set<Long> sampleExcludedBookIds = excludedBookIds;
+            if (!recommendedBookIds.isEmpty()) {
+                sampleExcludedBookIds = new HashSet<>(excludedBookIds);
+                sampleExcludedBookIds.addAll(recommendedBookIds);
+            }
+            recommendedBookIds.addAll(sampler.sample(categories, sampleExcludedBookIds,
+                    limit - recommendedBookIds.size()));
+        }
+        return recommendedBookIds;
+    }
+
+    // Sorteio dos livros das categorias, aleatório ou a partir de uma semente
+    @FunctionalInterface
+    private interface CategorySampler {
+        List<Long> sample(List<String> categories, Set<Long> excludedBookIds, int limit);
     }
 
 }
@@ -0,0 +1,81 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Orders the incremental updates of an in-memory copy of the database with its full reloads.
+ * <p>
+ * The updates run after their transactions commit, so an update that lands between the read of a reload and the swap
+ * of the structure would be applied to the structure being replaced and lost. While a reload is in progress the
+ * updates are queued instead, and they are applied to the reloaded structure before the reload ends. The updates must
+ * be idempotent, since the reload may already have read the changes of some of them.
+ */
+final class ReloadGate {
+
+    private final Lock lock = new ReentrantLock();
+    private final Lock reloadLock = new ReentrantLock();
+    // Atualizações recebidas durante a recarga em andamento, null fora de uma recarga
+    private List<Runnable> queued;
+
+    /**
+     * Applies an update now, or after the reload in progress.
+     *
+     * @param update the update to apply
+     */
+    void update(Runnable update) {
+        lock.lock();
+        try {
+            if (queued != null) {
+                queued.add(update);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        update.run();
+    }
+
+    /**
+     * Runs a reload, which reads the database and replaces the structure, queueing the concurrent updates until it
+     * ends. Reloads never overlap.
+     *
+     * @param reload the reload to run
+     */
+    void reload(Runnable reload) {
+        reloadLock.lock();
+        try {
+            lock.lock();
+            try {
+                queued = new ArrayList<>();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                reload.run();
+            } finally {
+                applyQueued();
+            }
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    // Esvazia a fila em lotes, as atualizações que chegam enquanto um lote é aplicado entram no próximo
+    private void applyQueued() {
+        List<Runnable> updates;
+        do {
+            lock.lock();
+            try {
+                updates = queued;
+                queued = updates.isEmpty() ? null : new ArrayList<>();
+            } finally {
+                lock.unlock();
+            }
+            updates.forEach(Runnable::run);
+        } while (!updates.isEmpty());
+    }
+}
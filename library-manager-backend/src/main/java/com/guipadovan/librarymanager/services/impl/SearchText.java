@@ -0,0 +1,42 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalization of the searched text and of the indexed book fields, equivalent to the lowercase {@code unaccent}
+ * normalization of the catalog search in the database.
+ */
+final class SearchText {
+
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+    private static final Pattern ISBN_HYPHENS = Pattern.compile("(?<=\\d)-(?=\\d)");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private SearchText() {
+    }
+
+    /**
+     * Splits a text into unaccented, lowercase words made only of letters and digits.
+     *
+     * @param text the text to split, may be null
+     *
+     * @return the distinct words in the order they appear
+     */
+    static List<String> tokenize(String text) {
+        if (text == null)
+            return List.of();
+
+        // Junta os grupos de dígitos de um ISBN com hífens antes de separar as palavras
+        String normalized = ACCENTS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        normalized = ISBN_HYPHENS.matcher(normalized.toLowerCase(Locale.ROOT)).replaceAll("");
+
+        return Arrays.stream(SEPARATORS.split(normalized))
+                .filter(token -> !token.isEmpty())
+                .distinct()
+                .toList();
+    }
+}
@@ -0,0 +1,108 @@
+package com.guipadovan.librarymanager.services.impl;
+
+/**
+ * Bounded selection of the keys with the highest scores, kept in a min-heap over primitive arrays so that offering a
+ * key allocates nothing and costs O(log capacity).
+ * <p>
+ * Ties are broken by the smaller key, so the selection doesn't depend on the order the keys are offered. Not
+ * thread-safe.
+ */
+final class TopScores {
+
+    private final long[] keys;
+    private final float[] scores;
+    private int size;
+
+    TopScores(int capacity) {
+        this.keys = new long[capacity];
+        this.scores = new float[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Offers a key, which is kept if there is room or if it beats the worst key kept so far.
+     *
+     * @param key   the key
+     * @param score the score of the key
+     */
+    void offer(long key, float score) {
+        if (size < keys.length) {
+            keys[size] = key;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (keys.length > 0 && isWorse(keys[0], scores[0], key, score)) {
+            keys[0] = key;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Moves the kept keys to the given arrays, best first, and empties the selection.
+     *
+     * @param keysOut   the array receiving the keys
+     * @param scoresOut the array receiving the scores
+     * @param offset    the position of the best key in the arrays
+     *
+     * @return the number of keys moved
+     */
+    int drain(long[] keysOut, float[] scoresOut, int offset) {
+        int count = size;
+        // A raiz é sempre a pior chave, então o heap é esvaziado do fim para o começo da saída
+        while (size > 0) {
+            int position = offset + size - 1;
+            keysOut[position] = keys[0];
+            scoresOut[position] = scores[0];
+            size--;
+            if (size > 0) {
+                keys[0] = keys[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+        }
+        return count;
+    }
+
+    // Uma chave é pior que outra se tiver menor pontuação ou, empatada, maior chave
+    private static boolean isWorse(long key, float score, long otherKey, float otherScore) {
+        return score < otherScore || score == otherScore && key > otherKey;
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!isWorse(keys[position], scores[position], keys[parent], scores[parent]))
+                return;
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int worst = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && isWorse(keys[left], scores[left], keys[worst], scores[worst]))
+                worst = left;
+            if (right < size && isWorse(keys[right], scores[right], keys[worst], scores[worst]))
+                worst = right;
+            if (worst == position)
+                return;
+            swap(position, worst);
+            position = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        long key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        float score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+}
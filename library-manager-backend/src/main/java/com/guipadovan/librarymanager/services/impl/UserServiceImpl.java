@@ -1,43 +1,134 @@
 package com.guipadovan.librarymanager.services.impl;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.guipadovan.librarymanager.dtos.CursorPageDto;
+import com.guipadovan.librarymanager.dtos.FileFormat;
+import com.guipadovan.librarymanager.dtos.ImportResultDto;
 import com.guipadovan.librarymanager.dtos.UserDto;
+import com.guipadovan.librarymanager.dtos.UserResponseDto;
 import com.guipadovan.librarymanager.entities.User;
 import com.guipadovan.librarymanager.exceptions.EntityNotFoundException;
+import com.guipadovan.librarymanager.exceptions.InputValidationException;
 import com.guipadovan.librarymanager.repositories.UserRepository;
+import com.guipadovan.librarymanager.services.EntityCacheService;
 import com.guipadovan.librarymanager.services.UserService;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static net.logstash.logback.argument.StructuredArguments.v;
 
 /**
  * Implementation of {@link UserService} interface.
  */
 @Service
+@Transactional
+@Timed("library.service")
 @Slf4j
 public class UserServiceImpl implements UserService {
 
+    // Índice único do e-mail criado pela migração V7
+    private static final String EMAIL_UNIQUE_INDEX = "uk_users_email";
+
+    // Colunas da exportação em CSV, o ID é ignorado quando o arquivo é importado de volta
+    private static final CsvSchema EXPORT_CSV_SCHEMA = CsvSchema.builder()
+            .addColumn("id")
+            .addColumn("name")
+            .addColumn("email")
+            .addColumn("registrationDate")
+            .addColumn("phone")
+            .setUseHeader(true)
+            .build();
+
     private final UserRepository userRepository;
+    private final EntityCacheService entityCacheService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final CsvMapper csvMapper = CsvMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .enable(CsvParser.Feature.TRIM_SPACES)
+            .enable(CsvParser.Feature.EMPTY_STRING_AS_NULL)
+            .enable(CsvParser.Feature.IGNORE_TRAILING_UNMAPPABLE)
+            .build();
+
+    @Value("${library.users.import.batch-size:1000}")
+    private int importBatchSize = 1000;
+
+    @Value("${library.users.import.max-reported-errors:1000}")
+    private int importMaxReportedErrors = 1000;
+
+    @Value("${library.logging.read-sample-rate.users:100}")
+    private int readLogSampleRate = 100;
 
-    public UserServiceImpl(UserRepository userRepository) {
+    public UserServiceImpl(UserRepository userRepository, EntityCacheService entityCacheService,
+                           ObjectMapper objectMapper, Validator validator, TransactionTemplate transactionTemplate,
+                           MeterRegistry meterRegistry) {
         this.userRepository = userRepository;
+        this.entityCacheService = entityCacheService;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @throws InputValidationException if the e-mail is already registered
+     */
     @Override
     public User createUser(UserDto userDetails) {
         // Mapeia os detalhes do usuário para o objeto user
         User userEntity = new User(userDetails.getName(), userDetails.getEmail(), userDetails.getRegistrationDate(), userDetails.getPhone());
 
-        log.info("Creating user {}", userEntity);
-        return userRepository.save(userEntity);
+        User createdUser = saveUser(userEntity);
+        log.info("Created user {}", v("userId", createdUser.getId()));
+        return createdUser;
     }
 
     /**
      * {@inheritDoc}
      *
      * @throws EntityNotFoundException if the user is not found
+     * @throws InputValidationException if the e-mail is registered to another user
      */
     @Override
     public User updateUser(Long id, UserDto userDetails) {
@@ -50,25 +141,187 @@ public class UserServiceImpl implements UserService {
         userEntity.setRegistrationDate(userDetails.getRegistrationDate());
         userEntity.setPhone(userDetails.getPhone());
 
-        log.info("Updating user {}", userEntity);
-        return userRepository.save(userEntity);
+        log.info("Updating user {}", v("userId", id));
+        return saveUser(userEntity);
+    }
+
+    // Grava imediatamente para que o índice único do e-mail seja verificado aqui, e não no commit
+    private User saveUser(User userEntity) {
+        try {
+            return userRepository.saveAndFlush(userEntity);
+        } catch (DataIntegrityViolationException e) {
+            // Outras violações não são causadas pelo e-mail informado
+            if (!(e.getCause() instanceof ConstraintViolationException violation)
+                    || !EMAIL_UNIQUE_INDEX.equalsIgnoreCase(violation.getConstraintName()))
+                throw e;
+            throw new InputValidationException("E-mail already registered", Map.of("email", "E-mail já cadastrado"));
+        }
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<User> getUser(Long id) {
-        log.info("Getting user with id {}", id);
+        if (LogSampling.sampled(readLogSampleRate))
+            log.info("Getting user with id {}", v("userId", id));
         return userRepository.findById(id);
     }
 
     @Override
-    public Page<User> getAllUsers(int page, int size) {
-        log.info("Getting all users");
-        return userRepository.findAll(PageRequest.of(page, size));
+    @Transactional(readOnly = true)
+    public Page<UserResponseDto> getAllUsers(int page, int size) {
+        if (LogSampling.sampled(readLogSampleRate))
+            log.info("Getting all users");
+        return userRepository.findAllResponses(PageRequest.of(page, size));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws InputValidationException if the cursor, the size or the sort order is invalid
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageDto<UserResponseDto> scrollUsers(String after, int size, String sort)
+            throws InputValidationException {
+        KeysetCursor.validateSize(size);
+        KeysetCursor cursor = KeysetCursor.decode(after);
+
+        if (LogSampling.sampled(readLogSampleRate))
+            log.info("Scrolling users after {}", cursor.id());
+        // Busca um usuário a mais apenas para saber se existe uma próxima página, sem a consulta de contagem
+        PageRequest limit = PageRequest.ofSize(size + 1);
+        return switch (sort) {
+            case "id" -> KeysetCursor.slice(userRepository.findNextOrderById(cursor.id(), limit), size,
+                    user -> new KeysetCursor("", user.id()));
+            case "name" -> KeysetCursor.slice(userRepository.findNextOrderByName(cursor.key(), cursor.id(), limit), size,
+                    user -> new KeysetCursor(user.name(), user.id()));
+            default -> throw new InputValidationException("Invalid sort", Map.of("sort", "Ordenação inválida"));
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The stream is parsed incrementally and each batch is upserted in its own transaction with a JDBC batch, so the
+     * input is never fully loaded in memory and a failed batch doesn't roll back the batches already saved. The
+     * cached users and query results are evicted at the end, since the batches bypass Hibernate.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ImportResultDto importUsers(InputStream input, FileFormat format) throws IOException {
+        ImportResultBuilder result = new ImportResultBuilder(importMaxReportedErrors);
+        Map<String, UserDto> batch = new LinkedHashMap<>();
+        List<Long> batchIndexes = new ArrayList<>(importBatchSize);
+        long index = 0;
+
+        try (MappingIterator<JsonNode> records = readRecords(input, format)) {
+            for (; records.hasNextValue(); index++) {
+                JsonNode node = records.nextValue();
+                // O ID da exportação é ignorado, o usuário é identificado pelo e-mail
+                if (node instanceof ObjectNode record)
+                    record.remove("id");
+
+                Map<String, String> fieldErrors = new HashMap<>();
+                UserDto user = ImportRecords.map(objectMapper, validator, node, UserDto.class, fieldErrors);
+                if (user == null) {
+                    result.rejected(index, fieldErrors);
+                    continue;
+                }
+
+                // Um e-mail repetido no mesmo lote não pode ser atualizado duas vezes no mesmo comando, então o lote
+                // é salvo antes e o último registro prevalece
+                String email = user.getEmail().toLowerCase(Locale.ROOT);
+                if (batch.containsKey(email))
+                    saveImportBatch(batch, batchIndexes, result);
+
+                batch.put(email, user);
+                batchIndexes.add(index);
+                if (batch.size() >= importBatchSize)
+                    saveImportBatch(batch, batchIndexes, result);
+            }
+        } catch (JsonProcessingException e) {
+            // Um arquivo malformado impede a leitura dos registros seguintes, os registros já lidos ainda são salvos
+            result.rejected(index, Map.of("body", "Arquivo inválido: " + e.getOriginalMessage()));
+        } finally {
+            saveImportBatch(batch, batchIndexes, result);
+            entityCacheService.evict(User.class);
+        }
+
+        log.info("Imported {} users, {} rejected", v("imported", result.imported()), v("rejected", result.failed()));
+        meterRegistry.counter("library.users.imported", "result", "imported").increment(result.imported());
+        meterRegistry.counter("library.users.imported", "result", "rejected").increment(result.failed());
+        return result.build();
+    }
+
+    private MappingIterator<JsonNode> readRecords(InputStream input, FileFormat format) throws IOException {
+        // Os dois formatos são lidos como árvores, assim os registros passam pela mesma conversão e validação
+        return switch (format) {
+            case CSV -> csvMapper.readerFor(JsonNode.class).with(CsvSchema.emptySchema().withHeader()).readValues(input);
+            case NDJSON -> objectMapper.readerFor(JsonNode.class).readValues(input);
+        };
+    }
+
+    /**
+     * Upserts a batch of imported users in a new transaction and clears the batch.
+     *
+     * @param batch        the users to save, by their lower case e-mail
+     * @param batchIndexes the positions of the users in the input
+     * @param result       the import result to update
+     */
+    private void saveImportBatch(Map<String, UserDto> batch, List<Long> batchIndexes, ImportResultBuilder result) {
+        if (batch.isEmpty())
+            return;
+
+        try {
+            List<UserDto> users = new ArrayList<>(batch.values());
+            transactionTemplate.executeWithoutResult(status -> userRepository.upsertAllByEmail(users));
+            result.imported(batch.size());
+        } catch (DataAccessException e) {
+            log.warn("Failed to import a batch of {} users", batch.size(), e);
+            batchIndexes.forEach(index -> result.rejected(index, Map.of("record", "Erro ao salvar o usuário")));
+        }
+
+        batch.clear();
+        batchIndexes.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The users are read through a database cursor as DTOs, which are not kept in the persistence context, and
+     * written as they arrive, so the memory used doesn't grow with the number of users.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void exportUsers(FileFormat format, OutputStream output) throws IOException {
+        log.info("Exporting users as {}", format);
+        long exported = 0;
+        try (Stream<UserResponseDto> users = userRepository.streamAllResponses()) {
+            Iterator<UserResponseDto> iterator = users.iterator();
+            switch (format) {
+                case CSV -> {
+                    try (SequenceWriter writer = csvMapper.writer(EXPORT_CSV_SCHEMA).writeValues(output)) {
+                        for (; iterator.hasNext(); exported++)
+                            writer.write(iterator.next());
+                    }
+                }
+                case NDJSON -> {
+                    try (JsonGenerator generator = objectMapper.createGenerator(output)) {
+                        generator.setRootValueSeparator(null);
+                        for (; iterator.hasNext(); exported++) {
+                            generator.writeObject(iterator.next());
+                            generator.writeRaw('\n');
+                        }
+                    }
+                }
+            }
+        }
+        meterRegistry.counter("library.users.exported", "format", format.name()).increment(exported);
     }
 
     @Override
     public boolean deleteUser(Long id) {
-        log.info("Deleting user with id {}", id);
+        log.info("Deleting user with id {}", v("userId", id));
         return userRepository.deleteByIdInt(id) > 0;
     }
 }
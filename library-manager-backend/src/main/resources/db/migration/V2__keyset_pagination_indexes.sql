@@ -0,0 +1,4 @@
+-- Índices usados pela paginação por cursor ordenada por título/nome, com o ID como desempate
+CREATE INDEX IF NOT EXISTS idx_books_titulo_id ON books (titulo, id);
+
+CREATE INDEX IF NOT EXISTS idx_users_nome_id ON users (nome, id);
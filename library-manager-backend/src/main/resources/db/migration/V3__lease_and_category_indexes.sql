@@ -0,0 +1,11 @@
+-- Empréstimos de um livro, também usado pelo ON DELETE CASCADE ao remover livros
+CREATE INDEX IF NOT EXISTS idx_leases_livro_id ON leases (livro_id);
+
+-- Histórico de empréstimos de um usuário já na ordem da consulta, também usado pelo ON DELETE CASCADE ao remover usuários
+CREATE INDEX IF NOT EXISTS idx_leases_usuario_id_data_emprestimo ON leases (usuario_id, data_emprestimo DESC);
+
+-- Garante no máximo um empréstimo ativo por livro e atende a verificação de disponibilidade e a carga dos livros emprestados
+CREATE UNIQUE INDEX IF NOT EXISTS uk_leases_livro_id_active ON leases (livro_id) WHERE status = 'ACTIVE';
+
+-- Filtro de livros por categoria
+CREATE INDEX IF NOT EXISTS idx_books_categoria ON books (categoria);
@@ -0,0 +1,6 @@
+-- Listagem de empréstimos sem filtro de usuário ou de livro, já na ordem da paginação por data de empréstimo e ID
+CREATE INDEX IF NOT EXISTS idx_leases_data_emprestimo_id ON leases (data_emprestimo DESC, id DESC);
+
+-- Histórico de empréstimos de um usuário com o ID como desempate da paginação, substitui o índice da V3
+CREATE INDEX IF NOT EXISTS idx_leases_usuario_id_data_emprestimo_id ON leases (usuario_id, data_emprestimo DESC, id DESC);
+DROP INDEX IF EXISTS idx_leases_usuario_id_data_emprestimo;
@@ -0,0 +1,65 @@
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE EXTENSION IF NOT EXISTS unaccent;
+
+-- unaccent é STABLE porque o dicionário pode mudar, fixar o dicionário permite usá-lo em colunas geradas e índices
+CREATE OR REPLACE FUNCTION immutable_unaccent(text) RETURNS text
+    LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT
+AS $$ SELECT public.unaccent('public.unaccent'::regdictionary, $1) $$;
+
+-- Documento da busca do catálogo, com o título pesando mais que o autor e o ISBN, e esses mais que a categoria
+ALTER TABLE books
+    ADD COLUMN busca tsvector GENERATED ALWAYS AS (
+        setweight(to_tsvector('portuguese', immutable_unaccent(titulo)), 'A') ||
+        setweight(to_tsvector('portuguese', immutable_unaccent(autor)), 'B') ||
+        setweight(to_tsvector('simple', replace(isbn, '-', '')), 'B') ||
+        setweight(to_tsvector('portuguese', immutable_unaccent(categoria)), 'C')
+    ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_books_busca ON books USING GIN (busca);
+
+-- Palavras distintas dos títulos e autores, usadas para corrigir erros de digitação da busca. Os trigramas ficam
+-- nesse dicionário e não nos livros, onde a busca por similaridade percorre listas enormes com milhões de livros.
+-- A ordenação "C" permite buscar palavras por prefixo na chave primária
+CREATE TABLE book_search_terms
+(
+    termo VARCHAR(255) COLLATE "C" NOT NULL,
+    CONSTRAINT pk_book_search_terms PRIMARY KEY (termo)
+);
+
+INSERT INTO book_search_terms (termo)
+SELECT DISTINCT t.termo
+FROM books b,
+     unnest(tsvector_to_array(to_tsvector('simple', immutable_unaccent(b.titulo || ' ' || b.autor)))) AS t(termo)
+WHERE length(t.termo) >= 3
+  AND t.termo ~ '^[[:alpha:]]+$';
+
+CREATE INDEX IF NOT EXISTS idx_book_search_terms_trgm ON book_search_terms USING GIN (termo gin_trgm_ops);
+
+-- Mantém o dicionário a cada comando, em ordem, para que importações concorrentes travem as palavras na mesma ordem.
+-- Palavras de livros removidos permanecem, apenas deixam de encontrar livros
+CREATE OR REPLACE FUNCTION books_search_terms_trigger() RETURNS trigger
+    LANGUAGE plpgsql
+AS $$
+BEGIN
+    INSERT INTO book_search_terms (termo)
+    SELECT DISTINCT t.termo
+    FROM novos_livros b,
+         unnest(tsvector_to_array(to_tsvector('simple', immutable_unaccent(b.titulo || ' ' || b.autor)))) AS t(termo)
+    WHERE length(t.termo) >= 3
+      AND t.termo ~ '^[[:alpha:]]+$'
+    ORDER BY t.termo
+    ON CONFLICT DO NOTHING;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER trg_books_search_terms_insert
+    AFTER INSERT ON books
+    REFERENCING NEW TABLE AS novos_livros
+    FOR EACH STATEMENT EXECUTE FUNCTION books_search_terms_trigger();
+
+CREATE TRIGGER trg_books_search_terms_update
+    AFTER UPDATE ON books
+    REFERENCING NEW TABLE AS novos_livros
+    FOR EACH STATEMENT EXECUTE FUNCTION books_search_terms_trigger();
@@ -0,0 +1,6 @@
+-- Empréstimos vencidos continuam com o livro, então o limite de um empréstimo em aberto por livro passa a incluí-los
+CREATE UNIQUE INDEX IF NOT EXISTS uk_leases_livro_id_open ON leases (livro_id) WHERE status IN ('ACTIVE', 'OVERDUE');
+DROP INDEX IF EXISTS uk_leases_livro_id_active;
+
+-- Busca dos empréstimos ativos com a devolução vencida, percorrendo apenas o trecho vencido do índice
+CREATE INDEX IF NOT EXISTS idx_leases_status_data_devolucao ON leases (status, data_devolucao);
@@ -0,0 +1,28 @@
+-- A importação de usuários atualiza o cadastro pelo e-mail, que passa a ser único sem diferenciar maiúsculas.
+-- Cadastros que já repetem o e-mail impediriam a criação do índice e a inicialização da aplicação, então são unidos
+-- no cadastro mais antigo: os empréstimos dos duplicados passam para ele e os duplicados são removidos
+DO $$
+DECLARE
+    moved_leases  BIGINT;
+    removed_users BIGINT;
+BEGIN
+    UPDATE leases l
+    SET usuario_id = kept.kept_id
+    FROM (SELECT id, min(id) OVER (PARTITION BY lower(email)) AS kept_id FROM users) kept
+    WHERE l.usuario_id = kept.id
+      AND kept.id <> kept.kept_id;
+    GET DIAGNOSTICS moved_leases = ROW_COUNT;
+
+    DELETE FROM users u
+    USING users kept
+    WHERE lower(kept.email) = lower(u.email)
+      AND kept.id < u.id;
+    GET DIAGNOSTICS removed_users = ROW_COUNT;
+
+    IF removed_users > 0 THEN
+        RAISE WARNING 'Merged % users with a duplicated e-mail into the oldest registration, moving % leases',
+            removed_users, moved_leases;
+    END IF;
+END $$;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_users_email ON users (lower(email));
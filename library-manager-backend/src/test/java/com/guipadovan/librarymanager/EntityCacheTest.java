@@ -0,0 +1,112 @@
+package com.guipadovan.librarymanager;
+
+import com.guipadovan.librarymanager.dtos.BookDto;
+import com.guipadovan.librarymanager.dtos.UserDto;
+import com.guipadovan.librarymanager.entities.Book;
+import com.guipadovan.librarymanager.entities.User;
+import com.guipadovan.librarymanager.services.BookService;
+import com.guipadovan.librarymanager.services.OverdueLeaseService;
+import com.guipadovan.librarymanager.services.UserService;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the second-level cache never serves a stale book or user, against the database configured in
+ * {@code application.yml}.
+ */
+@SpringBootTest
+class EntityCacheTest {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private OverdueLeaseService overdueLeaseService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Cache cache;
+    private Book book;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        cache = entityManagerFactory.getCache();
+        book = bookService.createBook(new BookDto("O Alienista", "Machado de Assis", "9788508133178",
+                LocalDate.of(1882, 1, 1), "Ficção"));
+        user = userService.createUser(new UserDto("Simão Bacamarte", "simao@example.com", LocalDate.now(),
+                "(11) 91234-5678"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookService.deleteBook(book.getId());
+        userService.deleteUser(user.getId());
+    }
+
+    @Test
+    void getBook_ShouldReturnEmpty_WhenBookWasDeletedAfterBeingCached() {
+        assertTrue(bookService.getBook(book.getId()).isPresent());
+        assertTrue(cache.contains(Book.class, book.getId()));
+
+        assertTrue(bookService.deleteBook(book.getId()));
+
+        assertFalse(cache.contains(Book.class, book.getId()));
+        assertTrue(bookService.getBook(book.getId()).isEmpty());
+    }
+
+    @Test
+    void getUser_ShouldReturnEmpty_WhenUserWasDeletedAfterBeingCached() {
+        assertTrue(userService.getUser(user.getId()).isPresent());
+        assertTrue(cache.contains(User.class, user.getId()));
+
+        assertTrue(userService.deleteUser(user.getId()));
+
+        assertFalse(cache.contains(User.class, user.getId()));
+        assertTrue(userService.getUser(user.getId()).isEmpty());
+    }
+
+    @Test
+    void getBook_ShouldReturnNewDetails_WhenBookWasUpdatedAfterBeingCached() {
+        assertTrue(bookService.getBook(book.getId()).isPresent());
+
+        bookService.updateBook(book.getId(), new BookDto("O Alienista (edição revista)", "Machado de Assis",
+                "9788508133178", LocalDate.of(1882, 1, 1), "Clássicos"));
+
+        Book cachedBook = bookService.getBook(book.getId()).orElseThrow();
+        assertEquals("O Alienista (edição revista)", cachedBook.getTitle());
+        assertEquals("Clássicos", cachedBook.getCategory());
+    }
+
+    @Test
+    void getUser_ShouldReturnNewDetails_WhenUserWasUpdatedAfterBeingCached() {
+        assertTrue(userService.getUser(user.getId()).isPresent());
+
+        userService.updateUser(user.getId(), new UserDto("Simão Bacamarte", "bacamarte@example.com",
+                LocalDate.now(), "(11) 98765-4321"));
+
+        assertEquals("bacamarte@example.com", userService.getUser(user.getId()).orElseThrow().getEmail());
+    }
+
+    @Test
+    void markOverdueLeases_ShouldKeepCachedBooks() {
+        assertTrue(bookService.getBook(book.getId()).isPresent());
+
+        overdueLeaseService.markOverdueLeases();
+
+        assertTrue(cache.contains(Book.class, book.getId()));
+    }
+}
@@ -0,0 +1,108 @@
+package com.guipadovan.librarymanager;
+
+import com.guipadovan.librarymanager.dtos.BookDto;
+import com.guipadovan.librarymanager.dtos.LeaseDto;
+import com.guipadovan.librarymanager.dtos.UserDto;
+import com.guipadovan.librarymanager.entities.Book;
+import com.guipadovan.librarymanager.entities.User;
+import com.guipadovan.librarymanager.exceptions.InputValidationException;
+import com.guipadovan.librarymanager.services.BookService;
+import com.guipadovan.librarymanager.services.LeaseService;
+import com.guipadovan.librarymanager.services.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress test of concurrent leases of the same book against the database configured in {@code application.yml}.
+ */
+@Slf4j
+@SpringBootTest
+class LeaseConcurrencyTest {
+
+    private static final int THREADS = 300;
+
+    @Autowired
+    private LeaseService leaseService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Book book;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        book = bookService.createBook(new BookDto("Dom Casmurro", "Machado de Assis", "9788535910681",
+                LocalDate.of(1899, 1, 1), "Ficção"));
+        user = userService.createUser(new UserDto("Bento Santiago", "bento@example.com", LocalDate.now(),
+                "(11) 91234-5678"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookService.deleteBook(book.getId());
+        userService.deleteUser(user.getId());
+    }
+
+    @Test
+    void createLease_ShouldLeaseTheBookOnlyOnce_WhenHundredsOfThreadsCompete() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger leased = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < THREADS; i++) {
+                executor.submit(() -> {
+                    start.await();
+                    long startTime = System.nanoTime();
+                    try {
+                        leaseService.createLease(new LeaseDto(user.getId(), book.getId(), LocalDate.now(),
+                                LocalDate.now().plusDays(7)));
+                        leased.incrementAndGet();
+                    } catch (InputValidationException e) {
+                        assertEquals("Livro já está em uso", e.getFieldErrors().get("bookId"));
+                        rejected.incrementAndGet();
+                    } finally {
+                        latencies.add(System.nanoTime() - startTime);
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+
+        assertEquals(1, leased.get());
+        assertEquals(THREADS - 1, rejected.get());
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from leases where livro_id = ?", Long.class,
+                book.getId()));
+
+        // As inserções rejeitadas aguardam no máximo a transação vencedora, então a latência vem da fila do pool de
+        // conexões e não de bloqueios em série. Ela depende da máquina, por isso é apenas registrada
+        List<Long> sortedLatencies = latencies.stream().sorted().toList();
+        log.info("Concurrent leases of one book: p50 {} ms, p99 {} ms, max {} ms",
+                Duration.ofNanos(sortedLatencies.get(sortedLatencies.size() / 2)).toMillis(),
+                Duration.ofNanos(sortedLatencies.get(sortedLatencies.size() * 99 / 100)).toMillis(),
+                Duration.ofNanos(sortedLatencies.getLast()).toMillis());
+    }
+}
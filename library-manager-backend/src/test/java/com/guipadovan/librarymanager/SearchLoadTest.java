@@ -0,0 +1,145 @@
+package com.guipadovan.librarymanager;
+
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Load test of the book search with a slow Google Books API, comparing platform and virtual threads.
+ * <p>
+ * Runs only with the {@code load-test} Maven profile and needs the database configured in {@code application.yml}.
+ */
+@Slf4j
+@Tag("load")
+class SearchLoadTest {
+
+    private static final byte[] VOLUMES_RESPONSE = """
+            {
+              "kind": "books#volumes",
+              "totalItems": 1,
+              "items": [
+                {
+                  "volumeInfo": {
+                    "title": "Dom Casmurro",
+                    "authors": ["Machado de Assis"],
+                    "publishedDate": "1899",
+                    "industryIdentifiers": [{"type": "ISBN_13", "identifier": "9788535910681"}],
+                    "categories": ["Fiction"]
+                  }
+                }
+              ]
+            }
+            """.getBytes(StandardCharsets.UTF_8);
+
+    // Tempo que a API simulada leva entre enviar os cabeçalhos e o corpo da resposta
+    private static final long UPSTREAM_STALL_MILLIS = 1_000;
+    private static final int CONCURRENT_USERS = 400;
+    private static final int SEARCHES = 2_000;
+
+    private static HttpServer upstream;
+    private static final AtomicInteger searchCount = new AtomicInteger();
+
+    @BeforeAll
+    static void startUpstream() throws IOException {
+        upstream = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        upstream.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        upstream.createContext("/books/v1/volumes", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, VOLUMES_RESPONSE.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                sleep(UPSTREAM_STALL_MILLIS);
+                output.write(VOLUMES_RESPONSE);
+            }
+        });
+        upstream.start();
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.stop(0);
+    }
+
+    @Test
+    void searchBooks_ShouldSustainHigherThroughputOnVirtualThreads_WhenUpstreamIsSlow() throws Exception {
+        double platformThroughput = measureThroughput(false);
+        double virtualThroughput = measureThroughput(true);
+
+        log.info("Search throughput with a slow upstream: platform threads {} req/s, virtual threads {} req/s",
+                String.format("%.1f", platformThroughput), String.format("%.1f", virtualThroughput));
+        assertTrue(virtualThroughput > platformThroughput);
+    }
+
+    private static double measureThroughput(boolean virtualThreads) throws Exception {
+        String apiUrl = "http://localhost:" + upstream.getAddress().getPort() + "/books/v1/volumes";
+        try (ServletWebServerApplicationContext context = (ServletWebServerApplicationContext)
+                new SpringApplicationBuilder(LibraryManagerApplication.class)
+                        .run("--server.port=0",
+                                "--spring.threads.virtual.enabled=" + virtualThreads,
+                                "--google.books.api-url=" + apiUrl,
+                                "--google.books.read-timeout=60s");
+             HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build()) {
+            String searchUrl = "http://localhost:" + context.getWebServer().getPort() + "/v1/books/search?title=";
+
+            // Aquece a aplicação antes da medição
+            runSearches(client, searchUrl, CONCURRENT_USERS, CONCURRENT_USERS);
+
+            long start = System.nanoTime();
+            runSearches(client, searchUrl, SEARCHES, CONCURRENT_USERS);
+            return SEARCHES / (Duration.ofNanos(System.nanoTime() - start).toMillis() / 1000.0);
+        }
+    }
+
+    private static void runSearches(HttpClient client, String searchUrl, int searches, int concurrentUsers)
+            throws Exception {
+        Semaphore users = new Semaphore(concurrentUsers);
+        List<Future<Integer>> statuses = new ArrayList<>(searches);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < searches; i++) {
+                // Cada busca usa um título diferente para não ser atendida pelo cache
+                URI uri = URI.create(searchUrl + "livro-" + searchCount.incrementAndGet());
+                users.acquire();
+                statuses.add(executor.submit(() -> {
+                    try {
+                        return client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.discarding())
+                                .statusCode();
+                    } finally {
+                        users.release();
+                    }
+                }));
+            }
+        }
+
+        for (Future<Integer> status : statuses)
+            assertEquals(200, status.get());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.repositories.LeaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class BookAvailabilityServiceImplTest {
+
+    @Mock
+    private LeaseRepository leaseRepository;
+
+    @InjectMocks
+    private BookAvailabilityServiceImpl bookAvailabilityService;
+
+    @BeforeEach
+    void setUp() {
+        when(leaseRepository.findAllOpenLeaseBookIds()).thenReturn(List.of(1L, 5_000_000_000L));
+
+        bookAvailabilityService.loadLeasedBooks();
+    }
+
+    @Test
+    void isLeased_ShouldReturnTrue_WhenBookHasActiveLease() {
+        assertTrue(bookAvailabilityService.isLeased(1L));
+        assertTrue(bookAvailabilityService.isLeased(5_000_000_000L));
+        assertFalse(bookAvailabilityService.isLeased(2L));
+    }
+
+    @Test
+    void markLeased_ShouldMakeBookUnavailable() {
+        bookAvailabilityService.markLeased(2L, 50L);
+
+        assertTrue(bookAvailabilityService.isLeased(2L));
+    }
+
+    @Test
+    void markAvailable_ShouldMakeBookAvailable() {
+        bookAvailabilityService.markAvailable(1L, 50L);
+
+        assertFalse(bookAvailabilityService.isLeased(1L));
+        assertTrue(bookAvailabilityService.isLeased(5_000_000_000L));
+    }
+
+    @Test
+    void markLeased_ShouldBeIgnored_WhenTheReturnOfTheSameLeaseWasAppliedFirst() {
+        bookAvailabilityService.markAvailable(2L, 50L);
+        bookAvailabilityService.markLeased(2L, 50L);
+
+        assertFalse(bookAvailabilityService.isLeased(2L));
+    }
+
+    @Test
+    void markAvailable_ShouldBeIgnored_WhenALaterLeaseWasAppliedFirst() {
+        bookAvailabilityService.markLeased(1L, 100L);
+        bookAvailabilityService.markAvailable(1L, 50L);
+
+        assertTrue(bookAvailabilityService.isLeased(1L));
+    }
+
+    @Test
+    void loadLeasedBooks_ShouldReconcileWithTheDatabase() {
+        bookAvailabilityService.markLeased(2L, 50L);
+        when(leaseRepository.findAllOpenLeaseBookIds()).thenReturn(List.of(3L));
+
+        bookAvailabilityService.scheduledReconcileLeasedBooks();
+
+        assertFalse(bookAvailabilityService.isLeased(1L));
+        assertFalse(bookAvailabilityService.isLeased(2L));
+        assertTrue(bookAvailabilityService.isLeased(3L));
+    }
+
+    @Test
+    void markLeased_ShouldBeAppliedAfterTheReload_WhenItArrivesDuringTheReload() {
+        when(leaseRepository.findAllOpenLeaseBookIds()).thenAnswer(invocation -> {
+            // O empréstimo é confirmado depois da leitura da recarga
+            bookAvailabilityService.markLeased(2L, 50L);
+            return List.of(1L);
+        });
+
+        bookAvailabilityService.loadLeasedBooks();
+
+        assertTrue(bookAvailabilityService.isLeased(1L));
+        assertTrue(bookAvailabilityService.isLeased(2L));
+    }
+}
@@ -0,0 +1,161 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.dtos.BookNeighborsBuildDto;
+import com.guipadovan.librarymanager.repositories.LeaseRepository;
+import com.guipadovan.librarymanager.repositories.projections.LeasePairView;
+import com.guipadovan.librarymanager.services.BookAvailabilityService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BookNeighborServiceImplTest {
+
+    // Empréstimos 1 a 9: o livro 10 foi lido pelos usuários 1, 2 e 3, o 11 pelos 1, 2 e 4, o 12 pelos 1 e 3 e o 13 pelo 4
+    private static final List<LeasePairView> LEASES = List.of(
+            pair(1L, 10L), pair(1L, 11L), pair(1L, 12L),
+            pair(2L, 10L), pair(2L, 11L),
+            pair(3L, 10L), pair(3L, 12L),
+            pair(4L, 11L), pair(4L, 13L));
+
+    @Mock
+    private LeaseRepository leaseRepository;
+
+    @Mock
+    private BookAvailabilityService bookAvailabilityService;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private BookNeighborServiceImpl bookNeighborService;
+
+    @Test
+    void rebuildNeighbors_ShouldRankBooksByCosineSimilarity_WhenBooksHaveEnoughCoLeases() {
+        when(leaseRepository.findMaxId()).thenReturn(Optional.of(9L));
+        when(leaseRepository.findPairsByIdRange(0L, 9L)).thenReturn(LEASES);
+
+        BookNeighborsBuildDto build = bookNeighborService.rebuildNeighbors();
+
+        // 10 e 12 têm 2 leitores em comum, 2 / sqrt(3 * 2), à frente de 10 e 11, 2 / sqrt(3 * 3). Os demais pares têm
+        // apenas um leitor em comum, abaixo do mínimo
+        assertEquals(List.of(12L, 11L), bookNeighborService.recommendBooks(List.of(10L), Set.of(), 5));
+        assertEquals(List.of(10L), bookNeighborService.recommendBooks(List.of(11L), Set.of(), 5));
+        assertEquals(List.of(), bookNeighborService.recommendBooks(List.of(13L), Set.of(), 5));
+        assertTrue(build.full());
+        assertEquals(9, build.newLeases());
+        assertEquals(4, build.updatedBooks());
+        assertEquals(3, build.books());
+        assertEquals(4, build.neighbors());
+        assertEquals(build, bookNeighborService.getLastBuild().orElseThrow());
+        assertEquals(1, meterRegistry.timer("library.recommendations.neighbors.build", "type", "full").count());
+    }
+
+    @Test
+    void recommendBooks_ShouldSkipExcludedAndLeasedBooks() {
+        when(leaseRepository.findMaxId()).thenReturn(Optional.of(9L));
+        when(leaseRepository.findPairsByIdRange(0L, 9L)).thenReturn(LEASES);
+        when(bookAvailabilityService.isLeased(12L)).thenReturn(true);
+        bookNeighborService.rebuildNeighbors();
+
+        assertEquals(List.of(11L), bookNeighborService.recommendBooks(List.of(10L), Set.of(), 5));
+        assertEquals(List.of(), bookNeighborService.recommendBooks(List.of(10L), Set.of(11L), 5));
+    }
+
+    @Test
+    void recommendBooks_ShouldAddUpScores_WhenBooksAreNeighborsOfSeveralSourceBooks() {
+        when(leaseRepository.findMaxId()).thenReturn(Optional.of(9L));
+        when(leaseRepository.findPairsByIdRange(0L, 9L)).thenReturn(LEASES);
+        bookNeighborService.rebuildNeighbors();
+
+        assertEquals(List.of(10L), bookNeighborService.recommendBooks(List.of(11L, 12L), Set.of(11L, 12L), 5));
+        assertEquals(List.of(12L), bookNeighborService.recommendBooks(List.of(10L), Set.of(), 1));
+    }
+
+    @Test
+    void refreshNeighbors_ShouldReadOnlyNewLeasesAndUpdateTheirBooks_WhenLeasesWereAdded() {
+        when(leaseRepository.findMaxId()).thenReturn(Optional.of(9L), Optional.of(11L));
+        when(leaseRepository.findPairsByIdRange(0L, 9L)).thenReturn(LEASES);
+        when(leaseRepository.findPairsByIdRange(9L, 11L)).thenReturn(List.of(pair(4L, 10L), pair(4L, 12L)));
+        bookNeighborService.refreshNeighbors();
+
+        BookNeighborsBuildDto build = bookNeighborService.refreshNeighbors();
+
+        // O usuário 4 passa a ligar 11 e 12, e os empates são resolvidos pelo menor ID
+        assertEquals(List.of(10L, 12L), bookNeighborService.recommendBooks(List.of(11L), Set.of(), 5));
+        assertEquals(List.of(11L, 12L), bookNeighborService.recommendBooks(List.of(10L), Set.of(), 5));
+        assertFalse(build.full());
+        assertEquals(2, build.newLeases());
+        assertEquals(4, build.updatedBooks());
+        verify(leaseRepository, times(1)).findPairsByIdRange(0L, 9L);
+        verify(leaseRepository, times(1)).findPairsByIdRange(9L, 11L);
+        assertEquals(1, meterRegistry.timer("library.recommendations.neighbors.build", "type", "incremental").count());
+    }
+
+    @Test
+    void refreshNeighbors_ShouldKeepNeighbors_WhenThereAreNoNewLeases() {
+        when(leaseRepository.findMaxId()).thenReturn(Optional.of(9L));
+        when(leaseRepository.findPairsByIdRange(0L, 9L)).thenReturn(LEASES);
+        bookNeighborService.refreshNeighbors();
+
+        BookNeighborsBuildDto build = bookNeighborService.refreshNeighbors();
+
+        assertEquals(0, build.newLeases());
+        assertEquals(0, build.updatedBooks());
+        assertEquals(3, build.books());
+        assertEquals(List.of(12L, 11L), bookNeighborService.recommendBooks(List.of(10L), Set.of(), 5));
+        verify(leaseRepository, times(1)).findPairsByIdRange(anyLong(), anyLong());
+    }
+
+    @Test
+    void rebuildNeighbors_ShouldReadLeasesInChunksOfRows_WhenIdsAreSparse() {
+        ReflectionTestUtils.setField(bookNeighborService, "loadChunkSize", 5);
+        when(leaseRepository.findMaxId()).thenReturn(Optional.of(450L));
+        when(leaseRepository.findChunkBoundaries(0L, 450L, 5)).thenReturn(List.of(250L));
+        when(leaseRepository.findPairsByIdRange(0L, 250L)).thenReturn(LEASES.subList(0, 5));
+        when(leaseRepository.findPairsByIdRange(250L, 450L)).thenReturn(LEASES.subList(5, 9));
+
+        bookNeighborService.rebuildNeighbors();
+
+        assertEquals(List.of(12L, 11L), bookNeighborService.recommendBooks(List.of(10L), Set.of(), 5));
+        verify(leaseRepository, times(2)).findPairsByIdRange(anyLong(), anyLong());
+    }
+
+    @Test
+    void rebuildNeighbors_ShouldNotAddAnEmptyChunk_WhenTheLastBoundaryIsTheLastLease() {
+        ReflectionTestUtils.setField(bookNeighborService, "loadChunkSize", 9);
+        when(leaseRepository.findMaxId()).thenReturn(Optional.of(9L));
+        when(leaseRepository.findChunkBoundaries(0L, 9L, 9)).thenReturn(List.of(9L));
+        when(leaseRepository.findPairsByIdRange(0L, 9L)).thenReturn(LEASES);
+
+        bookNeighborService.rebuildNeighbors();
+
+        assertEquals(List.of(12L, 11L), bookNeighborService.recommendBooks(List.of(10L), Set.of(), 5));
+        verify(leaseRepository, times(1)).findPairsByIdRange(anyLong(), anyLong());
+    }
+
+    @Test
+    void recommendBooks_ShouldReturnEmptyList_WhenNeighborsWereNotComputed() {
+        assertEquals(List.of(), bookNeighborService.recommendBooks(List.of(10L), Set.of(), 5));
+        assertTrue(bookNeighborService.getLastBuild().isEmpty());
+        verifyNoInteractions(leaseRepository);
+    }
+
+    private static LeasePairView pair(Long userId, Long bookId) {
+        return new LeasePairView(userId, bookId);
+    }
+}
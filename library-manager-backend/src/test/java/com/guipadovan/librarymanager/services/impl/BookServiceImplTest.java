@@ -1,22 +1,51 @@
 package com.guipadovan.librarymanager.services.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.guipadovan.librarymanager.dtos.BookDto;
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import com.guipadovan.librarymanager.dtos.BookSnapshotDto;
+import com.guipadovan.librarymanager.dtos.CursorPageDto;
+import com.guipadovan.librarymanager.dtos.ImportResultDto;
 import com.guipadovan.librarymanager.entities.Book;
 import com.guipadovan.librarymanager.exceptions.EntityNotFoundException;
+import com.guipadovan.librarymanager.exceptions.InputValidationException;
 import com.guipadovan.librarymanager.repositories.BookRepository;
+import com.guipadovan.librarymanager.repositories.projections.BookSearchHit;
+import com.guipadovan.librarymanager.services.BookSuggestionService;
+import com.guipadovan.librarymanager.services.EntityCacheService;
+import com.guipadovan.librarymanager.services.RecommendationPoolService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
-
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -28,6 +57,27 @@ public class BookServiceImplTest {
     @Mock
     private BookRepository bookRepository;
 
+    @Mock
+    private RecommendationPoolService recommendationPoolService;
+
+    @Mock
+    private BookSuggestionService bookSuggestionService;
+
+    @Mock
+    private EntityCacheService entityCacheService;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private BookServiceImpl bookService;
 
@@ -43,6 +93,8 @@ public class BookServiceImplTest {
         assertNotNull(createdBook);
         assertEquals(bookDto.getTitle(), createdBook.getTitle());
         verify(bookRepository, times(1)).save(any(Book.class));
+        verify(recommendationPoolService, times(1)).addBook(createdBook.getId(), bookDto.getCategory());
+        verify(bookSuggestionService, times(1)).indexBook(createdBook.getId(), bookDto.getTitle(), bookDto.getAuthor());
     }
 
     @Test
@@ -60,6 +112,8 @@ public class BookServiceImplTest {
         assertEquals(bookDto.getTitle(), updatedBook.getTitle());
         verify(bookRepository, times(1)).findById(bookId);
         verify(bookRepository, times(1)).save(existingBook);
+        verify(recommendationPoolService, times(1)).updateBook(bookId, bookDto.getCategory());
+        verify(bookSuggestionService, times(1)).indexBook(bookId, bookDto.getTitle(), bookDto.getAuthor());
     }
 
     @Test
@@ -72,6 +126,67 @@ public class BookServiceImplTest {
         assertThrows(EntityNotFoundException.class, () -> bookService.updateBook(nonExistentId, bookDto));
     }
 
+    @Test
+    void importBooks_ShouldSaveValidBooksAndReportInvalidOnes_WhenInputIsJsonArray() throws IOException {
+        String json = """
+                [
+                  {"title": "Título1", "author": "Autor1", "isbn": "1111111111111", "publicationDate": "2020-01-01", "category": "Ficção"},
+                  {"title": "Título2", "isbn": "2222222222222", "publicationDate": "2020-01-01", "category": "Ficção"},
+                  {"title": "Título3", "author": "Autor3", "isbn": "3333333333333", "publicationDate": "data", "category": "Ficção"},
+                  {"title": "Título4", "author": "Autor4", "isbn": "4444444444444", "publicationDate": "2020-01-01", "category": "Ciência"}
+                ]
+                """;
+        executeTransactionsInline();
+
+        ImportResultDto result = bookService.importBooks(toStream(json));
+
+        assertEquals(2, result.imported());
+        assertEquals(2, result.failed());
+        assertEquals(1, result.errors().get(0).index());
+        assertTrue(result.errors().get(0).fieldErrors().containsKey("author"));
+        assertEquals(2, result.errors().get(1).index());
+        assertTrue(result.errors().get(1).fieldErrors().containsKey("publicationDate"));
+        verify(bookRepository, times(1)).saveAll(any());
+        verify(recommendationPoolService, times(2)).addBook(any(), any());
+        verify(bookSuggestionService, times(2)).indexBook(any(), any(), any());
+        assertEquals(2, meterRegistry.counter("library.books.imported", "result", "imported").count());
+        assertEquals(2, meterRegistry.counter("library.books.imported", "result", "rejected").count());
+    }
+
+    @Test
+    void importBooks_ShouldSaveInBatches_WhenInputIsNdjson() throws IOException {
+        String ndjson = """
+                {"title": "Título1", "author": "Autor1", "isbn": "1111111111111", "publicationDate": "2020-01-01", "category": "Ficção"}
+                {"title": "Título2", "author": "Autor2", "isbn": "2222222222222", "publicationDate": "2020-01-01", "category": "Ficção"}
+                {"title": "Título3", "author": "Autor3", "isbn": "3333333333333", "publicationDate": "2020-01-01", "category": "Ficção"}
+                """;
+        executeTransactionsInline();
+        ReflectionTestUtils.setField(bookService, "importBatchSize", 2);
+
+        ImportResultDto result = bookService.importBooks(toStream(ndjson));
+
+        assertEquals(3, result.imported());
+        assertEquals(0, result.failed());
+        verify(transactionTemplate, times(2)).executeWithoutResult(any());
+        verify(bookRepository, times(2)).saveAll(any());
+    }
+
+    @Test
+    void importBooks_ShouldKeepReadRecords_WhenJsonIsMalformed() throws IOException {
+        String json = """
+                [
+                  {"title": "Título1", "author": "Autor1", "isbn": "1111111111111", "publicationDate": "2020-01-01", "category": "Ficção"},
+                  {"title": "Título2", "author":
+                """;
+        executeTransactionsInline();
+
+        ImportResultDto result = bookService.importBooks(toStream(json));
+
+        assertEquals(1, result.imported());
+        assertEquals(1, result.failed());
+        assertTrue(result.errors().getFirst().fieldErrors().containsKey("body"));
+    }
+
     @Test
     void getBook_ShouldReturnBook_WhenIdExists() {
         Long bookId = 1L;
@@ -90,56 +205,165 @@ public class BookServiceImplTest {
     void getAllBooks_ShouldReturnPageOfBooks() {
         int page = 0;
         int size = 5;
-        List<Book> books = Arrays.asList(new Book("Título1", "Autor1", "1111111111111", LocalDate.now(), "Categoria1"),
-                new Book("Título2", "Autor2", "2222222222222", LocalDate.now(), "Categoria2"));
-        Page<Book> bookPage = new PageImpl<>(books);
+        List<BookResponseDto> books = Arrays.asList(new BookResponseDto(1L, "Título1", "Autor1", "1111111111111", LocalDate.now(), "Categoria1"),
+                new BookResponseDto(2L, "Título2", "Autor2", "2222222222222", LocalDate.now(), "Categoria2"));
+        Page<BookResponseDto> bookPage = new PageImpl<>(books);
 
-        when(bookRepository.findAll(PageRequest.of(page, size))).thenReturn(bookPage);
+        when(bookRepository.findAllResponses(PageRequest.of(page, size))).thenReturn(bookPage);
 
-        Page<Book> result = bookService.getAllBooks(page, size);
+        Page<BookResponseDto> result = bookService.getAllBooks(page, size);
 
         assertNotNull(result);
         assertEquals(2, result.getTotalElements());
-        verify(bookRepository, times(1)).findAll(PageRequest.of(page, size));
+        verify(bookRepository, times(1)).findAllResponses(PageRequest.of(page, size));
     }
 
     @Test
     void getAllBooks_ShouldReturnEmptyPage_WhenNoBooksExist() {
-        when(bookRepository.findAll(PageRequest.of(0, 10))).thenReturn(Page.empty());
+        when(bookRepository.findAllResponses(PageRequest.of(0, 10))).thenReturn(Page.empty());
 
-        Page<Book> result = bookService.getAllBooks(0, 10);
+        Page<BookResponseDto> result = bookService.getAllBooks(0, 10);
 
         assertTrue(result.isEmpty());
     }
 
     @Test
-    void getBookRecommendations_ShouldReturnRecommendations() {
-        List<String> categories = Arrays.asList("Ficção", "Ciência");
-        List<Long> excludedIds = Arrays.asList(1L, 2L);
-        int limit = 2;
-        List<Book> recommendedBooks = Arrays.asList(new Book("Título1", "Autor1", "1111111111111", LocalDate.now(), "Ficção"),
-                new Book("Título2", "Autor2", "2222222222222", LocalDate.now(), "Ciência"));
+    void scrollBooks_ShouldReturnSliceWithNextCursor_WhenThereAreMoreBooks() {
+        BookResponseDto book1 = new BookResponseDto(1L, "Título1", "Autor1", "1111111111111", LocalDate.now(), "Ficção");
+        BookResponseDto book2 = new BookResponseDto(2L, "Título2", "Autor2", "2222222222222", LocalDate.now(), "Ficção");
+        BookResponseDto book3 = new BookResponseDto(3L, "Título3", "Autor3", "3333333333333", LocalDate.now(), "Ficção");
 
-        when(bookRepository.findBooksByCategoriesRandomizedAndOrdered(categories, excludedIds, PageRequest.of(0, limit)))
-                .thenReturn(recommendedBooks);
+        when(bookRepository.findNextOrderById(0L, PageRequest.ofSize(3))).thenReturn(List.of(book1, book2, book3));
+        when(bookRepository.findNextOrderById(2L, PageRequest.ofSize(3))).thenReturn(List.of(book3));
 
-        List<Book> result = bookService.getBookRecommendations(categories, excludedIds, limit);
+        CursorPageDto<BookResponseDto> firstSlice = bookService.scrollBooks(null, 2, "id");
 
-        assertNotNull(result);
-        assertEquals(2, result.size());
-        verify(bookRepository, times(1)).findBooksByCategoriesRandomizedAndOrdered(categories, excludedIds, PageRequest.of(0, limit));
+        assertEquals(List.of(book1, book2), firstSlice.content());
+        assertTrue(firstSlice.hasNext());
+
+        CursorPageDto<BookResponseDto> secondSlice = bookService.scrollBooks(firstSlice.next(), 2, "id");
+
+        assertEquals(List.of(book3), secondSlice.content());
+        assertFalse(secondSlice.hasNext());
+        assertNull(secondSlice.next());
+        verify(bookRepository, never()).count();
     }
 
     @Test
-    void getBookRecommendations_ShouldHandleEmptyCategories() {
-        List<Long> excludedBookIds = Arrays.asList(1L, 2L);
+    void scrollBooks_ShouldContinueAfterTitleAndId_WhenSortedByTitle() {
+        BookResponseDto book1 = new BookResponseDto(7L, "Título: parte 1", "Autor1", "1111111111111", LocalDate.now(), "Ficção");
+        BookResponseDto book2 = new BookResponseDto(3L, "Título: parte 2", "Autor2", "2222222222222", LocalDate.now(), "Ficção");
 
-        when(bookRepository.findBooksByCategoriesRandomizedAndOrdered(any(List.class), eq(excludedBookIds), any(PageRequest.class)))
-                .thenReturn(List.of());
+        when(bookRepository.findNextOrderByTitle("", 0L, PageRequest.ofSize(2))).thenReturn(List.of(book1, book2));
+        when(bookRepository.findNextOrderByTitle("Título: parte 1", 7L, PageRequest.ofSize(2))).thenReturn(List.of(book2));
 
-        List<Book> result = bookService.getBookRecommendations(List.of(), excludedBookIds, 5);
+        CursorPageDto<BookResponseDto> firstSlice = bookService.scrollBooks(null, 1, "title");
+        CursorPageDto<BookResponseDto> secondSlice = bookService.scrollBooks(firstSlice.next(), 1, "title");
+
+        assertEquals(List.of(book1), firstSlice.content());
+        assertEquals(List.of(book2), secondSlice.content());
+        assertFalse(secondSlice.hasNext());
+    }
+
+    @Test
+    void scrollBooks_ShouldThrowInputValidationException_WhenCursorIsInvalid() {
+        InputValidationException exception = assertThrows(InputValidationException.class, () -> bookService.scrollBooks("inválido", 10, "id"));
+
+        assertTrue(exception.getFieldErrors().containsKey("after"));
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void scrollBooks_ShouldThrowInputValidationException_WhenSortIsInvalid() {
+        InputValidationException exception = assertThrows(InputValidationException.class, () -> bookService.scrollBooks(null, 10, "isbn"));
+
+        assertTrue(exception.getFieldErrors().containsKey("sort"));
+    }
+
+    @Test
+    void searchCatalog_ShouldMatchNormalizedTokensAndLastTokenAsPrefix_WhenTheyAreKnown() {
+        BookResponseDto book = new BookResponseDto(1L, "Dom Casmurro", "Machado de Assis", "978-85-359-1068-1", LocalDate.now(), "Ficção");
+
+        when(bookRepository.findTermCorrections(List.of("machado", "9788535910681"), 0.5, 3)).thenReturn(Map.of());
+        when(bookRepository.searchBooks("machado & 9788535910681:*", Float.POSITIVE_INFINITY, 0L, 11, 1000))
+                .thenReturn(List.of(new BookSearchHit(book, 0.6f)));
+
+        CursorPageDto<BookResponseDto> slice = bookService.searchCatalog("  MACHADO, 978-85-359-1068-1 machado", null, 10);
+
+        assertEquals(List.of(book), slice.content());
+        assertFalse(slice.hasNext());
+        assertNull(slice.next());
+    }
+
+    @Test
+    void searchCatalog_ShouldAcceptCorrections_WhenTokenIsMisspelled() {
+        when(bookRepository.findTermCorrections(List.of("casmuro", "ficcao"), 0.5, 3))
+                .thenReturn(Map.of("casmuro", List.of("casmurro", "casmurros")));
+
+        bookService.searchCatalog("casmuro ficção", null, 10);
+
+        verify(bookRepository).searchBooks("(casmuro | casmurro | casmurros) & ficcao:*", Float.POSITIVE_INFINITY, 0L, 11, 1000);
+    }
+
+    @Test
+    void searchCatalog_ShouldContinueAfterScoreAndId_WhenThereAreMoreBooks() {
+        BookResponseDto book1 = new BookResponseDto(7L, "Memórias Póstumas", "Machado de Assis", "1111111111111", LocalDate.now(), "Ficção");
+        BookResponseDto book2 = new BookResponseDto(3L, "Memorial de Aires", "Machado de Assis", "2222222222222", LocalDate.now(), "Ficção");
+        BookResponseDto book3 = new BookResponseDto(5L, "Helena", "Machado de Assis", "3333333333333", LocalDate.now(), "Ficção");
+
+        when(bookRepository.findTermCorrections(List.of("machado"), 0.5, 3)).thenReturn(Map.of());
+        when(bookRepository.searchBooks("machado:*", Float.POSITIVE_INFINITY, 0L, 3, 1000))
+                .thenReturn(List.of(new BookSearchHit(book1, 0.6f), new BookSearchHit(book2, 0.6f), new BookSearchHit(book3, 0.2f)));
+        when(bookRepository.searchBooks("machado:*", 0.6f, 3L, 3, 1000))
+                .thenReturn(List.of(new BookSearchHit(book3, 0.2f)));
+
+        CursorPageDto<BookResponseDto> firstSlice = bookService.searchCatalog("machado", null, 2);
+        CursorPageDto<BookResponseDto> secondSlice = bookService.searchCatalog("machado", firstSlice.next(), 2);
+
+        assertEquals(List.of(book1, book2), firstSlice.content());
+        assertTrue(firstSlice.hasNext());
+        assertEquals(List.of(book3), secondSlice.content());
+        assertFalse(secondSlice.hasNext());
+    }
+
+    @Test
+    void searchCatalog_ShouldThrowInputValidationException_WhenQueryHasNoWords() {
+        InputValidationException exception = assertThrows(InputValidationException.class, () -> bookService.searchCatalog(" -- ", null, 10));
+
+        assertTrue(exception.getFieldErrors().containsKey("q"));
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void searchCatalog_ShouldThrowInputValidationException_WhenCursorScoreIsInvalid() {
+        String cursor = new KeysetCursor("relevância", 1L).encode();
+
+        InputValidationException exception = assertThrows(InputValidationException.class, () -> bookService.searchCatalog("machado", cursor, 10));
+
+        assertTrue(exception.getFieldErrors().containsKey("after"));
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void getBooks_ShouldReturnBooksInTheOrderOfTheIds() {
+        BookResponseDto book1 = new BookResponseDto(1L, "Título1", "Autor1", "1111111111111", LocalDate.now(), "Ficção");
+        BookResponseDto book2 = new BookResponseDto(2L, "Título2", "Autor2", "2222222222222", LocalDate.now(), "Ciência");
+        List<Long> ids = Arrays.asList(2L, 3L, 1L);
+
+        when(bookRepository.findAllResponsesById(ids)).thenReturn(Arrays.asList(book1, book2));
+
+        List<BookResponseDto> result = bookService.getBooks(ids);
+
+        assertEquals(List.of(book2, book1), result);
+        verify(bookRepository, times(1)).findAllResponsesById(ids);
+    }
+
+    @Test
+    void getBooks_ShouldNotQuery_WhenIdsAreEmpty() {
+        List<BookResponseDto> result = bookService.getBooks(List.of());
 
         assertTrue(result.isEmpty());
+        verifyNoInteractions(bookRepository);
     }
 
     @Test
@@ -152,6 +376,8 @@ public class BookServiceImplTest {
 
         assertTrue(result);
         verify(bookRepository, times(1)).deleteByIdInt(bookId);
+        verify(recommendationPoolService, times(1)).removeBook(bookId);
+        verify(bookSuggestionService, times(1)).removeBook(bookId);
     }
 
     @Test
@@ -164,5 +390,150 @@ public class BookServiceImplTest {
 
         assertFalse(result);
         verify(bookRepository, times(1)).deleteByIdInt(bookId);
+        verifyNoInteractions(recommendationPoolService, bookSuggestionService);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportSnapshot_ShouldWriteSnapshotThatRestoresTheSameBooks() throws IOException {
+        List<BookResponseDto> books = List.of(
+                new BookResponseDto(3L, "Título1", "Autor1", "1111111111111", LocalDate.of(2020, 1, 1), "Ficção"),
+                new BookResponseDto(7L, "Título\tcom\ncontrole\\", "Autor2", "2222222222222", LocalDate.of(1850, 6, 30), "Ficção"),
+                new BookResponseDto(120L, "Título3", "Autor1", "3333333333333", LocalDate.of(2024, 12, 31), "Ciência"));
+        when(bookRepository.streamAllResponses()).thenReturn(books.stream());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        BookSnapshotDto exported = bookService.exportSnapshot(output);
+
+        List<BookResponseDto> restoredBooks = new ArrayList<>();
+        executeTransactionCallbacksInline();
+        when(bookRepository.restoreBooks(any())).thenAnswer(invocation -> {
+            ((Iterator<BookResponseDto>) invocation.getArgument(0)).forEachRemaining(restoredBooks::add);
+            return (long) restoredBooks.size();
+        });
+
+        BookSnapshotDto restored = bookService.restoreSnapshot(new ByteArrayInputStream(output.toByteArray()));
+
+        assertEquals(3, exported.books());
+        assertEquals(3, restored.books());
+        assertEquals(books, restoredBooks);
+        verify(entityCacheService, times(1)).evict(Book.class);
+        verify(recommendationPoolService, times(1)).loadPools();
+        verify(bookSuggestionService, times(1)).loadIndex();
+        assertEquals(3, meterRegistry.counter("library.books.snapshot.books", "operation", "export").count());
+        assertEquals(3, meterRegistry.counter("library.books.snapshot.books", "operation", "restore").count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void restoreSnapshot_ShouldThrowInputValidationException_WhenSnapshotIsTruncated() throws IOException {
+        when(bookRepository.streamAllResponses()).thenReturn(Stream.of(
+                new BookResponseDto(1L, "Título1", "Autor1", "1111111111111", LocalDate.of(2020, 1, 1), "Ficção")));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        bookService.exportSnapshot(output);
+        byte[] truncated = Arrays.copyOf(output.toByteArray(), output.size() - 12);
+        executeTransactionCallbacksInline();
+        when(bookRepository.restoreBooks(any())).thenAnswer(invocation -> {
+            ((Iterator<BookResponseDto>) invocation.getArgument(0)).forEachRemaining(book -> {
+            });
+            return 1L;
+        });
+
+        InputValidationException exception = assertThrows(InputValidationException.class,
+                () -> bookService.restoreSnapshot(new ByteArrayInputStream(truncated)));
+
+        assertTrue(exception.getFieldErrors().containsKey("body"));
+        verifyNoInteractions(entityCacheService);
+    }
+
+    @Test
+    void restoreSnapshot_ShouldThrowInputValidationException_WhenTextIsLongerThanTheColumn() throws IOException {
+        when(bookRepository.streamAllResponses()).thenReturn(Stream.of(
+                new BookResponseDto(1L, "T".repeat(1021), "Autor1", "1111111111111", LocalDate.of(2020, 1, 1), "Ficção")));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        bookService.exportSnapshot(output);
+        consumeRestoredBooksInline();
+
+        InputValidationException exception = assertThrows(InputValidationException.class,
+                () -> bookService.restoreSnapshot(new ByteArrayInputStream(output.toByteArray())));
+
+        assertTrue(exception.getFieldErrors().containsKey("body"));
+        verifyNoInteractions(entityCacheService);
+    }
+
+    @Test
+    void restoreSnapshot_ShouldThrowInputValidationException_WhenDateIsOutOfRange() throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write(new byte[]{'L', 'M', 'B', 'S', 1});
+        writeVarint(content, 1);
+        writeVarint(content, 1);
+        writeText(content, "Título1");
+        writeVarint(content, 0);
+        writeText(content, "Autor1");
+        writeText(content, "1111111111111");
+        writeVarint(content, Long.MAX_VALUE);
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(snapshot)) {
+            content.writeTo(gzip);
+        }
+        consumeRestoredBooksInline();
+
+        InputValidationException exception = assertThrows(InputValidationException.class,
+                () -> bookService.restoreSnapshot(new ByteArrayInputStream(snapshot.toByteArray())));
+
+        assertTrue(exception.getFieldErrors().containsKey("body"));
+        verifyNoInteractions(entityCacheService);
+    }
+
+    @Test
+    void restoreSnapshot_ShouldThrowInputValidationException_WhenInputIsNotASnapshot() {
+        InputValidationException exception = assertThrows(InputValidationException.class,
+                () -> bookService.restoreSnapshot(toStream("{\"title\": \"Título1\"}")));
+
+        assertTrue(exception.getFieldErrors().containsKey("body"));
+        verify(bookRepository, never()).restoreBooks(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void executeTransactionCallbacksInline() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void consumeRestoredBooksInline() {
+        executeTransactionCallbacksInline();
+        when(bookRepository.restoreBooks(any())).thenAnswer(invocation -> {
+            ((Iterator<BookResponseDto>) invocation.getArgument(0)).forEachRemaining(book -> {
+            });
+            return 0L;
+        });
+    }
+
+    private static void writeText(ByteArrayOutputStream output, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(output, bytes.length);
+        output.writeBytes(bytes);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream output, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            output.write((int) (zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        output.write((int) zigzag);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void executeTransactionsInline() {
+        doAnswer(invocation -> {
+            ((Consumer<Object>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    private static InputStream toStream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
     }
 }
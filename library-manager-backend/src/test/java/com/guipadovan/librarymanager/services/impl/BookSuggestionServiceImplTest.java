@@ -0,0 +1,126 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.dtos.BookSuggestionDto;
+import com.guipadovan.librarymanager.exceptions.InputValidationException;
+import com.guipadovan.librarymanager.repositories.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class BookSuggestionServiceImplTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @InjectMocks
+    private BookSuggestionServiceImpl bookSuggestionService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(bookSuggestionService, "loadChunkSize", 2);
+        ReflectionTestUtils.setField(bookSuggestionService, "loadThreads", 2);
+
+        // IDs esparsos: os blocos são definidos pela quantidade de livros, não pelo intervalo de IDs
+        when(bookRepository.findMaxId()).thenReturn(Optional.of(1000L));
+        when(bookRepository.findChunkBoundaries(0L, 1000L, 2)).thenReturn(List.of(2L, 1000L));
+        when(bookRepository.findSuggestionsByIdRange(0L, 2L)).thenReturn(List.of(
+                new BookSuggestionDto(1L, "Dom Casmurro", "Machado de Assis"),
+                new BookSuggestionDto(2L, "Memórias Póstumas de Brás Cubas", "Machado de Assis")));
+        when(bookRepository.findSuggestionsByIdRange(2L, 1000L)).thenReturn(List.of(
+                new BookSuggestionDto(3L, "O Cortiço", "Aluísio Azevedo"),
+                new BookSuggestionDto(1000L, "Macunaíma", "Mário de Andrade")));
+
+        bookSuggestionService.loadIndex();
+    }
+
+    @Test
+    void suggest_ShouldReturnBooksFromEveryChunk_WhenPrefixMatchesWords() {
+        List<BookSuggestionDto> suggestions = bookSuggestionService.suggest("Mac", 10);
+
+        // As palavras são percorridas em ordem alfabética, "machado" antes de "macunaima"
+        assertEquals(List.of(1L, 2L, 1000L), suggestions.stream().map(BookSuggestionDto::id).toList());
+    }
+
+    @Test
+    void suggest_ShouldIgnoreCaseAndAccents() {
+        List<BookSuggestionDto> suggestions = bookSuggestionService.suggest("CORTIÇO", 10);
+
+        assertEquals(List.of(3L), suggestions.stream().map(BookSuggestionDto::id).toList());
+        assertEquals("O Cortiço", suggestions.getFirst().title());
+    }
+
+    @Test
+    void suggest_ShouldRequireEveryWord_WhenQueryHasManyWords() {
+        List<BookSuggestionDto> suggestions = bookSuggestionService.suggest("machado mem", 10);
+
+        assertEquals(List.of(2L), suggestions.stream().map(BookSuggestionDto::id).toList());
+    }
+
+    @Test
+    void suggest_ShouldStopAtLimit() {
+        List<BookSuggestionDto> suggestions = bookSuggestionService.suggest("ma", 2);
+
+        assertEquals(2, suggestions.size());
+    }
+
+    @Test
+    void suggest_ShouldReturnEmptyList_WhenQueryHasNoWords() {
+        assertTrue(bookSuggestionService.suggest(" - ", 10).isEmpty());
+    }
+
+    @Test
+    void suggest_ShouldThrowInputValidationException_WhenLimitIsInvalid() {
+        InputValidationException exception = assertThrows(InputValidationException.class,
+                () -> bookSuggestionService.suggest("mac", 0));
+
+        assertTrue(exception.getFieldErrors().containsKey("limit"));
+    }
+
+    @Test
+    void indexBook_ShouldReplaceTheWordsOfTheBook_WhenBookIsAlreadyIndexed() {
+        bookSuggestionService.indexBook(3L, "Iracema", "José de Alencar");
+
+        assertTrue(bookSuggestionService.suggest("cortiço", 10).isEmpty());
+        assertEquals(List.of(3L), bookSuggestionService.suggest("ira", 10).stream().map(BookSuggestionDto::id).toList());
+    }
+
+    @Test
+    void indexBook_ShouldSuggestNewBook() {
+        bookSuggestionService.indexBook(5L, "Vidas Secas", "Graciliano Ramos");
+
+        assertEquals(List.of(5L), bookSuggestionService.suggest("vid sec", 10).stream().map(BookSuggestionDto::id).toList());
+    }
+
+    @Test
+    void removeBook_ShouldStopSuggestingTheBook() {
+        bookSuggestionService.removeBook(1L);
+
+        assertEquals(List.of(2L), bookSuggestionService.suggest("machado", 10).stream().map(BookSuggestionDto::id).toList());
+    }
+
+    @Test
+    void loadIndex_ShouldApplyTheChangesCommittedDuringTheReload() {
+        // Livro cadastrado e livro removido enquanto a recarga lê o catálogo, que ainda não os reflete
+        when(bookRepository.findMaxId()).thenAnswer(invocation -> {
+            bookSuggestionService.indexBook(5L, "Iracema", "José de Alencar");
+            bookSuggestionService.removeBook(3L);
+            return Optional.of(1000L);
+        });
+
+        bookSuggestionService.loadIndex();
+
+        assertEquals(List.of(5L), bookSuggestionService.suggest("iracema", 10).stream().map(BookSuggestionDto::id).toList());
+        assertTrue(bookSuggestionService.suggest("cortiço", 10).isEmpty());
+    }
+}
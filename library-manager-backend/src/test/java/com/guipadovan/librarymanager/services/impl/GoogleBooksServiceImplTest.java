@@ -0,0 +1,326 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guipadovan.librarymanager.config.GoogleBooksProperties;
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import com.guipadovan.librarymanager.dtos.CacheStatsDto;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GoogleBooksServiceImplTest {
+
+    private static final String VOLUMES_RESPONSE = """
+            {
+              "kind": "books#volumes",
+              "totalItems": 2,
+              "items": [
+                {
+                  "volumeInfo": {
+                    "title": "Dom Casmurro",
+                    "authors": ["Machado de Assis"],
+                    "publishedDate": "1899-05-01",
+                    "industryIdentifiers": [{"type": "ISBN_13", "identifier": "9788535910681"}],
+                    "categories": ["Fiction"]
+                  }
+                },
+                {
+                  "volumeInfo": {
+                    "title": "Dom Casmurro (sem autor)",
+                    "publishedDate": "2002"
+                  }
+                }
+              ]
+            }
+            """;
+
+    private static final String PARTIAL_DATES_RESPONSE = """
+            {
+              "kind": "books#volumes",
+              "items": [
+                {
+                  "id": "a1",
+                  "saleInfo": {"country": "BR", "offers": [{"finskyOfferType": 1, "listPrice": {"amountInMicros": 1}}]},
+                  "volumeInfo": {
+                    "title": "Memórias Póstumas",
+                    "authors": ["Machado de Assis", "Outro Autor"],
+                    "imageLinks": {"thumbnail": "http://books.google.com/thumbnail"},
+                    "publishedDate": "1881-03",
+                    "industryIdentifiers": [{"type": "ISBN_10", "identifier": "8535910689"}, {"type": "ISBN_13", "identifier": "9788535910681"}],
+                    "categories": ["Fiction"]
+                  }
+                },
+                {
+                  "volumeInfo": {
+                    "title": "Quincas Borba",
+                    "authors": ["Machado de Assis"],
+                    "publishedDate": "1891",
+                    "industryIdentifiers": [{"type": "OTHER", "identifier": "UOM:39015"}],
+                    "categories": ["Fiction"]
+                  },
+                  "searchInfo": {"textSnippet": "Quincas Borba"}
+                }
+              ],
+              "totalItems": 2
+            }
+            """;
+
+    private static final String EMPTY_RESPONSE = """
+            {"kind": "books#volumes", "totalItems": 0}
+            """;
+
+    private HttpServer server;
+    private HttpClient httpClient;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final Queue<String> requestedQueries = new ConcurrentLinkedQueue<>();
+    private final AtomicLong responseDelayMillis = new AtomicLong();
+    private final AtomicLong tickerNanos = new AtomicLong();
+    // Segura as respostas que param no meio do corpo até o fim do teste
+    private final CountDownLatch stalledResponses = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/books/v1/volumes", exchange -> {
+            requestCount.incrementAndGet();
+            String query = exchange.getRequestURI().getQuery();
+            requestedQueries.add(query);
+            sleep(responseDelayMillis.get());
+
+            String response = query.contains("inexistente") ? EMPTY_RESPONSE
+                    : query.contains("machado") ? PARTIAL_DATES_RESPONSE : VOLUMES_RESPONSE;
+            byte[] body = response.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(query.contains("indisponivel") ? 503 : 200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                if (query.contains("interrompido")) {
+                    output.write(body, 0, body.length / 2);
+                    output.flush();
+                    await(stalledResponses);
+                }
+                output.write(body);
+            } catch (IOException e) {
+                // O cliente desistiu da resposta
+            }
+        });
+        server.start();
+        httpClient = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stalledResponses.countDown();
+        httpClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    void searchBooksByTitle_ShouldMapCompleteVolumesOnly() throws IOException {
+        GoogleBooksServiceImpl googleBooksService = createService(100);
+
+        List<BookResponseDto> books = googleBooksService.searchBooksByTitle("Dom Casmurro");
+
+        assertEquals(1, books.size());
+        assertEquals("Dom Casmurro", books.getFirst().title());
+        assertEquals("Machado de Assis", books.getFirst().author());
+        assertEquals("9788535910681", books.getFirst().isbn());
+        assertEquals(LocalDate.of(1899, 5, 1), books.getFirst().publicationDate());
+        assertEquals("Fiction", books.getFirst().category());
+        assertEquals("q=intitle:dom casmurro&key=test-key", requestedQueries.peek());
+    }
+
+    @Test
+    void searchBooksByTitle_ShouldSkipUnusedFieldsAndParsePartialDates() throws IOException {
+        GoogleBooksServiceImpl googleBooksService = createService(100);
+
+        List<BookResponseDto> books = googleBooksService.searchBooksByTitle("Machado");
+
+        assertEquals(2, books.size());
+        assertEquals("Machado de Assis", books.get(0).author());
+        assertEquals("8535910689", books.get(0).isbn());
+        assertEquals(LocalDate.of(1881, 3, 1), books.get(0).publicationDate());
+        assertEquals("UOM:39015", books.get(1).isbn());
+        assertEquals(LocalDate.of(1891, 1, 1), books.get(1).publicationDate());
+    }
+
+    @Test
+    void parseDate_ShouldReturnNull_WhenDateIsInvalid() {
+        assertEquals(LocalDate.of(2024, 2, 29), GoogleBooksResponseMapper.parseDate("2024-02-29"));
+        assertNull(GoogleBooksResponseMapper.parseDate("2023-02-29"));
+        assertNull(GoogleBooksResponseMapper.parseDate("2023-13"));
+        assertNull(GoogleBooksResponseMapper.parseDate("2023/01/01"));
+        assertNull(GoogleBooksResponseMapper.parseDate("199*"));
+        assertNull(GoogleBooksResponseMapper.parseDate(""));
+    }
+
+    @Test
+    void searchBooksByTitleAsync_ShouldCompleteWithBooks_WithoutBlockingTheCaller() throws Exception {
+        GoogleBooksServiceImpl googleBooksService = createService(100);
+        responseDelayMillis.set(300);
+
+        CompletableFuture<List<BookResponseDto>> search = googleBooksService.searchBooksByTitleAsync("Dom Casmurro");
+
+        assertFalse(search.isDone());
+        assertEquals(1, search.get(5, TimeUnit.SECONDS).size());
+    }
+
+    @Test
+    void searchBooksByTitle_ShouldThrowIOExceptionAndNotCache_WhenApiRespondsWithError() {
+        GoogleBooksServiceImpl googleBooksService = createService(100);
+
+        assertThrows(IOException.class, () -> googleBooksService.searchBooksByTitle("Livro indisponivel"));
+        assertThrows(IOException.class, () -> googleBooksService.searchBooksByTitle("Livro indisponivel"));
+        assertEquals(2, requestCount.get());
+    }
+
+    @Test
+    void searchBooksByTitle_ShouldTimeOutAndReleaseTheClientThread_WhenResponseStallsMidBody() {
+        // Com uma única thread no cliente, a segunda busca só termina se a leitura do corpo parado for interrompida
+        httpClient.close();
+        httpClient = HttpClient.newBuilder()
+                .executor(Executors.newSingleThreadExecutor(Thread.ofVirtual().factory()))
+                .build();
+        GoogleBooksServiceImpl googleBooksService = createService(100, Duration.ofMillis(300));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            assertThrows(HttpTimeoutException.class, () -> googleBooksService.searchBooksByTitle("Livro interrompido"));
+            assertEquals(1, googleBooksService.searchBooksByTitle("Dom Casmurro").size());
+        });
+        // A busca que falhou não fica no cache
+        assertEquals(1, googleBooksService.getSearchCacheStats().size());
+    }
+
+    @Test
+    void searchBooksByTitle_ShouldUseCache_WhenTitleDiffersOnlyInCaseAndSpacing() throws IOException {
+        GoogleBooksServiceImpl googleBooksService = createService(100);
+
+        googleBooksService.searchBooksByTitle("Dom Casmurro");
+        googleBooksService.searchBooksByTitle("  dom   CASMURRO ");
+
+        CacheStatsDto stats = googleBooksService.getSearchCacheStats();
+        assertEquals(1, requestCount.get());
+        assertEquals(1, stats.hitCount());
+        assertEquals(1, stats.missCount());
+    }
+
+    @Test
+    void searchBooksByTitle_ShouldCacheEmptyResultsForTheNegativeTtl() throws IOException {
+        GoogleBooksServiceImpl googleBooksService = createService(100);
+
+        assertTrue(googleBooksService.searchBooksByTitle("Livro inexistente").isEmpty());
+        assertTrue(googleBooksService.searchBooksByTitle("Livro inexistente").isEmpty());
+        assertEquals(1, requestCount.get());
+
+        // Resultados vazios expiram antes dos resultados com livros
+        tickerNanos.addAndGet(Duration.ofMinutes(2).toNanos());
+        googleBooksService.searchBooksByTitle("Livro inexistente");
+        assertEquals(2, requestCount.get());
+    }
+
+    @Test
+    void searchBooksByTitle_ShouldExpireResultsAfterTheTtl() throws IOException {
+        GoogleBooksServiceImpl googleBooksService = createService(100);
+
+        googleBooksService.searchBooksByTitle("Dom Casmurro");
+        tickerNanos.addAndGet(Duration.ofMinutes(2).toNanos());
+        googleBooksService.searchBooksByTitle("Dom Casmurro");
+        assertEquals(1, requestCount.get());
+
+        tickerNanos.addAndGet(Duration.ofMinutes(10).toNanos());
+        googleBooksService.searchBooksByTitle("Dom Casmurro");
+        assertEquals(2, requestCount.get());
+    }
+
+    @Test
+    void searchBooksByTitle_ShouldCoalesceConcurrentSearchesForTheSameTitle() throws Exception {
+        GoogleBooksServiceImpl googleBooksService = createService(100);
+        responseDelayMillis.set(300);
+        int users = 20;
+        CountDownLatch start = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(users)) {
+            List<Future<List<BookResponseDto>>> searches = new ArrayList<>();
+            for (int i = 0; i < users; i++) {
+                searches.add(executor.submit(() -> {
+                    start.await();
+                    return googleBooksService.searchBooksByTitle("Dom Casmurro");
+                }));
+            }
+            start.countDown();
+
+            for (Future<List<BookResponseDto>> search : searches)
+                assertEquals(1, search.get(5, TimeUnit.SECONDS).size());
+        }
+
+        assertEquals(1, requestCount.get());
+    }
+
+    @Test
+    void searchBooksByTitle_ShouldEvictEntries_WhenCacheIsFull() throws IOException {
+        GoogleBooksServiceImpl googleBooksService = createService(2);
+
+        for (int i = 0; i < 10; i++)
+            googleBooksService.searchBooksByTitle("Título " + i);
+
+        CacheStatsDto stats = googleBooksService.getSearchCacheStats();
+        assertEquals(10, stats.missCount());
+        assertTrue(stats.evictionCount() > 0);
+    }
+
+    @Test
+    void searchBooksByTitle_ShouldNotCallApi_WhenTitleIsBlank() throws IOException {
+        GoogleBooksServiceImpl googleBooksService = createService(100);
+
+        assertTrue(googleBooksService.searchBooksByTitle("   ").isEmpty());
+        assertEquals(0, requestCount.get());
+    }
+
+    private GoogleBooksServiceImpl createService(long maximumSize) {
+        return createService(maximumSize, Duration.ofSeconds(5));
+    }
+
+    private GoogleBooksServiceImpl createService(long maximumSize, Duration readTimeout) {
+        String apiUrl = "http://localhost:" + server.getAddress().getPort() + "/books/v1/volumes";
+        GoogleBooksProperties properties = new GoogleBooksProperties(apiUrl, "test-key",
+                Duration.ofSeconds(2), readTimeout,
+                new GoogleBooksProperties.Cache(maximumSize, Duration.ofMinutes(10), Duration.ofMinutes(1)));
+        return new GoogleBooksServiceImpl(properties, httpClient, new ObjectMapper(), new SimpleMeterRegistry(),
+                tickerNanos::get);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
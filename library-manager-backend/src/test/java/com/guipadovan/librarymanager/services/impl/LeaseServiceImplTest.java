@@ -1,21 +1,40 @@
 package com.guipadovan.librarymanager.services.impl;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
 import com.guipadovan.librarymanager.dtos.LeaseDto;
+import com.guipadovan.librarymanager.dtos.LeaseFilterDto;
+import com.guipadovan.librarymanager.dtos.LeaseResponseDto;
+import com.guipadovan.librarymanager.dtos.UserResponseDto;
 import com.guipadovan.librarymanager.entities.Book;
 import com.guipadovan.librarymanager.entities.Lease;
 import com.guipadovan.librarymanager.entities.User;
+import com.guipadovan.librarymanager.exceptions.EntityNotFoundException;
 import com.guipadovan.librarymanager.exceptions.InputValidationException;
 import com.guipadovan.librarymanager.repositories.LeaseRepository;
+import com.guipadovan.librarymanager.repositories.projections.BookCategoryView;
+import com.guipadovan.librarymanager.repositories.projections.UserBookCategoryView;
+import com.guipadovan.librarymanager.services.BookAvailabilityService;
 import com.guipadovan.librarymanager.services.BookService;
+import com.guipadovan.librarymanager.services.RecommendationCacheService;
 import com.guipadovan.librarymanager.services.UserService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -33,6 +52,15 @@ public class LeaseServiceImplTest {
     @Mock
     private BookService bookService;
 
+    @Mock
+    private BookAvailabilityService bookAvailabilityService;
+
+    @Mock
+    private RecommendationCacheService recommendationCacheService;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
     @InjectMocks
     private LeaseServiceImpl leaseService;
 
@@ -45,17 +73,23 @@ public class LeaseServiceImplTest {
         leaseDto.setReturnDate(LocalDate.now().plusDays(7));
 
         User user = new User();
+        user.setId(1L);
         Book book = new Book();
-        Lease expectedLease = new Lease();
+        book.setId(1L);
 
         when(userService.getUser(any(Long.class))).thenReturn(Optional.of(user));
         when(bookService.getBook(any(Long.class))).thenReturn(Optional.of(book));
-        when(leaseRepository.save(any(Lease.class))).thenReturn(expectedLease);
+        when(leaseRepository.insertActiveLease(1L, 1L, leaseDto.getLeaseDate(), leaseDto.getReturnDate()))
+                .thenReturn(Optional.of(51L));
 
         Lease actualLease = leaseService.createLease(leaseDto);
 
-        assertEquals(expectedLease, actualLease);
-        verify(leaseRepository, times(1)).save(any(Lease.class));
+        assertEquals(51L, actualLease.getId());
+        assertEquals(user, actualLease.getUser());
+        assertEquals(book, actualLease.getBook());
+        assertEquals(Lease.Status.ACTIVE, actualLease.getStatus());
+        verify(bookAvailabilityService, times(1)).markLeased(1L, 51L);
+        verify(recommendationCacheService, times(1)).evictUser(1L);
     }
 
     @Test
@@ -84,6 +118,46 @@ public class LeaseServiceImplTest {
         verify(bookService, times(1)).getBook(any(Long.class));
     }
 
+    @Test
+    void createLease_ShouldCreateLease_WhenAvailabilityIsStale() throws InputValidationException {
+        LeaseDto leaseDto = new LeaseDto(1L, 1L, LocalDate.now(), LocalDate.now().plusDays(7));
+
+        User user = new User();
+        user.setId(1L);
+        Book book = new Book();
+        book.setId(1L);
+
+        when(userService.getUser(any(Long.class))).thenReturn(Optional.of(user));
+        when(bookService.getBook(any(Long.class))).thenReturn(Optional.of(book));
+        lenient().when(bookAvailabilityService.isLeased(1L)).thenReturn(true);
+        when(leaseRepository.insertActiveLease(any(), any(), any(), any())).thenReturn(Optional.of(51L));
+
+        Lease actualLease = leaseService.createLease(leaseDto);
+
+        assertEquals(51L, actualLease.getId());
+        verify(bookAvailabilityService, never()).isLeased(any());
+        verify(bookAvailabilityService, times(1)).markLeased(1L, 51L);
+    }
+
+    @Test
+    void createLease_ShouldThrowException_WhenAnotherLeaseOfTheBookWasInsertedConcurrently() {
+        LeaseDto leaseDto = new LeaseDto(1L, 1L, LocalDate.now(), LocalDate.now().plusDays(7));
+
+        User user = new User();
+        user.setId(1L);
+        Book book = new Book();
+        book.setId(1L);
+
+        when(userService.getUser(any(Long.class))).thenReturn(Optional.of(user));
+        when(bookService.getBook(any(Long.class))).thenReturn(Optional.of(book));
+        when(leaseRepository.insertActiveLease(any(), any(), any(), any())).thenReturn(Optional.empty());
+
+        InputValidationException exception = assertThrows(InputValidationException.class, () -> leaseService.createLease(leaseDto));
+
+        assertEquals("Livro já está em uso", exception.getFieldErrors().get("bookId"));
+        verify(bookAvailabilityService, never()).markLeased(any(), any());
+    }
+
     @Test
     void createLease_ShouldThrowException_WhenLeaseDetailsAreIncomplete() {
         LeaseDto leaseDto = new LeaseDto();
@@ -97,17 +171,36 @@ public class LeaseServiceImplTest {
     void returnBook_ShouldUpdateLeaseStatus_WhenInputIsValid() throws InputValidationException {
         Book book = new Book();
         Lease lease = new Lease();
+        lease.setId(7L);
         lease.setStatus(Lease.Status.ACTIVE);
 
         when(bookService.getBook(any(Long.class))).thenReturn(Optional.of(book));
-        when(leaseRepository.existsByBook_IdAndStatusActive(any(Long.class))).thenReturn(true);
-        when(leaseRepository.findByBook_IdAndStatusActive(any(Long.class))).thenReturn(lease);
+        when(leaseRepository.findOpenByBookId(any(Long.class))).thenReturn(lease);
         when(leaseRepository.save(any(Lease.class))).thenReturn(lease);
 
         Lease updatedLease = leaseService.returnBook(1L);
 
         assertEquals(Lease.Status.RETURNED, updatedLease.getStatus());
         verify(leaseRepository, times(1)).save(lease);
+        verify(bookAvailabilityService, times(1)).markAvailable(1L, 7L);
+    }
+
+    @Test
+    void returnBook_ShouldMarkLeaseAsReturned_WhenLeaseIsOverdue() throws InputValidationException {
+        Lease lease = new Lease();
+        lease.setId(7L);
+        lease.setStatus(Lease.Status.OVERDUE);
+        lease.setReturnDate(LocalDate.now().minusDays(3));
+
+        when(bookService.getBook(1L)).thenReturn(Optional.of(new Book()));
+        when(leaseRepository.findOpenByBookId(1L)).thenReturn(lease);
+        when(leaseRepository.save(lease)).thenReturn(lease);
+
+        Lease updatedLease = leaseService.returnBook(1L);
+
+        assertEquals(Lease.Status.RETURNED, updatedLease.getStatus());
+        assertEquals(LocalDate.now(), updatedLease.getReturnDate());
+        verify(bookAvailabilityService, times(1)).markAvailable(1L, 7L);
     }
 
     @Test
@@ -123,10 +216,153 @@ public class LeaseServiceImplTest {
     @Test
     void returnBook_ShouldThrowException_WhenBookNotLeased() {
         when(bookService.getBook(any(Long.class))).thenReturn(Optional.of(new Book()));
-        when(leaseRepository.existsByBook_IdAndStatusActive(any(Long.class))).thenReturn(false);
+        when(leaseRepository.findOpenByBookId(1L)).thenReturn(null);
 
         InputValidationException exception = assertThrows(InputValidationException.class, () -> leaseService.returnBook(1L));
 
-        assertTrue(exception.getFieldErrors().containsKey("bookId"));
+        assertEquals("Livro não está em uso", exception.getFieldErrors().get("bookId"));
+        verify(leaseRepository, never()).save(any(Lease.class));
+        verify(bookAvailabilityService, never()).markAvailable(any(), any());
+    }
+
+    @Test
+    void returnBook_ShouldReturnBook_WhenAvailabilityIsStale() throws InputValidationException {
+        Lease lease = new Lease();
+        lease.setId(7L);
+        lease.setStatus(Lease.Status.ACTIVE);
+
+        when(bookService.getBook(1L)).thenReturn(Optional.of(new Book()));
+        lenient().when(bookAvailabilityService.isLeased(1L)).thenReturn(false);
+        when(leaseRepository.findOpenByBookId(1L)).thenReturn(lease);
+        when(leaseRepository.save(lease)).thenReturn(lease);
+
+        Lease updatedLease = leaseService.returnBook(1L);
+
+        assertEquals(Lease.Status.RETURNED, updatedLease.getStatus());
+        verify(bookAvailabilityService, never()).isLeased(any());
+        verify(bookAvailabilityService, times(1)).markAvailable(1L, 7L);
+    }
+
+    @Test
+    void getLeasedBookCategoriesByUser_ShouldReturnLeasedBooks_WhenUserHasLeases() {
+        when(leaseRepository.findLeasedBookCategoriesByUser(1L))
+                .thenReturn(List.of(bookCategory(1L, "Ficção"), bookCategory(2L, "Romance")));
+
+        List<BookCategoryView> leasedBooks = leaseService.getLeasedBookCategoriesByUser(1L);
+
+        assertEquals(List.of(1L, 2L), leasedBooks.stream().map(BookCategoryView::id).toList());
+    }
+
+    @Test
+    void getLeasedBookCategoriesByUser_ShouldReturnEmptyList_WhenUserHasNoLeases() {
+        when(leaseRepository.findLeasedBookCategoriesByUser(1L)).thenReturn(List.of(bookCategory(null, null)));
+
+        List<BookCategoryView> leasedBooks = leaseService.getLeasedBookCategoriesByUser(1L);
+
+        assertTrue(leasedBooks.isEmpty());
+    }
+
+    @Test
+    void getLeasedBookCategoriesByUser_ShouldThrowException_WhenUserNotFound() {
+        when(leaseRepository.findLeasedBookCategoriesByUser(1L)).thenReturn(List.of());
+
+        EntityNotFoundException exception = assertThrows(EntityNotFoundException.class, () -> leaseService.getLeasedBookCategoriesByUser(1L));
+
+        assertEquals("User with id 1 not found.", exception.getMessage());
+    }
+
+    @Test
+    void getLeasedBookCategoriesByUsers_ShouldGroupLeasedBooksByUser_InASingleQuery() {
+        when(leaseRepository.findLeasedBookCategoriesByUsers(List.of(1L, 2L, 3L))).thenReturn(List.of(
+                new UserBookCategoryView(1L, 5L, "Ficção"),
+                new UserBookCategoryView(1L, 4L, "Romance"),
+                new UserBookCategoryView(2L, null, null)));
+
+        Map<Long, List<BookCategoryView>> leasedBooksByUser = leaseService.getLeasedBookCategoriesByUsers(
+                List.of(1L, 2L, 3L));
+
+        assertEquals(List.of(bookCategory(5L, "Ficção"), bookCategory(4L, "Romance")), leasedBooksByUser.get(1L));
+        assertEquals(List.of(), leasedBooksByUser.get(2L));
+        assertFalse(leasedBooksByUser.containsKey(3L));
+        verify(leaseRepository, times(1)).findLeasedBookCategoriesByUsers(any());
+    }
+
+    @Test
+    void writeLeases_ShouldWriteSliceWithNextCursor_WhenThereAreMoreLeases() throws IOException {
+        LeaseFilterDto filter = new LeaseFilterDto(1L, null, null, null, null);
+        LeaseResponseDto lease1 = leaseResponse(9L, LocalDate.of(2024, 3, 2));
+        LeaseResponseDto lease2 = leaseResponse(7L, LocalDate.of(2024, 3, 1));
+        LeaseResponseDto lease3 = leaseResponse(8L, LocalDate.of(2024, 3, 1));
+
+        when(leaseRepository.streamLeases(filter, null, 0L, 3)).thenReturn(Stream.of(lease1, lease2, lease3));
+        when(leaseRepository.streamLeases(filter, LocalDate.of(2024, 3, 1), 7L, 3)).thenReturn(Stream.of(lease3));
+
+        JsonNode firstSlice = writeLeases(filter, null, 2);
+
+        assertEquals(List.of(9L, 7L), leaseIds(firstSlice));
+        assertTrue(firstSlice.get("hasNext").asBoolean());
+
+        JsonNode secondSlice = writeLeases(filter, firstSlice.get("next").asText(), 2);
+
+        assertEquals(List.of(8L), leaseIds(secondSlice));
+        assertFalse(secondSlice.get("hasNext").asBoolean());
+        assertTrue(secondSlice.get("next").isNull());
+    }
+
+    @Test
+    void writeLeases_ShouldUseTheDefaultSize_WhenSizeIsAbsent() throws IOException {
+        LeaseFilterDto filter = new LeaseFilterDto(null, null, Lease.Status.ACTIVE, null, null);
+        ReflectionTestUtils.setField(leaseService, "defaultPageSize", 25);
+
+        when(leaseRepository.streamLeases(filter, null, 0L, 26)).thenReturn(Stream.empty());
+
+        JsonNode slice = writeLeases(filter, null, null);
+
+        assertEquals(List.of(), leaseIds(slice));
+        assertFalse(slice.get("hasNext").asBoolean());
+    }
+
+    @Test
+    void writeLeases_ShouldThrowInputValidationException_WhenSizeOrDateRangeIsInvalid() {
+        LeaseFilterDto filter = new LeaseFilterDto(null, null, null, LocalDate.of(2024, 2, 1), LocalDate.of(2024, 1, 1));
+
+        InputValidationException exception = assertThrows(InputValidationException.class, () -> writeLeases(filter, null, 1001));
+
+        assertTrue(exception.getFieldErrors().containsKey("size"));
+        assertTrue(exception.getFieldErrors().containsKey("to"));
+        verifyNoInteractions(leaseRepository);
+    }
+
+    @Test
+    void writeLeases_ShouldThrowInputValidationException_WhenCursorIsNotALeaseCursor() {
+        LeaseFilterDto filter = new LeaseFilterDto(null, null, null, null, null);
+        String titleCursor = new KeysetCursor("Dom Casmurro", 3L).encode();
+
+        InputValidationException exception = assertThrows(InputValidationException.class, () -> writeLeases(filter, titleCursor, 10));
+
+        assertEquals("Cursor inválido", exception.getFieldErrors().get("after"));
+        verifyNoInteractions(leaseRepository);
+    }
+
+    private JsonNode writeLeases(LeaseFilterDto filter, String after, Integer size) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        leaseService.writeLeases(filter, after, size, output);
+        return objectMapper.readTree(output.toByteArray());
+    }
+
+    private static List<Long> leaseIds(JsonNode slice) {
+        List<Long> ids = new ArrayList<>();
+        slice.get("content").forEach(lease -> ids.add(lease.get("id").asLong()));
+        return ids;
+    }
+
+    private static LeaseResponseDto leaseResponse(Long id, LocalDate leaseDate) {
+        UserResponseDto user = new UserResponseDto(1L, "Bento Santiago", "bento@example.com", LocalDate.of(2024, 1, 1), "(11) 91234-5678");
+        BookResponseDto book = new BookResponseDto(id, "Dom Casmurro", "Machado de Assis", "9788535910681", LocalDate.of(1899, 1, 1), "Ficção");
+        return new LeaseResponseDto(id, user, book, leaseDate, leaseDate.plusDays(14), Lease.Status.RETURNED);
+    }
+
+    private static BookCategoryView bookCategory(Long id, String category) {
+        return new BookCategoryView(id, category);
     }
 }
@@ -0,0 +1,73 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.dtos.OverdueSweepDto;
+import com.guipadovan.librarymanager.repositories.LeaseRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class OverdueLeaseServiceImplTest {
+
+    @Mock
+    private LeaseRepository leaseRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private OverdueLeaseServiceImpl overdueLeaseService;
+
+    @Test
+    void markOverdueLeases_ShouldRunBatchesInSeparateTransactions_UntilBatchIsIncomplete() {
+        ReflectionTestUtils.setField(overdueLeaseService, "batchSize", 2);
+        executeTransactionsInline();
+        when(leaseRepository.markOverdueBatch(2)).thenReturn(2, 2, 1);
+
+        OverdueSweepDto sweep = overdueLeaseService.markOverdueLeases();
+
+        assertEquals(5, sweep.markedLeases());
+        assertEquals(3, sweep.batches());
+        verify(transactionTemplate, times(3)).execute(any());
+        assertEquals(sweep, overdueLeaseService.getLastSweep().orElseThrow());
+        assertEquals(5, meterRegistry.counter("library.leases.overdue.marked").count());
+        assertEquals(1, meterRegistry.timer("library.leases.overdue.sweep").count());
+    }
+
+    @Test
+    void markOverdueLeases_ShouldRunSingleBatch_WhenNoLeaseIsOverdue() {
+        executeTransactionsInline();
+        when(leaseRepository.markOverdueBatch(1000)).thenReturn(0);
+
+        OverdueSweepDto sweep = overdueLeaseService.markOverdueLeases();
+
+        assertEquals(0, sweep.markedLeases());
+        assertEquals(1, sweep.batches());
+        assertEquals(0, sweep.leasesPerSecond());
+    }
+
+    @Test
+    void getLastSweep_ShouldReturnEmpty_WhenJobHasNotRun() {
+        assertTrue(overdueLeaseService.getLastSweep().isEmpty());
+    }
+
+    private void executeTransactionsInline() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+}
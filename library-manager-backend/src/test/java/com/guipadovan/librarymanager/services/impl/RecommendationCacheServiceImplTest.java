@@ -0,0 +1,113 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.dtos.CacheStatsDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecommendationCacheServiceImplTest {
+
+    private final RecommendationCacheServiceImpl recommendationCacheService =
+            new RecommendationCacheServiceImpl(new SimpleMeterRegistry(), 100, Duration.ofHours(1));
+
+    @Test
+    void getBookIds_ShouldComputeOnce_WhenUserSeedAndLimitAreTheSame() {
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<List<Long>> loader = () -> {
+            loads.incrementAndGet();
+            return new ArrayList<>(List.of(3L, 1L, 2L));
+        };
+
+        List<Long> first = recommendationCacheService.getBookIds(1L, 42L, 3, loader);
+        List<Long> second = recommendationCacheService.getBookIds(1L, 42L, 3, loader);
+
+        assertEquals(List.of(3L, 1L, 2L), first);
+        assertEquals(first, second);
+        assertEquals(1, loads.get());
+        assertThrows(UnsupportedOperationException.class, () -> first.add(4L));
+
+        CacheStatsDto stats = recommendationCacheService.getStats();
+        assertEquals(1, stats.size());
+        assertEquals(1, stats.hitCount());
+        assertEquals(1, stats.missCount());
+    }
+
+    @Test
+    void getBookIds_ShouldComputeAgain_WhenSeedOrLimitChanges() {
+        recommendationCacheService.getBookIds(1L, 42L, 3, () -> List.of(1L));
+
+        assertEquals(List.of(2L), recommendationCacheService.getBookIds(1L, 43L, 3, () -> List.of(2L)));
+        assertEquals(List.of(3L), recommendationCacheService.getBookIds(1L, 42L, 5, () -> List.of(3L)));
+        assertEquals(3, recommendationCacheService.getStats().size());
+    }
+
+    @Test
+    void evictUser_ShouldRemoveOnlyTheEntriesOfTheUser() {
+        recommendationCacheService.getBookIds(1L, 42L, 3, () -> List.of(1L));
+        recommendationCacheService.getBookIds(1L, 43L, 3, () -> List.of(2L));
+        recommendationCacheService.getBookIds(2L, 42L, 3, () -> List.of(3L));
+
+        recommendationCacheService.evictUser(1L);
+
+        assertEquals(List.of(4L), recommendationCacheService.getBookIds(1L, 42L, 3, () -> List.of(4L)));
+        assertEquals(List.of(3L), recommendationCacheService.getBookIds(2L, 42L, 3, () -> List.of(5L)));
+    }
+
+    @Test
+    void getBookIds_ShouldRunTheLoaderOnTheCallingThread_AndShareItWithConcurrentRequests() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        AtomicReference<Thread> loaderThread = new AtomicReference<>();
+        Supplier<List<Long>> loader = () -> {
+            loads.incrementAndGet();
+            loaderThread.set(Thread.currentThread());
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return List.of(1L, 2L);
+        };
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Thread> first = executor.submit(() -> {
+                recommendationCacheService.getBookIds(1L, 42L, 2, loader);
+                return Thread.currentThread();
+            });
+            loading.await();
+            // A outra chave não espera pelo cálculo em andamento
+            assertEquals(List.of(3L), recommendationCacheService.getBookIds(2L, 42L, 2, () -> List.of(3L)));
+            Future<List<Long>> second = executor.submit(
+                    () -> recommendationCacheService.getBookIds(1L, 42L, 2, loader));
+            release.countDown();
+
+            assertEquals(loaderThread.get(), first.get());
+            assertEquals(List.of(1L, 2L), second.get());
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void getBookIds_ShouldThrowTheLoaderExceptionAndComputeAgain_WhenTheLoaderFails() {
+        assertThrows(IllegalStateException.class, () -> recommendationCacheService.getBookIds(1L, 42L, 3, () -> {
+            throw new IllegalStateException("Falha");
+        }));
+
+        assertEquals(List.of(1L), recommendationCacheService.getBookIds(1L, 42L, 3, () -> List.of(1L)));
+        assertEquals(1, recommendationCacheService.getStats().failureCount());
+    }
+}
@@ -0,0 +1,215 @@
+package com.guipadovan.librarymanager.services.impl;
+
+import com.guipadovan.librarymanager.repositories.BookRepository;
+import com.guipadovan.librarymanager.repositories.projections.BookCategoryView;
+import com.guipadovan.librarymanager.services.BookAvailabilityService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class RecommendationPoolServiceImplTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private BookAvailabilityService bookAvailabilityService;
+
+    @InjectMocks
+    private RecommendationPoolServiceImpl recommendationPoolService;
+
+    // Livros emprestados segundo o serviço de disponibilidade
+    private final Set<Long> leasedBooks = new HashSet<>(Set.of(3L));
+
+    @BeforeEach
+    void setUp() {
+        when(bookRepository.findAllBookCategories()).thenReturn(List.of(
+                bookCategory(1L, "Ficção"),
+                bookCategory(2L, "Ficção"),
+                bookCategory(3L, "Ficção"),
+                bookCategory(4L, "Ciência"),
+                bookCategory(5L, "Ciência")
+        ));
+        lenient().when(bookAvailabilityService.isLeased(anyLong()))
+                .thenAnswer(invocation -> leasedBooks.contains(invocation.<Long>getArgument(0)));
+
+        recommendationPoolService.loadPools();
+    }
+
+    @Test
+    void sampleBooks_ShouldReturnOnlyAvailableBooksFromTheCategories() {
+        List<Long> sampled = recommendationPoolService.sampleBooks(List.of("Ficção"), Set.of(), 10);
+
+        assertEquals(Set.of(1L, 2L), new HashSet<>(sampled));
+    }
+
+    @Test
+    void sampleBooks_ShouldNotReturnExcludedBooks() {
+        List<Long> sampled = recommendationPoolService.sampleBooks(List.of("Ficção", "Ciência"), Set.of(1L, 4L), 10);
+
+        assertEquals(Set.of(2L, 5L), new HashSet<>(sampled));
+    }
+
+    @Test
+    void sampleBooks_ShouldRespectTheLimitWithoutDuplicates() {
+        for (int i = 0; i < 100; i++) {
+            List<Long> sampled = recommendationPoolService.sampleBooks(List.of("Ficção", "Ciência"), Set.of(), 3);
+
+            assertEquals(3, sampled.size());
+            assertEquals(3, new HashSet<>(sampled).size());
+        }
+    }
+
+    @Test
+    void sampleBooks_ShouldReturnTheSameOrder_WhenSeedIsTheSame() {
+        List<String> categories = List.of("Ficção", "Ciência");
+
+        List<Long> first = recommendationPoolService.sampleBooks(categories, Set.of(), 3, 42L);
+        List<Long> second = recommendationPoolService.sampleBooks(categories, Set.of(), 3, 42L);
+        List<Long> all = recommendationPoolService.sampleBooks(categories, Set.of(), 10, 42L);
+
+        assertEquals(3, first.size());
+        assertEquals(first, second);
+        assertEquals(first, all.subList(0, 3));
+        assertEquals(Set.of(1L, 2L, 4L, 5L), new HashSet<>(all));
+    }
+
+    @Test
+    void sampleBooks_ShouldKeepTheSeededOrder_WhenPoolPositionsChange() {
+        List<Long> before = recommendationPoolService.sampleBooks(List.of("Ficção", "Ciência"), Set.of(), 10, 42L);
+
+        // Remoção e recadastro trocam as posições dos livros no grupo sem mudar os livros disponíveis
+        recommendationPoolService.removeBook(1L);
+        recommendationPoolService.addBook(1L, "Ficção");
+        List<Long> after = recommendationPoolService.sampleBooks(List.of("Ciência", "Ficção"), Set.of(), 10, 42L);
+
+        // Outra instância, que carregou os livros em outra ordem
+        when(bookRepository.findAllBookCategories()).thenReturn(List.of(
+                bookCategory(5L, "Ciência"),
+                bookCategory(4L, "Ciência"),
+                bookCategory(3L, "Ficção"),
+                bookCategory(2L, "Ficção"),
+                bookCategory(1L, "Ficção")
+        ));
+        recommendationPoolService.loadPools();
+        List<Long> reloaded = recommendationPoolService.sampleBooks(List.of("Ficção", "Ciência"), Set.of(), 10, 42L);
+
+        assertEquals(before, after);
+        assertEquals(before, reloaded);
+    }
+
+    @Test
+    void sampleBooks_ShouldDrawSeededBooksWithoutScanningThePools_WhenThereAreManyCandidates() {
+        List<BookCategoryView> books = new ArrayList<>();
+        for (long id = 1; id <= 1000; id++)
+            books.add(bookCategory(id, id % 2 == 0 ? "Romance" : "História"));
+        when(bookRepository.findAllBookCategories()).thenReturn(books);
+        recommendationPoolService.loadPools();
+
+        clearInvocations(bookAvailabilityService);
+        List<Long> before = recommendationPoolService.sampleBooks(List.of("Romance", "História"), Set.of(), 5, 42L);
+        verify(bookAvailabilityService, atMost(40)).isLeased(anyLong());
+
+        List<Long> reordered = recommendationPoolService.sampleBooks(List.of("História", "Romance"), Set.of(), 5, 42L);
+        leasedBooks.add(before.get(0));
+        List<Long> afterLease = recommendationPoolService.sampleBooks(List.of("Romance", "História"), Set.of(), 5,
+                42L);
+
+        assertEquals(5, new HashSet<>(before).size());
+        assertEquals(before, reordered);
+        // O livro emprestado só deixa de ser sorteado, os demais mantêm a ordem
+        assertEquals(before.subList(1, 5), afterLease.subList(0, 4));
+        assertFalse(afterLease.contains(before.get(0)));
+    }
+
+    @Test
+    void sampleBooks_ShouldSkipExcludedBooks_WhenSeedIsGiven() {
+        List<Long> all = recommendationPoolService.sampleBooks(List.of("Ficção", "Ciência"), Set.of(), 10, 42L);
+        List<Long> excluded = recommendationPoolService.sampleBooks(List.of("Ficção", "Ciência"), Set.of(all.get(0)),
+                10, 42L);
+
+        assertEquals(all.subList(1, all.size()), excluded);
+    }
+
+    @Test
+    void sampleBooks_ShouldReturnEmptyList_WhenCategoryIsUnknown() {
+        assertTrue(recommendationPoolService.sampleBooks(List.of("Romance"), Set.of(), 5).isEmpty());
+        assertTrue(recommendationPoolService.sampleBooks(List.of(), Set.of(), 5).isEmpty());
+    }
+
+    @Test
+    void sampleBooks_ShouldFollowTheBookAvailability_WhenBooksAreLeasedOrReturned() {
+        leasedBooks.add(1L);
+        assertEquals(List.of(2L), recommendationPoolService.sampleBooks(List.of("Ficção"), Set.of(), 10));
+        assertEquals(List.of(2L), recommendationPoolService.sampleBooks(List.of("Ficção"), Set.of(), 10, 42L));
+
+        leasedBooks.remove(3L);
+        assertEquals(Set.of(2L, 3L),
+                new HashSet<>(recommendationPoolService.sampleBooks(List.of("Ficção"), Set.of(), 10)));
+    }
+
+    @Test
+    void addBook_ShouldMakeBookAvailableInItsCategory() {
+        recommendationPoolService.addBook(6L, "Romance");
+
+        assertEquals(List.of(6L), recommendationPoolService.sampleBooks(List.of("Romance"), Set.of(), 10));
+    }
+
+    @Test
+    void updateBook_ShouldMoveBookToTheNewCategory() {
+        recommendationPoolService.updateBook(1L, "Ciência");
+        recommendationPoolService.updateBook(3L, "Ciência");
+
+        assertEquals(List.of(2L), recommendationPoolService.sampleBooks(List.of("Ficção"), Set.of(), 10));
+        assertEquals(Set.of(1L, 4L, 5L), new HashSet<>(recommendationPoolService.sampleBooks(List.of("Ciência"), Set.of(), 10)));
+
+        // O livro emprestado já está no novo grupo e volta a ser sorteado ao ser devolvido
+        leasedBooks.remove(3L);
+        assertEquals(Set.of(1L, 3L, 4L, 5L), new HashSet<>(recommendationPoolService.sampleBooks(List.of("Ciência"), Set.of(), 10)));
+    }
+
+    @Test
+    void removeBook_ShouldRemoveBookFromThePools() {
+        recommendationPoolService.removeBook(1L);
+        recommendationPoolService.removeBook(3L);
+        leasedBooks.remove(3L);
+
+        assertEquals(List.of(2L), recommendationPoolService.sampleBooks(List.of("Ficção"), Set.of(), 10));
+    }
+
+    @Test
+    void loadPools_ShouldApplyTheChangesCommittedDuringTheReload() {
+        // Livros cadastrados e removidos enquanto a recarga lê o catálogo, que ainda não os reflete
+        when(bookRepository.findAllBookCategories()).thenAnswer(invocation -> {
+            recommendationPoolService.addBook(6L, "Romance");
+            recommendationPoolService.removeBook(1L);
+            return List.of(bookCategory(1L, "Ficção"), bookCategory(2L, "Ficção"));
+        });
+
+        recommendationPoolService.loadPools();
+
+        assertEquals(List.of(2L), recommendationPoolService.sampleBooks(List.of("Ficção"), Set.of(), 10));
+        assertEquals(List.of(6L), recommendationPoolService.sampleBooks(List.of("Romance"), Set.of(), 10));
+    }
+
+    private static BookCategoryView bookCategory(Long id, String category) {
+        return new BookCategoryView(id, category);
+    }
+}
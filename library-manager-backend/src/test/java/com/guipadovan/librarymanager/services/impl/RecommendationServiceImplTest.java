@@ -1,37 +1,61 @@
 package com.guipadovan.librarymanager.services.impl;
 
-import com.guipadovan.librarymanager.entities.Book;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guipadovan.librarymanager.dtos.BookResponseDto;
+import com.guipadovan.librarymanager.dtos.UserRecommendationsDto;
 import com.guipadovan.librarymanager.entities.User;
 import com.guipadovan.librarymanager.exceptions.EntityNotFoundException;
+import com.guipadovan.librarymanager.exceptions.InputValidationException;
+import com.guipadovan.librarymanager.repositories.projections.BookCategoryView;
+import com.guipadovan.librarymanager.services.BookNeighborService;
 import com.guipadovan.librarymanager.services.BookService;
 import com.guipadovan.librarymanager.services.LeaseService;
-import com.guipadovan.librarymanager.services.UserService;
+import com.guipadovan.librarymanager.services.RecommendationCacheService;
+import com.guipadovan.librarymanager.services.RecommendationPoolService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class RecommendationServiceImplTest {
 
-    @Mock
-    private UserService userService;
-
     @Mock
     private BookService bookService;
 
     @Mock
     private LeaseService leaseService;
 
+    @Mock
+    private RecommendationPoolService recommendationPoolService;
+
+    @Mock
+    private BookNeighborService bookNeighborService;
+
+    @Mock
+    private RecommendationCacheService recommendationCacheService;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
     @InjectMocks
     private RecommendationServiceImpl recommendationService;
 
@@ -39,58 +63,88 @@ public class RecommendationServiceImplTest {
     void getBookRecommendationsByUser_ShouldReturnRecommendations_WhenUserExists() throws EntityNotFoundException {
         Long userId = 1L;
         int limit = 5;
-        User user = new User();
-        Book book1 = new Book();
-        book1.setCategory("Ficção");
-        Book book2 = new Book();
-        book2.setCategory("Ficção");
+        BookResponseDto book2 = new BookResponseDto(2L, "Título2", "Autor2", "2222222222222", LocalDate.now(), "Ficção");
 
-        when(userService.getUser(userId)).thenReturn(Optional.of(user));
-        when(leaseService.getLeasedBooksByUser(userId)).thenReturn(List.of(book1));
-        when(bookService.getBookRecommendations(any(), any(), eq(limit))).thenReturn(List.of(book2));
+        when(leaseService.getLeasedBookCategoriesByUser(userId)).thenReturn(List.of(bookCategory(1L, "Ficção")));
+        when(recommendationPoolService.sampleBooks(List.of("Ficção"), Set.of(1L), limit)).thenReturn(List.of(2L));
+        when(bookService.getBooks(List.of(2L))).thenReturn(List.of(book2));
 
-        List<Book> recommendations = recommendationService.getBookRecommendationsByUser(userId, limit);
+        List<BookResponseDto> recommendations = recommendationService.getBookRecommendationsByUser(userId, limit);
 
         assertEquals(1, recommendations.size());
-        assertEquals("Ficção", recommendations.getFirst().getCategory());
-        verify(leaseService, times(1)).getLeasedBooksByUser(userId);
-        verify(bookService, times(1)).getBookRecommendations(any(), any(), eq(limit));
+        assertEquals("Ficção", recommendations.getFirst().category());
+        verify(leaseService, times(1)).getLeasedBookCategoriesByUser(userId);
+        verify(recommendationPoolService, times(1)).sampleBooks(List.of("Ficção"), Set.of(1L), limit);
+        verify(bookService, times(1)).getBooks(List.of(2L));
+    }
+
+    @Test
+    void getBookRecommendationsByUser_ShouldFillWithCategoryBooks_WhenNeighborsAreNotEnough() throws EntityNotFoundException {
+        Long userId = 1L;
+        int limit = 3;
+        BookResponseDto book3 = new BookResponseDto(3L, "Título3", "Autor3", "3333333333333", LocalDate.now(), "Ficção");
+        BookResponseDto book4 = new BookResponseDto(4L, "Título4", "Autor4", "4444444444444", LocalDate.now(), "Ficção");
+
+        // Empréstimos do mais recente ao mais antigo, com o livro 2 emprestado duas vezes
+        when(leaseService.getLeasedBookCategoriesByUser(userId))
+                .thenReturn(List.of(bookCategory(2L, "Ficção"), bookCategory(1L, "Ficção"), bookCategory(2L, "Ficção")));
+        when(bookNeighborService.recommendBooks(List.of(2L, 1L), Set.of(1L, 2L), limit)).thenReturn(List.of(3L));
+        when(recommendationPoolService.sampleBooks(List.of("Ficção"), Set.of(1L, 2L, 3L), 2)).thenReturn(List.of(4L));
+        when(bookService.getBooks(List.of(3L, 4L))).thenReturn(List.of(book3, book4));
+
+        List<BookResponseDto> recommendations = recommendationService.getBookRecommendationsByUser(userId, limit);
+
+        assertEquals(List.of(book3, book4), recommendations);
+        verify(bookNeighborService, times(1)).recommendBooks(List.of(2L, 1L), Set.of(1L, 2L), limit);
+        verify(recommendationPoolService, times(1)).sampleBooks(List.of("Ficção"), Set.of(1L, 2L, 3L), 2);
+    }
+
+    @Test
+    void getBookRecommendationsByUser_ShouldNotSampleBooks_WhenNeighborsFillTheLimit() throws EntityNotFoundException {
+        Long userId = 1L;
+        int limit = 1;
+        BookResponseDto book3 = new BookResponseDto(3L, "Título3", "Autor3", "3333333333333", LocalDate.now(), "Ficção");
+
+        when(leaseService.getLeasedBookCategoriesByUser(userId)).thenReturn(List.of(bookCategory(1L, "Ficção")));
+        when(bookNeighborService.recommendBooks(List.of(1L), Set.of(1L), limit)).thenReturn(List.of(3L));
+        when(bookService.getBooks(List.of(3L))).thenReturn(List.of(book3));
+
+        List<BookResponseDto> recommendations = recommendationService.getBookRecommendationsByUser(userId, limit);
+
+        assertEquals(List.of(book3), recommendations);
+        verifyNoInteractions(recommendationPoolService);
     }
 
     @Test
     void getBookRecommendationsByUser_ShouldReturnEmptyList_WhenUserHasLeasedNoBooks() throws EntityNotFoundException {
         Long userId = 2L;
         int limit = 5;
-        User user = new User();
 
-        when(userService.getUser(userId)).thenReturn(Optional.of(user));
-        when(leaseService.getLeasedBooksByUser(userId)).thenReturn(List.of());
-        when(bookService.getBookRecommendations(any(), any(), eq(limit))).thenReturn(List.of());
+        when(leaseService.getLeasedBookCategoriesByUser(userId)).thenReturn(List.of());
+        when(recommendationPoolService.sampleBooks(any(), any(), eq(limit))).thenReturn(List.of());
+        when(bookService.getBooks(List.of())).thenReturn(List.of());
 
-        List<Book> recommendations = recommendationService.getBookRecommendationsByUser(userId, limit);
+        List<BookResponseDto> recommendations = recommendationService.getBookRecommendationsByUser(userId, limit);
 
         assertEquals(0, recommendations.size());
-        verify(leaseService, times(1)).getLeasedBooksByUser(userId);
-        verify(bookService, times(1)).getBookRecommendations(any(), any(), eq(limit));
+        verify(leaseService, times(1)).getLeasedBookCategoriesByUser(userId);
+        verify(recommendationPoolService, times(1)).sampleBooks(any(), any(), eq(limit));
     }
 
     @Test
     void getBookRecommendationsByUser_ShouldReturnEmptyList_WhenNoBooksMatchTheCategories() throws EntityNotFoundException {
         Long userId = 3L;
         int limit = 5;
-        User user = new User();
-        Book leasedBook = new Book();
-        leasedBook.setCategory("Ficção");
 
-        when(userService.getUser(userId)).thenReturn(Optional.of(user));
-        when(leaseService.getLeasedBooksByUser(userId)).thenReturn(List.of(leasedBook));
-        when(bookService.getBookRecommendations(any(), any(), eq(limit))).thenReturn(List.of());
+        when(leaseService.getLeasedBookCategoriesByUser(userId)).thenReturn(List.of(bookCategory(1L, "Ficção")));
+        when(recommendationPoolService.sampleBooks(any(), any(), eq(limit))).thenReturn(List.of());
+        when(bookService.getBooks(List.of())).thenReturn(List.of());
 
-        List<Book> recommendations = recommendationService.getBookRecommendationsByUser(userId, limit);
+        List<BookResponseDto> recommendations = recommendationService.getBookRecommendationsByUser(userId, limit);
 
         assertEquals(0, recommendations.size());
-        verify(leaseService, times(1)).getLeasedBooksByUser(userId);
-        verify(bookService, times(1)).getBookRecommendations(any(), any(), eq(limit));
+        verify(leaseService, times(1)).getLeasedBookCategoriesByUser(userId);
+        verify(recommendationPoolService, times(1)).sampleBooks(any(), any(), eq(limit));
     }
 
     @Test
@@ -98,13 +152,123 @@ public class RecommendationServiceImplTest {
         Long userId = 1L;
         int limit = 5;
 
-        when(userService.getUser(userId)).thenReturn(Optional.empty());
+        when(leaseService.getLeasedBookCategoriesByUser(userId))
+                .thenThrow(new EntityNotFoundException(User.class, userId.toString()));
 
         EntityNotFoundException exception = assertThrows(EntityNotFoundException.class, () -> recommendationService.getBookRecommendationsByUser(userId, limit));
 
         assertEquals("User with id 1 not found.", exception.getMessage());
-        verify(userService, times(1)).getUser(userId);
-        verifyNoMoreInteractions(leaseService);
-        verifyNoMoreInteractions(bookService);
+        verify(leaseService, times(1)).getLeasedBookCategoriesByUser(userId);
+        verifyNoInteractions(bookService);
+        verifyNoInteractions(recommendationPoolService);
+    }
+
+    @Test
+    void getSeededBookRecommendationsByUser_ShouldReturnPageOfCachedRecommendations_WhenSeedIsGiven() {
+        Long userId = 1L;
+        BookResponseDto book7 = new BookResponseDto(7L, "Título7", "Autor7", "7777777777777", LocalDate.now(), "Ficção");
+        BookResponseDto book8 = new BookResponseDto(8L, "Título8", "Autor8", "8888888888888", LocalDate.now(), "Ficção");
+
+        computeOnCacheMiss();
+        when(leaseService.getLeasedBookCategoriesByUser(userId)).thenReturn(List.of(bookCategory(1L, "Ficção")));
+        when(recommendationPoolService.sampleBooks(eq(List.of("Ficção")), eq(Set.of(1L)), eq(5), anyLong()))
+                .thenReturn(List.of(5L, 6L, 7L, 8L, 9L));
+        when(bookService.getBooks(List.of(7L, 8L))).thenReturn(List.of(book7, book8));
+
+        List<BookResponseDto> recommendations = recommendationService.getSeededBookRecommendationsByUser(userId, 42L,
+                5, 1, 2);
+
+        assertEquals(List.of(book7, book8), recommendations);
+        verify(recommendationCacheService, times(1)).getBookIds(eq(userId), eq(42L), eq(5), any());
+        verify(recommendationPoolService, never()).sampleBooks(any(), any(), anyInt());
+    }
+
+    @Test
+    void getSeededBookRecommendationsByUser_ShouldSampleWithTheSameSeed_WhenUserAndSeedAreTheSame() {
+        computeOnCacheMiss();
+        when(leaseService.getLeasedBookCategoriesByUser(any())).thenReturn(List.of(bookCategory(1L, "Ficção")));
+        ArgumentCaptor<Long> seeds = ArgumentCaptor.forClass(Long.class);
+        when(recommendationPoolService.sampleBooks(any(), any(), anyInt(), seeds.capture())).thenReturn(List.of());
+
+        recommendationService.getSeededBookRecommendationsByUser(1L, 42L, 5, 0, 5);
+        recommendationService.getSeededBookRecommendationsByUser(1L, 42L, 5, 0, 5);
+        recommendationService.getSeededBookRecommendationsByUser(2L, 42L, 5, 0, 5);
+
+        assertEquals(seeds.getAllValues().get(0), seeds.getAllValues().get(1));
+        assertNotEquals(seeds.getAllValues().get(0), seeds.getAllValues().get(2));
+    }
+
+    @Test
+    void getSeededBookRecommendationsByUser_ShouldReturnEmptyList_WhenPageIsPastTheLimit() {
+        when(recommendationCacheService.getBookIds(eq(1L), eq(42L), eq(5), any())).thenReturn(List.of(5L, 6L));
+
+        List<BookResponseDto> recommendations = recommendationService.getSeededBookRecommendationsByUser(1L, 42L, 5,
+                1, 2);
+
+        assertEquals(List.of(), recommendations);
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    void getSeededBookRecommendationsByUser_ShouldThrowException_WhenPagingIsInvalid() {
+        InputValidationException exception = assertThrows(InputValidationException.class,
+                () -> recommendationService.getSeededBookRecommendationsByUser(1L, 42L, 1000, -1, 0));
+
+        assertEquals(Set.of("limit", "page", "size"), exception.getFieldErrors().keySet());
+        verifyNoInteractions(recommendationCacheService);
+    }
+
+    @Test
+    void writeBookRecommendationsByUsers_ShouldWriteOneLinePerUser_WithOneHistoryQueryPerChunk() throws IOException {
+        ReflectionTestUtils.setField(recommendationService, "batchChunkSize", 2);
+        int limit = 2;
+        BookResponseDto book11 = new BookResponseDto(11L, "Título11", "Autor11", "1111111111111", LocalDate.now(), "Ficção");
+
+        // O usuário 2 não tem empréstimos e o usuário 3 não existe
+        when(leaseService.getLeasedBookCategoriesByUsers(List.of(1L, 2L)))
+                .thenReturn(Map.of(1L, List.of(bookCategory(10L, "Ficção")), 2L, List.of()));
+        when(leaseService.getLeasedBookCategoriesByUsers(List.of(3L))).thenReturn(Map.of());
+        when(recommendationPoolService.sampleBooks(List.of("Ficção"), Set.of(10L), limit)).thenReturn(List.of(11L));
+        // Os usuários são calculados em paralelo, então o sorteio do usuário 2 pode rodar fora da thread do teste
+        lenient().when(recommendationPoolService.sampleBooks(List.of(), Set.of(), limit)).thenReturn(List.of());
+        when(bookService.getBooks(List.of(11L))).thenReturn(List.of(book11));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        recommendationService.writeBookRecommendationsByUsers(List.of(1L, 2L, 3L), limit, output);
+
+        List<UserRecommendationsDto> lines = output.toString(StandardCharsets.UTF_8).lines()
+                .map(line -> assertDoesNotThrow(() -> objectMapper.readValue(line, UserRecommendationsDto.class)))
+                .toList();
+        assertEquals(List.of(
+                new UserRecommendationsDto(1L, true, List.of(book11)),
+                new UserRecommendationsDto(2L, true, List.of()),
+                new UserRecommendationsDto(3L, false, List.of())), lines);
+        assertTrue(output.toString(StandardCharsets.UTF_8).endsWith("\n"));
+        verify(leaseService, times(2)).getLeasedBookCategoriesByUsers(any());
+        verify(leaseService, never()).getLeasedBookCategoriesByUser(any());
+    }
+
+    @Test
+    void writeBookRecommendationsByUsers_ShouldThrowException_WhenInputIsInvalid() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        List<Long> userIds = new ArrayList<>(List.of(1L));
+        userIds.add(null);
+
+        InputValidationException exception = assertThrows(InputValidationException.class,
+                () -> recommendationService.writeBookRecommendationsByUsers(userIds, 0, output));
+
+        assertEquals(Set.of("userIds", "limit"), exception.getFieldErrors().keySet());
+        assertEquals(0, output.size());
+        verifyNoInteractions(leaseService);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void computeOnCacheMiss() {
+        when(recommendationCacheService.getBookIds(any(), anyLong(), anyInt(), any()))
+                .thenAnswer(invocation -> invocation.getArgument(3, Supplier.class).get());
+    }
+
+    private static BookCategoryView bookCategory(Long id, String category) {
+        return new BookCategoryView(id, category);
     }
 }
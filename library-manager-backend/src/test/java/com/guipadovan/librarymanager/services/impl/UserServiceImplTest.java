@@ -1,21 +1,47 @@
 package com.guipadovan.librarymanager.services.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.guipadovan.librarymanager.dtos.CursorPageDto;
+import com.guipadovan.librarymanager.dtos.FileFormat;
+import com.guipadovan.librarymanager.dtos.ImportResultDto;
 import com.guipadovan.librarymanager.dtos.UserDto;
+import com.guipadovan.librarymanager.dtos.UserResponseDto;
 import com.guipadovan.librarymanager.entities.User;
 import com.guipadovan.librarymanager.exceptions.EntityNotFoundException;
+import com.guipadovan.librarymanager.exceptions.InputValidationException;
 import com.guipadovan.librarymanager.repositories.UserRepository;
+import com.guipadovan.librarymanager.services.EntityCacheService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -27,6 +53,22 @@ public class UserServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private EntityCacheService entityCacheService;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private UserServiceImpl userService;
 
@@ -35,13 +77,13 @@ public class UserServiceImplTest {
         UserDto userDto = new UserDto("Usuário Teste", "usuario@teste.com", LocalDate.now(), "(44) 91234-5678");
         User userEntity = new User(userDto.getName(), userDto.getEmail(), userDto.getRegistrationDate(), userDto.getPhone());
 
-        when(userRepository.save(any(User.class))).thenReturn(userEntity);
+        when(userRepository.saveAndFlush(any(User.class))).thenReturn(userEntity);
 
         User createdUser = userService.createUser(userDto);
 
         assertNotNull(createdUser);
         assertEquals(userDto.getName(), createdUser.getName());
-        verify(userRepository, times(1)).save(any(User.class));
+        verify(userRepository, times(1)).saveAndFlush(any(User.class));
     }
 
     @Test
@@ -51,14 +93,36 @@ public class UserServiceImplTest {
         User existingUser = new User("Usuário Teste", "usuario@teste.com", LocalDate.now(), "(44) 91234-5678");
 
         when(userRepository.findById(userId)).thenReturn(Optional.of(existingUser));
-        when(userRepository.save(any(User.class))).thenReturn(existingUser);
+        when(userRepository.saveAndFlush(any(User.class))).thenReturn(existingUser);
 
         User updatedUser = userService.updateUser(userId, userDto);
 
         assertNotNull(updatedUser);
         assertEquals(userDto.getName(), updatedUser.getName());
         verify(userRepository, times(1)).findById(userId);
-        verify(userRepository, times(1)).save(any(User.class));
+        verify(userRepository, times(1)).saveAndFlush(any(User.class));
+    }
+
+    @Test
+    void createUser_ShouldThrowInputValidationException_WhenEmailIsAlreadyRegistered() {
+        UserDto userDto = new UserDto("Usuário Teste", "usuario@teste.com", LocalDate.now(), "(44) 91234-5678");
+
+        when(userRepository.saveAndFlush(any(User.class))).thenThrow(new DataIntegrityViolationException("duplicate",
+                new ConstraintViolationException("duplicate key", null, "uk_users_email")));
+
+        InputValidationException exception = assertThrows(InputValidationException.class,
+                () -> userService.createUser(userDto));
+        assertTrue(exception.getFieldErrors().containsKey("email"));
+    }
+
+    @Test
+    void createUser_ShouldRethrowException_WhenAnotherConstraintIsViolated() {
+        UserDto userDto = new UserDto("Usuário Teste", "usuario@teste.com", LocalDate.now(), "(44) 91234-5678");
+
+        when(userRepository.saveAndFlush(any(User.class))).thenThrow(new DataIntegrityViolationException("not null",
+                new ConstraintViolationException("null value", null, "users_nome_not_null")));
+
+        assertThrows(DataIntegrityViolationException.class, () -> userService.createUser(userDto));
     }
 
     @Test
@@ -89,29 +153,55 @@ public class UserServiceImplTest {
     void getAllUsers_ShouldReturnPageOfUsers() {
         int page = 0;
         int size = 10;
-        Page<User> userPage = new PageImpl<>(Arrays.asList(
-                new User("Usuário Teste", "usuario@teste.com", LocalDate.now(), "(44) 91234-5678"),
-                new User("Usuária Teste", "usuaria@teste.com", LocalDate.now(), "(44) 98765-4321")
+        Page<UserResponseDto> userPage = new PageImpl<>(Arrays.asList(
+                new UserResponseDto(1L, "Usuário Teste", "usuario@teste.com", LocalDate.now(), "(44) 91234-5678"),
+                new UserResponseDto(2L, "Usuária Teste", "usuaria@teste.com", LocalDate.now(), "(44) 98765-4321")
         ));
 
-        when(userRepository.findAll(PageRequest.of(page, size))).thenReturn(userPage);
+        when(userRepository.findAllResponses(PageRequest.of(page, size))).thenReturn(userPage);
 
-        Page<User> users = userService.getAllUsers(page, size);
+        Page<UserResponseDto> users = userService.getAllUsers(page, size);
 
         assertNotNull(users);
         assertEquals(2, users.getNumberOfElements());
-        verify(userRepository, times(1)).findAll(PageRequest.of(page, size));
+        verify(userRepository, times(1)).findAllResponses(PageRequest.of(page, size));
     }
 
     @Test
     void getAllUsers_ShouldReturnEmptyPage_WhenNoUsersExist() {
-        when(userRepository.findAll(PageRequest.of(0, 10))).thenReturn(Page.empty());
+        when(userRepository.findAllResponses(PageRequest.of(0, 10))).thenReturn(Page.empty());
 
-        Page<User> result = userService.getAllUsers(0, 10);
+        Page<UserResponseDto> result = userService.getAllUsers(0, 10);
 
         assertTrue(result.isEmpty());
     }
 
+    @Test
+    void scrollUsers_ShouldReturnSliceWithNextCursor_WhenSortedByName() {
+        UserResponseDto user1 = new UserResponseDto(5L, "Ana", "ana@teste.com", LocalDate.now(), "(44) 91234-5678");
+        UserResponseDto user2 = new UserResponseDto(2L, "Bruno", "bruno@teste.com", LocalDate.now(), "(44) 98765-4321");
+
+        when(userRepository.findNextOrderByName("", 0L, PageRequest.ofSize(2))).thenReturn(List.of(user1, user2));
+        when(userRepository.findNextOrderByName("Ana", 5L, PageRequest.ofSize(2))).thenReturn(List.of(user2));
+
+        CursorPageDto<UserResponseDto> firstSlice = userService.scrollUsers(null, 1, "name");
+        CursorPageDto<UserResponseDto> secondSlice = userService.scrollUsers(firstSlice.next(), 1, "name");
+
+        assertEquals(List.of(user1), firstSlice.content());
+        assertTrue(firstSlice.hasNext());
+        assertEquals(List.of(user2), secondSlice.content());
+        assertFalse(secondSlice.hasNext());
+        verify(userRepository, never()).count();
+    }
+
+    @Test
+    void scrollUsers_ShouldThrowInputValidationException_WhenSizeIsOutOfRange() {
+        InputValidationException exception = assertThrows(InputValidationException.class, () -> userService.scrollUsers(null, 0, "id"));
+
+        assertTrue(exception.getFieldErrors().containsKey("size"));
+        verifyNoInteractions(userRepository);
+    }
+
     @Test
     void deleteUser_ShouldReturnTrue_WhenIdExists() {
         Long userId = 1L;
@@ -135,4 +225,114 @@ public class UserServiceImplTest {
         assertFalse(isDeleted);
         verify(userRepository, times(1)).deleteByIdInt(userId);
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importUsers_ShouldUpsertValidUsersAndReportInvalidOnes_WhenInputIsCsv() throws IOException {
+        String csv = """
+                id,name,email,registrationDate,phone
+                7,Usuário1,usuario1@teste.com,2020-01-01,(44) 91234-5678
+                ,Usuário2,email,2020-01-01,(44) 91234-5678
+                ,Usuário3,usuario3@teste.com,data,(44) 91234-5678
+                ,,usuario4@teste.com,2020-01-01,(44) 91234-5678
+                ,Usuário5,usuario5@teste.com,2020-01-01,(44) 1234-5678
+                """;
+        executeTransactionsInline();
+
+        ImportResultDto result = userService.importUsers(toStream(csv), FileFormat.CSV);
+
+        assertEquals(2, result.imported());
+        assertEquals(3, result.failed());
+        assertTrue(result.errors().get(0).fieldErrors().containsKey("email"));
+        assertTrue(result.errors().get(1).fieldErrors().containsKey("registrationDate"));
+        assertTrue(result.errors().get(2).fieldErrors().containsKey("name"));
+        ArgumentCaptor<List<UserDto>> users = ArgumentCaptor.forClass(List.class);
+        verify(userRepository, times(1)).upsertAllByEmail(users.capture());
+        assertEquals(List.of("usuario1@teste.com", "usuario5@teste.com"),
+                users.getValue().stream().map(UserDto::getEmail).toList());
+        verify(entityCacheService, times(1)).evict(User.class);
+        assertEquals(2, meterRegistry.counter("library.users.imported", "result", "imported").count());
+        assertEquals(3, meterRegistry.counter("library.users.imported", "result", "rejected").count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importUsers_ShouldSaveBatchBeforeRepeatedEmail_WhenInputIsNdjson() throws IOException {
+        String ndjson = """
+                {"name": "Usuário1", "email": "usuario1@teste.com", "registrationDate": "2020-01-01", "phone": "(44) 91234-5678"}
+                {"name": "Usuário2", "email": "usuario2@teste.com", "registrationDate": "2020-01-01", "phone": "(44) 91234-5678"}
+                {"name": "Usuário1 Atualizado", "email": "USUARIO1@teste.com", "registrationDate": "2020-01-01", "phone": "(44) 91234-5678"}
+                """;
+        List<List<String>> batches = new ArrayList<>();
+        executeTransactionsInline();
+        doAnswer(invocation -> {
+            batches.add(((List<UserDto>) invocation.getArgument(0)).stream().map(UserDto::getName).toList());
+            return null;
+        }).when(userRepository).upsertAllByEmail(any());
+
+        ImportResultDto result = userService.importUsers(toStream(ndjson), FileFormat.NDJSON);
+
+        assertEquals(3, result.imported());
+        assertEquals(List.of(List.of("Usuário1", "Usuário2"), List.of("Usuário1 Atualizado")), batches);
+    }
+
+    @Test
+    void importUsers_ShouldSaveReadUsersAndReportError_WhenInputIsMalformed() throws IOException {
+        String ndjson = """
+                {"name": "Usuário1", "email": "usuario1@teste.com", "registrationDate": "2020-01-01", "phone": "(44) 91234-5678"}
+                {"name": "Usuário2", "email"
+                """;
+        executeTransactionsInline();
+
+        ImportResultDto result = userService.importUsers(toStream(ndjson), FileFormat.NDJSON);
+
+        assertEquals(1, result.imported());
+        assertEquals(1, result.failed());
+        assertTrue(result.errors().getFirst().fieldErrors().containsKey("body"));
+        verify(userRepository, times(1)).upsertAllByEmail(any());
+        verify(entityCacheService, times(1)).evict(User.class);
+    }
+
+    @Test
+    void exportUsers_ShouldWriteHeaderAndOneRowPerUser_WhenFormatIsCsv() throws IOException {
+        when(userRepository.streamAllResponses()).thenReturn(Stream.of(
+                new UserResponseDto(1L, "Usuário1", "usuario1@teste.com", LocalDate.of(2020, 1, 1), "(44) 91234-5678"),
+                new UserResponseDto(2L, "Silva, Ana", "ana@teste.com", LocalDate.of(2021, 2, 3), "(44) 1234-5678")));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        userService.exportUsers(FileFormat.CSV, output);
+
+        assertEquals("""
+                id,name,email,registrationDate,phone
+                1,Usuário1,usuario1@teste.com,2020-01-01,"(44) 91234-5678"
+                2,"Silva, Ana",ana@teste.com,2021-02-03,"(44) 1234-5678"
+                """, output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void exportUsers_ShouldWriteOneObjectPerLine_WhenFormatIsNdjson() throws IOException {
+        when(userRepository.streamAllResponses()).thenReturn(Stream.of(
+                new UserResponseDto(1L, "Usuário1", "usuario1@teste.com", LocalDate.of(2020, 1, 1), "(44) 91234-5678"),
+                new UserResponseDto(2L, "Usuário2", "usuario2@teste.com", LocalDate.of(2021, 2, 3), "(44) 1234-5678")));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        userService.exportUsers(FileFormat.NDJSON, output);
+
+        assertEquals("""
+                {"id":1,"name":"Usuário1","email":"usuario1@teste.com","registrationDate":"2020-01-01","phone":"(44) 91234-5678"}
+                {"id":2,"name":"Usuário2","email":"usuario2@teste.com","registrationDate":"2021-02-03","phone":"(44) 1234-5678"}
+                """, output.toString(StandardCharsets.UTF_8));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void executeTransactionsInline() {
+        doAnswer(invocation -> {
+            ((Consumer<Object>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    private static InputStream toStream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
 }